@@ -22,6 +22,7 @@ public class SDBMetadataResult {
 
   private boolean hasNext = false;
   private int nextOffset = 0;
+  private String nextCursor = null;
   private int limit = 0;
   private int offset = 0;
   private int sdbCountInResult;
@@ -44,6 +45,14 @@ public class SDBMetadataResult {
     this.nextOffset = nextOffset;
   }
 
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
   public int getLimit() {
     return limit;
   }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.domain;
+
+public class SecureDataChange {
+
+  private String path;
+  private SecureDataType type;
+  private long version;
+  private boolean deleted;
+
+  public String getPath() {
+    return path;
+  }
+
+  public SecureDataChange setPath(String path) {
+    this.path = path;
+    return this;
+  }
+
+  public SecureDataType getType() {
+    return type;
+  }
+
+  public SecureDataChange setType(SecureDataType type) {
+    this.type = type;
+    return this;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public SecureDataChange setVersion(long version) {
+    this.version = version;
+    return this;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  public SecureDataChange setDeleted(boolean deleted) {
+    this.deleted = deleted;
+    return this;
+  }
+}
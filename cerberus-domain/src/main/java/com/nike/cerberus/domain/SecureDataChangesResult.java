@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.domain;
+
+import java.util.List;
+
+public class SecureDataChangesResult {
+
+  private long version;
+  private List<SecureDataChange> changes;
+
+  public long getVersion() {
+    return version;
+  }
+
+  public SecureDataChangesResult setVersion(long version) {
+    this.version = version;
+    return this;
+  }
+
+  public List<SecureDataChange> getChanges() {
+    return changes;
+  }
+
+  public SecureDataChangesResult setChanges(List<SecureDataChange> changes) {
+    this.changes = changes;
+    return this;
+  }
+}
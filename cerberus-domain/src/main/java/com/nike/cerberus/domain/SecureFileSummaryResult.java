@@ -22,6 +22,7 @@ public class SecureFileSummaryResult {
 
   private boolean hasNext = false;
   private Integer nextOffset = null;
+  private String nextCursor = null;
   private int limit = 0;
   private int offset = 0;
   private int fileCountInResult;
@@ -46,6 +47,15 @@ public class SecureFileSummaryResult {
     return this;
   }
 
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public SecureFileSummaryResult setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+    return this;
+  }
+
   public int getLimit() {
     return limit;
   }
@@ -16,6 +16,7 @@
 
 package com.nike.cerberus.aws.sts;
 
+import com.nike.cerberus.cache.StsCallerIdentityCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -23,13 +24,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class AwsStsClient {
   private final AwsStsHttpClient httpClient;
+  private final StsCallerIdentityCache stsCallerIdentityCache;
 
   @Autowired
-  public AwsStsClient(AwsStsHttpClient httpClient) {
+  public AwsStsClient(AwsStsHttpClient httpClient, StsCallerIdentityCache stsCallerIdentityCache) {
     this.httpClient = httpClient;
+    this.stsCallerIdentityCache = stsCallerIdentityCache;
   }
 
   public GetCallerIdentityResponse getCallerIdentity(AwsStsHttpHeader header) {
+    return stsCallerIdentityCache.get(header, this::executeGetCallerIdentity);
+  }
+
+  private GetCallerIdentityResponse executeGetCallerIdentity(AwsStsHttpHeader header) {
     GetCallerIdentityFullResponse response =
         httpClient.execute(
             header.getRegion(), header.generateHeaders(), GetCallerIdentityFullResponse.class);
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.AuthTokenRecord;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt in cache of session tokens that have already been verified, so that repeat requests with
+ * the same token skip the PBKDF2 hash and the AUTH_TOKENS lookup.
+ *
+ * <p>Entries are keyed on a fast keyed digest of the token, see {@link
+ * com.nike.cerberus.util.TokenHasher#digestToken(String)}, never the token itself. An entry is
+ * never returned after the token expires, regardless of the cache TTL.
+ */
+public class AuthTokenCache {
+
+  /** The cache invalidation log namespace that revoked token ids are recorded under. */
+  public static final String NAMESPACE = "authTokenCache";
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final boolean enabled;
+  private final MetricReportingCache<String, AuthTokenRecord> delegate;
+
+  public AuthTokenCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService) {
+    this.enabled = enabled;
+    if (enabled) {
+      log.info(
+          "Auth token caching is enabled with ttl: {}, maximumWeightInBytes: {}",
+          expireTimeInSeconds,
+          maximumWeightInBytes);
+      delegate =
+          new MetricReportingCache<>(
+              "auth.token", expireTimeInSeconds, maximumWeightInBytes, metricsService, null);
+    } else {
+      delegate = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param digest The digest of the token
+   * @param now The current time
+   * @return The verified token record, or empty if it is not cached, has expired or caching is
+   *     disabled
+   */
+  public Optional<AuthTokenRecord> getIfPresent(String digest, OffsetDateTime now) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    AuthTokenRecord record = delegate.getIfPresent(digest);
+    if (record != null && record.getExpiresTs().isBefore(now)) {
+      delegate.invalidate(digest);
+      return Optional.empty();
+    }
+    return Optional.ofNullable(record);
+  }
+
+  /**
+   * Caches a verified token record, does nothing if caching is disabled.
+   *
+   * @param digest The digest of the token
+   * @param record The token record that was read with the hash of the token
+   */
+  public void put(String digest, AuthTokenRecord record) {
+    if (enabled) {
+      delegate.put(digest, record);
+    }
+  }
+
+  /**
+   * @param digest The digest of the token that was revoked
+   */
+  public void invalidate(String digest) {
+    if (enabled) {
+      delegate.invalidate(digest);
+    }
+  }
+
+  /**
+   * Evicts the cached record of a token by its id, ex: when a token is revoked on another instance.
+   *
+   * @param tokenId The id of the token that was revoked, or null to evict every token
+   */
+  public void invalidateTokenId(String tokenId) {
+    if (!enabled) {
+      return;
+    }
+    if (tokenId == null) {
+      delegate.invalidateAll();
+    } else {
+      delegate.asMap().values().removeIf(record -> tokenId.equals(record.getId()));
+    }
+  }
+
+  /** Evicts every cached token record. */
+  public void invalidateAll() {
+    if (enabled) {
+      delegate.invalidateAll();
+    }
+  }
+
+  /**
+   * @param now The current time
+   * @return The number of cached records that had expired and were evicted
+   */
+  public int evictExpired(OffsetDateTime now) {
+    if (!enabled) {
+      return 0;
+    }
+    int[] evicted = new int[1];
+    delegate
+        .asMap()
+        .values()
+        .removeIf(
+            record -> {
+              if (record.getExpiresTs().isBefore(now)) {
+                evicted[0]++;
+                return true;
+              }
+              return false;
+            });
+    return evicted[0];
+  }
+}
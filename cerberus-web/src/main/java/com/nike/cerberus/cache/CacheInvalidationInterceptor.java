@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.nike.cerberus.mapper.CacheInvalidationMapper;
+import com.nike.cerberus.record.CacheInvalidationRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * MyBatis plugin that appends a row to the CACHE_INVALIDATION_LOG table for every write that goes
+ * through a cached mapper. The row is written with the same executor, so it is committed or rolled
+ * back with the write itself. Every instance of CMS tails the log, see {@link
+ * com.nike.cerberus.service.CacheInvalidationService}, and evicts the referenced entries from its
+ * local {@link DatabaseCache}.
+ */
+@Slf4j
+@Intercepts({
+  @Signature(
+      type = Executor.class,
+      method = "update",
+      args = {MappedStatement.class, Object.class})
+})
+public class CacheInvalidationInterceptor implements Interceptor {
+
+  static final String APPEND_INVALIDATION_STATEMENT_ID =
+      CacheInvalidationMapper.class.getName() + ".appendInvalidation";
+
+  /**
+   * The cache namespaces that are stale after a write to the key namespace. Permission checks are
+   * cached in the permissionsMapper namespace, but the permission tables are written through the
+   * SDB, user group and IAM role mappers.
+   */
+  static final Map<String, List<String>> NAMESPACES_TO_INVALIDATE_BY_WRITTEN_NAMESPACE =
+      ImmutableMap.of(
+          "secureDataMapper", List.of("secureDataMapper"),
+          "secureDataVersionMapper", List.of("secureDataVersionMapper"),
+          "safeDepositBoxMapper", List.of("safeDepositBoxMapper", "permissionsMapper"),
+          "userGroupMapper", List.of("userGroupMapper", "permissionsMapper"),
+          "awsIamRoleMapper", List.of("awsIamRoleMapper", "permissionsMapper"));
+
+  /**
+   * Namespaces where every cached read is scoped to a single SDB, so that only the entries for the
+   * written SDB need to be evicted. Writes to all other namespaces evict the whole namespace, ex:
+   * versions are read by id and path alone. Reads in these namespaces that are not keyed by an SDB
+   * id, ex: the totals across all SDBs, must set useCache="false".
+   */
+  static final Set<String> SDB_SCOPED_NAMESPACES =
+      ImmutableSet.of("secureDataMapper", "permissionsMapper");
+
+  /** The parameter names that the cached mappers use to hold the SDB id of a write. */
+  static final List<String> SDB_ID_PARAMETER_NAMES =
+      List.of("sdbId", "safeDepositBoxId", "record.sdboxId");
+
+  /**
+   * The SDB id parameter names of the mappers that do not use {@link #SDB_ID_PARAMETER_NAMES}. The
+   * SDB mapper writes the SDB record itself, so its id is the SDB id.
+   */
+  static final Map<String, List<String>> SDB_ID_PARAMETER_NAMES_BY_WRITTEN_NAMESPACE =
+      ImmutableMap.of("safeDepositBoxMapper", List.of("record.id", "id"));
+
+  private final DateTimeSupplier dateTimeSupplier;
+
+  public CacheInvalidationInterceptor(DateTimeSupplier dateTimeSupplier) {
+    this.dateTimeSupplier = dateTimeSupplier;
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Object result = invocation.proceed();
+
+    MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+    Cache cache = mappedStatement.getCache();
+    if (cache == null) {
+      return result;
+    }
+
+    List<String> namespacesToInvalidate =
+        NAMESPACES_TO_INVALIDATE_BY_WRITTEN_NAMESPACE.get(cache.getId());
+    if (namespacesToInvalidate == null) {
+      return result;
+    }
+
+    Object parameter = invocation.getArgs()[1];
+    String sdbId =
+        getSdbId(mappedStatement.getConfiguration(), cache.getId(), parameter).orElse(null);
+    Executor executor = (Executor) invocation.getTarget();
+    MappedStatement appendInvalidation =
+        mappedStatement.getConfiguration().getMappedStatement(APPEND_INVALIDATION_STATEMENT_ID);
+    for (String namespace : namespacesToInvalidate) {
+      CacheInvalidationRecord record =
+          new CacheInvalidationRecord()
+              .setNamespace(namespace)
+              .setCacheKey(SDB_SCOPED_NAMESPACES.contains(namespace) ? sdbId : null)
+              .setCreatedTs(dateTimeSupplier.get());
+      Map<String, Object> appendParameter = new HashMap<>();
+      appendParameter.put("record", record);
+      // The target is the executor that this plugin wraps, so this write is not intercepted again
+      executor.update(appendInvalidation, appendParameter);
+    }
+    log.debug(
+        "Recorded cache invalidation for statement: {}, sdbId: {}", mappedStatement.getId(), sdbId);
+
+    return result;
+  }
+
+  /**
+   * @param configuration The MyBatis configuration, used to read the statement parameters
+   * @param writtenNamespace The cache namespace of the mapper that was written
+   * @param parameter The statement parameters
+   * @return The SDB id that the write is for, if the statement parameters contain it.
+   */
+  protected Optional<String> getSdbId(
+      Configuration configuration, String writtenNamespace, Object parameter) {
+    if (parameter == null) {
+      return Optional.empty();
+    }
+    MetaObject metaObject = configuration.newMetaObject(parameter);
+    return SDB_ID_PARAMETER_NAMES_BY_WRITTEN_NAMESPACE
+        .getOrDefault(writtenNamespace, SDB_ID_PARAMETER_NAMES)
+        .stream()
+        .filter(metaObject::hasGetter)
+        .map(metaObject::getValue)
+        .filter(String.class::isInstance)
+        .map(String.class::cast)
+        .findFirst();
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NO-OP, this plugin is configured in MybatisConfiguration
+  }
+}
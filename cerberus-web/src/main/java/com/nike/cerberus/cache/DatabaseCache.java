@@ -16,14 +16,11 @@
 
 package com.nike.cerberus.cache;
 
-import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
-import static java.util.Optional.ofNullable;
-
 import com.codahale.metrics.Counter;
 import com.google.common.collect.ImmutableMap;
 import com.nike.cerberus.metric.MetricsService;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.cache.Cache;
@@ -36,39 +33,49 @@ import org.apache.ibatis.cache.Cache;
  * that they should be cached. (To avoid unnecessary eventual consistency in the dashboard, only
  * make the items under heavy reads eventually consistent) See cms.conf for all the configuration
  * settings.
+ *
+ * <p>Repeat reads are tracked with a fixed size {@link FrequencySketch} rather than a counter per
+ * key, so that scans of one off reads do not churn the heap.
  */
 @Slf4j
 public class DatabaseCache implements Cache {
 
-  protected final Integer repeatReadThreshold;
+  private static final String CACHE_KEY_COMPONENT_SEPARATOR = ":";
+
+  protected final int admissionThreshold;
   protected final String id;
   protected MetricReportingCache<Object, Object> dataCache;
-  protected com.github.benmanes.caffeine.cache.Cache<Object, Counter>
-      autoExpiringRepeatReadCounterMap;
+  protected final FrequencySketch frequencySketch;
+  protected final Counter admittedCounter;
+  protected final Counter rejectedCounter;
 
   public DatabaseCache(
       String id,
       MetricsService metricsService,
       int dataTtlInSeconds,
-      int repeatReadCounterResetInSeconds,
-      int repeatReadThreshold) {
+      long maximumWeightInBytes,
+      int frequencySketchSize,
+      int admissionThreshold) {
 
     this.id = id;
-    this.repeatReadThreshold = repeatReadThreshold;
+    // The sketch counters saturate at MAX_FREQUENCY, a higher threshold would never admit anything
+    this.admissionThreshold = Math.min(admissionThreshold, FrequencySketch.MAX_FREQUENCY - 1);
 
     log.info(
-        "Database cache created with id: {}, dataTtlInSeconds: {}, repeatReadCounterResetInSeconds: {}, repeatReadThreshold: {}",
+        "Database cache created with id: {}, dataTtlInSeconds: {}, maximumWeightInBytes: {}, frequencySketchSize: {}, admissionThreshold: {}",
         id,
         dataTtlInSeconds,
-        repeatReadCounterResetInSeconds,
-        repeatReadThreshold);
+        maximumWeightInBytes,
+        frequencySketchSize,
+        this.admissionThreshold);
 
+    Map<String, String> dimensions = ImmutableMap.of("namespace", this.id);
     dataCache =
         new MetricReportingCache<>(
-            "mybatis", dataTtlInSeconds, metricsService, ImmutableMap.of("namespace", this.id));
-
-    autoExpiringRepeatReadCounterMap =
-        newBuilder().expireAfterAccess(repeatReadCounterResetInSeconds, TimeUnit.SECONDS).build();
+            "mybatis", dataTtlInSeconds, maximumWeightInBytes, metricsService, dimensions);
+    frequencySketch = new FrequencySketch(frequencySketchSize);
+    admittedCounter = metricsService.getOrCreateCounter("cms.cache.mybatis.admitted", dimensions);
+    rejectedCounter = metricsService.getOrCreateCounter("cms.cache.mybatis.rejected", dimensions);
   }
 
   @Override
@@ -82,29 +89,20 @@ public class DatabaseCache implements Cache {
       return;
     }
 
-    // If the read counter exists and is greater than the threshold then we are receiving
+    // If the estimated read frequency is greater than the threshold then we are receiving
     // burst repeat reads and we will cache that entry.
-    ofNullable(autoExpiringRepeatReadCounterMap.getIfPresent(key))
-        .ifPresent(
-            counter -> {
-              if (counter.getCount() > repeatReadThreshold) {
-                dataCache.put(key, value);
-              }
-            });
+    if (frequencySketch.frequency(key) > admissionThreshold) {
+      dataCache.put(key, value);
+      admittedCounter.inc();
+    } else {
+      rejectedCounter.inc();
+    }
   }
 
   @Override
   public Object getObject(Object key) {
-    // Increment the read counter, which resets after counterExpireTimeInSeconds.
-    Counter counter = autoExpiringRepeatReadCounterMap.getIfPresent(key);
-    if (counter != null) {
-      counter.inc();
-    } else {
-      counter = new Counter();
-      counter.inc();
-      autoExpiringRepeatReadCounterMap.put(key, counter);
-    }
-
+    // Record the read, the sketch periodically halves its counts so that old reads decay.
+    frequencySketch.increment(key);
     return dataCache.getIfPresent(key);
   }
 
@@ -115,6 +113,37 @@ public class DatabaseCache implements Cache {
     return res;
   }
 
+  /**
+   * Evicts every cached query result whose MyBatis cache key was built with the given parameter
+   * value, ex: all of the cached secure data reads for a given SDB id.
+   *
+   * @param value The parameter value that was written
+   * @return The number of entries that were evicted
+   */
+  public int evictEntriesReferencing(String value) {
+    String component = CACHE_KEY_COMPONENT_SEPARATOR + value + CACHE_KEY_COMPONENT_SEPARATOR;
+    int[] evicted = new int[1];
+    dataCache
+        .asMap()
+        .keySet()
+        .removeIf(
+            key -> {
+              // CacheKey#toString() joins the statement id, sql and every parameter value with ':'
+              String cacheKey = CACHE_KEY_COMPONENT_SEPARATOR + key + CACHE_KEY_COMPONENT_SEPARATOR;
+              if (cacheKey.contains(component)) {
+                evicted[0]++;
+                return true;
+              }
+              return false;
+            });
+    return evicted[0];
+  }
+
+  /** Evicts every cached query result for this namespace. */
+  public void evictAll() {
+    dataCache.invalidateAll();
+  }
+
   @Override
   public void clear() {
     // NO-OP, my batis by default clears the entire namespaced cache when a write action occurs,
@@ -122,6 +151,8 @@ public class DatabaseCache implements Cache {
     // Since we run Cerberus in a cluster anyways and each instance will have it's own generated
     // cache, a simple small
     // time window where items purge themselves is adequate.
+    // If cerberus.mybatis.cache.invalidation.enabled is set, writes are instead propagated to every
+    // instance through the CACHE_INVALIDATION_LOG table, see CacheInvalidationService.
   }
 
   @Override
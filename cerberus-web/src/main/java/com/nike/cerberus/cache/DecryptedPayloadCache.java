@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SecureDataRecord;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt in cache of decrypted secure data payloads, so that repeat reads of the same unchanged
+ * secret skip parsing, validating and decrypting the ciphertext.
+ *
+ * <p>Entries are keyed on the record id, the requested path and the last updated and last rotated
+ * timestamps of the record, so any write or key rotation changes the key and the stale plaintext is
+ * simply never read again. Payloads are held in {@link ZeroableBytes} that are zeroed as soon as
+ * they are removed from the cache, and the cache is bounded by their total size.
+ */
+public class DecryptedPayloadCache {
+
+  private static final String KEY_COMPONENT_SEPARATOR = ":";
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final boolean enabled;
+  private final MetricReportingCache<String, ZeroableBytes> delegate;
+
+  public DecryptedPayloadCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService) {
+    this.enabled = enabled;
+    if (enabled) {
+      log.info(
+          "Decrypted payload caching is enabled with ttl: {}, maximumWeightInBytes: {}",
+          expireTimeInSeconds,
+          maximumWeightInBytes);
+      delegate =
+          new MetricReportingCache<>(
+              "decrypted.payload",
+              expireTimeInSeconds,
+              maximumWeightInBytes,
+              (String key, ZeroableBytes value, RemovalCause cause) -> {
+                if (value != null) {
+                  value.zero();
+                }
+              },
+              metricsService,
+              null);
+    } else {
+      delegate = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param record The secure data record that was read
+   * @param path The path that the record was requested with, the path is part of the encryption
+   *     context that is validated on decrypt
+   * @return The cache key for the decrypted payload of the given version of the record
+   */
+  public static String getKey(SecureDataRecord record, String path) {
+    return String.join(
+        KEY_COMPONENT_SEPARATOR,
+        String.valueOf(record.getId()),
+        String.valueOf(record.getLastUpdatedTs()),
+        String.valueOf(record.getLastRotatedTs()),
+        path);
+  }
+
+  /**
+   * @param key The cache key, see {@link #getKey(SecureDataRecord, String)}
+   * @return A copy of the cached plaintext, or empty if it is not cached or caching is disabled
+   */
+  public Optional<byte[]> getIfPresent(String key) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    ZeroableBytes cached = delegate.getIfPresent(key);
+    return cached == null ? Optional.empty() : cached.copy();
+  }
+
+  /**
+   * Caches a copy of the given plaintext, does nothing if caching is disabled.
+   *
+   * @param key The cache key, see {@link #getKey(SecureDataRecord, String)}
+   * @param plaintext The decrypted payload
+   */
+  public void put(String key, byte[] plaintext) {
+    if (enabled) {
+      delegate.put(key, new ZeroableBytes(plaintext));
+    }
+  }
+}
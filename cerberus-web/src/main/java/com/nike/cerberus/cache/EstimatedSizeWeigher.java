@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.nike.cerberus.domain.AuthTokenInfo;
+import com.nike.cerberus.domain.EncryptedAuthDataWrapper;
+import com.nike.cerberus.record.SecureDataRecord;
+import com.nike.cerberus.record.SecureDataVersionRecord;
+import java.util.Collection;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Estimates the number of bytes of heap a cached value retains, so that caches can be bounded by
+ * memory rather than by entry count. The estimate is dominated by the encrypted blobs of secure
+ * data, which can be up to a MEDIUMBLOB in size for secure files, plus a fixed overhead for every
+ * other object.
+ */
+public class EstimatedSizeWeigher<K, V> implements Weigher<K, V> {
+
+  /** The approximate size of an object header plus its references and boxed fields. */
+  protected static final int OBJECT_OVERHEAD_IN_BYTES = 64;
+
+  /** The approximate size of a record's non blob fields, ex: ids, paths and timestamps. */
+  protected static final int RECORD_OVERHEAD_IN_BYTES = 512;
+
+  @Override
+  public int weigh(@NonNull K key, @NonNull V value) {
+    long weight = OBJECT_OVERHEAD_IN_BYTES + estimateSizeInBytes(value);
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  protected long estimateSizeInBytes(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    }
+    if (value instanceof ZeroableBytes) {
+      return ((ZeroableBytes) value).length();
+    }
+    if (value instanceof String) {
+      return ((String) value).length();
+    }
+    if (value instanceof SecureDataRecord) {
+      return RECORD_OVERHEAD_IN_BYTES + ((SecureDataRecord) value).getEncryptedBlobLength();
+    }
+    if (value instanceof SecureDataVersionRecord) {
+      return RECORD_OVERHEAD_IN_BYTES + ((SecureDataVersionRecord) value).getEncryptedBlobLength();
+    }
+    if (value instanceof AuthTokenInfo) {
+      // User tokens carry the full list of the user's groups
+      return RECORD_OVERHEAD_IN_BYTES + estimateSizeInBytes(((AuthTokenInfo) value).getGroups());
+    }
+    if (value instanceof EncryptedAuthDataWrapper) {
+      return OBJECT_OVERHEAD_IN_BYTES
+          + estimateSizeInBytes(((EncryptedAuthDataWrapper) value).getAuthData());
+    }
+    if (value instanceof SdbSummaryCache.Entry) {
+      SdbSummaryCache.Entry entry = (SdbSummaryCache.Entry) value;
+      return RECORD_OVERHEAD_IN_BYTES
+          + estimateSizeInBytes(entry.summaries)
+          + estimateSizeInBytes(entry.lowerCaseGrantees);
+    }
+    if (value instanceof Collection) {
+      // MyBatis caches the list of rows returned by a select
+      long size = 0;
+      for (Object element : (Collection<?>) value) {
+        size += OBJECT_OVERHEAD_IN_BYTES + estimateSizeInBytes(element);
+      }
+      return size;
+    }
+    return RECORD_OVERHEAD_IN_BYTES;
+  }
+}
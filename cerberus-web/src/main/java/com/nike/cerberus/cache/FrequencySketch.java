@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact, lock free count-min sketch of 4 bit counters used to estimate how often a key has been
+ * read recently, ex: the TinyLFU admission filter. Each key is hashed to one counter in each of 4
+ * rows, and its frequency is the minimum of those counters, so the estimate may over count but will
+ * never under count.
+ *
+ * <p>The memory used is fixed by the expected number of distinct keys rather than growing with
+ * every key that is seen, and once the number of recorded reads reaches the sample size every
+ * counter is halved, so keys that were popular in the past age out of the sketch.
+ */
+public class FrequencySketch {
+
+  /** The maximum value of a 4 bit counter, frequencies are capped at this value. */
+  public static final int MAX_FREQUENCY = 15;
+
+  private static final int DEPTH = 4;
+  private static final int MIN_WIDTH = 16;
+  private static final int SAMPLE_SIZE_MULTIPLIER = 10;
+  private static final long COUNTER_MASK = 0xfL;
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private final AtomicInteger additions = new AtomicInteger();
+
+  /**
+   * @param expectedEntries The number of distinct keys that are expected to be read within a sample
+   *     period, this determines the size of the sketch.
+   */
+  public FrequencySketch(int expectedEntries) {
+    int width = ceilingPowerOfTwo(Math.max(expectedEntries, MIN_WIDTH));
+    table = new AtomicLongArray(width);
+    tableMask = width - 1;
+    sampleSize = width * SAMPLE_SIZE_MULTIPLIER;
+  }
+
+  /**
+   * Records a read of the given key.
+   *
+   * @param key The key that was read
+   */
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean incremented = false;
+    for (int i = 0; i < DEPTH; i++) {
+      long rowHash = rowHash(hash, i);
+      int offset = counterOffset(rowHash);
+      long previous =
+          table.getAndUpdate(
+              slot(rowHash),
+              slot ->
+                  ((slot >>> offset) & COUNTER_MASK) == COUNTER_MASK
+                      ? slot
+                      : slot + (1L << offset));
+      incremented |= ((previous >>> offset) & COUNTER_MASK) != COUNTER_MASK;
+    }
+
+    // Only the thread that reaches the sample size exactly performs the reset
+    if (incremented && additions.incrementAndGet() == sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * @param key The key to look up
+   * @return The estimated number of times the key has been read in the current sample period,
+   *     capped at {@link #MAX_FREQUENCY}
+   */
+  public int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < DEPTH; i++) {
+      long rowHash = rowHash(hash, i);
+      int count = (int) ((table.get(slot(rowHash)) >>> counterOffset(rowHash)) & COUNTER_MASK);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Halves every counter so that the frequencies of keys that are no longer read decay. */
+  protected void reset() {
+    for (int i = 0; i < table.length(); i++) {
+      table.updateAndGet(i, slot -> (slot >>> 1) & RESET_MASK);
+    }
+    additions.addAndGet(-sampleSize / 2);
+  }
+
+  private int slot(long rowHash) {
+    return (int) rowHash & tableMask;
+  }
+
+  private static int counterOffset(long rowHash) {
+    // Each slot packs 16 counters of 4 bits, use the high bits of the hash to pick one of them
+    return (int) ((rowHash >>> 32) & COUNTER_MASK) << 2;
+  }
+
+  private static long rowHash(int hash, int row) {
+    long rowHash = (hash + SEEDS[row]) * SEEDS[row];
+    return rowHash + (rowHash >>> 32);
+  }
+
+  private static int spread(int hash) {
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    return (hash >>> 16) ^ hash;
+  }
+
+  private static int ceilingPowerOfTwo(int value) {
+    return 1 << -Integer.numberOfLeadingZeros(value - 1);
+  }
+}
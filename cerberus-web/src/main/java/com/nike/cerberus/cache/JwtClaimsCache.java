@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.nike.cerberus.jwt.CerberusJwtClaims;
+import com.nike.cerberus.metric.MetricsService;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt in cache of the claims of JWTs that have already been parsed and verified, so that repeat
+ * requests with the same JWT skip decompressing the payload and verifying the signature.
+ *
+ * <p>Entries are keyed on a fast keyed digest of the compact JWT, see {@link
+ * com.nike.cerberus.util.TokenHasher#digestToken(String)}, never the token itself. An entry is
+ * never returned after the JWT expires, regardless of the cache TTL.
+ */
+public class JwtClaimsCache {
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final boolean enabled;
+  private final MetricReportingCache<String, CerberusJwtClaims> delegate;
+
+  public JwtClaimsCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService) {
+    this.enabled = enabled;
+    if (enabled) {
+      log.info(
+          "JWT claims caching is enabled with ttl: {}, maximumWeightInBytes: {}",
+          expireTimeInSeconds,
+          maximumWeightInBytes);
+      delegate =
+          new MetricReportingCache<>(
+              "auth.jwt", expireTimeInSeconds, maximumWeightInBytes, metricsService, null);
+    } else {
+      delegate = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param digest The digest of the JWT
+   * @param now The current time
+   * @return The verified claims, or empty if they are not cached, have expired or caching is
+   *     disabled
+   */
+  public Optional<CerberusJwtClaims> getIfPresent(String digest, OffsetDateTime now) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    CerberusJwtClaims claims = delegate.getIfPresent(digest);
+    if (claims != null && claims.getExpiresTs().isBefore(now)) {
+      delegate.invalidate(digest);
+      return Optional.empty();
+    }
+    return Optional.ofNullable(claims);
+  }
+
+  /**
+   * Caches verified claims, does nothing if caching is disabled.
+   *
+   * @param digest The digest of the JWT
+   * @param claims The claims that were parsed from the JWT
+   */
+  public void put(String digest, CerberusJwtClaims claims) {
+    if (enabled) {
+      delegate.put(digest, claims);
+    }
+  }
+
+  /**
+   * Evicts the cached claims of every JWT with one of the given ids, ex: when they are blocklisted.
+   *
+   * @param tokenIds The ids of the JWTs to evict
+   */
+  public void invalidateTokenIds(Set<String> tokenIds) {
+    if (enabled && !tokenIds.isEmpty()) {
+      delegate.asMap().values().removeIf(claims -> tokenIds.contains(claims.getId()));
+    }
+  }
+
+  /** Evicts the claims of every JWT, ex: when the verification keys change. */
+  public void invalidateAll() {
+    if (enabled) {
+      delegate.invalidateAll();
+    }
+  }
+}
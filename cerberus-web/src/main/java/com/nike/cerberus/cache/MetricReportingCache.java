@@ -20,12 +20,16 @@ import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
 
 import com.codahale.metrics.Counter;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.nike.cerberus.metric.MetricsService;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
@@ -33,7 +37,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A simple Caffeine backed cache that auto expires items after a certain time period, to help us
- * against bursty traffic that does repeat reads.
+ * against bursty traffic that does repeat reads. The cache can optionally be bounded by the
+ * estimated number of bytes it retains, see {@link EstimatedSizeWeigher}.
  */
 public class MetricReportingCache<K, V> implements Cache<K, V> {
 
@@ -42,18 +47,66 @@ public class MetricReportingCache<K, V> implements Cache<K, V> {
   private Cache<K, V> delegate;
   private final Counter hitCounter;
   private final Counter missCounter;
+  private final AtomicLong evictedBytes = new AtomicLong();
 
   public MetricReportingCache(
       String namespace,
       int expireTimeInSeconds,
       MetricsService metricsService,
       Map<String, String> dimensions) {
+    this(namespace, expireTimeInSeconds, 0, metricsService, dimensions);
+  }
+
+  /**
+   * @param maximumWeightInBytes The maximum estimated size in bytes of the cached values, the least
+   *     valuable entries are evicted once it is exceeded, 0 or less for no bound.
+   */
+  public MetricReportingCache(
+      String namespace,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService,
+      Map<String, String> dimensions) {
+    this(namespace, expireTimeInSeconds, maximumWeightInBytes, null, metricsService, dimensions);
+  }
+
+  /**
+   * @param maximumWeightInBytes The maximum estimated size in bytes of the cached values, the least
+   *     valuable entries are evicted once it is exceeded, 0 or less for no bound.
+   * @param removalListener An optional listener that is notified asynchronously whenever an entry
+   *     is removed for any reason, ex: to scrub sensitive values.
+   */
+  public MetricReportingCache(
+      String namespace,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      RemovalListener<K, V> removalListener,
+      MetricsService metricsService,
+      Map<String, String> dimensions) {
     log.info(
-        "Cerberus cache with namespace: {} has been initialized with ttl: {}",
+        "Cerberus cache with namespace: {} has been initialized with ttl: {}, maximumWeightInBytes: {}",
         namespace,
-        expireTimeInSeconds);
-
-    delegate = newBuilder().expireAfterWrite(expireTimeInSeconds, TimeUnit.SECONDS).build();
+        expireTimeInSeconds,
+        maximumWeightInBytes);
+
+    Caffeine<Object, Object> builder =
+        newBuilder().expireAfterWrite(expireTimeInSeconds, TimeUnit.SECONDS);
+    EstimatedSizeWeigher<K, V> weigher = new EstimatedSizeWeigher<>();
+    if (maximumWeightInBytes > 0) {
+      builder.maximumWeight(maximumWeightInBytes).weigher(weigher);
+    }
+    if (maximumWeightInBytes > 0 || removalListener != null) {
+      builder.removalListener(
+          (K key, V value, RemovalCause cause) -> {
+            if (cause == RemovalCause.SIZE && key != null && value != null) {
+              evictedBytes.addAndGet(weigher.weigh(key, value));
+            }
+            if (removalListener != null) {
+              removalListener.onRemoval(key, value, cause);
+            }
+          });
+    }
+    delegate = builder.build();
 
     // Create Metrics for this cache.
     hitCounter =
@@ -71,6 +124,12 @@ public class MetricReportingCache<K, V> implements Cache<K, V> {
         String.format("cms.cache.%s.stats.totalMissCount", namespace),
         () -> delegate.stats().missCount(),
         dimensions);
+    metricsService.getOrCreateCallbackGauge(
+        String.format("cms.cache.%s.hitRatio", namespace), this::getHitRatio, dimensions);
+    metricsService.getOrCreateCallbackGauge(
+        String.format("cms.cache.%s.weightInBytes", namespace), this::getWeightInBytes, dimensions);
+    metricsService.getOrCreateCallbackGauge(
+        String.format("cms.cache.%s.evictedBytes", namespace), evictedBytes::get, dimensions);
   }
 
   @Override
@@ -156,4 +215,31 @@ public class MetricReportingCache<K, V> implements Cache<K, V> {
   public Counter getMissCounter() {
     return missCounter;
   }
+
+  /**
+   * @return The share of lookups since start up that were hits, 0 if there have not been any
+   */
+  public double getHitRatio() {
+    long hits = hitCounter.getCount();
+    long lookups = hits + missCounter.getCount();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * @return The estimated size in bytes of the cached values, 0 if the cache is not bounded
+   */
+  public long getWeightInBytes() {
+    return delegate
+        .policy()
+        .eviction()
+        .map(eviction -> eviction.weightedSize().orElse(0L))
+        .orElse(0L);
+  }
+
+  /**
+   * @return The estimated number of bytes evicted because the maximum weight was exceeded
+   */
+  public long getEvictedBytes() {
+    return evictedBytes.get();
+  }
 }
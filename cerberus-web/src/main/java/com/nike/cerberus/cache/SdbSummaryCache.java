@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.nike.cerberus.PrincipalType;
+import com.nike.cerberus.domain.SafeDepositBoxSummary;
+import com.nike.cerberus.metric.MetricsService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An opt in cache of the SDBs that each principal can list, so that repeat dashboard loads and CLI
+ * list calls skip the joins across the SDB and permission tables.
+ *
+ * <p>Entries are keyed on the principal name plus the sorted set of names that grant it access, ex:
+ * the user's groups or the role and account root ARNs of an IAM principal. Each entry remembers
+ * those grantees and the SDBs it lists, so that a grant or revoke evicts only the entries of the
+ * principals it applies to, and deleting an SDB evicts only the entries that list it. Grantees are
+ * matched case insensitively, which may evict a few more entries than needed but never too few.
+ */
+public class SdbSummaryCache {
+
+  /** The cache invalidation log namespace that grantees and deleted SDB ids are recorded under. */
+  public static final String NAMESPACE = "sdbSummaryCache";
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final boolean enabled;
+  private final MetricReportingCache<String, Entry> delegate;
+
+  public SdbSummaryCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService) {
+    this.enabled = enabled;
+    if (enabled) {
+      log.info(
+          "SDB summary caching is enabled with ttl: {}, maximumWeightInBytes: {}",
+          expireTimeInSeconds,
+          maximumWeightInBytes);
+      delegate =
+          new MetricReportingCache<>(
+              "sdb.summary", expireTimeInSeconds, maximumWeightInBytes, metricsService, null);
+    } else {
+      delegate = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param principalType The type of the principal
+   * @param principalName The name of the principal
+   * @param grantees The names that SDBs can be shared with to grant the principal access, already
+   *     lower cased if they are matched case insensitively
+   * @param loader Reads the SDBs that the principal can list, if they are not cached
+   * @return A copy of the cached SDB summaries
+   */
+  public List<SafeDepositBoxSummary> get(
+      PrincipalType principalType,
+      String principalName,
+      Collection<String> grantees,
+      Supplier<List<SafeDepositBoxSummary>> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    Set<String> sortedGrantees = new TreeSet<>(grantees);
+    String key = String.join("\n", principalType.name(), principalName, sortedGrantees.toString());
+    Entry entry = delegate.get(key, k -> new Entry(loader.get(), sortedGrantees));
+    return new ArrayList<>(entry.summaries);
+  }
+
+  /**
+   * Evicts the entries of every principal that the grantee grants access to, ex: after a
+   * permission for it is granted or revoked. If a transaction is active the entries are evicted
+   * again after it commits, in case a concurrent read cached the SDBs from before the change.
+   *
+   * @param grantee A user group name or IAM principal ARN
+   */
+  public void invalidateGrantee(String grantee) {
+    if (!enabled || grantee == null) {
+      return;
+    }
+    String lowerCaseGrantee = grantee.toLowerCase();
+    invalidateNowAndAfterCommit(
+        () ->
+            delegate
+                .asMap()
+                .values()
+                .removeIf(entry -> entry.lowerCaseGrantees.contains(lowerCaseGrantee)));
+  }
+
+  /**
+   * Evicts the entries that list the SDB, ex: after it is deleted. If a transaction is active the
+   * entries are evicted again after it commits.
+   *
+   * @param sdbId The id of the SDB
+   */
+  public void invalidateSdb(String sdbId) {
+    if (!enabled || sdbId == null) {
+      return;
+    }
+    invalidateNowAndAfterCommit(
+        () -> delegate.asMap().values().removeIf(entry -> entry.sdbIds.contains(sdbId)));
+  }
+
+  /** Evicts every cached entry. */
+  public void invalidateAll() {
+    if (enabled) {
+      delegate.invalidateAll();
+    }
+  }
+
+  private void invalidateNowAndAfterCommit(Runnable invalidation) {
+    invalidation.run();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              invalidation.run();
+            }
+          });
+    }
+  }
+
+  /** The SDBs a principal can list, with what is needed to tell which writes make them stale. */
+  static class Entry {
+    final List<SafeDepositBoxSummary> summaries;
+    final Set<String> sdbIds;
+    final Set<String> lowerCaseGrantees;
+
+    Entry(List<SafeDepositBoxSummary> summaries, Set<String> grantees) {
+      this.summaries = List.copyOf(summaries);
+      sdbIds = summaries.stream().map(SafeDepositBoxSummary::getId).collect(Collectors.toSet());
+      lowerCaseGrantees = grantees.stream().map(String::toLowerCase).collect(Collectors.toSet());
+    }
+  }
+}
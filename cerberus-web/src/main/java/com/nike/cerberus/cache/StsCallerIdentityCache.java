@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import com.codahale.metrics.Counter;
+import com.google.common.hash.Hashing;
+import com.nike.cerberus.aws.sts.AwsStsHttpHeader;
+import com.nike.cerberus.aws.sts.GetCallerIdentityResponse;
+import com.nike.cerberus.metric.MetricsService;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt in cache of STS get-caller-identity responses keyed by the signed request, so that when
+ * many clients send the same signed request at once, ex: instances sharing credentials during a
+ * deploy, only one of them calls STS and the rest share its response.
+ *
+ * <p>Concurrent lookups of the same signed request wait for the in flight call rather than making
+ * their own, and share its failure if it fails, failed calls are never cached. The STS call is made
+ * outside of the cache's map locks, so a slow call never blocks lookups of other signed requests. A
+ * response is only served while the request signature is still valid, and entries are keyed on a
+ * digest of the signature headers, never the headers themselves.
+ */
+public class StsCallerIdentityCache {
+
+  /** How long after its x-amz-date AWS accepts a signed request. */
+  static final Duration SIGNATURE_VALIDITY = Duration.ofMinutes(15);
+
+  private static final DateTimeFormatter AMZ_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final boolean enabled;
+  private final Supplier<OffsetDateTime> clock;
+  private final MetricReportingCache<String, GetCallerIdentityResponse> delegate;
+  private final ConcurrentMap<String, CompletableFuture<GetCallerIdentityResponse>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Counter upstreamCounter;
+  private final Counter coalescedCounter;
+
+  public StsCallerIdentityCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService) {
+    this(
+        enabled,
+        expireTimeInSeconds,
+        maximumWeightInBytes,
+        metricsService,
+        () -> OffsetDateTime.now(ZoneOffset.UTC));
+  }
+
+  StsCallerIdentityCache(
+      boolean enabled,
+      int expireTimeInSeconds,
+      long maximumWeightInBytes,
+      MetricsService metricsService,
+      Supplier<OffsetDateTime> clock) {
+    this.enabled = enabled;
+    this.clock = clock;
+    if (enabled) {
+      log.info(
+          "STS caller identity caching is enabled with ttl: {}, maximumWeightInBytes: {}",
+          expireTimeInSeconds,
+          maximumWeightInBytes);
+      delegate =
+          new MetricReportingCache<>(
+              "auth.sts", expireTimeInSeconds, maximumWeightInBytes, metricsService, null);
+      upstreamCounter = metricsService.getOrCreateCounter("cms.auth.sts.upstream", null);
+      coalescedCounter = metricsService.getOrCreateCounter("cms.auth.sts.coalesced", null);
+    } else {
+      delegate = null;
+      upstreamCounter = null;
+      coalescedCounter = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param header The signature headers of the get-caller-identity request
+   * @param loader Calls STS, only invoked if no response for the same signed request is cached or
+   *     in flight
+   * @return The get-caller-identity response
+   */
+  public GetCallerIdentityResponse get(
+      AwsStsHttpHeader header, Function<AwsStsHttpHeader, GetCallerIdentityResponse> loader) {
+    if (!enabled || !isSignatureValid(header)) {
+      // Let STS reject expired or malformed signatures, they are never shared
+      return loader.apply(header);
+    }
+
+    String key = getKey(header);
+    GetCallerIdentityResponse cached = delegate.getIfPresent(key);
+    if (cached != null) {
+      coalescedCounter.inc();
+      return cached;
+    }
+
+    CompletableFuture<GetCallerIdentityResponse> call = new CompletableFuture<>();
+    CompletableFuture<GetCallerIdentityResponse> existingCall = inFlight.putIfAbsent(key, call);
+    if (existingCall != null) {
+      coalescedCounter.inc();
+      return join(existingCall);
+    }
+    try {
+      // The call that was in flight may have finished between the lookup and the putIfAbsent
+      GetCallerIdentityResponse response = (GetCallerIdentityResponse) delegate.asMap().get(key);
+      if (response == null) {
+        upstreamCounter.inc();
+        response = loader.apply(header);
+        delegate.put(key, response);
+      } else {
+        coalescedCounter.inc();
+      }
+      call.complete(response);
+      return response;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, call);
+    }
+  }
+
+  private static GetCallerIdentityResponse join(
+      CompletableFuture<GetCallerIdentityResponse> call) {
+    try {
+      return call.join();
+    } catch (CompletionException e) {
+      // Rethrow the failure of the in flight call as the caller that made it saw it
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private boolean isSignatureValid(AwsStsHttpHeader header) {
+    OffsetDateTime signedTs;
+    try {
+      signedTs =
+          LocalDateTime.parse(header.getAmzDate(), AMZ_DATE_FORMAT).atOffset(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+    OffsetDateTime now = clock.get();
+    return !now.isAfter(signedTs.plus(SIGNATURE_VALIDITY))
+        && !now.isBefore(signedTs.minus(SIGNATURE_VALIDITY));
+  }
+
+  private String getKey(AwsStsHttpHeader header) {
+    // The security token is not always one of the signed headers, it is part of the key so that a
+    // signature paired with a different token can not be served another request's identity
+    String signedRequest =
+        String.join(
+            "\n",
+            header.getAuthorization(),
+            header.getAmzDate(),
+            header.getAmzSecurityToken() == null ? "" : header.getAmzSecurityToken());
+    return Hashing.sha256().hashString(signedRequest, StandardCharsets.UTF_8).toString();
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Holds a copy of some sensitive bytes, ex: decrypted secure data, that can be overwritten with
+ * zeros once it is no longer needed rather than lingering on the heap until it is garbage
+ * collected. Readers get a copy, so zeroing can never corrupt a value that has already been handed
+ * out.
+ */
+public class ZeroableBytes {
+
+  private final byte[] bytes;
+  private boolean zeroed = false;
+
+  public ZeroableBytes(byte[] bytes) {
+    this.bytes = Arrays.copyOf(bytes, bytes.length);
+  }
+
+  /**
+   * @return A copy of the bytes, or empty if they have already been zeroed
+   */
+  public synchronized Optional<byte[]> copy() {
+    if (zeroed) {
+      return Optional.empty();
+    }
+    return Optional.of(Arrays.copyOf(bytes, bytes.length));
+  }
+
+  /** Overwrites the bytes with zeros, after which {@link #copy()} will always be empty. */
+  public synchronized void zero() {
+    Arrays.fill(bytes, (byte) 0);
+    zeroed = true;
+  }
+
+  public int length() {
+    return bytes.length;
+  }
+}
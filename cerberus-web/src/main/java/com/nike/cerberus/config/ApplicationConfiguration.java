@@ -36,8 +36,13 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.nike.backstopper.apierror.projectspecificinfo.ProjectApiErrors;
 import com.nike.backstopper.handler.spring.SpringApiExceptionHandler;
+import com.nike.cerberus.cache.AuthTokenCache;
+import com.nike.cerberus.cache.DecryptedPayloadCache;
+import com.nike.cerberus.cache.JwtClaimsCache;
 import com.nike.cerberus.cache.MetricReportingCache;
 import com.nike.cerberus.cache.MetricReportingCryptoMaterialsCache;
+import com.nike.cerberus.cache.SdbSummaryCache;
+import com.nike.cerberus.cache.StsCallerIdentityCache;
 import com.nike.cerberus.domain.AwsIamKmsAuthRequest;
 import com.nike.cerberus.domain.EncryptedAuthDataWrapper;
 import com.nike.cerberus.error.DefaultApiErrorsImpl;
@@ -136,9 +141,75 @@ public class ApplicationConfiguration {
   @Bean
   public Cache<AwsIamKmsAuthRequest, EncryptedAuthDataWrapper> kmsAuthCache(
       MetricsService metricsService,
-      @Value("${cerberus.auth.iam.kms.cache.maxAgeInSeconds:10}") int maxAge) {
+      @Value("${cerberus.auth.iam.kms.cache.maxAgeInSeconds:10}") int maxAge,
+      @Value("${cerberus.auth.iam.kms.cache.maximumWeightInBytes:8388608}")
+          long maximumWeightInBytes) {
 
-    return new MetricReportingCache<>("auth.kms", maxAge, metricsService, null);
+    return new MetricReportingCache<>(
+        "auth.kms", maxAge, maximumWeightInBytes, metricsService, null);
+  }
+
+  @Bean
+  public StsCallerIdentityCache stsCallerIdentityCache(
+      MetricsService metricsService,
+      @Value("${cerberus.auth.iam.sts.cache.enabled:false}") boolean enabled,
+      @Value("${cerberus.auth.iam.sts.cache.maxAgeInSeconds:60}") int maxAge,
+      @Value("${cerberus.auth.iam.sts.cache.maximumWeightInBytes:8388608}")
+          long maximumWeightInBytes) {
+
+    return new StsCallerIdentityCache(enabled, maxAge, maximumWeightInBytes, metricsService);
+  }
+
+  @Bean
+  public AuthTokenCache authTokenCache(
+      MetricsService metricsService,
+      @Value("${cerberus.auth.token.cache.enabled:false}") boolean enabled,
+      @Value("${cerberus.auth.token.cache.maxAgeInSeconds:60}") int maxAge,
+      @Value("${cerberus.auth.token.cache.maximumWeightInBytes:8388608}")
+          long maximumWeightInBytes,
+      @Value("${cerberus.mybatis.cache.invalidation.enabled:false}")
+          boolean cacheInvalidationEnabled) {
+
+    // Without the invalidation log a token revoked on another instance would stay usable here
+    // until its entry expires
+    if (enabled && !cacheInvalidationEnabled) {
+      log.warn("Auth token caching will not be used, it requires cache invalidation to be enabled");
+    }
+    return new AuthTokenCache(
+        enabled && cacheInvalidationEnabled, maxAge, maximumWeightInBytes, metricsService);
+  }
+
+  @Bean
+  public SdbSummaryCache sdbSummaryCache(
+      MetricsService metricsService,
+      @Value("${cerberus.sdb.summary.cache.enabled:false}") boolean enabled,
+      @Value("${cerberus.sdb.summary.cache.maxAgeInSeconds:30}") int maxAge,
+      @Value("${cerberus.sdb.summary.cache.maximumWeightInBytes:8388608}")
+          long maximumWeightInBytes) {
+
+    return new SdbSummaryCache(enabled, maxAge, maximumWeightInBytes, metricsService);
+  }
+
+  @Bean
+  public JwtClaimsCache jwtClaimsCache(
+      MetricsService metricsService,
+      @Value("${cerberus.auth.jwt.cache.enabled:false}") boolean enabled,
+      @Value("${cerberus.auth.jwt.cache.maxAgeInSeconds:300}") int maxAge,
+      @Value("${cerberus.auth.jwt.cache.maximumWeightInBytes:8388608}")
+          long maximumWeightInBytes) {
+
+    return new JwtClaimsCache(enabled, maxAge, maximumWeightInBytes, metricsService);
+  }
+
+  @Bean
+  public DecryptedPayloadCache decryptedPayloadCache(
+      MetricsService metricsService,
+      @Value("${cerberus.encryption.cache.plaintext.enabled:false}") boolean enabled,
+      @Value("${cerberus.encryption.cache.plaintext.maxAgeInSeconds:60}") int maxAge,
+      @Value("${cerberus.encryption.cache.plaintext.maximumWeightInBytes:16777216}")
+          long maximumWeightInBytes) {
+
+    return new DecryptedPayloadCache(enabled, maxAge, maximumWeightInBytes, metricsService);
   }
 
   @Bean
@@ -16,8 +16,10 @@
 
 package com.nike.cerberus.config.database;
 
+import com.nike.cerberus.cache.CacheInvalidationInterceptor;
 import com.nike.cerberus.cache.DatabaseCache;
 import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.util.DateTimeSupplier;
 import java.time.OffsetDateTime;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
@@ -37,17 +39,22 @@ public class MybatisConfiguration {
       "cerberus.mybatis.cache.global.dataTtlInSeconds";
   protected static final String DATA_TTL_IN_SECONDS_OVERRIDE_PATH_TEMPLATE =
       "cerberus.mybatis.cache.%s.dataTtlInSeconds";
-  protected static final String GLOBAL_REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS =
-      "cerberus.mybatis.cache.global.repeatReadCounterResetInSeconds";
-  protected static final String REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS_OVERRIDE_PATH_TEMPLATE =
-      "cerberus.mybatis.cache.%s.repeatReadCounterResetInSeconds";
-  protected static final String GLOBAL_REPEAT_READ_THRESHOLD =
-      "cerberus.mybatis.cache.global.repeatReadThreshold";
-  protected static final String REPEAT_READ_THRESHOLD_OVERRIDE_PATH_TEMPLATE =
-      "cerberus.mybatis.cache.%s.repeatReadThreshold";
+  protected static final String GLOBAL_MAXIMUM_WEIGHT_IN_BYTES =
+      "cerberus.mybatis.cache.global.maximumWeightInBytes";
+  protected static final String MAXIMUM_WEIGHT_IN_BYTES_OVERRIDE_PATH_TEMPLATE =
+      "cerberus.mybatis.cache.%s.maximumWeightInBytes";
+  protected static final String GLOBAL_FREQUENCY_SKETCH_SIZE =
+      "cerberus.mybatis.cache.global.frequencySketchSize";
+  protected static final String FREQUENCY_SKETCH_SIZE_OVERRIDE_PATH_TEMPLATE =
+      "cerberus.mybatis.cache.%s.frequencySketchSize";
+  protected static final String GLOBAL_ADMISSION_THRESHOLD =
+      "cerberus.mybatis.cache.global.admissionThreshold";
+  protected static final String ADMISSION_THRESHOLD_OVERRIDE_PATH_TEMPLATE =
+      "cerberus.mybatis.cache.%s.admissionThreshold";
   protected static final int DEFAULT_GLOBAL_DATA_TTL_IN_SECONDS = 10;
-  protected static final int DEFAULT_REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS = 2;
-  protected static final int DEFAULT_REPEAT_READ_THRESHOLD = 2;
+  protected static final long DEFAULT_MAXIMUM_WEIGHT_IN_BYTES = 32 * 1024 * 1024;
+  protected static final int DEFAULT_FREQUENCY_SKETCH_SIZE = 1024;
+  protected static final int DEFAULT_ADMISSION_THRESHOLD = 2;
 
   /**
    * @param id The id for the mapper
@@ -66,43 +73,63 @@ public class MybatisConfiguration {
 
   /**
    * @param id The id for the mapper
-   * @return The amount of time in seconds that must pass without consecutive reads to reset the
-   *     counter.
+   * @return The maximum estimated size in bytes of the results the mapper cache will hold in
+   *     memory, 0 or less for no bound.
    */
-  protected int getRepeatReadCounterExpireTimeInSeconds(Environment environment, String id) {
-    int globalCounterExpireTimeInSeconds =
+  protected long getMaximumWeightInBytes(Environment environment, String id) {
+    long globalMaximumWeightInBytes =
         environment.getProperty(
-            GLOBAL_REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS,
-            Integer.class,
-            DEFAULT_REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS);
-    String counterMapperOverrideTtlPath =
-        String.format(REPEAT_READ_COUNTER_EXPIRE_IN_SECONDS_OVERRIDE_PATH_TEMPLATE, id);
+            GLOBAL_MAXIMUM_WEIGHT_IN_BYTES, Long.class, DEFAULT_MAXIMUM_WEIGHT_IN_BYTES);
+    String maximumWeightInBytesOverridePath =
+        String.format(MAXIMUM_WEIGHT_IN_BYTES_OVERRIDE_PATH_TEMPLATE, id);
     return environment.getProperty(
-        counterMapperOverrideTtlPath, Integer.class, globalCounterExpireTimeInSeconds);
+        maximumWeightInBytesOverridePath, Long.class, globalMaximumWeightInBytes);
   }
 
   /**
    * @param id The id for the mapper
-   * @return The number of reads that must be exceeding while counts are being chained before
-   *     caching of that object is enabled.
+   * @return The number of distinct keys the read frequency sketch is sized for, the counts are
+   *     halved after 10 times this many reads.
    */
-  protected int getRepeatReadThreshold(Environment environment, String id) {
-    int globalRepeatReadThreshold =
+  protected int getFrequencySketchSize(Environment environment, String id) {
+    int globalFrequencySketchSize =
         environment.getProperty(
-            GLOBAL_REPEAT_READ_THRESHOLD, Integer.class, DEFAULT_REPEAT_READ_THRESHOLD);
-    String repeatReadThresholdOverridePath =
-        String.format(REPEAT_READ_THRESHOLD_OVERRIDE_PATH_TEMPLATE, id);
+            GLOBAL_FREQUENCY_SKETCH_SIZE, Integer.class, DEFAULT_FREQUENCY_SKETCH_SIZE);
+    String frequencySketchSizeOverridePath =
+        String.format(FREQUENCY_SKETCH_SIZE_OVERRIDE_PATH_TEMPLATE, id);
     return environment.getProperty(
-        repeatReadThresholdOverridePath, Integer.class, globalRepeatReadThreshold);
+        frequencySketchSizeOverridePath, Integer.class, globalFrequencySketchSize);
+  }
+
+  /**
+   * @param id The id for the mapper
+   * @return The estimated number of recent reads that must be exceeded before a result for that key
+   *     is admitted into the cache.
+   */
+  protected int getAdmissionThreshold(Environment environment, String id) {
+    int globalAdmissionThreshold =
+        environment.getProperty(
+            GLOBAL_ADMISSION_THRESHOLD, Integer.class, DEFAULT_ADMISSION_THRESHOLD);
+    String admissionThresholdOverridePath =
+        String.format(ADMISSION_THRESHOLD_OVERRIDE_PATH_TEMPLATE, id);
+    return environment.getProperty(
+        admissionThresholdOverridePath, Integer.class, globalAdmissionThreshold);
   }
 
   @Bean
   ConfigurationCustomizer mybatisConfigurationCustomizer(
       @Value("${cerberus.mybatis.cache.enabled:#{false}}") boolean isCacheEnabled,
+      @Value("${cerberus.mybatis.cache.invalidation.enabled:#{false}}")
+          boolean isCacheInvalidationEnabled,
       MetricsService metricsService,
+      DateTimeSupplier dateTimeSupplier,
       Environment environment) {
     return configuration -> {
       configuration.setCacheEnabled(isCacheEnabled);
+      if (isCacheInvalidationEnabled) {
+        log.info("Recording writes to the cached mappers in the cache invalidation log");
+        configuration.addInterceptor(new CacheInvalidationInterceptor(dateTimeSupplier));
+      }
       // https://github.com/mybatis/mybatis-3/issues/1751
       configuration
           .getTypeHandlerRegistry()
@@ -122,16 +149,17 @@ public class MybatisConfiguration {
           .forEach(
               id -> {
                 var expireTimeInSeconds = getExpireTimeInSeconds(environment, id);
-                var counterExpireTimeInSeconds =
-                    getRepeatReadCounterExpireTimeInSeconds(environment, id);
-                var repeatReadThreshold = getRepeatReadThreshold(environment, id);
+                var maximumWeightInBytes = getMaximumWeightInBytes(environment, id);
+                var frequencySketchSize = getFrequencySketchSize(environment, id);
+                var admissionThreshold = getAdmissionThreshold(environment, id);
                 var cache =
                     new DatabaseCache(
                         id,
                         metricsService,
                         expireTimeInSeconds,
-                        counterExpireTimeInSeconds,
-                        repeatReadThreshold);
+                        maximumWeightInBytes,
+                        frequencySketchSize,
+                        admissionThreshold);
                 configuration.addCache(cache);
               });
     };
@@ -19,27 +19,45 @@ package com.nike.cerberus.controller;
 import static org.springframework.util.MimeTypeUtils.ALL_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 import com.nike.cerberus.domain.*;
+import com.nike.cerberus.event.filter.AuditLoggingFilterDetails;
 import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.security.PrincipalHasDeletePermsForPath;
 import com.nike.cerberus.security.PrincipalHasReadPermsForPath;
 import com.nike.cerberus.security.PrincipalHasWritePermsForPath;
 import com.nike.cerberus.service.SecureDataService;
 import com.nike.cerberus.service.SecureDataVersionService;
+import com.nike.cerberus.service.SecureDataWatch;
+import com.nike.cerberus.service.SecureDataWatchService;
+import com.nike.cerberus.util.ETagUtils;
 import com.nike.cerberus.util.SdbAccessRequest;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @Slf4j
 @RestController
@@ -49,30 +67,78 @@ public class SecureDataController {
   private final SecureDataService secureDataService;
   private final SecureDataVersionService secureDataVersionService;
   private final SdbAccessRequest sdbAccessRequest; // Request scoped proxy bean
+  private final ObjectMapper objectMapper;
+  private final AuditLoggingFilterDetails auditLoggingFilterDetails; // Request scoped proxy bean
+  private final SecureDataWatchService secureDataWatchService;
 
   @Autowired
   public SecureDataController(
       SecureDataService secureDataService,
       SecureDataVersionService secureDataVersionService,
-      SdbAccessRequest sdbAccessRequest) {
+      SdbAccessRequest sdbAccessRequest,
+      ObjectMapper objectMapper,
+      AuditLoggingFilterDetails auditLoggingFilterDetails,
+      SecureDataWatchService secureDataWatchService) {
 
     this.secureDataService = secureDataService;
     this.secureDataVersionService = secureDataVersionService;
     this.sdbAccessRequest = sdbAccessRequest;
+    this.objectMapper = objectMapper;
+    this.auditLoggingFilterDetails = auditLoggingFilterDetails;
+    this.secureDataWatchService = secureDataWatchService;
   }
 
+  /**
+   * Reads the secret at the path. A client that sends the ETag of the secret it already has gets a
+   * 304 back, which is answered from the metadata alone without decrypting the secret.
+   */
   @PrincipalHasReadPermsForPath
   @RequestMapping(value = "/**", method = GET)
-  public ResponseEntity<?> readSecureData() {
+  public ResponseEntity<?> readSecureData(
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    if (ifNoneMatch != null) {
+      Optional<String> eTag =
+          secureDataService.readETag(
+              sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath(), SecureDataType.OBJECT);
+      if (eTag.isPresent() && ETagUtils.ifNoneMatchMatches(ifNoneMatch, eTag.get())) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+      }
+    }
+
     Optional<SecureData> secureDataOpt =
         secureDataService.readSecret(sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath());
-    return ResponseEntity.of(
-        secureDataOpt.map(
+    return secureDataOpt
+        .<ResponseEntity<?>>map(
             secureData -> {
               var data = secureData.getData();
               var metadata = secureDataService.parseSecretMetadata(secureData);
-              return generateSecureDataResponse(data, metadata);
-            }));
+              return ResponseEntity.ok()
+                  .eTag(
+                      ETagUtils.toETag(
+                          sdbAccessRequest.getSdbId(),
+                          secureData.getPath(),
+                          secureData.getLastUpdatedTs()))
+                  .body(generateSecureDataResponse(data, metadata));
+            })
+        .orElseGet(() -> ResponseEntity.notFound().build());
+  }
+
+  /** Checks that the secret at the path exists, or is unchanged, from its metadata alone. */
+  @PrincipalHasReadPermsForPath
+  @RequestMapping(value = "/**", method = HEAD)
+  public ResponseEntity<Void> headSecureData(
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    Optional<String> eTag =
+        secureDataService.readETag(
+            sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath(), SecureDataType.OBJECT);
+    if (!eTag.isPresent()) {
+      return ResponseEntity.notFound().build();
+    }
+    HttpStatus status =
+        ETagUtils.ifNoneMatchMatches(ifNoneMatch, eTag.get())
+            ? HttpStatus.NOT_MODIFIED
+            : HttpStatus.OK;
+    return ResponseEntity.status(status).eTag(eTag.get()).build();
   }
 
   @PrincipalHasReadPermsForPath
@@ -80,7 +146,7 @@ public class SecureDataController {
   public ResponseEntity<?> listKeys(@RequestParam(value = "list") String list) {
 
     if (!Boolean.parseBoolean(list)) {
-      return readSecureData(); // TODO
+      return readSecureData(null); // TODO
     }
 
     Set<String> keys =
@@ -89,6 +155,87 @@ public class SecureDataController {
         Optional.of(SecureDataResponse.builder().data(Map.of("keys", keys)).build()));
   }
 
+  /**
+   * Reads every secret under the requested path, or just the ones at the given paths relative to
+   * it, in one response keyed by the path relative to the requested path.
+   */
+  @PrincipalHasReadPermsForPath
+  @RequestMapping(params = "bulk", value = "/**", method = GET)
+  public ResponseEntity<?> readSecureDataInBulk(
+      @RequestParam(value = "bulk") String bulk,
+      @RequestParam(value = "path", required = false) List<String> paths) {
+
+    if (!Boolean.parseBoolean(bulk)) {
+      return readSecureData(null);
+    }
+
+    String partialPath = sdbAccessRequest.getPath();
+    if (!partialPath.endsWith("/")) {
+      partialPath = partialPath + "/";
+    }
+    Map<String, SecureData> secrets;
+    if (paths == null || paths.isEmpty()) {
+      secrets = secureDataService.readSecrets(sdbAccessRequest.getSdbId(), partialPath);
+    } else {
+      secrets =
+          secureDataService.readSecrets(
+              sdbAccessRequest.getSdbId(),
+              paths.stream().map(partialPath::concat).collect(Collectors.toList()));
+    }
+
+    Map<String, Object> data = new LinkedHashMap<>();
+    for (SecureData secureData : secrets.values()) {
+      auditLoggingFilterDetails
+          .getAuditedPaths()
+          .add(
+              String.format(
+                  "/v1/secret/%s/%s", sdbAccessRequest.getCategory(), secureData.getPath()));
+      data.put(
+          StringUtils.removeStart(secureData.getPath(), partialPath),
+          toResponseData(secureData.getData()));
+    }
+    return ResponseEntity.ok(
+        SecureDataResponse.builder().requestId(UUID.randomUUID().toString()).data(data).build());
+  }
+
+  /**
+   * Waits for the secure data under the requested path to change after the given version, and
+   * returns the paths that changed along with the version to watch from next. The request is held
+   * without a thread until there is a change or it times out, then it is answered with no changes.
+   * Without a version the current version is returned straight away, so that a client can take it
+   * before it reads the secure data that it is going to watch.
+   */
+  @PrincipalHasReadPermsForPath
+  @RequestMapping(params = "watch", value = "/**", method = GET)
+  public DeferredResult<ResponseEntity<?>> watchSecureData(
+      @RequestParam(value = "watch") String watch,
+      @RequestParam(value = "version", required = false) Long version) {
+
+    DeferredResult<ResponseEntity<?>> result =
+        new DeferredResult<>(secureDataWatchService.getTimeoutInMillis());
+    if (!Boolean.parseBoolean(watch)) {
+      result.setResult(readSecureData(null));
+      return result;
+    }
+
+    String sdbId = sdbAccessRequest.getSdbId();
+    if (version == null) {
+      result.setResult(
+          ResponseEntity.ok(
+              new SecureDataChangesResult()
+                  .setVersion(secureDataWatchService.getVersion(sdbId))
+                  .setChanges(List.of())));
+      return result;
+    }
+
+    SecureDataWatch secureDataWatch =
+        secureDataWatchService.watch(sdbId, sdbAccessRequest.getPath(), version);
+    result.onTimeout(secureDataWatch::expire);
+    result.onCompletion(() -> secureDataWatchService.unwatch(secureDataWatch));
+    secureDataWatch.getResult().thenAccept(changes -> result.setResult(ResponseEntity.ok(changes)));
+    return result;
+  }
+
   @PrincipalHasReadPermsForPath
   @RequestMapping(params = "versionId", value = "/**", method = GET)
   public ResponseEntity<?> readSecureDataVersion(
@@ -140,13 +287,79 @@ public class SecureDataController {
     SecureDataResponse response = new SecureDataResponse();
     response.setRequestId(UUID.randomUUID().toString());
     response.setMetadata(metadata);
+    response.setData(toResponseData(secureData));
+    return response;
+  }
 
+  private Object toResponseData(String secureData) {
+    if (isSingleJsonValue(secureData)) {
+      // Already the JSON to send, so skip parsing it into a tree just to serialize it again
+      return new StoredJson(secureData);
+    }
     try {
-      response.setData(new ObjectMapper().readTree(secureData));
+      return objectMapper.readTree(secureData);
     } catch (IOException e) {
       log.error("Failed to deserialize stored data", e);
+      return null;
     }
+  }
 
-    return response;
+  /**
+   * Stored JSON that is known to be exactly one well formed value. It is written as it is, unless
+   * the response is being indented, in which case its tokens are copied into the response so that
+   * they are indented along with the rest of it. Numbers keep their stored text either way.
+   */
+  final class StoredJson extends JsonSerializable.Base {
+
+    private final String json;
+
+    StoredJson(String json) {
+      this.json = json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+      if (gen.getPrettyPrinter() == null) {
+        gen.writeRawValue(json);
+        return;
+      }
+      try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+        for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+          if (token.isNumeric()) {
+            gen.writeNumber(parser.getText());
+          } else {
+            gen.copyCurrentEvent(parser);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+        throws IOException {
+      serialize(gen, serializers);
+    }
+  }
+
+  /**
+   * Checks that the stored data is exactly one well formed JSON value, without building a tree of
+   * it. Anything else, including objects with duplicate keys, is left to readTree so that it is
+   * rendered the same way it always has been.
+   */
+  boolean isSingleJsonValue(String secureData) {
+    if (secureData == null) {
+      return false;
+    }
+    try (JsonParser parser = objectMapper.getFactory().createParser(secureData)) {
+      parser.enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+      if (parser.nextToken() == null) {
+        return false;
+      }
+      parser.skipChildren();
+      return parser.nextToken() == null;
+    } catch (IOException e) {
+      return false;
+    }
   }
 }
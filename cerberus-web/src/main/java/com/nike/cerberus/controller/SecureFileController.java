@@ -19,28 +19,41 @@ package com.nike.cerberus.controller;
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.domain.SecureDataType;
-import com.nike.cerberus.domain.SecureFile;
 import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.security.PrincipalHasDeletePermsForPath;
 import com.nike.cerberus.security.PrincipalHasReadPermsForPath;
 import com.nike.cerberus.security.PrincipalHasWritePermsForPath;
 import com.nike.cerberus.service.SecureDataService;
 import com.nike.cerberus.service.SecureDataVersionService;
+import com.nike.cerberus.service.StreamingSecureFile;
 import com.nike.cerberus.util.CustomApiError;
+import com.nike.cerberus.util.ETagUtils;
 import com.nike.cerberus.util.SdbAccessRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import javax.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -66,7 +79,8 @@ public class SecureFileController {
 
   @PrincipalHasReadPermsForPath
   @RequestMapping(value = "/**", method = HEAD)
-  public ResponseEntity<Void> headSecureFile() {
+  public ResponseEntity<Void> headSecureFile(
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     var secureFileSummary =
         secureDataService
             .readFileMetadataOnly(sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath())
@@ -76,9 +90,19 @@ public class SecureFileController {
                         .withApiErrors(DefaultApiError.ENTITY_NOT_FOUND)
                         .build());
 
+    var eTag =
+        ETagUtils.toETag(
+            sdbAccessRequest.getSdbId(),
+            secureFileSummary.getPath(),
+            secureFileSummary.getLastUpdatedTs());
+    if (ETagUtils.ifNoneMatchMatches(ifNoneMatch, eTag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
     var mimeType = MediaType.parseMediaType(tika.detect(secureFileSummary.getName()));
 
     return ResponseEntity.ok()
+        .eTag(eTag)
         .contentType(mimeType)
         .contentLength(secureFileSummary.getSizeInBytes())
         .header(
@@ -87,39 +111,54 @@ public class SecureFileController {
         .build();
   }
 
+  /**
+   * Downloads the file at the path. A client that sends the ETag of the file it already has gets a
+   * 304 back, which is answered from the metadata alone without reading or decrypting the file.
+   */
   @PrincipalHasReadPermsForPath
   @RequestMapping(value = "/**", method = GET)
-  public ResponseEntity<?> getSecureFile() {
+  public ResponseEntity<?> getSecureFile(
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+      @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    if (ifNoneMatch != null) {
+      var eTag =
+          secureDataService.readETag(
+              sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath(), SecureDataType.FILE);
+      if (eTag.isPresent() && ETagUtils.ifNoneMatchMatches(ifNoneMatch, eTag.get())) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+      }
+    }
+
     var secureFile =
         secureDataService
-            .readFile(sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath())
+            .readFileStream(sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath())
             .orElseThrow(
                 () ->
                     new ApiException.Builder()
                         .withApiErrors(DefaultApiError.ENTITY_NOT_FOUND)
                         .build());
 
-    return generateSecureFileResponse(secureFile);
+    return generateSecureFileResponse(secureFile, range, ifRange);
   }
 
   @PrincipalHasReadPermsForPath
   @RequestMapping(params = "versionId", value = "/**", method = GET)
   public ResponseEntity<?> getSecureFileVersion(
-      @RequestParam(value = "versionId") String versionId) {
+      @RequestParam(value = "versionId") String versionId,
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+      @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
     var secureFile =
         secureDataVersionService
-            .getSecureFileVersionById(
-                sdbAccessRequest.getSdbId(),
-                versionId,
-                sdbAccessRequest.getCategory(),
-                sdbAccessRequest.getPath())
+            .getSecureFileVersionStreamById(
+                sdbAccessRequest.getSdbId(), versionId, sdbAccessRequest.getPath())
             .orElseThrow(
                 () ->
                     new ApiException.Builder()
                         .withApiErrors(DefaultApiError.ENTITY_NOT_FOUND)
                         .build());
 
-    return generateSecureFileResponse(secureFile);
+    return generateSecureFileResponse(secureFile, range, ifRange);
   }
 
   @PrincipalHasWritePermsForPath
@@ -128,9 +167,26 @@ public class SecureFileController {
       method = {POST, PUT},
       consumes = MULTIPART_FORM_DATA_VALUE)
   public void writeSecureFile(@RequestParam("file-content") MultipartFile file) {
-    byte[] fileContents;
-    try {
-      fileContents = file.getBytes();
+    // The size of a file is stored as an int
+    if (file.getSize() > Integer.MAX_VALUE) {
+      String msg = "The file must be smaller than 2 GB";
+      throw ApiException.newBuilder()
+          .withExceptionMessage(msg)
+          .withApiErrors(
+              CustomApiError.createCustomApiError(DefaultApiError.GENERIC_BAD_REQUEST, msg))
+          .build();
+    }
+
+    // The file is streamed from the multipart upload through encryption into the database, so that
+    // concurrent uploads only hold the copy of the ciphertext that the JDBC driver sends, rather than
+    // also holding the plaintext and the ciphertext in memory
+    try (InputStream fileContents = file.getInputStream()) {
+      secureDataService.writeSecureFile(
+          sdbAccessRequest.getSdbId(),
+          sdbAccessRequest.getPath(),
+          fileContents,
+          (int) file.getSize(),
+          sdbAccessRequest.getPrincipal().getName());
     } catch (IOException ex) {
       String msg = "Failed to get contents from multipart file";
       throw ApiException.newBuilder()
@@ -140,13 +196,6 @@ public class SecureFileController {
               CustomApiError.createCustomApiError(DefaultApiError.GENERIC_BAD_REQUEST, msg))
           .build();
     }
-
-    secureDataService.writeSecureFile(
-        sdbAccessRequest.getSdbId(),
-        sdbAccessRequest.getPath(),
-        fileContents,
-        fileContents.length,
-        sdbAccessRequest.getPrincipal().getName());
   }
 
   @PrincipalHasDeletePermsForPath
@@ -159,15 +208,97 @@ public class SecureFileController {
         sdbAccessRequest.getPrincipal().getName());
   }
 
-  private ResponseEntity<?> generateSecureFileResponse(@NotNull SecureFile secureFile) {
-    byte[] fileContents = secureFile.getData();
+  /**
+   * Streams the plaintext of the file to the client, or the single byte range of it that the client
+   * asked for so that interrupted downloads can be resumed. Ranges are skipped to by decrypting and
+   * discarding the plaintext before them, since the ciphertext can't be decrypted from the middle.
+   */
+  private ResponseEntity<?> generateSecureFileResponse(
+      @NotNull StreamingSecureFile secureFile, String range, String ifRange) {
     var mimeType = MediaType.parseMediaType(tika.detect(secureFile.getName()));
+    long size = secureFile.getSizeInBytes();
+    InputStream contents = secureFile.getContents();
 
-    return ResponseEntity.ok()
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    long start = 0;
+    long length = size;
+    HttpRange httpRange = getRange(range, ifRange, secureFile);
+    if (httpRange != null) {
+      try {
+        start = httpRange.getRangeStart(size);
+        length = httpRange.getRangeEnd(size) - start + 1;
+      } catch (IllegalArgumentException e) {
+        Closeables.closeQuietly(contents);
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+            .header(HttpHeaders.CONTENT_RANGE, String.format("bytes */%d", size))
+            .build();
+      }
+      response =
+          ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+              .header(
+                  HttpHeaders.CONTENT_RANGE,
+                  String.format("bytes %d-%d/%d", start, start + length - 1, size));
+    }
+    if (secureFile.getLastModifiedTs() != null) {
+      response.lastModified(secureFile.getLastModifiedTs().toInstant().toEpochMilli());
+    }
+    if (secureFile.getETag() != null) {
+      response.eTag(secureFile.getETag());
+    }
+
+    long skip = start;
+    long limit = length;
+    StreamingResponseBody body =
+        out -> {
+          try (InputStream in = contents) {
+            ByteStreams.skipFully(in, skip);
+            ByteStreams.copy(ByteStreams.limit(in, limit), out);
+          }
+        };
+    return response
         .contentType(mimeType)
+        .contentLength(length)
+        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
         .header(
             "Content-Disposition",
             String.format("attachment; filename=\"%s\"", secureFile.getName()))
-        .body(fileContents);
+        .body(body);
+  }
+
+  /**
+   * @return The single byte range requested, or null if the whole file should be sent. Malformed
+   *     and multipart ranges are ignored, as are ranges whose If-Range no longer matches the file.
+   */
+  private HttpRange getRange(String range, String ifRange, StreamingSecureFile secureFile) {
+    if (range == null) {
+      return null;
+    }
+    if (ifRange != null
+        && !(ETagUtils.isETag(ifRange)
+            ? ETagUtils.ifRangeMatches(ifRange, secureFile.getETag())
+            : lastModifiedMatches(ifRange, secureFile))) {
+      return null;
+    }
+    List<HttpRange> ranges;
+    try {
+      ranges = HttpRange.parseRanges(range);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return ranges.size() == 1 ? ranges.get(0) : null;
+  }
+
+  /** An If-Range date only matches when it is equal to the Last-Modified that was sent. */
+  private boolean lastModifiedMatches(String ifRange, StreamingSecureFile secureFile) {
+    if (secureFile.getLastModifiedTs() == null) {
+      return false;
+    }
+    try {
+      return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+              .toEpochSecond()
+          == secureFile.getLastModifiedTs().toEpochSecond();
+    } catch (DateTimeParseException e) {
+      return false;
+    }
   }
 }
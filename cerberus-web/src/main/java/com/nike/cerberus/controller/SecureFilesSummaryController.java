@@ -48,8 +48,13 @@ public class SecureFilesSummaryController {
   @RequestMapping(value = "/**", method = GET)
   public SecureFileSummaryResult listSecureFiles(
       @RequestParam(value = "limit", required = false, defaultValue = "100") int limit,
-      @RequestParam(value = "offset", required = false, defaultValue = "0") int offset) {
+      @RequestParam(value = "offset", required = false, defaultValue = "0") int offset,
+      @RequestParam(value = "cursor", required = false) String cursor) {
 
+    if (cursor != null) {
+      return secureDataService.listSecureFilesSummaries(
+          sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath(), limit, cursor);
+    }
     return secureDataService.listSecureFilesSummaries(
         sdbAccessRequest.getSdbId(), sdbAccessRequest.getPath(), limit, offset);
   }
@@ -19,14 +19,24 @@ package com.nike.cerberus.controller.admin;
 import static com.nike.cerberus.security.CerberusPrincipal.ROLE_ADMIN;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.nike.cerberus.domain.SDBMetadata;
 import com.nike.cerberus.domain.SDBMetadataResult;
 import com.nike.cerberus.service.MetadataService;
 import com.nike.cerberus.service.SafeDepositBoxService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -41,24 +51,65 @@ public class SdbMetadataController {
 
   private final MetadataService metadataService;
   private final SafeDepositBoxService safeDepositBoxService;
+  private final ObjectWriter exportWriter;
+  private final long exportTimeoutInNanos;
 
   @Autowired
   public SdbMetadataController(
-      MetadataService metadataService, SafeDepositBoxService safeDepositBoxService) {
+      MetadataService metadataService,
+      SafeDepositBoxService safeDepositBoxService,
+      ObjectMapper objectMapper,
+      @Value("${cerberus.metadata.export.timeoutInSeconds:600}") long exportTimeoutInSeconds) {
 
     this.metadataService = metadataService;
     this.safeDepositBoxService = safeDepositBoxService;
+    // Each SDB must be on a single line, the shared object mapper indents its output
+    this.exportWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    this.exportTimeoutInNanos = TimeUnit.SECONDS.toNanos(exportTimeoutInSeconds);
   }
 
   @RequestMapping(method = GET)
   public SDBMetadataResult getMetadata(
       @RequestParam(value = "limit", required = false, defaultValue = "100") int limit,
       @RequestParam(value = "offset", required = false, defaultValue = "0") int offset,
-      @RequestParam(value = "sdbName", required = false) String sdbName) {
+      @RequestParam(value = "sdbName", required = false) String sdbName,
+      @RequestParam(value = "cursor", required = false) String cursor) {
 
+    if (cursor != null && sdbName == null) {
+      return metadataService.getSDBMetadata(limit, cursor);
+    }
     return metadataService.getSDBMetadata(limit, offset, sdbName);
   }
 
+  /**
+   * Exports the metadata of every SDB as newline delimited JSON, one SDB per line, written to the
+   * response as it is read so that the whole environment never has to be held in memory.
+   *
+   * <p>The database query stays open, holding its connection, until the client has read the last
+   * SDB. So that a slow or stalled client can't hold it indefinitely the export is aborted once it
+   * has run for longer than the export timeout, a single blocked write is bounded by the socket
+   * write timeout of the server.
+   */
+  @RequestMapping(value = "/export", method = GET)
+  public void exportMetadata(HttpServletResponse response) throws IOException {
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    OutputStream out = response.getOutputStream();
+    long deadlineNanos = System.nanoTime() + exportTimeoutInNanos;
+    metadataService.exportSDBMetadata(
+        sdbMetadata -> {
+          if (deadlineNanos - System.nanoTime() <= 0) {
+            throw new IllegalStateException("The SDB metadata export timed out");
+          }
+          try {
+            out.write(exportWriter.writeValueAsBytes(sdbMetadata));
+            out.write('\n');
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+    out.flush();
+  }
+
   @RequestMapping(method = PUT)
   public void restoreSdbIncludingDataInRequest(
       @Valid @RequestBody SDBMetadata sdbObject, Authentication authentication) {
@@ -20,7 +20,9 @@ import com.nike.cerberus.mapper.AwsIamRoleMapper;
 import com.nike.cerberus.record.AwsIamRoleKmsKeyRecord;
 import com.nike.cerberus.record.AwsIamRolePermissionRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,6 +55,15 @@ public class AwsIamRoleDao {
     return awsIamRoleMapper.getIamRolePermissions(safeDepositBoxId);
   }
 
+  /** @return The IAM role permissions of the SDBs, with the ARNs of their IAM roles */
+  public List<SdbPermissionRecord> getIamRolePermissionsBySdbIds(
+      final Collection<String> safeDepositBoxIds) {
+    if (safeDepositBoxIds.isEmpty()) {
+      return List.of();
+    }
+    return awsIamRoleMapper.getIamRolePermissionsBySdbIds(safeDepositBoxIds);
+  }
+
   public int createIamRolePermission(final AwsIamRolePermissionRecord record) {
     return awsIamRoleMapper.createIamRolePermission(record);
   }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.dao;
+
+import com.nike.cerberus.mapper.CacheInvalidationMapper;
+import com.nike.cerberus.record.CacheInvalidationRecord;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CacheInvalidationDao {
+
+  private final CacheInvalidationMapper cacheInvalidationMapper;
+
+  @Autowired
+  public CacheInvalidationDao(CacheInvalidationMapper cacheInvalidationMapper) {
+    this.cacheInvalidationMapper = cacheInvalidationMapper;
+  }
+
+  public int appendInvalidation(CacheInvalidationRecord record) {
+    return cacheInvalidationMapper.appendInvalidation(record);
+  }
+
+  public List<CacheInvalidationRecord> getInvalidationsSince(OffsetDateTime since, int limit) {
+    return cacheInvalidationMapper.getInvalidationsSince(since, limit);
+  }
+
+  public int deleteInvalidationsOlderThan(OffsetDateTime dateTime) {
+    return cacheInvalidationMapper.deleteInvalidationsOlderThan(dateTime);
+  }
+}
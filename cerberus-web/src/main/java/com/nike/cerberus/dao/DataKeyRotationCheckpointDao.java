@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.dao;
+
+import com.nike.cerberus.mapper.DataKeyRotationCheckpointMapper;
+import com.nike.cerberus.record.DataKeyRotationCheckpointRecord;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DataKeyRotationCheckpointDao {
+
+  private final DataKeyRotationCheckpointMapper dataKeyRotationCheckpointMapper;
+
+  @Autowired
+  public DataKeyRotationCheckpointDao(
+      DataKeyRotationCheckpointMapper dataKeyRotationCheckpointMapper) {
+    this.dataKeyRotationCheckpointMapper = dataKeyRotationCheckpointMapper;
+  }
+
+  public Optional<DataKeyRotationCheckpointRecord> getCheckpoint(String id) {
+    return Optional.ofNullable(dataKeyRotationCheckpointMapper.getCheckpoint(id));
+  }
+
+  public int saveCheckpoint(DataKeyRotationCheckpointRecord record) {
+    return dataKeyRotationCheckpointMapper.saveCheckpoint(record);
+  }
+
+  public int deleteCheckpoint(String id) {
+    return dataKeyRotationCheckpointMapper.deleteCheckpoint(id);
+  }
+}
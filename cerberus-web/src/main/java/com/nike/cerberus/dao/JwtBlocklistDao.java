@@ -18,7 +18,8 @@ package com.nike.cerberus.dao;
 
 import com.nike.cerberus.mapper.JwtBlocklistMapper;
 import com.nike.cerberus.record.JwtBlocklistRecord;
-import java.util.HashSet;
+import java.time.OffsetDateTime;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,8 +37,13 @@ public class JwtBlocklistDao {
     this.jwtBlocklistMapper = jwtBlocklistMapper;
   }
 
-  public HashSet<String> getBlocklist() {
-    return jwtBlocklistMapper.getBlocklist();
+  /**
+   * @param since Only entries that were blocklisted at or after this time are returned, or null for
+   *     every entry
+   * @return The blocklist entries
+   */
+  public List<JwtBlocklistRecord> getBlocklistEntriesSince(OffsetDateTime since) {
+    return jwtBlocklistMapper.getBlocklistEntriesSince(since);
   }
 
   public int addToBlocklist(JwtBlocklistRecord jwtBlocklistRecord) {
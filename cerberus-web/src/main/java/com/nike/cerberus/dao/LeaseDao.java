@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.dao;
+
+import com.nike.cerberus.mapper.LeaseMapper;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the lease based distributed locks. Every method runs a single statement, so a lease holds
+ * no connection between calls.
+ */
+@Component
+public class LeaseDao {
+
+  private final LeaseMapper leaseMapper;
+
+  @Autowired
+  public LeaseDao(LeaseMapper leaseMapper) {
+    this.leaseMapper = leaseMapper;
+  }
+
+  /**
+   * Acquires the lease if it has never been acquired or if its last owner let it expire.
+   *
+   * @param owner The unique id of this acquisition
+   * @return The fencing token of this acquisition if the lease was acquired
+   */
+  public Optional<Long> tryAcquireLease(String name, String owner, int durationInSeconds) {
+    if (leaseMapper.acquireExpiredLease(name, owner, durationInSeconds) == 0
+        && leaseMapper.createLease(name, owner, durationInSeconds) == 0) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(leaseMapper.getFencingToken(name, owner));
+  }
+
+  /** @return True if the lease was renewed, false if it expired or was acquired by another owner */
+  public boolean renewLease(String name, String owner, int durationInSeconds) {
+    return leaseMapper.renewLease(name, owner, durationInSeconds) > 0;
+  }
+
+  public boolean releaseLease(String name, String owner) {
+    return leaseMapper.releaseLease(name, owner) > 0;
+  }
+}
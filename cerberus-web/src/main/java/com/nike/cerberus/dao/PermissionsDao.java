@@ -17,6 +17,8 @@
 package com.nike.cerberus.dao;
 
 import com.nike.cerberus.mapper.PermissionsMapper;
+import com.nike.cerberus.record.SdbAclEntryRecord;
+import java.util.List;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -65,4 +67,12 @@ public class PermissionsDao {
     return permissionsMapper.doesUserHavePermsForRoleAndSdbCaseInsensitive(
         sdbId, rolesThatAllowPermission, userGroupsThatPrincipalBelongsTo);
   }
+
+  public List<SdbAclEntryRecord> getIamPrincipalAclEntries(String sdbId) {
+    return permissionsMapper.getIamPrincipalAclEntries(sdbId);
+  }
+
+  public List<SdbAclEntryRecord> getUserGroupAclEntries(String sdbId) {
+    return permissionsMapper.getUserGroupAclEntries(sdbId);
+  }
 }
@@ -19,9 +19,12 @@ package com.nike.cerberus.dao;
 import com.nike.cerberus.mapper.SafeDepositBoxMapper;
 import com.nike.cerberus.record.SafeDepositBoxRecord;
 import com.nike.cerberus.record.SafeDepositBoxRoleRecord;
+import com.nike.cerberus.record.SdbMetadataRecord;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -75,7 +78,27 @@ public class SafeDepositBoxDao {
   }
 
   public List<SafeDepositBoxRecord> getSafeDepositBoxes(final int limit, final int offset) {
-    return safeDepositBoxMapper.getSafeDepositBoxes(limit, offset);
+    return safeDepositBoxMapper.getSafeDepositBoxes(null, null, limit, offset);
+  }
+
+  /**
+   * Lists the SDBs newest first, starting after the given SDB.
+   *
+   * @param afterTs The created ts of the SDB to start after, or null to start from the newest SDB
+   * @param afterId The id of the SDB to start after, or null to start from the newest SDB
+   * @param limit The max number of SDBs to return
+   */
+  public List<SafeDepositBoxRecord> getSafeDepositBoxes(
+      final OffsetDateTime afterTs, final String afterId, final int limit) {
+    return safeDepositBoxMapper.getSafeDepositBoxes(afterTs, afterId, limit, 0);
+  }
+
+  /**
+   * Streams every SDB joined with its permissions, newest SDB first, the rows of each SDB are
+   * consecutive. The cursor must be read and closed within a transaction.
+   */
+  public Cursor<SdbMetadataRecord> exportSafeDepositBoxMetadata() {
+    return safeDepositBoxMapper.exportSafeDepositBoxMetadata();
   }
 
   public Integer getSafeDepositBoxCount() {
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.dao;
+
+import com.google.common.collect.Lists;
+import com.nike.cerberus.mapper.SecureDataChangeMapper;
+import com.nike.cerberus.record.SecureDataChangeRecord;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SecureDataChangeDao {
+
+  private static final int SAVE_CHUNK_SIZE = 1000;
+
+  private final SecureDataChangeMapper secureDataChangeMapper;
+
+  @Autowired
+  public SecureDataChangeDao(SecureDataChangeMapper secureDataChangeMapper) {
+    this.secureDataChangeMapper = secureDataChangeMapper;
+  }
+
+  /**
+   * Takes the next version of the SDB, the SDB stays locked until the calling transaction ends.
+   *
+   * @return The version that the changes of the calling transaction are saved with
+   */
+  public long incrementVersion(String sdbId) {
+    secureDataChangeMapper.incrementVersion(sdbId);
+    return getVersion(sdbId);
+  }
+
+  /** @return The version of the last change to the SDB, 0 if it has never changed */
+  public long getVersion(String sdbId) {
+    Long version = secureDataChangeMapper.getVersion(sdbId);
+    return version == null ? 0 : version;
+  }
+
+  /** @return The SDB id and version of each of the SDBs that has changed */
+  public List<SecureDataChangeRecord> getVersions(Collection<String> sdbIds) {
+    if (sdbIds.isEmpty()) {
+      return List.of();
+    }
+    return secureDataChangeMapper.getVersions(sdbIds);
+  }
+
+  public void saveChanges(List<SecureDataChangeRecord> records) {
+    // Chunked, deleting a partial path can save the changes of every path in an SDB at once
+    for (List<SecureDataChangeRecord> chunk : Lists.partition(records, SAVE_CHUNK_SIZE)) {
+      secureDataChangeMapper.saveChanges(chunk);
+    }
+  }
+
+  /**
+   * Locks the secure data under the partial path until the calling transaction ends.
+   *
+   * @return The SDB id, path and type of each secure data under the partial path
+   */
+  public List<SecureDataChangeRecord> lockSecureDataByPartialPath(
+      String sdbId, String partialPath) {
+    return secureDataChangeMapper.lockSecureDataByPartialPath(sdbId, partialPath);
+  }
+
+  /** Deletes the changes and the version of the SDB. */
+  public void deleteChanges(String sdbId) {
+    secureDataChangeMapper.deleteChanges(sdbId);
+    secureDataChangeMapper.deleteVersion(sdbId);
+  }
+
+  /**
+   * @param partialPath Only the changes to paths that start with this are read, null for all
+   * @return The changes to the SDB after the version, in version order
+   */
+  public List<SecureDataChangeRecord> getChangesSince(
+      String sdbId, String partialPath, long version) {
+    return secureDataChangeMapper.getChangesSince(sdbId, partialPath, version);
+  }
+}
@@ -19,9 +19,15 @@ package com.nike.cerberus.dao;
 import com.nike.cerberus.domain.SecureDataType;
 import com.nike.cerberus.mapper.SecureDataMapper;
 import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.SecureDataPathNodeRecord;
 import com.nike.cerberus.record.SecureDataRecord;
+import java.io.InputStream;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -63,6 +69,40 @@ public class SecureDataDao {
             .setLastUpdatedTs(lastUpdatedTs)
             .setLastRotatedTs(lastUpdatedTs) // This is intentional
         );
+    secureDataMapper.addPathNodes(sdbId, type, getPathNodes(path));
+  }
+
+  /**
+   * Writes many new secure data with one statement, the records are given their ids like in
+   * writeSecureData.
+   */
+  public void writeSecureDataRecords(String sdbId, List<SecureDataRecord> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+    Map<SecureDataType, List<SecureDataPathNodeRecord>> pathNodesByType =
+        new EnumMap<>(SecureDataType.class);
+    for (SecureDataRecord record : records) {
+      record.setId(record.getPath().hashCode());
+      pathNodesByType
+          .computeIfAbsent(record.getType(), type -> new ArrayList<>())
+          .addAll(getPathNodes(record.getPath()));
+    }
+    secureDataMapper.writeSecureDataRecords(sdbId, records);
+    pathNodesByType.forEach((type, nodes) -> secureDataMapper.addPathNodes(sdbId, type, nodes));
+  }
+
+  /**
+   * Updates many existing secure data with one statement.
+   *
+   * @param records Records read with readSecureDataByPathsLocking in the same transaction, with
+   *     their new values set
+   */
+  public void updateSecureDataRecords(String sdbId, List<SecureDataRecord> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+    secureDataMapper.updateSecureDataRecords(sdbId, records);
   }
 
   public void updateSecureData(
@@ -98,19 +138,98 @@ public class SecureDataDao {
     return secureDataMapper.updateSecureData(secureDataRecord);
   }
 
+  public void writeSecureData(
+      String sdbId,
+      String path,
+      InputStream encryptedPayload,
+      SecureDataType type,
+      int sizeInBytes,
+      String createdBy,
+      OffsetDateTime createdTs,
+      String lastUpdatedBy,
+      OffsetDateTime lastUpdatedTs) {
+    secureDataMapper.writeSecureDataFromStream(
+        new SecureDataRecord()
+            .setId(path.hashCode())
+            .setPath(path)
+            .setSdboxId(sdbId)
+            .setTopLevelKVCount(0)
+            .setSizeInBytes(sizeInBytes)
+            .setType(type)
+            .setCreatedBy(createdBy)
+            .setCreatedTs(createdTs)
+            .setLastUpdatedBy(lastUpdatedBy)
+            .setLastUpdatedTs(lastUpdatedTs)
+            .setLastRotatedTs(lastUpdatedTs), // This is intentional
+        encryptedPayload);
+    secureDataMapper.addPathNodes(sdbId, type, getPathNodes(path));
+  }
+
+  public void updateSecureData(
+      String sdbId,
+      String path,
+      InputStream encryptedPayload,
+      SecureDataType type,
+      int sizeInBytes,
+      String lastUpdatedBy,
+      OffsetDateTime lastUpdatedTs,
+      OffsetDateTime lastRotatedTs) {
+    secureDataMapper.updateSecureDataFromStream(
+        new SecureDataRecord()
+            .setId(path.hashCode())
+            .setPath(path)
+            .setSdboxId(sdbId)
+            .setTopLevelKVCount(0)
+            .setType(type)
+            .setSizeInBytes(sizeInBytes)
+            .setLastUpdatedTs(lastUpdatedTs)
+            .setLastUpdatedBy(lastUpdatedBy)
+            .setLastRotatedTs(lastRotatedTs),
+        encryptedPayload);
+  }
+
   public Optional<SecureDataRecord> readSecureDataByPath(String sdbId, String path) {
     return Optional.ofNullable(secureDataMapper.readSecureDataByPath(sdbId, path));
   }
 
+  /** Reads and locks the secure data at the paths that exist, like readSecureDataByPath. */
+  public List<SecureDataRecord> readSecureDataByPathsLocking(
+      String sdbId, Collection<String> paths) {
+    if (paths.isEmpty()) {
+      return List.of();
+    }
+    return secureDataMapper.readSecureDataByPathsLocking(sdbId, paths);
+  }
+
   public Optional<SecureDataRecord> readSecureDataByIdLocking(String id) {
     return Optional.ofNullable(secureDataMapper.readSecureDataByIdLocking(id));
   }
 
+  /** Reads and locks the secure data at the path like readSecureDataByPath, without its blob. */
+  public Optional<SecureDataRecord> readMetadataByPathLocking(String sdbId, String path) {
+    return Optional.ofNullable(secureDataMapper.readMetadataByPathLocking(sdbId, path));
+  }
+
   public Optional<SecureDataRecord> readSecureDataByPathAndType(
       String sdbId, String path, SecureDataType type) {
     return Optional.ofNullable(secureDataMapper.readSecureDataByPathAndType(sdbId, path, type));
   }
 
+  /**
+   * @param limit The max number of secure data to read
+   * @return The secure data under the partial path in path order, with the encrypted blobs
+   */
+  public List<SecureDataRecord> readSecureDataByPartialPathAndType(
+      String sdbId, String partialPath, SecureDataType type, int limit) {
+    return secureDataMapper.readSecureDataByPartialPathAndType(sdbId, partialPath, type, limit);
+  }
+
+  /** @return The secure data at the paths that exist in path order, with the encrypted blobs */
+  public List<SecureDataRecord> readSecureDataByPathsAndType(
+      String sdbId, Collection<String> paths, SecureDataType type) {
+    return secureDataMapper.readSecureDataByPathsAndType(sdbId, paths, type);
+  }
+
   public Optional<SecureDataRecord> readMetadataByPathAndType(
       String sdbId, String path, SecureDataType type) {
     return Optional.ofNullable(secureDataMapper.readMetadataByPathAndType(sdbId, path, type));
@@ -125,18 +244,48 @@ public class SecureDataDao {
     return secureDataMapper.getPathsByPartialPathAndType(sdbId, partialPath, type);
   }
 
+  /**
+   * @param parentPath The path of the directory, ending with "/"
+   * @param after Only children whose names sort after this one are returned, or null to start from
+   *     the first child
+   * @param limit The max number of children to return
+   * @return The names of the direct children of the directory that have secure data of the type
+   *     below them in name order, the names of children that are directories end with "/"
+   */
+  public List<String> listChildNames(
+      String sdbId, SecureDataType type, String parentPath, String after, int limit) {
+    return secureDataMapper.listPathNodeChildNames(sdbId, type, parentPath, after, limit);
+  }
+
   public Set<String> getPathsBySdbId(String sdbId) {
     return secureDataMapper.getPathsBySdbId(sdbId);
   }
 
-  public List<SecureDataRecord> listSecureDataByPartialPathAndType(
-      String sdbId, String partialPath, SecureDataType type, int limit, int offset) {
-    return secureDataMapper.listSecureDataByPartialPathAndType(
-        sdbId, partialPath, type, limit, offset);
+  /**
+   * Lists the secure data under the partial path without its blobs, newest first.
+   *
+   * @param after Only secure data that sorts after this one is returned, or null to start from the
+   *     newest secure data
+   * @param limit The max number of secure data to return
+   * @param offset The number of secure data to skip, after the after secure data if there is one
+   * @return The secure data, without the encrypted blobs
+   */
+  public List<SecureDataRecord> listMetadataByPartialPathAndType(
+      String sdbId,
+      String partialPath,
+      SecureDataType type,
+      SecureDataRecord after,
+      int limit,
+      int offset) {
+    return after == null
+        ? secureDataMapper.listMetadataByPartialPathAndType(
+            sdbId, partialPath, type, null, null, limit, offset)
+        : secureDataMapper.listMetadataByPartialPathAndType(
+            sdbId, partialPath, type, after.getCreatedTs(), after.getId(), limit, offset);
   }
 
-  public int countByPartialPathAndType(String partialPath, SecureDataType type) {
-    return secureDataMapper.countByPartialPathAndType(partialPath, type);
+  public int countByPartialPathAndType(String sdbId, String partialPath, SecureDataType type) {
+    return secureDataMapper.countByPartialPathAndType(sdbId, partialPath, type);
   }
 
   public int countByType(SecureDataType type) {
@@ -149,10 +298,18 @@ public class SecureDataDao {
 
   public void deleteAllSecretsThatStartWithGivenPartialPath(String sdbId, String partialPath) {
     secureDataMapper.deleteAllSecretsThatStartWithGivenPartialPath(sdbId, partialPath);
+    // Any number of directories may have emptied, so the path tree of the SDB is rebuilt from what
+    // is left, which is nothing when the whole SDB is deleted
+    secureDataMapper.deletePathNodesBySdbId(sdbId);
+    secureDataMapper.writePathNodesBySdbId(sdbId);
   }
 
-  public void deleteSecret(String sdbId, String path) {
-    secureDataMapper.deleteSecret(sdbId, path);
+  public void deleteSecret(String sdbId, String path, SecureDataType type) {
+    if (secureDataMapper.deleteSecret(sdbId, path) > 0) {
+      List<SecureDataPathNodeRecord> nodes = getPathNodes(path);
+      secureDataMapper.removePathNodes(sdbId, type, nodes);
+      secureDataMapper.deleteEmptyPathNodes(sdbId, type, nodes);
+    }
   }
 
   public int getSumTopLevelKeyValuePairs() {
@@ -160,7 +317,55 @@ public class SecureDataDao {
     return val == null ? 0 : val;
   }
 
+  public int getSumTopLevelKeyValuePairsByPartialPath(String sdbId, String partialPath) {
+    Integer val = secureDataMapper.getSumTopLevelKeyValuePairsByPartialPath(sdbId, partialPath);
+    return val == null ? 0 : val;
+  }
+
   public List<DataKeyInfo> getOldestDataKeyInfo(OffsetDateTime dateTime, int limit) {
-    return secureDataMapper.getOldestDataKeyInfo(dateTime, limit);
+    return getOldestDataKeyInfo(dateTime, null, limit);
+  }
+
+  /**
+   * @param dateTime Only data keys last rotated before this time are returned
+   * @param after Only data keys that sort after this one are returned, or null to start from the
+   *     oldest data key
+   * @param limit The max number of data keys to return
+   * @return The data keys, oldest first
+   */
+  public List<DataKeyInfo> getOldestDataKeyInfo(
+      OffsetDateTime dateTime, DataKeyInfo after, int limit) {
+    return after == null
+        ? secureDataMapper.getOldestDataKeyInfo(dateTime, null, null, null, limit)
+        : secureDataMapper.getOldestDataKeyInfo(
+            dateTime, after.getLastRotatedTs(), after.getSource(), after.getId(), limit);
+  }
+
+  public int countDataKeysOlderThan(OffsetDateTime dateTime) {
+    return secureDataMapper.countDataKeysOlderThan(dateTime);
+  }
+
+  /**
+   * ex: the path app/foo/bar is the child "app/" of "", the child "foo/" of "app/" and the child
+   * "bar" of "app/foo/".
+   *
+   * @return The path tree nodes that lead to the path, from the root down
+   */
+  static List<SecureDataPathNodeRecord> getPathNodes(String path) {
+    List<SecureDataPathNodeRecord> nodes = new ArrayList<>();
+    int parentEnd = 0;
+    int separator;
+    while ((separator = path.indexOf('/', parentEnd)) >= 0) {
+      nodes.add(
+          new SecureDataPathNodeRecord()
+              .setParentPath(path.substring(0, parentEnd))
+              .setChildName(path.substring(parentEnd, separator + 1)));
+      parentEnd = separator + 1;
+    }
+    nodes.add(
+        new SecureDataPathNodeRecord()
+            .setParentPath(path.substring(0, parentEnd))
+            .setChildName(path.substring(parentEnd)));
+    return nodes;
   }
 }
@@ -68,6 +68,30 @@ public class SecureDataVersionDao {
             .setVersionCreatedTs(versionCreatedTs));
   }
 
+  /** Writes many versions with one statement, each is given a new id. */
+  public void writeSecureDataVersions(List<SecureDataVersionRecord> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+    records.forEach(record -> record.setId(uuidSupplier.get()));
+    secureDataVersionMapper.writeSecureDataVersions(records);
+  }
+
+  /**
+   * Moves a copy of the current secure data at the path into the versions table, the blob is copied
+   * by the database rather than read into memory.
+   */
+  public void writeSecureDataVersionFromSecureData(
+      String sdbId,
+      String path,
+      SecureDataVersionRecord.SecretsAction action,
+      String actionPrincipal,
+      OffsetDateTime actionTs) {
+
+    secureDataVersionMapper.writeSecureDataVersionFromSecureData(
+        uuidSupplier.get(), sdbId, path, action.name(), actionPrincipal, actionTs);
+  }
+
   public int updateSecureDataVersion(SecureDataVersionRecord secureDataVersionRecord) {
     return secureDataVersionMapper.updateSecureDataVersion(secureDataVersionRecord);
   }
@@ -17,8 +17,10 @@
 package com.nike.cerberus.dao;
 
 import com.nike.cerberus.mapper.UserGroupMapper;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import com.nike.cerberus.record.UserGroupPermissionRecord;
 import com.nike.cerberus.record.UserGroupRecord;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -56,6 +58,15 @@ public class UserGroupDao {
     return userGroupMapper.getUserGroupPermissions(safeDepositBoxId);
   }
 
+  /** @return The user group permissions of the SDBs, with the names of their user groups */
+  public List<SdbPermissionRecord> getUserGroupPermissionsBySdbIds(
+      final Collection<String> safeDepositBoxIds) {
+    if (safeDepositBoxIds.isEmpty()) {
+      return List.of();
+    }
+    return userGroupMapper.getUserGroupPermissionsBySdbIds(safeDepositBoxIds);
+  }
+
   public int getTotalNumUniqueUserGroupsByRole(String roleId) {
     return userGroupMapper.getTotalNumUniqueUserGroupsByRole(roleId);
   }
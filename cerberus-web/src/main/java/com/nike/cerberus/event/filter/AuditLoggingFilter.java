@@ -90,6 +90,10 @@ public class AuditLoggingFilter extends OncePerRequestFilter {
         && !auditLoggingFilterDetails.getAction().isEmpty()) {
       return auditLoggingFilterDetails.getAction();
     }
+    return getReadableAction(principal, method, path);
+  }
+
+  private String getReadableAction(Object principal, String method, String path) {
     String readableAction = READABLE_METHOD_ACTIONS.getOrDefault(method, method);
     String principalName =
         principal instanceof CerberusAuthToken
@@ -119,15 +123,39 @@ public class AuditLoggingFilter extends OncePerRequestFilter {
     var authentication = SecurityContextHolder.getContext().getAuthentication();
     Object principal = Optional.ofNullable(authentication.getPrincipal()).orElse("Unknown");
 
+    publishEvent(
+        request,
+        response,
+        principal,
+        request.getServletPath(),
+        getAction(principal, request.getMethod(), request.getServletPath()));
+
+    // A bulk read is audited as a read of every path that it returned, as if each was requested
+    for (String auditedPath : auditLoggingFilterDetails.getAuditedPaths()) {
+      publishEvent(
+          request,
+          response,
+          principal,
+          auditedPath,
+          getReadableAction(principal, request.getMethod(), auditedPath));
+    }
+  }
+
+  private void publishEvent(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Object principal,
+      String path,
+      String action) {
     var eventContext =
         AuditableEventContext.builder()
             .eventName("Audit Logging Filter Event")
             .principal(principal)
-            .action(getAction(principal, request.getMethod(), request.getServletPath()))
+            .action(action)
             .method(request.getMethod())
             .statusCode(response.getStatus())
             .success(isResponseSuccessful(response.getStatus()))
-            .path(request.getServletPath())
+            .path(path)
             .ipAddress(getXForwardedClientIp(request))
             .xForwardedFor(getXForwardedCompleteHeader(request))
             .clientVersion(getClientVersion(request))
@@ -16,6 +16,8 @@
 
 package com.nike.cerberus.event.filter;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
@@ -28,4 +30,6 @@ import org.springframework.web.context.WebApplicationContext;
 public class AuditLoggingFilterDetails {
   private String action;
   private String sdbNameSlug;
+  /** Paths that the request read on top of its own, each is audited as a read of its own. */
+  private List<String> auditedPaths = new ArrayList<>();
 }
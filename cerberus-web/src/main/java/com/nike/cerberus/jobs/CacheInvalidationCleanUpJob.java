@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.jobs;
+
+import com.nike.cerberus.service.CacheInvalidationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Periodically clean up the cache invalidation log. */
+@Slf4j
+@ConditionalOnProperty("cerberus.mybatis.cache.invalidation.enabled")
+@Component
+public class CacheInvalidationCleanUpJob extends LockingJob {
+
+  private final CacheInvalidationService cacheInvalidationService;
+
+  @Autowired
+  public CacheInvalidationCleanUpJob(CacheInvalidationService cacheInvalidationService) {
+    this.cacheInvalidationService = cacheInvalidationService;
+  }
+
+  @Override
+  @Scheduled(cron = "${cerberus.jobs.cacheInvalidationCleanUpJob.cronExpression}")
+  public void execute() {
+    super.execute();
+  }
+
+  @Override
+  protected void executeLockableCode() {
+    int numberOfDeletedInvalidations = cacheInvalidationService.deleteExpiredInvalidations();
+    log.info("Deleted {} cache invalidation log entries", numberOfDeletedInvalidations);
+  }
+}
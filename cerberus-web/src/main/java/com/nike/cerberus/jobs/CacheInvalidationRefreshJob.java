@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.jobs;
+
+import com.nike.cerberus.service.CacheInvalidationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Tails the cache invalidation log and evicts stale entries from the local MyBatis caches. */
+@Slf4j
+@ConditionalOnProperty("cerberus.mybatis.cache.invalidation.enabled")
+@Component
+public class CacheInvalidationRefreshJob {
+
+  private final CacheInvalidationService cacheInvalidationService;
+
+  @Autowired
+  public CacheInvalidationRefreshJob(CacheInvalidationService cacheInvalidationService) {
+    this.cacheInvalidationService = cacheInvalidationService;
+  }
+
+  @Scheduled(cron = "${cerberus.jobs.cacheInvalidationRefreshJob.cronExpression}")
+  public void execute() {
+    // This would be too spammy as an info message
+    log.debug("Running cache invalidation refresh job");
+    int applied = cacheInvalidationService.applyPendingInvalidations();
+    log.debug("Applied {} cache invalidations", applied);
+  }
+}
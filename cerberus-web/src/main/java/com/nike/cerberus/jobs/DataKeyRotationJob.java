@@ -16,7 +16,8 @@
 
 package com.nike.cerberus.jobs;
 
-import com.nike.cerberus.service.SecureDataService;
+import com.nike.cerberus.service.DataKeyRotationService;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,25 +30,29 @@ import org.springframework.stereotype.Component;
 @Component
 public class DataKeyRotationJob extends LockingJob {
 
-  private final SecureDataService secureDataService;
+  private final DataKeyRotationService dataKeyRotationService;
   private final int numberOfDataKeyToRotatePerJobRun;
   private final int dataKeyRotationPauseTimeInMillis;
   private final int dataKeyRotationIntervalInDays;
+  private final int maxRunTimeInMinutes;
 
   @Autowired
   public DataKeyRotationJob(
-      SecureDataService secureDataService,
+      DataKeyRotationService dataKeyRotationService,
       @Value("${cerberus.jobs.dataKeyRotationJob.numberOfDataKeyToRotatePerJobRun}")
           int numberOfDataKeyToRotatePerJobRun,
       @Value("${cerberus.jobs.dataKeyRotationJob.dataKeyRotationPauseTimeInMillis}")
           int dataKeyRotationPauseTimeInMillis,
       @Value("${cerberus.jobs.dataKeyRotationJob.dataKeyRotationIntervalInDays}")
-          int dataKeyRotationIntervalInDays) {
+          int dataKeyRotationIntervalInDays,
+      @Value("${cerberus.jobs.dataKeyRotationJob.maxRunTimeInMinutes:50}")
+          int maxRunTimeInMinutes) {
 
-    this.secureDataService = secureDataService;
+    this.dataKeyRotationService = dataKeyRotationService;
     this.numberOfDataKeyToRotatePerJobRun = numberOfDataKeyToRotatePerJobRun;
     this.dataKeyRotationPauseTimeInMillis = dataKeyRotationPauseTimeInMillis;
     this.dataKeyRotationIntervalInDays = dataKeyRotationIntervalInDays;
+    this.maxRunTimeInMinutes = maxRunTimeInMinutes;
   }
 
   @Override
@@ -58,10 +63,13 @@ public class DataKeyRotationJob extends LockingJob {
 
   @Override
   protected void executeLockableCode() {
-    secureDataService.rotateDataKeys(
-        numberOfDataKeyToRotatePerJobRun,
-        dataKeyRotationPauseTimeInMillis,
-        dataKeyRotationIntervalInDays);
-    log.info("Rotated {} keys", numberOfDataKeyToRotatePerJobRun);
+    int rotated =
+        dataKeyRotationService.rotateDataKeys(
+            numberOfDataKeyToRotatePerJobRun,
+            dataKeyRotationPauseTimeInMillis,
+            dataKeyRotationIntervalInDays,
+            Duration.ofMinutes(maxRunTimeInMinutes),
+            this::isLockHeld);
+    log.info("Rotated {} keys", rotated);
   }
 }
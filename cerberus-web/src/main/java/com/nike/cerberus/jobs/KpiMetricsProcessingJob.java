@@ -16,51 +16,54 @@
 
 package com.nike.cerberus.jobs;
 
-import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.metric.MetricsService;
-import com.nike.cerberus.service.SafeDepositBoxService;
-import com.nike.cerberus.service.SecureDataService;
-import com.nike.cerberus.service.UserGroupPermissionService;
+import com.nike.cerberus.service.KpiCounterService;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-/** Periodically send KPI metrics to the enabled metrics services. */
+/**
+ * Periodically send KPI metrics to the enabled metrics services.
+ *
+ * <p>The gauges read the counts kept by the KpiCounterService, which are counted from the tables
+ * once the application is ready and then every few minutes, on the reconciliation cron expression,
+ * so that the counts of the instances only differ by the writes made since the last count. The
+ * gauges are only registered once the counts have been set, so that zeros are never published.
+ */
 @Slf4j
 @ConditionalOnProperty("cerberus.jobs.kpiMetricsProcessingJob.enabled")
 @Component
-public class KpiMetricsProcessingJob {
+public class KpiMetricsProcessingJob implements ApplicationListener<ApplicationReadyEvent> {
 
   private final MetricsService metricsService;
-
-  private final SafeDepositBoxService safeDepositBoxService;
-
-  private final AwsIamRoleDao awsIamRoleDao;
-
-  private final SecureDataService secureDataService;
-
-  private final UserGroupPermissionService userGroupPermissionService;
+  private final KpiCounterService kpiCounterService;
+  private boolean gaugesRegistered = false;
 
   @Autowired
   public KpiMetricsProcessingJob(
-      MetricsService metricsService,
-      SafeDepositBoxService safeDepositBoxService,
-      AwsIamRoleDao awsIamRoleDao,
-      SecureDataService secureDataService,
-      UserGroupPermissionService userGroupPermissionService) {
+      MetricsService metricsService, KpiCounterService kpiCounterService) {
     this.metricsService = metricsService;
-    this.safeDepositBoxService = safeDepositBoxService;
-    this.awsIamRoleDao = awsIamRoleDao;
-    this.secureDataService = secureDataService;
-    this.userGroupPermissionService = userGroupPermissionService;
+    this.kpiCounterService = kpiCounterService;
+  }
+
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    reconcile();
   }
 
   @Scheduled(cron = "${cerberus.jobs.kpiMetricsProcessingJob.cronExpression}")
   public void execute() {
     log.debug("Running KPI metrics processing job");
+    if (!kpiCounterService.isReconciled()) {
+      // Counting the tables failed when the application started
+      reconcile();
+    }
     try {
       processKpiMetrics();
     } catch (Exception e) {
@@ -68,49 +71,39 @@ public class KpiMetricsProcessingJob {
     }
   }
 
-  public void processKpiMetrics() {
-    int numUniqueIamRoles = awsIamRoleDao.getTotalNumberOfUniqueIamRoles();
-    int numUniqueOwnerGroups = userGroupPermissionService.getTotalNumUniqueOwnerGroups();
-    int numUniqueNonOwnerGroups = userGroupPermissionService.getTotalNumUniqueNonOwnerGroups();
-    int totalUniqueUserGroups = userGroupPermissionService.getTotalNumUniqueUserGroups();
-    int numSDBs = safeDepositBoxService.getTotalNumberOfSafeDepositBoxes();
-    int numDataNodes = secureDataService.getTotalNumberOfDataNodes();
-    int numKeyValuePairs = secureDataService.getTotalNumberOfKeyValuePairs();
-    int numFiles = secureDataService.getTotalNumberOfFiles();
-    Map<String, String> dimensions = Map.of();
+  @Scheduled(cron = "${cerberus.jobs.kpiMetricsProcessingJob.reconciliationCronExpression}")
+  public void reconcile() {
+    log.debug("Reconciling KPI counts");
+    try {
+      kpiCounterService.reconcile();
+      registerGauges();
+    } catch (Exception e) {
+      log.warn("Error reconciling KPI counts", e);
+    }
+  }
+
+  private synchronized void registerGauges() {
+    if (gaugesRegistered) {
+      return;
+    }
+    for (Kpi kpi : Kpi.values()) {
+      metricsService.getOrCreateCallbackGauge(
+          kpi.getMetricName(), () -> kpiCounterService.getCount(kpi), Map.of());
+    }
+    gaugesRegistered = true;
+  }
 
+  public void processKpiMetrics() {
     log.info(
         "Number of IAM roles: {}, Owner Groups: {}, Non-Owner Groups: {}, Total Unique Groups: {}, SDBs: {}, "
             + "Nodes: {}, Key/Value Pairs: {}, Number of Secure Files: {}",
-        numUniqueIamRoles,
-        numUniqueOwnerGroups,
-        numUniqueNonOwnerGroups,
-        totalUniqueUserGroups,
-        numSDBs,
-        numDataNodes,
-        numKeyValuePairs,
-        numFiles);
-
-    metricsService.getOrCreateCallbackGauge(
-        "numberOfUniqueIamRoles", () -> numUniqueIamRoles, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge(
-        "numberOfUniqueOwnerGroups", () -> numUniqueOwnerGroups, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge(
-        "numberOfUniqueNonOwnerGroups", () -> numUniqueNonOwnerGroups, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge(
-        "totalUniqueUserGroups", () -> totalUniqueUserGroups, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge("numberOfSdbs", () -> numSDBs, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge("numberOfDataNodes", () -> numDataNodes, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge(
-        "numberOfKeyValuePairs", () -> numKeyValuePairs, dimensions);
-    ;
-    metricsService.getOrCreateCallbackGauge("numberOfFiles", () -> numFiles, dimensions);
-    ;
+        kpiCounterService.getCount(Kpi.UNIQUE_IAM_ROLES),
+        kpiCounterService.getCount(Kpi.UNIQUE_OWNER_GROUPS),
+        kpiCounterService.getCount(Kpi.UNIQUE_NON_OWNER_GROUPS),
+        kpiCounterService.getCount(Kpi.UNIQUE_USER_GROUPS),
+        kpiCounterService.getCount(Kpi.SDBS),
+        kpiCounterService.getCount(Kpi.DATA_NODES),
+        kpiCounterService.getCount(Kpi.KEY_VALUE_PAIRS),
+        kpiCounterService.getCount(Kpi.FILES));
   }
 }
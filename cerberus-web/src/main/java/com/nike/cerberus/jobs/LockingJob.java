@@ -16,24 +16,55 @@
 
 package com.nike.cerberus.jobs;
 
+import com.nike.cerberus.service.DistributedLeaseService;
+import com.nike.cerberus.service.DistributedLeaseService.Lease;
 import com.nike.cerberus.service.DistributedLockService;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * A job that only runs on one instance at a time. The job holds a lock named after its class while
+ * it runs, either a MySQL named lock held by the DistributedLockService or, when lease locks are
+ * enabled, a lease from the DistributedLeaseService.
+ */
 @Slf4j
 @Component
 public abstract class LockingJob {
 
   private DistributedLockService jobCoordinatorService;
 
+  private DistributedLeaseService distributedLeaseService;
+
+  private boolean leaseLocksEnabled;
+
+  private volatile Lease lease;
+
   @Autowired
   public void setJobCoordinatorService(DistributedLockService jobCoordinatorService) {
     this.jobCoordinatorService = jobCoordinatorService;
   }
 
+  @Autowired
+  public void setDistributedLeaseService(DistributedLeaseService distributedLeaseService) {
+    this.distributedLeaseService = distributedLeaseService;
+  }
+
+  @Autowired
+  public void setLeaseLocksEnabled(
+      @Value("${cerberus.jobs.leaseLocks.enabled:false}") boolean leaseLocksEnabled) {
+    this.leaseLocksEnabled = leaseLocksEnabled;
+  }
+
   public void execute() {
+    if (leaseLocksEnabled) {
+      executeWithLease();
+      return;
+    }
+
     String jobName = this.getClass().getName();
     if (!jobCoordinatorService.acquireLock(jobName)) {
       log.info(
@@ -68,5 +99,50 @@ public abstract class LockingJob {
     }
   }
 
+  private void executeWithLease() {
+    String jobName = this.getClass().getName();
+    Optional<Lease> lease = distributedLeaseService.tryAcquire(jobName);
+    if (lease.isEmpty()) {
+      log.info(
+          "Failed to acquire lease, another instance must be running the job. Job Name: {}",
+          jobName);
+      return;
+    }
+
+    log.info(
+        "Lease acquired for Job: {}, fencing token: {}, executing lockable code",
+        jobName,
+        lease.get().getFencingToken());
+    this.lease = lease.get();
+    try {
+      executeLockableCode();
+    } catch (Throwable t) {
+      log.error("Failed to execute lockable job, releasing lease", t);
+    } finally {
+      this.lease = null;
+      if (!lease.get().isHeld()) {
+        log.error("Lease for Job: {} was lost while the job was running", jobName);
+      }
+      try {
+        // A lease that is not released expires, so there is no need to retry
+        distributedLeaseService.release(lease.get());
+        log.info("Lease released for Job: {}", jobName);
+      } catch (Throwable t) {
+        log.error("Failed to release lease for Job: {}, it will expire", jobName, t);
+      }
+    }
+  }
+
+  /**
+   * Long running jobs should stop once this returns false, because another instance may be running
+   * the job by then. A named lock is held until it is released, so only a lease can be lost.
+   *
+   * @return False once the lease that the job is running under has been lost
+   */
+  protected boolean isLockHeld() {
+    Lease current = lease;
+    return current == null || current.isHeld();
+  }
+
   protected abstract void executeLockableCode();
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.jobs;
+
+import com.nike.cerberus.service.SdbAclIndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Loads the SDB ACL index on boot and periodically fully reloads it. */
+@Slf4j
+@ConditionalOnProperty("cerberus.permissions.aclIndex.enabled")
+@Component
+public class SdbAclIndexReloadJob {
+
+  private final SdbAclIndexService sdbAclIndexService;
+
+  @Autowired
+  public SdbAclIndexReloadJob(SdbAclIndexService sdbAclIndexService) {
+    this.sdbAclIndexService = sdbAclIndexService;
+  }
+
+  @Scheduled(cron = "${cerberus.jobs.sdbAclIndexReloadJob.cronExpression}")
+  public void execute() {
+    log.debug("Running SDB ACL index reload job");
+    sdbAclIndexService.reloadIfStale();
+  }
+}
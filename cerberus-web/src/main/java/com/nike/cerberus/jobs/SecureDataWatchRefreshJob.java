@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.jobs;
+
+import com.nike.cerberus.service.SecureDataWatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Wakes the watches on this instance for the writes to secure data on other instances. */
+@Slf4j
+@Component
+public class SecureDataWatchRefreshJob {
+
+  private final SecureDataWatchService secureDataWatchService;
+
+  @Autowired
+  public SecureDataWatchRefreshJob(SecureDataWatchService secureDataWatchService) {
+    this.secureDataWatchService = secureDataWatchService;
+  }
+
+  @Scheduled(cron = "${cerberus.jobs.secureDataWatchRefreshJob.cronExpression}")
+  public void execute() {
+    // This would be too spammy as an info message
+    log.debug("Running secure data watch refresh job");
+    int changed = secureDataWatchService.refreshWatches();
+    log.debug("Woke the watches of {} SDBs", changed);
+  }
+}
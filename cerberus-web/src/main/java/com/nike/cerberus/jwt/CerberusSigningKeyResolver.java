@@ -126,6 +126,15 @@ public class CerberusSigningKeyResolver extends SigningKeyResolverAdapter {
     }
   }
 
+  /**
+   * Return the keys that JWT can currently be verified with.
+   *
+   * @return A copy of the verification keys by key ID
+   */
+  public Map<String, CerberusJwtKeySpec> getVerificationKeys() {
+    return Map.copyOf(keyMap);
+  }
+
   /** Poll for JWT config and update key map with new data */
   public void refresh() {
     JwtSecretData jwtSecretData = getJwtSecretData();
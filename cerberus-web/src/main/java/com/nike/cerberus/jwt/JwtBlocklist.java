@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.jwt;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ids of blocklisted JWTs, safe for concurrent reads and writes.
+ *
+ * <p>Nearly every JWT that is checked is not blocklisted, so lookups go through a Bloom filter
+ * first and only the rare possible match is checked against the set of ids. Ids are dropped from
+ * the set once the JWT has expired, the filter can not remove them so it is rebuilt when it is
+ * pruned or has grown past its expected size.
+ */
+public class JwtBlocklist {
+
+  private static final int MIN_EXPECTED_INSERTIONS = 1024;
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+  private final Map<String, OffsetDateTime> expiresTsById = new ConcurrentHashMap<>();
+
+  private volatile BloomFilter<CharSequence> filter;
+  private int expectedInsertions;
+  private int insertions;
+
+  public JwtBlocklist() {
+    rebuildFilter();
+  }
+
+  /**
+   * @param id The id of a JWT
+   * @return True if the JWT is blocklisted
+   */
+  public boolean contains(String id) {
+    return filter.mightContain(id) && expiresTsById.containsKey(id);
+  }
+
+  /**
+   * @param id The id of the JWT to blocklist
+   * @param expiresTs When the JWT expires, after which it no longer needs to be blocklisted
+   * @return True if the id was not already blocklisted
+   */
+  public synchronized boolean add(String id, OffsetDateTime expiresTs) {
+    // The id has to be in the set before the filter can let lookups through to it
+    boolean added = expiresTsById.put(id, expiresTs) == null;
+    if (added) {
+      filter.put(id);
+      if (++insertions > expectedInsertions) {
+        rebuildFilter();
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Drops the ids of JWTs that have expired, they would be rejected without the blocklist.
+   *
+   * @param now The current time
+   * @return The number of ids that were dropped
+   */
+  public synchronized int removeExpired(OffsetDateTime now) {
+    int sizeBefore = expiresTsById.size();
+    expiresTsById.values().removeIf(expiresTs -> expiresTs.isBefore(now));
+    int removed = sizeBefore - expiresTsById.size();
+    if (removed > 0) {
+      rebuildFilter();
+    }
+    return removed;
+  }
+
+  public int size() {
+    return expiresTsById.size();
+  }
+
+  private void rebuildFilter() {
+    expectedInsertions = Math.max(MIN_EXPECTED_INSERTIONS, expiresTsById.size() * 2);
+    BloomFilter<CharSequence> newFilter =
+        BloomFilter.create(
+            Funnels.stringFunnel(StandardCharsets.UTF_8),
+            expectedInsertions,
+            FALSE_POSITIVE_PROBABILITY);
+    expiresTsById.keySet().forEach(newFilter::put);
+    insertions = expiresTsById.size();
+    filter = newFilter;
+  }
+}
@@ -19,7 +19,9 @@ package com.nike.cerberus.mapper;
 import com.nike.cerberus.record.AwsIamRoleKmsKeyRecord;
 import com.nike.cerberus.record.AwsIamRolePermissionRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
 
@@ -48,6 +50,9 @@ public interface AwsIamRoleMapper {
   List<AwsIamRolePermissionRecord> getIamRolePermissions(
       @Param("safeDepositBoxId") String safeDepositBoxId);
 
+  List<SdbPermissionRecord> getIamRolePermissionsBySdbIds(
+      @Param("safeDepositBoxIds") Collection<String> safeDepositBoxIds);
+
   int deleteIamRolePermissions(@Param("safeDepositBoxId") String safeDepositBoxId);
 
   int updateIamRoleKmsKey(@Param("record") AwsIamRoleKmsKeyRecord record);
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.mapper;
+
+import com.nike.cerberus.record.DataKeyRotationCheckpointRecord;
+import org.apache.ibatis.annotations.Param;
+
+public interface DataKeyRotationCheckpointMapper {
+
+  DataKeyRotationCheckpointRecord getCheckpoint(@Param("id") String id);
+
+  int saveCheckpoint(@Param("record") DataKeyRotationCheckpointRecord record);
+
+  int deleteCheckpoint(@Param("id") String id);
+}
@@ -17,12 +17,13 @@
 package com.nike.cerberus.mapper;
 
 import com.nike.cerberus.record.JwtBlocklistRecord;
-import java.util.HashSet;
+import java.time.OffsetDateTime;
+import java.util.List;
 import org.apache.ibatis.annotations.Param;
 
 public interface JwtBlocklistMapper {
 
-  HashSet<String> getBlocklist();
+  List<JwtBlocklistRecord> getBlocklistEntriesSince(@Param("since") OffsetDateTime since);
 
   int addToBlocklist(@Param("record") JwtBlocklistRecord record);
 
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+public interface LeaseMapper {
+
+  int createLease(
+      @Param("name") String name,
+      @Param("owner") String owner,
+      @Param("durationInSeconds") int durationInSeconds);
+
+  int acquireExpiredLease(
+      @Param("name") String name,
+      @Param("owner") String owner,
+      @Param("durationInSeconds") int durationInSeconds);
+
+  Long getFencingToken(@Param("name") String name, @Param("owner") String owner);
+
+  int renewLease(
+      @Param("name") String name,
+      @Param("owner") String owner,
+      @Param("durationInSeconds") int durationInSeconds);
+
+  int releaseLease(@Param("name") String name, @Param("owner") String owner);
+}
@@ -16,6 +16,8 @@
 
 package com.nike.cerberus.mapper;
 
+import com.nike.cerberus.record.SdbAclEntryRecord;
+import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
 
@@ -43,4 +45,8 @@ public interface PermissionsMapper {
       @Param("sdbId") String sdbId,
       @Param("rolesThatAllowPermission") Set<String> rolesThatAllowPermission,
       @Param("userGroupsThatPrincipalBelongsTo") Set<String> userGroupsThatPrincipalBelongsTo);
+
+  List<SdbAclEntryRecord> getIamPrincipalAclEntries(@Param("sdbId") String sdbId);
+
+  List<SdbAclEntryRecord> getUserGroupAclEntries(@Param("sdbId") String sdbId);
 }
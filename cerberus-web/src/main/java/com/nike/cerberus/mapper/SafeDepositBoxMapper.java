@@ -18,9 +18,12 @@ package com.nike.cerberus.mapper;
 
 import com.nike.cerberus.record.SafeDepositBoxRecord;
 import com.nike.cerberus.record.SafeDepositBoxRoleRecord;
+import com.nike.cerberus.record.SdbMetadataRecord;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 /** MyBatis mapper for executing SQL queries related to safe deposit boxes. */
 public interface SafeDepositBoxMapper {
@@ -67,7 +70,12 @@ public interface SafeDepositBoxMapper {
   int deleteSafeDepositBox(@Param("id") String id);
 
   List<SafeDepositBoxRecord> getSafeDepositBoxes(
-      @Param("limit") int limit, @Param("offset") int offset);
+      @Param("afterTs") OffsetDateTime afterTs,
+      @Param("afterId") String afterId,
+      @Param("limit") int limit,
+      @Param("offset") int offset);
+
+  Cursor<SdbMetadataRecord> exportSafeDepositBoxMetadata();
 
   int count();
 
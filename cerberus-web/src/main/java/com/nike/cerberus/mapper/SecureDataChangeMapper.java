@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.mapper;
+
+import com.nike.cerberus.record.SecureDataChangeRecord;
+import java.util.Collection;
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+
+public interface SecureDataChangeMapper {
+
+  int incrementVersion(@Param("sdbId") String sdbId);
+
+  Long getVersion(@Param("sdbId") String sdbId);
+
+  List<SecureDataChangeRecord> getVersions(@Param("sdbIds") Collection<String> sdbIds);
+
+  int saveChanges(@Param("records") List<SecureDataChangeRecord> records);
+
+  List<SecureDataChangeRecord> lockSecureDataByPartialPath(
+      @Param("sdbId") String sdbId, @Param("partialPath") String partialPath);
+
+  int deleteChanges(@Param("sdbId") String sdbId);
+
+  int deleteVersion(@Param("sdbId") String sdbId);
+
+  List<SecureDataChangeRecord> getChangesSince(
+      @Param("sdbId") String sdbId,
+      @Param("partialPath") String partialPath,
+      @Param("version") long version);
+}
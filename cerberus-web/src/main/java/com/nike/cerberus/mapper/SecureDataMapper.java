@@ -17,9 +17,13 @@
 package com.nike.cerberus.mapper;
 
 import com.nike.cerberus.domain.SecureDataType;
+import com.nike.cerberus.domain.Source;
 import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.SecureDataPathNodeRecord;
 import com.nike.cerberus.record.SecureDataRecord;
+import java.io.InputStream;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
@@ -30,13 +34,42 @@ public interface SecureDataMapper {
 
   int updateSecureData(@Param("record") SecureDataRecord record);
 
+  int writeSecureDataRecords(
+      @Param("sdbId") String sdbId, @Param("records") List<SecureDataRecord> records);
+
+  int updateSecureDataRecords(
+      @Param("sdbId") String sdbId, @Param("records") List<SecureDataRecord> records);
+
+  int writeSecureDataFromStream(
+      @Param("record") SecureDataRecord record, @Param("encryptedBlob") InputStream encryptedBlob);
+
+  int updateSecureDataFromStream(
+      @Param("record") SecureDataRecord record, @Param("encryptedBlob") InputStream encryptedBlob);
+
   SecureDataRecord readSecureDataByPath(@Param("sdbId") String sdbId, @Param("path") String path);
 
+  List<SecureDataRecord> readSecureDataByPathsLocking(
+      @Param("sdbId") String sdbId, @Param("paths") Collection<String> paths);
+
   SecureDataRecord readSecureDataByIdLocking(@Param("id") String id);
 
+  SecureDataRecord readMetadataByPathLocking(
+      @Param("sdbId") String sdbId, @Param("path") String path);
+
   SecureDataRecord readSecureDataByPathAndType(
       @Param("sdbId") String sdbId, @Param("path") String path, @Param("type") SecureDataType type);
 
+  List<SecureDataRecord> readSecureDataByPartialPathAndType(
+      @Param("sdbId") String sdbId,
+      @Param("partialPath") String partialPath,
+      @Param("type") SecureDataType type,
+      @Param("limit") int limit);
+
+  List<SecureDataRecord> readSecureDataByPathsAndType(
+      @Param("sdbId") String sdbId,
+      @Param("paths") Collection<String> paths,
+      @Param("type") SecureDataType type);
+
   SecureDataRecord readMetadataByPathAndType(
       @Param("sdbId") String sdbId, @Param("path") String path, @Param("type") SecureDataType type);
 
@@ -48,15 +81,19 @@ public interface SecureDataMapper {
       @Param("partialPath") String partialPath,
       @Param("type") SecureDataType type);
 
-  List<SecureDataRecord> listSecureDataByPartialPathAndType(
+  List<SecureDataRecord> listMetadataByPartialPathAndType(
       @Param("sdbId") String sdbId,
       @Param("partialPath") String partialPath,
       @Param("type") SecureDataType type,
+      @Param("afterTs") OffsetDateTime afterTs,
+      @Param("afterId") Integer afterId,
       @Param("limit") int limit,
       @Param("offset") int offset);
 
   int countByPartialPathAndType(
-      @Param("partialPath") String partialPath, @Param("type") SecureDataType type);
+      @Param("sdbId") String sdbId,
+      @Param("partialPath") String partialPath,
+      @Param("type") SecureDataType type);
 
   int countByType(@Param("type") SecureDataType type);
 
@@ -69,8 +106,43 @@ public interface SecureDataMapper {
 
   int deleteSecret(@Param("sdbId") String sdbId, @Param("path") String path);
 
+  List<String> listPathNodeChildNames(
+      @Param("sdbId") String sdbId,
+      @Param("type") SecureDataType type,
+      @Param("parentPath") String parentPath,
+      @Param("after") String after,
+      @Param("limit") int limit);
+
+  int addPathNodes(
+      @Param("sdbId") String sdbId,
+      @Param("type") SecureDataType type,
+      @Param("nodes") List<SecureDataPathNodeRecord> nodes);
+
+  int removePathNodes(
+      @Param("sdbId") String sdbId,
+      @Param("type") SecureDataType type,
+      @Param("nodes") List<SecureDataPathNodeRecord> nodes);
+
+  int deleteEmptyPathNodes(
+      @Param("sdbId") String sdbId,
+      @Param("type") SecureDataType type,
+      @Param("nodes") List<SecureDataPathNodeRecord> nodes);
+
+  int deletePathNodesBySdbId(@Param("sdbId") String sdbId);
+
+  int writePathNodesBySdbId(@Param("sdbId") String sdbId);
+
   Integer getSumTopLevelKeyValuePairs();
 
+  Integer getSumTopLevelKeyValuePairsByPartialPath(
+      @Param("sdbId") String sdbId, @Param("partialPath") String partialPath);
+
   List<DataKeyInfo> getOldestDataKeyInfo(
-      @Param("datetime") OffsetDateTime dateTime, @Param("limit") int limit);
+      @Param("datetime") OffsetDateTime dateTime,
+      @Param("afterTs") OffsetDateTime afterTs,
+      @Param("afterSource") Source afterSource,
+      @Param("afterId") String afterId,
+      @Param("limit") int limit);
+
+  int countDataKeysOlderThan(@Param("datetime") OffsetDateTime dateTime);
 }
@@ -17,6 +17,7 @@
 package com.nike.cerberus.mapper;
 
 import com.nike.cerberus.record.SecureDataVersionRecord;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
@@ -25,6 +26,16 @@ public interface SecureDataVersionMapper {
 
   int writeSecureDataVersion(@Param("record") SecureDataVersionRecord record);
 
+  int writeSecureDataVersions(@Param("records") List<SecureDataVersionRecord> records);
+
+  int writeSecureDataVersionFromSecureData(
+      @Param("id") String id,
+      @Param("sdbId") String sdbId,
+      @Param("path") String path,
+      @Param("action") String action,
+      @Param("actionPrincipal") String actionPrincipal,
+      @Param("actionTs") OffsetDateTime actionTs);
+
   int updateSecureDataVersion(@Param("record") SecureDataVersionRecord record);
 
   Integer getTotalNumVersionsForPath(String path);
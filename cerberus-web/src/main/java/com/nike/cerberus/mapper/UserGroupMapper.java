@@ -16,8 +16,10 @@
 
 package com.nike.cerberus.mapper;
 
+import com.nike.cerberus.record.SdbPermissionRecord;
 import com.nike.cerberus.record.UserGroupPermissionRecord;
 import com.nike.cerberus.record.UserGroupRecord;
+import java.util.Collection;
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
 
@@ -49,5 +51,8 @@ public interface UserGroupMapper {
   List<UserGroupPermissionRecord> getUserGroupPermissions(
       @Param("safeDepositBoxId") String safeDepositBoxId);
 
+  List<SdbPermissionRecord> getUserGroupPermissionsBySdbIds(
+      @Param("safeDepositBoxIds") Collection<String> safeDepositBoxIds);
+
   int deleteUserGroupPermissions(@Param("safeDepositBoxId") String safeDepositBoxId);
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import java.time.OffsetDateTime;
+
+public class CacheInvalidationRecord {
+
+  private Long id;
+  private String namespace;
+  private String cacheKey;
+  private OffsetDateTime createdTs;
+
+  public Long getId() {
+    return id;
+  }
+
+  public CacheInvalidationRecord setId(Long id) {
+    this.id = id;
+    return this;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public CacheInvalidationRecord setNamespace(String namespace) {
+    this.namespace = namespace;
+    return this;
+  }
+
+  public String getCacheKey() {
+    return cacheKey;
+  }
+
+  public CacheInvalidationRecord setCacheKey(String cacheKey) {
+    this.cacheKey = cacheKey;
+    return this;
+  }
+
+  public OffsetDateTime getCreatedTs() {
+    return createdTs;
+  }
+
+  public CacheInvalidationRecord setCreatedTs(OffsetDateTime createdTs) {
+    this.createdTs = createdTs;
+    return this;
+  }
+}
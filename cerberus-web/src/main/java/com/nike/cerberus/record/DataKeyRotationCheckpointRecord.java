@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import com.nike.cerberus.domain.Source;
+import java.time.OffsetDateTime;
+
+public class DataKeyRotationCheckpointRecord {
+
+  private String id;
+  private OffsetDateTime lastRotatedTs;
+  private Source dataKeySource;
+  private String dataKeyId;
+  private OffsetDateTime lastUpdatedTs;
+
+  public String getId() {
+    return id;
+  }
+
+  public DataKeyRotationCheckpointRecord setId(String id) {
+    this.id = id;
+    return this;
+  }
+
+  public OffsetDateTime getLastRotatedTs() {
+    return lastRotatedTs;
+  }
+
+  public DataKeyRotationCheckpointRecord setLastRotatedTs(OffsetDateTime lastRotatedTs) {
+    this.lastRotatedTs = lastRotatedTs;
+    return this;
+  }
+
+  public Source getDataKeySource() {
+    return dataKeySource;
+  }
+
+  public DataKeyRotationCheckpointRecord setDataKeySource(Source dataKeySource) {
+    this.dataKeySource = dataKeySource;
+    return this;
+  }
+
+  public String getDataKeyId() {
+    return dataKeyId;
+  }
+
+  public DataKeyRotationCheckpointRecord setDataKeyId(String dataKeyId) {
+    this.dataKeyId = dataKeyId;
+    return this;
+  }
+
+  public OffsetDateTime getLastUpdatedTs() {
+    return lastUpdatedTs;
+  }
+
+  public DataKeyRotationCheckpointRecord setLastUpdatedTs(OffsetDateTime lastUpdatedTs) {
+    this.lastUpdatedTs = lastUpdatedTs;
+    return this;
+  }
+}
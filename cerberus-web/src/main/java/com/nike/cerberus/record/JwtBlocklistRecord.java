@@ -23,6 +23,7 @@ public class JwtBlocklistRecord {
 
   @Getter private String id;
   @Getter private OffsetDateTime expiresTs;
+  @Getter private OffsetDateTime createdTs;
 
   public JwtBlocklistRecord setId(String id) {
     this.id = id;
@@ -33,4 +34,9 @@ public class JwtBlocklistRecord {
     this.expiresTs = expiresTs;
     return this;
   }
+
+  public JwtBlocklistRecord setCreatedTs(OffsetDateTime createdTs) {
+    this.createdTs = createdTs;
+    return this;
+  }
 }
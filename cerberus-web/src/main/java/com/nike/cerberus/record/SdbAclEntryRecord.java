@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+/**
+ * A single row of an SDB access control list, the principal name and role name are null for SDBs
+ * that have no permissions of the queried type.
+ */
+public class SdbAclEntryRecord {
+
+  private String sdbId;
+  private String sdbPath;
+  private String principalName;
+  private String roleName;
+
+  public String getSdbId() {
+    return sdbId;
+  }
+
+  public SdbAclEntryRecord setSdbId(String sdbId) {
+    this.sdbId = sdbId;
+    return this;
+  }
+
+  public String getSdbPath() {
+    return sdbPath;
+  }
+
+  public SdbAclEntryRecord setSdbPath(String sdbPath) {
+    this.sdbPath = sdbPath;
+    return this;
+  }
+
+  public String getPrincipalName() {
+    return principalName;
+  }
+
+  public SdbAclEntryRecord setPrincipalName(String principalName) {
+    this.principalName = principalName;
+    return this;
+  }
+
+  public String getRoleName() {
+    return roleName;
+  }
+
+  public SdbAclEntryRecord setRoleName(String roleName) {
+    this.roleName = roleName;
+    return this;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A row of the SDB metadata export, an SDB joined with one of its user group or IAM principal
+ * permissions. The permission type, principal name and role id are null for SDBs without any
+ * permissions.
+ */
+public class SdbMetadataRecord {
+
+  public static final String PERMISSION_TYPE_USER_GROUP = "USER_GROUP";
+
+  public static final String PERMISSION_TYPE_IAM_PRINCIPAL = "IAM_PRINCIPAL";
+
+  private String id;
+
+  private String categoryId;
+
+  private String name;
+
+  private String description;
+
+  private String path;
+
+  private String createdBy;
+
+  private String lastUpdatedBy;
+
+  private OffsetDateTime createdTs;
+
+  private OffsetDateTime lastUpdatedTs;
+
+  private String permissionType;
+
+  private String principalName;
+
+  private String roleId;
+
+  public String getId() {
+    return id;
+  }
+
+  public SdbMetadataRecord setId(String id) {
+    this.id = id;
+    return this;
+  }
+
+  public String getCategoryId() {
+    return categoryId;
+  }
+
+  public SdbMetadataRecord setCategoryId(String categoryId) {
+    this.categoryId = categoryId;
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public SdbMetadataRecord setName(String name) {
+    this.name = name;
+    return this;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public SdbMetadataRecord setDescription(String description) {
+    this.description = description;
+    return this;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public SdbMetadataRecord setPath(String path) {
+    this.path = path;
+    return this;
+  }
+
+  public String getCreatedBy() {
+    return createdBy;
+  }
+
+  public SdbMetadataRecord setCreatedBy(String createdBy) {
+    this.createdBy = createdBy;
+    return this;
+  }
+
+  public String getLastUpdatedBy() {
+    return lastUpdatedBy;
+  }
+
+  public SdbMetadataRecord setLastUpdatedBy(String lastUpdatedBy) {
+    this.lastUpdatedBy = lastUpdatedBy;
+    return this;
+  }
+
+  public OffsetDateTime getCreatedTs() {
+    return createdTs;
+  }
+
+  public SdbMetadataRecord setCreatedTs(OffsetDateTime createdTs) {
+    this.createdTs = createdTs;
+    return this;
+  }
+
+  public OffsetDateTime getLastUpdatedTs() {
+    return lastUpdatedTs;
+  }
+
+  public SdbMetadataRecord setLastUpdatedTs(OffsetDateTime lastUpdatedTs) {
+    this.lastUpdatedTs = lastUpdatedTs;
+    return this;
+  }
+
+  public String getPermissionType() {
+    return permissionType;
+  }
+
+  public SdbMetadataRecord setPermissionType(String permissionType) {
+    this.permissionType = permissionType;
+    return this;
+  }
+
+  public String getPrincipalName() {
+    return principalName;
+  }
+
+  public SdbMetadataRecord setPrincipalName(String principalName) {
+    this.principalName = principalName;
+    return this;
+  }
+
+  public String getRoleId() {
+    return roleId;
+  }
+
+  public SdbMetadataRecord setRoleId(String roleId) {
+    this.roleId = roleId;
+    return this;
+  }
+}
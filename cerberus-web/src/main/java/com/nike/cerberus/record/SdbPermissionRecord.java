@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A user group or IAM principal permission of an SDB, joined with the name of the user group or the
+ * ARN of the IAM principal, so that the permissions of many SDBs are read in one query.
+ */
+public class SdbPermissionRecord {
+
+  private String id;
+
+  private String sdboxId;
+
+  private String principalName;
+
+  private String roleId;
+
+  private String createdBy;
+
+  private String lastUpdatedBy;
+
+  private OffsetDateTime createdTs;
+
+  private OffsetDateTime lastUpdatedTs;
+
+  public String getId() {
+    return id;
+  }
+
+  public SdbPermissionRecord setId(String id) {
+    this.id = id;
+    return this;
+  }
+
+  public String getSdboxId() {
+    return sdboxId;
+  }
+
+  public SdbPermissionRecord setSdboxId(String sdboxId) {
+    this.sdboxId = sdboxId;
+    return this;
+  }
+
+  public String getPrincipalName() {
+    return principalName;
+  }
+
+  public SdbPermissionRecord setPrincipalName(String principalName) {
+    this.principalName = principalName;
+    return this;
+  }
+
+  public String getRoleId() {
+    return roleId;
+  }
+
+  public SdbPermissionRecord setRoleId(String roleId) {
+    this.roleId = roleId;
+    return this;
+  }
+
+  public String getCreatedBy() {
+    return createdBy;
+  }
+
+  public SdbPermissionRecord setCreatedBy(String createdBy) {
+    this.createdBy = createdBy;
+    return this;
+  }
+
+  public String getLastUpdatedBy() {
+    return lastUpdatedBy;
+  }
+
+  public SdbPermissionRecord setLastUpdatedBy(String lastUpdatedBy) {
+    this.lastUpdatedBy = lastUpdatedBy;
+    return this;
+  }
+
+  public OffsetDateTime getCreatedTs() {
+    return createdTs;
+  }
+
+  public SdbPermissionRecord setCreatedTs(OffsetDateTime createdTs) {
+    this.createdTs = createdTs;
+    return this;
+  }
+
+  public OffsetDateTime getLastUpdatedTs() {
+    return lastUpdatedTs;
+  }
+
+  public SdbPermissionRecord setLastUpdatedTs(OffsetDateTime lastUpdatedTs) {
+    this.lastUpdatedTs = lastUpdatedTs;
+    return this;
+  }
+}
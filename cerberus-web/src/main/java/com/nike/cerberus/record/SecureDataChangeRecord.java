@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import com.nike.cerberus.domain.SecureDataType;
+import java.time.OffsetDateTime;
+
+public class SecureDataChangeRecord {
+
+  private String sdboxId;
+  private String path;
+  private SecureDataType type;
+  private long version;
+  private boolean deleted;
+  private OffsetDateTime changedTs;
+
+  public String getSdboxId() {
+    return sdboxId;
+  }
+
+  public SecureDataChangeRecord setSdboxId(String sdboxId) {
+    this.sdboxId = sdboxId;
+    return this;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public SecureDataChangeRecord setPath(String path) {
+    this.path = path;
+    return this;
+  }
+
+  public SecureDataType getType() {
+    return type;
+  }
+
+  public SecureDataChangeRecord setType(SecureDataType type) {
+    this.type = type;
+    return this;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public SecureDataChangeRecord setVersion(long version) {
+    this.version = version;
+    return this;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  public SecureDataChangeRecord setDeleted(boolean deleted) {
+    this.deleted = deleted;
+    return this;
+  }
+
+  public OffsetDateTime getChangedTs() {
+    return changedTs;
+  }
+
+  public SecureDataChangeRecord setChangedTs(OffsetDateTime changedTs) {
+    this.changedTs = changedTs;
+    return this;
+  }
+}
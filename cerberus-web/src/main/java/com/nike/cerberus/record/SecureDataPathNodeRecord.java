@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.record;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * A direct child of a directory in the secure data path tree, the child name ends with "/" if the
+ * child is itself a directory.
+ */
+@EqualsAndHashCode
+@ToString
+public class SecureDataPathNodeRecord {
+
+  private String parentPath;
+  private String childName;
+
+  public String getParentPath() {
+    return parentPath;
+  }
+
+  public SecureDataPathNodeRecord setParentPath(String parentPath) {
+    this.parentPath = parentPath;
+    return this;
+  }
+
+  public String getChildName() {
+    return childName;
+  }
+
+  public SecureDataPathNodeRecord setChildName(String childName) {
+    this.childName = childName;
+    return this;
+  }
+}
@@ -70,6 +70,13 @@ public class SecureDataRecord {
     return encryptedBlob != null ? Arrays.copyOf(encryptedBlob, encryptedBlob.length) : null;
   }
 
+  /**
+   * @return The length of the encrypted blob, without the defensive copy made by the getter
+   */
+  public int getEncryptedBlobLength() {
+    return encryptedBlob != null ? encryptedBlob.length : 0;
+  }
+
   public SecureDataRecord setEncryptedBlob(byte[] encryptedBlob) {
     this.encryptedBlob =
         encryptedBlob != null ? Arrays.copyOf(encryptedBlob, encryptedBlob.length) : null;
@@ -21,6 +21,7 @@ import static org.springframework.transaction.annotation.Isolation.READ_UNCOMMIT
 
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.PrincipalType;
+import com.nike.cerberus.cache.AuthTokenCache;
 import com.nike.cerberus.dao.AuthTokenDao;
 import com.nike.cerberus.domain.AuthTokenAcceptType;
 import com.nike.cerberus.domain.AuthTokenInfo;
@@ -67,6 +68,8 @@ public class AuthTokenService {
   private final AuthTokenDao authTokenDao;
   private final DateTimeSupplier dateTimeSupplier;
   private final JwtService jwtService;
+  private final AuthTokenCache authTokenCache;
+  private final CacheInvalidationService cacheInvalidationService;
 
   private final JwtFeatureFlags tokenFlag;
 
@@ -78,6 +81,8 @@ public class AuthTokenService {
       AuthTokenDao authTokenDao,
       DateTimeSupplier dateTimeSupplier,
       JwtService jwtService,
+      AuthTokenCache authTokenCache,
+      CacheInvalidationService cacheInvalidationService,
       JwtFeatureFlags tokenFlag) {
 
     this.uuidSupplier = uuidSupplier;
@@ -86,6 +91,8 @@ public class AuthTokenService {
     this.authTokenDao = authTokenDao;
     this.dateTimeSupplier = dateTimeSupplier;
     this.jwtService = jwtService;
+    this.authTokenCache = authTokenCache;
+    this.cacheInvalidationService = cacheInvalidationService;
     this.tokenFlag = tokenFlag;
   }
 
@@ -208,7 +215,7 @@ public class AuthTokenService {
     if (isJwt && (acceptType != AuthTokenAcceptType.SESSION)) {
       tokenRecord = jwtService.parseAndValidateToken(token);
     } else if (acceptType != AuthTokenAcceptType.JWT) {
-      tokenRecord = authTokenDao.getAuthTokenFromHash(tokenHasher.hashToken(token));
+      tokenRecord = getAuthTokenRecord(token);
     } else {
       String tokenType = isJwt ? "JWT" : "Session";
       logger.warn(
@@ -231,6 +238,27 @@ public class AuthTokenService {
         authTokenRecord -> getCerberusAuthTokenFromRecord(token, authTokenRecord));
   }
 
+  /**
+   * Reads the record of a session token, skipping the hash and database lookup if the token has
+   * already been verified by this instance.
+   */
+  private Optional<AuthTokenRecord> getAuthTokenRecord(String token) {
+    if (!authTokenCache.isEnabled()) {
+      return authTokenDao.getAuthTokenFromHash(tokenHasher.hashToken(token));
+    }
+
+    String digest = tokenHasher.digestToken(token);
+    Optional<AuthTokenRecord> cachedRecord =
+        authTokenCache.getIfPresent(digest, OffsetDateTime.now());
+    if (cachedRecord.isPresent()) {
+      return cachedRecord;
+    }
+    Optional<AuthTokenRecord> tokenRecord =
+        authTokenDao.getAuthTokenFromHash(tokenHasher.hashToken(token));
+    tokenRecord.ifPresent(authTokenRecord -> authTokenCache.put(digest, authTokenRecord));
+    return tokenRecord;
+  }
+
   @Transactional
   public void revokeToken(CerberusPrincipal cerberusPrincipal, OffsetDateTime tokenExpires) {
     if (jwtService.isJwt(cerberusPrincipal.getToken())) {
@@ -239,6 +267,12 @@ public class AuthTokenService {
     } else {
       String hash = tokenHasher.hashToken(cerberusPrincipal.getToken());
       authTokenDao.deleteAuthTokenFromHash(hash);
+      if (authTokenCache.isEnabled()) {
+        authTokenCache.invalidate(tokenHasher.digestToken(cerberusPrincipal.getToken()));
+        // Other instances may have also verified this token
+        cacheInvalidationService.recordInvalidation(
+            AuthTokenCache.NAMESPACE, cerberusPrincipal.getTokenId());
+      }
     }
   }
 
@@ -247,6 +281,8 @@ public class AuthTokenService {
       //             = true // auto commit each batched / chunked delete TODO verify spring way
       )
   public int deleteExpiredTokens(int maxDelete, int batchSize, int batchPauseTimeInMillis) {
+    int numberOfEvictedTokens = authTokenCache.evictExpired(OffsetDateTime.now());
+    logger.debug("Evicted {} expired tokens from the auth token cache", numberOfEvictedTokens);
     return authTokenDao.deleteExpiredTokens(maxDelete, batchSize, batchPauseTimeInMillis);
   }
 }
@@ -20,6 +20,7 @@ import static com.nike.cerberus.service.AuthenticationService.SYSTEM_USER;
 
 import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import com.nike.cerberus.util.DateTimeSupplier;
 import com.nike.cerberus.util.UuidSupplier;
 import java.time.OffsetDateTime;
@@ -33,14 +34,19 @@ public class AwsIamRoleService {
   private final AwsIamRoleDao awsIamRoleDao;
   private final UuidSupplier uuidSupplier;
   private final DateTimeSupplier dateTimeSupplier;
+  private final KpiCounterService kpiCounterService;
 
   @Autowired
   public AwsIamRoleService(
-      AwsIamRoleDao awsIamRoleDao, UuidSupplier uuidSupplier, DateTimeSupplier dateTimeSupplier) {
+      AwsIamRoleDao awsIamRoleDao,
+      UuidSupplier uuidSupplier,
+      DateTimeSupplier dateTimeSupplier,
+      KpiCounterService kpiCounterService) {
 
     this.awsIamRoleDao = awsIamRoleDao;
     this.uuidSupplier = uuidSupplier;
     this.dateTimeSupplier = dateTimeSupplier;
+    this.kpiCounterService = kpiCounterService;
   }
 
   @Transactional
@@ -55,6 +61,7 @@ public class AwsIamRoleService {
     awsIamRoleRecord.setCreatedTs(dateTime);
     awsIamRoleRecord.setLastUpdatedTs(dateTime);
     awsIamRoleDao.createIamRole(awsIamRoleRecord);
+    kpiCounterService.add(Kpi.UNIQUE_IAM_ROLES, 1);
 
     return awsIamRoleRecord;
   }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+
+import com.codahale.metrics.Counter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import com.nike.cerberus.cache.AuthTokenCache;
+import com.nike.cerberus.cache.DatabaseCache;
+import com.nike.cerberus.cache.SdbSummaryCache;
+import com.nike.cerberus.dao.CacheInvalidationDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.CacheInvalidationRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the writes recorded in the CACHE_INVALIDATION_LOG table to the local MyBatis caches, so
+ * that the mapper caches can be run with long TTLs without serving stale data after a write on any
+ * instance of CMS.
+ *
+ * <p>Rows are read with a look back window rather than an id watermark, because auto increment ids
+ * can be committed out of order by concurrent transactions. Evictions are idempotent and are
+ * repeated on every poll while a row is in the window, a read that started before the write can
+ * put the old value back into the cache after the first eviction. The ACL index reads the database
+ * directly and is only refreshed the first time a row is applied.
+ */
+@Component
+public class CacheInvalidationService {
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final CacheInvalidationDao cacheInvalidationDao;
+  private final SqlSessionFactory sqlSessionFactory;
+  private final DateTimeSupplier dateTimeSupplier;
+  private final SdbAclIndexService sdbAclIndexService;
+  private final AuthTokenCache authTokenCache;
+  private final SdbSummaryCache sdbSummaryCache;
+  private final MetricsService metricsService;
+  private final boolean enabled;
+  private final int lookBackInSeconds;
+  private final int maxEntriesPerPoll;
+  private final int retentionInMinutes;
+  private final Cache<Long, Boolean> appliedInvalidationIds;
+  private final Counter overflowCounter;
+
+  @Autowired
+  public CacheInvalidationService(
+      CacheInvalidationDao cacheInvalidationDao,
+      SqlSessionFactory sqlSessionFactory,
+      DateTimeSupplier dateTimeSupplier,
+      SdbAclIndexService sdbAclIndexService,
+      AuthTokenCache authTokenCache,
+      SdbSummaryCache sdbSummaryCache,
+      MetricsService metricsService,
+      @Value("${cerberus.mybatis.cache.invalidation.enabled:false}") boolean enabled,
+      @Value("${cerberus.mybatis.cache.invalidation.lookBackInSeconds:30}") int lookBackInSeconds,
+      @Value("${cerberus.mybatis.cache.invalidation.maxEntriesPerPoll:5000}") int maxEntriesPerPoll,
+      @Value("${cerberus.mybatis.cache.invalidation.retentionInMinutes:60}")
+          int retentionInMinutes) {
+    this.cacheInvalidationDao = cacheInvalidationDao;
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.dateTimeSupplier = dateTimeSupplier;
+    this.sdbAclIndexService = sdbAclIndexService;
+    this.authTokenCache = authTokenCache;
+    this.sdbSummaryCache = sdbSummaryCache;
+    this.metricsService = metricsService;
+    this.enabled = enabled;
+    this.lookBackInSeconds = lookBackInSeconds;
+    this.maxEntriesPerPoll = maxEntriesPerPoll;
+    this.retentionInMinutes = retentionInMinutes;
+    appliedInvalidationIds =
+        newBuilder().expireAfterWrite(lookBackInSeconds * 2L, TimeUnit.SECONDS).build();
+    overflowCounter = metricsService.getOrCreateCounter("cms.cache.invalidation.overflow", null);
+  }
+
+  /**
+   * Evicts the entries referenced by the invalidation log rows in the look back window. If more rows
+   * were written in the look back window than can be read in a single poll every tracked namespace
+   * is cleared.
+   *
+   * @return The number of invalidation log rows that were applied for the first time
+   */
+  public int applyPendingInvalidations() {
+    OffsetDateTime now = dateTimeSupplier.get();
+    OffsetDateTime since = now.minusSeconds(lookBackInSeconds);
+    List<CacheInvalidationRecord> records =
+        cacheInvalidationDao.getInvalidationsSince(since, maxEntriesPerPoll);
+
+    if (records.size() >= maxEntriesPerPoll) {
+      log.warn(
+          "Found {} or more cache invalidations since {}, clearing all tracked caches",
+          maxEntriesPerPoll,
+          since);
+      overflowCounter.inc();
+      Set<String> namespaces = new HashSet<>();
+      records.forEach(record -> namespaces.add(record.getNamespace()));
+      namespaces.forEach(
+          namespace -> {
+            getDatabaseCache(namespace).ifPresent(DatabaseCache::evictAll);
+            sdbAclIndexService.applyInvalidation(namespace, null);
+          });
+      // Rows past the poll limit were not read, so any of them may have been a revoked token
+      authTokenCache.invalidateAll();
+      sdbSummaryCache.invalidateAll();
+      records.forEach(record -> appliedInvalidationIds.put(record.getId(), Boolean.TRUE));
+      sdbAclIndexService.markCurrentAsOf(now);
+      return records.size();
+    }
+
+    int applied = 0;
+    for (CacheInvalidationRecord record : records) {
+      boolean firstApplication = appliedInvalidationIds.getIfPresent(record.getId()) == null;
+      applyInvalidation(record, firstApplication);
+      if (firstApplication) {
+        appliedInvalidationIds.put(record.getId(), Boolean.TRUE);
+        applied++;
+      }
+    }
+    sdbAclIndexService.markCurrentAsOf(now);
+    return applied;
+  }
+
+  /**
+   * @param record The invalidation log row to apply
+   * @param firstApplication False if the row was applied by an earlier poll, in which case only the
+   *     cache evictions are repeated
+   */
+  protected void applyInvalidation(CacheInvalidationRecord record, boolean firstApplication) {
+    String namespace = record.getNamespace();
+    if (AuthTokenCache.NAMESPACE.equals(namespace)) {
+      authTokenCache.invalidateTokenId(record.getCacheKey());
+      return;
+    }
+    if (SdbSummaryCache.NAMESPACE.equals(namespace)) {
+      applySdbSummaryInvalidation(record.getCacheKey());
+      return;
+    }
+    if (firstApplication) {
+      sdbAclIndexService.applyInvalidation(namespace, record.getCacheKey());
+    }
+
+    Optional<DatabaseCache> databaseCache = getDatabaseCache(namespace);
+    if (databaseCache.isEmpty()) {
+      if (firstApplication) {
+        log.warn("No database cache registered for namespace: {}", namespace);
+      }
+      return;
+    }
+
+    if (record.getCacheKey() == null) {
+      databaseCache.get().evictAll();
+    } else {
+      databaseCache.get().evictEntriesReferencing(record.getCacheKey());
+    }
+    if (firstApplication) {
+      metricsService
+          .getOrCreateCounter(
+              "cms.cache.invalidation.applied", ImmutableMap.of("namespace", namespace))
+          .inc();
+    }
+  }
+
+  /**
+   * The SDB summary cache is invalidated by either a grantee, after a grant or revoke, or an SDB
+   * id, after a delete. The log does not say which a key is, so it is evicted as both, an SDB id
+   * never matches a grantee or the other way around.
+   */
+  private void applySdbSummaryInvalidation(String cacheKey) {
+    if (cacheKey == null) {
+      sdbSummaryCache.invalidateAll();
+    } else {
+      sdbSummaryCache.invalidateGrantee(cacheKey);
+      sdbSummaryCache.invalidateSdb(cacheKey);
+    }
+  }
+
+  /**
+   * Records a write that is not made through a cached mapper, so that every instance of CMS evicts
+   * its cached copy, ex: a revoked auth token. Does nothing if cache invalidation is disabled.
+   *
+   * @param namespace The namespace of the cache to invalidate
+   * @param cacheKey The key to evict from that cache
+   */
+  public void recordInvalidation(String namespace, String cacheKey) {
+    if (!enabled) {
+      return;
+    }
+    cacheInvalidationDao.appendInvalidation(
+        new CacheInvalidationRecord()
+            .setNamespace(namespace)
+            .setCacheKey(cacheKey)
+            .setCreatedTs(dateTimeSupplier.get()));
+  }
+
+  protected Optional<DatabaseCache> getDatabaseCache(String namespace) {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    if (!configuration.hasCache(namespace)) {
+      return Optional.empty();
+    }
+    return Optional.of(configuration.getCache(namespace))
+        .filter(DatabaseCache.class::isInstance)
+        .map(DatabaseCache.class::cast);
+  }
+
+  /**
+   * Deletes the invalidation log rows that are older than the retention period, every instance will
+   * have applied them long before then.
+   *
+   * @return The number of deleted rows
+   */
+  public int deleteExpiredInvalidations() {
+    OffsetDateTime expiredTs = dateTimeSupplier.get().minusMinutes(retentionInMinutes);
+    return cacheInvalidationDao.deleteInvalidationsOlderThan(expiredTs);
+  }
+}
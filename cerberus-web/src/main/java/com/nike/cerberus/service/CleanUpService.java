@@ -21,6 +21,7 @@ import static com.nike.cerberus.service.KmsService.SOONEST_A_KMS_KEY_CAN_BE_DELE
 import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.record.AwsIamRoleKmsKeyRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import com.nike.cerberus.util.DateTimeSupplier;
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -43,13 +44,19 @@ public class CleanUpService {
 
   private final DateTimeSupplier dateTimeSupplier;
 
+  private final KpiCounterService kpiCounterService;
+
   @Autowired
   public CleanUpService(
-      KmsService kmsService, AwsIamRoleDao awsIamRoleDao, DateTimeSupplier dateTimeSupplier) {
+      KmsService kmsService,
+      AwsIamRoleDao awsIamRoleDao,
+      DateTimeSupplier dateTimeSupplier,
+      KpiCounterService kpiCounterService) {
 
     this.kmsService = kmsService;
     this.awsIamRoleDao = awsIamRoleDao;
     this.dateTimeSupplier = dateTimeSupplier;
+    this.kpiCounterService = kpiCounterService;
   }
 
   /**
@@ -122,6 +129,7 @@ public class CleanUpService {
                 awsIamRoleRecord.getAwsIamRoleArn(),
                 awsIamRoleRecord.getLastUpdatedTs());
             awsIamRoleDao.deleteIamRoleById(awsIamRoleRecord.getId());
+            kpiCounterService.add(Kpi.UNIQUE_IAM_ROLES, -1);
           } catch (Exception e) {
             logger.error(
                 "There was a problem deleting orphaned IAM role with ARN: {}",
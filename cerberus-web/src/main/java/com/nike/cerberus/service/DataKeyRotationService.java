@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.retry.RetryUtils;
+import com.codahale.metrics.Counter;
+import com.google.common.util.concurrent.RateLimiter;
+import com.nike.cerberus.dao.DataKeyRotationCheckpointDao;
+import com.nike.cerberus.dao.SecureDataDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.DataKeyRotationCheckpointRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rotates expired data keys by re-encrypting the secure data and secure data versions that they
+ * protect, oldest first.
+ *
+ * <p>Data keys are re-encrypted by a bounded pool of workers, one page at a time. The workers share
+ * a rate limit that adapts to KMS, it grows while re-encryption is fast and backs off when it slows
+ * down or KMS throttles. After each page the position of the page is saved as a checkpoint, so that
+ * a run that is interrupted or handed off to another instance resumes after it. Data keys that fail
+ * to rotate are passed over until the rotation reaches the newest expired data key and wraps back
+ * around to the start.
+ */
+@Component
+public class DataKeyRotationService {
+
+  static final String CHECKPOINT_ID = "dataKeyRotation";
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final SecureDataService secureDataService;
+  private final SecureDataDao secureDataDao;
+  private final DataKeyRotationCheckpointDao checkpointDao;
+  private final DateTimeSupplier dateTimeSupplier;
+  private final int concurrency;
+  private final int pageSize;
+  private final double maxRotationsPerSecond;
+  private final Duration targetLatency;
+  private final Counter throttledCounter;
+
+  private volatile double throughputPerSecond = 0;
+  private volatile long backlog = 0;
+
+  @Autowired
+  public DataKeyRotationService(
+      SecureDataService secureDataService,
+      SecureDataDao secureDataDao,
+      DataKeyRotationCheckpointDao checkpointDao,
+      DateTimeSupplier dateTimeSupplier,
+      MetricsService metricsService,
+      @Value("${cerberus.jobs.dataKeyRotationJob.concurrency:4}") int concurrency,
+      @Value("${cerberus.jobs.dataKeyRotationJob.pageSize:100}") int pageSize,
+      @Value("${cerberus.jobs.dataKeyRotationJob.maxRotationsPerSecond:20}")
+          double maxRotationsPerSecond,
+      @Value("${cerberus.jobs.dataKeyRotationJob.targetLatencyInMillis:1000}")
+          long targetLatencyInMillis) {
+    this.secureDataService = secureDataService;
+    this.secureDataDao = secureDataDao;
+    this.checkpointDao = checkpointDao;
+    this.dateTimeSupplier = dateTimeSupplier;
+    this.concurrency = concurrency;
+    this.pageSize = pageSize;
+    this.maxRotationsPerSecond = maxRotationsPerSecond;
+    this.targetLatency = Duration.ofMillis(targetLatencyInMillis);
+
+    throttledCounter =
+        metricsService.getOrCreateCounter("cms.encryption.reencrypt.throttled", null);
+    metricsService.getOrCreateCallbackGauge(
+        "cms.encryption.reencrypt.throughputPerSecond", () -> throughputPerSecond, null);
+    metricsService.getOrCreateCallbackGauge(
+        "cms.encryption.reencrypt.backlog", () -> backlog, null);
+    metricsService.getOrCreateCallbackGauge(
+        "cms.encryption.reencrypt.etaInSeconds",
+        () -> throughputPerSecond > 0 ? (long) (backlog / throughputPerSecond) : -1,
+        null);
+  }
+
+  /**
+   * Rotates the oldest expired data keys, resuming after the last checkpoint.
+   *
+   * @param maxNumberOfKeys Max number of data keys to attempt to rotate
+   * @param initialPauseTimeInMillis The pause between rotations that the rate limit starts at, it
+   *     is adjusted from there based on how KMS responds
+   * @param rotationIntervalInDays Data keys generated older than X days will be considered for key
+   *     rotation
+   * @param maxRunTime How long the run may take, no new rotations are started after this
+   * @param lockHeld False once the job lock has been lost, no new rotations are started and the
+   *     checkpoint is not moved after that, since another instance may be rotating by then
+   * @return The number of data keys that were rotated
+   */
+  public int rotateDataKeys(
+      int maxNumberOfKeys,
+      int initialPauseTimeInMillis,
+      int rotationIntervalInDays,
+      Duration maxRunTime,
+      BooleanSupplier lockHeld) {
+    OffsetDateTime startTs = dateTimeSupplier.get();
+    OffsetDateTime expiredTs = startTs.minusDays(rotationIntervalInDays);
+    long startNanos = System.nanoTime();
+    long deadlineNanos = startNanos + maxRunTime.toNanos();
+    backlog = secureDataDao.countDataKeysOlderThan(expiredTs);
+
+    AdaptivePacer pacer =
+        new AdaptivePacer(
+            1000.0 / Math.max(1, initialPauseTimeInMillis), maxRotationsPerSecond, targetLatency);
+    DataKeyInfo after = getCheckpoint().orElse(null);
+    boolean wrapped = after == null;
+    int attempted = 0;
+    int rotated = 0;
+
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      while (attempted < maxNumberOfKeys
+          && System.nanoTime() < deadlineNanos
+          && lockHeld.getAsBoolean()) {
+        List<DataKeyInfo> page =
+            secureDataDao.getOldestDataKeyInfo(
+                expiredTs, after, Math.min(pageSize, maxNumberOfKeys - attempted));
+        if (page.isEmpty()) {
+          if (wrapped) {
+            break;
+          }
+          // Everything after the checkpoint is rotated, go back for the data keys that failed
+          wrapped = true;
+          after = null;
+          checkpointDao.deleteCheckpoint(CHECKPOINT_ID);
+          continue;
+        }
+
+        List<Future<Outcome>> outcomes = new ArrayList<>(page.size());
+        for (DataKeyInfo dataKeyInfo : page) {
+          outcomes.add(executor.submit(() -> rotate(dataKeyInfo, pacer, deadlineNanos, lockHeld)));
+        }
+        DataKeyInfo lastFinished = null;
+        boolean skipped = false;
+        for (int i = 0; i < page.size(); i++) {
+          Outcome outcome = outcomes.get(i).get();
+          if (outcome == Outcome.SKIPPED) {
+            // Ran out of time or lost the lock, the checkpoint must not move past data keys that
+            // were not attempted
+            skipped = true;
+            continue;
+          }
+          attempted++;
+          if (outcome == Outcome.ROTATED) {
+            rotated++;
+          }
+          if (!skipped) {
+            lastFinished = page.get(i);
+          }
+        }
+        if (!lockHeld.getAsBoolean()) {
+          log.warn("The data key rotation lock was lost, stopping without moving the checkpoint");
+          break;
+        }
+        if (lastFinished != null) {
+          after = lastFinished;
+          saveCheckpoint(after);
+        }
+        if (skipped) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      log.warn("Data key rotation was interrupted, it will resume from the last checkpoint");
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Unexpected error while rotating data keys", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    double elapsedSeconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    throughputPerSecond = rotated / elapsedSeconds;
+    backlog = Math.max(0, backlog - rotated);
+    log.info(
+        "Rotated {} of {} attempted data keys in {} seconds, {} per second, "
+            + "final rate limit: {} per second, remaining backlog: {}",
+        rotated,
+        attempted,
+        (long) elapsedSeconds,
+        String.format("%.2f", throughputPerSecond),
+        String.format("%.2f", pacer.getRate()),
+        backlog);
+    return rotated;
+  }
+
+  private Outcome rotate(
+      DataKeyInfo dataKeyInfo, AdaptivePacer pacer, long deadlineNanos, BooleanSupplier lockHeld) {
+    // Waits for the rate limit no longer than the time that is left, a slow rate limit must not
+    // keep the workers, and the job lock, past the deadline
+    long remainingNanos = deadlineNanos - System.nanoTime();
+    if (remainingNanos <= 0
+        || Thread.currentThread().isInterrupted()
+        || !pacer.tryAcquire(remainingNanos)
+        || !lockHeld.getAsBoolean()) {
+      return Outcome.SKIPPED;
+    }
+    long startNanos = System.nanoTime();
+    try {
+      secureDataService.reencryptDataKey(dataKeyInfo);
+      pacer.onSuccess(Duration.ofNanos(System.nanoTime() - startNanos));
+      return Outcome.ROTATED;
+    } catch (RuntimeException e) {
+      if (isThrottlingException(e)) {
+        throttledCounter.inc();
+        pacer.onThrottled();
+      } else {
+        log.error("Failed to rotate data key id: {}", dataKeyInfo.getId(), e);
+      }
+      return Outcome.FAILED;
+    }
+  }
+
+  private Optional<DataKeyInfo> getCheckpoint() {
+    return checkpointDao
+        .getCheckpoint(CHECKPOINT_ID)
+        .map(
+            checkpoint ->
+                new DataKeyInfo()
+                    .setId(checkpoint.getDataKeyId())
+                    .setSource(checkpoint.getDataKeySource())
+                    .setLastRotatedTs(checkpoint.getLastRotatedTs()));
+  }
+
+  private void saveCheckpoint(DataKeyInfo after) {
+    checkpointDao.saveCheckpoint(
+        new DataKeyRotationCheckpointRecord()
+            .setId(CHECKPOINT_ID)
+            .setDataKeySource(after.getSource())
+            .setDataKeyId(after.getId())
+            .setLastRotatedTs(after.getLastRotatedTs())
+            .setLastUpdatedTs(dateTimeSupplier.get()));
+  }
+
+  /** KMS errors are usually wrapped by the encryption SDK, so the whole cause chain is checked. */
+  static boolean isThrottlingException(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SdkBaseException
+          && RetryUtils.isThrottlingException((SdkBaseException) cause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private enum Outcome {
+    ROTATED,
+    FAILED,
+    SKIPPED
+  }
+
+  /**
+   * An additive increase, multiplicative decrease rate limit. The rate grows by about one rotation
+   * per second every second while rotations are faster than the target latency, shrinks a little
+   * when they are slower and is halved when KMS throttles.
+   */
+  static class AdaptivePacer {
+
+    static final double MIN_RATE = 0.1;
+
+    private final RateLimiter rateLimiter;
+    private final double maxRate;
+    private final Duration targetLatency;
+    private double rate;
+
+    AdaptivePacer(double initialRate, double maxRate, Duration targetLatency) {
+      this.maxRate = Math.max(MIN_RATE, maxRate);
+      this.targetLatency = targetLatency;
+      rate = clamp(initialRate);
+      rateLimiter = RateLimiter.create(rate);
+    }
+
+    /** @return False straight away if a rotation would not be allowed within the timeout */
+    boolean tryAcquire(long timeoutInNanos) {
+      return rateLimiter.tryAcquire(1, timeoutInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    synchronized void onSuccess(Duration latency) {
+      setRate(latency.compareTo(targetLatency) > 0 ? rate * 0.9 : rate + 1 / rate);
+    }
+
+    synchronized void onThrottled() {
+      setRate(rate / 2);
+    }
+
+    synchronized double getRate() {
+      return rate;
+    }
+
+    private void setRate(double newRate) {
+      rate = clamp(newRate);
+      rateLimiter.setRate(rate);
+    }
+
+    private double clamp(double value) {
+      return Math.min(maxRate, Math.max(MIN_RATE, value));
+    }
+  }
+}
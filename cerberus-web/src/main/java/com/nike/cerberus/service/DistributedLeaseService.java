@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nike.cerberus.dao.LeaseDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.util.UuidSupplier;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Acquires named locks as leases, an alternative to the DistributedLockService that does not hold a
+ * thread and a connection from the pool for as long as the lock is held.
+ *
+ * <p>A lease is a row with its owner, a fencing token and an expiry. The leases held by this
+ * instance are renewed by a single heartbeat thread, and acquiring, renewing and releasing a lease
+ * are one statement each, so no connection is held in between. A lease that is not renewed before
+ * it expires is lost and can be acquired by another instance, which gets a higher fencing token.
+ * Long work should check that its lease is still held between steps, and the fencing token can be
+ * stored with writes that must not be made by a previous holder.
+ */
+@Component
+public class DistributedLeaseService {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private static final String LEASE_ACQUIRED = "cms.lease-acquired";
+  private static final String LEASE_CONTENTION = "cms.lease-contention";
+  private static final String LEASE_RENEWED = "cms.lease-renewed";
+  private static final String LEASE_RENEW_FAILURE = "cms.lease-renew-failure";
+  private static final String LEASE_LOST = "cms.lease-lost";
+  private static final String LEASE_RELEASED = "cms.lease-released";
+  private static final String LEASE_RENEW_LATENCY = "cms.lease-renew-latency-in-millis";
+  private static final String LEASES_HELD = "cms.leases-held";
+
+  private final LeaseDao leaseDao;
+  private final UuidSupplier uuidSupplier;
+  private final MetricsService metricsService;
+  private final int durationInSeconds;
+  private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService heartbeat;
+
+  private volatile long renewLatencyInMillis = 0;
+
+  @Autowired
+  public DistributedLeaseService(
+      LeaseDao leaseDao,
+      UuidSupplier uuidSupplier,
+      MetricsService metricsService,
+      @Value("${cerberus.lease.durationInSeconds:60}") int durationInSeconds,
+      @Value("${cerberus.lease.renewIntervalInSeconds:15}") int renewIntervalInSeconds) {
+    if (renewIntervalInSeconds <= 0 || renewIntervalInSeconds * 2 > durationInSeconds) {
+      throw new IllegalArgumentException(
+          "The lease renew interval must be positive and at most half of the lease duration");
+    }
+    this.leaseDao = leaseDao;
+    this.uuidSupplier = uuidSupplier;
+    this.metricsService = metricsService;
+    this.durationInSeconds = durationInSeconds;
+
+    metricsService.getOrCreateCallbackGauge(
+        LEASE_RENEW_LATENCY, () -> renewLatencyInMillis, ImmutableMap.of());
+    metricsService.getOrCreateCallbackGauge(LEASES_HELD, leases::size, ImmutableMap.of());
+    heartbeat =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("distributed-lease-heartbeat-%d")
+                .setDaemon(true)
+                .build());
+    heartbeat.scheduleWithFixedDelay(
+        this::renewLeases, renewIntervalInSeconds, renewIntervalInSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Acquires a named lease if no other owner holds it.
+   *
+   * @param name The named lease that should try to be acquired
+   * @return The lease if it was acquired, it is renewed until it is released
+   */
+  public Optional<Lease> tryAcquire(String name) {
+    String owner = uuidSupplier.get();
+    long startNanos = System.nanoTime();
+    Optional<Long> fencingToken = leaseDao.tryAcquireLease(name, owner, durationInSeconds);
+    if (fencingToken.isEmpty()) {
+      log.debug("Lease: {} is held by another owner", name);
+      metricsService
+          .getOrCreateCounter(LEASE_CONTENTION, ImmutableMap.of("lease-name", name))
+          .inc();
+      return Optional.empty();
+    }
+
+    Lease lease = new Lease(name, owner, fencingToken.get(), startNanos + getDurationInNanos());
+    leases.put(name, lease);
+    log.debug("Acquired lease: {} with fencing token: {}", name, lease.getFencingToken());
+    metricsService.getOrCreateCounter(LEASE_ACQUIRED, ImmutableMap.of("lease-name", name)).inc();
+    return Optional.of(lease);
+  }
+
+  /**
+   * Releases a lease so that it can be acquired straight away, instead of once it expires.
+   *
+   * @return true if the lease was released, false if it had already been lost
+   */
+  public boolean release(Lease lease) {
+    leases.remove(lease.getName(), lease);
+    lease.held = false;
+    boolean released = leaseDao.releaseLease(lease.getName(), lease.getOwner());
+    if (released) {
+      metricsService
+          .getOrCreateCounter(LEASE_RELEASED, ImmutableMap.of("lease-name", lease.getName()))
+          .inc();
+    }
+    return released;
+  }
+
+  /**
+   * Renews every lease held by this instance. A lease that could not be renewed is kept until it
+   * expires, so that the next heartbeat can try again after a failure to reach the database.
+   */
+  void renewLeases() {
+    long maxLatencyInNanos = 0;
+    for (Lease lease : leases.values()) {
+      long startNanos = System.nanoTime();
+      try {
+        if (leaseDao.renewLease(lease.getName(), lease.getOwner(), durationInSeconds)) {
+          lease.validUntilNanos = startNanos + getDurationInNanos();
+          metricsService
+              .getOrCreateCounter(LEASE_RENEWED, ImmutableMap.of("lease-name", lease.getName()))
+              .inc();
+        } else {
+          lose(lease);
+        }
+      } catch (Exception e) {
+        log.warn("Failed to renew lease: {}", lease.getName(), e);
+        metricsService
+            .getOrCreateCounter(LEASE_RENEW_FAILURE, ImmutableMap.of("lease-name", lease.getName()))
+            .inc();
+        if (!lease.isHeld()) {
+          lose(lease);
+        }
+      }
+      maxLatencyInNanos = Math.max(maxLatencyInNanos, System.nanoTime() - startNanos);
+    }
+    renewLatencyInMillis = TimeUnit.NANOSECONDS.toMillis(maxLatencyInNanos);
+  }
+
+  private void lose(Lease lease) {
+    lease.held = false;
+    leases.remove(lease.getName(), lease);
+    log.error("Lost lease: {} with fencing token: {}", lease.getName(), lease.getFencingToken());
+    metricsService
+        .getOrCreateCounter(LEASE_LOST, ImmutableMap.of("lease-name", lease.getName()))
+        .inc();
+  }
+
+  private long getDurationInNanos() {
+    return TimeUnit.SECONDS.toNanos(durationInSeconds);
+  }
+
+  /** Stops renewing the leases and releases them, so that other instances can acquire them. */
+  @PreDestroy
+  public void shutdown() {
+    heartbeat.shutdownNow();
+    leases
+        .values()
+        .forEach(
+            lease -> {
+              try {
+                release(lease);
+              } catch (Exception e) {
+                log.error("Failed to release lease: {}, it will expire", lease.getName(), e);
+              }
+            });
+  }
+
+  /** A lease held by this instance. */
+  public static class Lease {
+    private final String name;
+    private final String owner;
+    private final long fencingToken;
+    private volatile long validUntilNanos;
+    private volatile boolean held = true;
+
+    Lease(String name, String owner, long fencingToken, long validUntilNanos) {
+      this.name = name;
+      this.owner = owner;
+      this.fencingToken = fencingToken;
+      this.validUntilNanos = validUntilNanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    String getOwner() {
+      return owner;
+    }
+
+    /** @return A number that is higher every time the lease is acquired */
+    public long getFencingToken() {
+      return fencingToken;
+    }
+
+    /**
+     * @return True until the lease is released or lost, it is considered lost once the last
+     *     successful renewal would have expired, even if the heartbeat has not noticed yet
+     */
+    public boolean isHeld() {
+      return held && System.nanoTime() - validUntilNanos < 0;
+    }
+  }
+}
@@ -20,8 +20,8 @@ import com.google.common.collect.ImmutableMap;
 import com.nike.cerberus.mapper.LockMapper;
 import com.nike.cerberus.metric.MetricsService;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -51,7 +51,7 @@ public class DistributedLockService {
   private final SqlSessionFactory sqlSessionFactory;
   private final MetricsService metricsService;
 
-  private Map<String, Lock> locks = new HashMap<>();
+  private final Map<String, Lock> locks = new ConcurrentHashMap<>();
 
   @Autowired
   public DistributedLockService(
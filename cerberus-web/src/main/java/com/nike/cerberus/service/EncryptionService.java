@@ -17,6 +17,7 @@
 package com.nike.cerberus.service;
 
 import com.amazonaws.encryptionsdk.AwsCrypto;
+import com.amazonaws.encryptionsdk.CryptoInputStream;
 import com.amazonaws.encryptionsdk.CryptoMaterialsManager;
 import com.amazonaws.encryptionsdk.DefaultCryptoMaterialsManager;
 import com.amazonaws.encryptionsdk.MasterKeyProvider;
@@ -29,6 +30,10 @@ import com.google.common.collect.Lists;
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.error.InvalidEncryptionContextApiError;
 import com.nike.cerberus.util.CiphertextUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
@@ -59,6 +64,7 @@ public class EncryptionService {
   private final Region currentRegion;
   private final CryptoMaterialsManager decryptCryptoMaterialsManager;
   private final CryptoMaterialsManager encryptCryptoMaterialsManager;
+  private final long verifiedStreamMaxSizeInBytes;
 
   @Autowired
   public EncryptionService(
@@ -68,13 +74,16 @@ public class EncryptionService {
           CryptoMaterialsManager decryptCryptoMaterialsManager,
       @Qualifier("encryptCryptoMaterialsManager")
           CryptoMaterialsManager encryptCryptoMaterialsManager,
-      Region currentRegion) {
+      Region currentRegion,
+      @Value("${cerberus.encryption.verifiedStream.maxSizeInBytes:8388608}")
+          long verifiedStreamMaxSizeInBytes) {
     this.currentRegion = currentRegion;
     this.awsCrypto = awsCrypto;
     log.info("CMK ARNs " + cmkArns);
     this.cmkArnList = splitArns(cmkArns);
     this.decryptCryptoMaterialsManager = decryptCryptoMaterialsManager;
     this.encryptCryptoMaterialsManager = encryptCryptoMaterialsManager;
+    this.verifiedStreamMaxSizeInBytes = verifiedStreamMaxSizeInBytes;
   }
 
   /**
@@ -100,6 +109,21 @@ public class EncryptionService {
         .getResult();
   }
 
+  /**
+   * Encrypt the plaintext as it is read.
+   *
+   * <p>The ciphertext is produced one frame at a time as the returned stream is read, so large
+   * payloads such as secure files are never held in memory as a whole. The ciphertext is the same
+   * 'AWS Encryption SDK Message Format' that {@link #encrypt(byte[], String)} produces.
+   *
+   * @param plaintext the secure file contents to encrypt
+   * @param sdbPath the SDB path where the file is being stored (added to EncryptionContext)
+   */
+  public InputStream encrypt(InputStream plaintext, String sdbPath) {
+    return awsCrypto.createEncryptingStream(
+        encryptCryptoMaterialsManager, plaintext, buildEncryptionContext(sdbPath));
+  }
+
   /**
    * Decrypt the encryptedPayload.
    *
@@ -142,6 +166,50 @@ public class EncryptionService {
     }
   }
 
+  /**
+   * Decrypt the encryptedPayload as the returned stream is read.
+   *
+   * <p>Ciphertext no larger than cerberus.encryption.verifiedStream.maxSizeInBytes is decrypted and
+   * verified as a whole before this returns, so any tampering with it is thrown from here.
+   *
+   * <p>Larger ciphertext is decrypted one frame at a time as the stream is read. The encryption
+   * context is validated and the data key is decrypted before this returns, and each frame is only
+   * released once its authentication tag has been verified. The signature of the message however
+   * is only verified once the last frame has been read, so if it fails the stream throws after
+   * most of the plaintext has been released. When the stream is being sent as a response, the
+   * status and part of the body have already been sent by then, and the client sees the connection
+   * closed before Content-Length bytes have arrived.
+   *
+   * @param encryptedPayload the ciphertext in the 'AWS Encryption SDK Message Format'
+   * @param sdbPath the current SDB path
+   */
+  public InputStream decryptToStream(byte[] encryptedPayload, String sdbPath) {
+    ParsedCiphertext parsedCiphertext = getParsedCipherText(encryptedPayload);
+    if (encryptedPayload.length <= verifiedStreamMaxSizeInBytes) {
+      try {
+        return new ByteArrayInputStream(decryptToBytes(parsedCiphertext, sdbPath));
+      } catch (RuntimeException e) {
+        log.error("Decrypt operation failed " + CiphertextUtils.toJson(parsedCiphertext), e);
+        throw e;
+      }
+    }
+    validateEncryptionContext(parsedCiphertext, sdbPath);
+    List<String> cmkArns = CiphertextUtils.getCustomerMasterKeyArns(parsedCiphertext);
+    CryptoInputStream<?> plaintext =
+        awsCrypto.createDecryptingStream(
+            getCryptoMaterialsManager(cmkArns, currentRegion),
+            new ByteArrayInputStream(encryptedPayload));
+    try {
+      plaintext.getCryptoResult();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      log.error("Decrypt operation failed " + CiphertextUtils.toJson(parsedCiphertext), e);
+      throw e;
+    }
+    return plaintext;
+  }
+
   /**
    * Decrypt the encryptedPayload.
    *
@@ -18,16 +18,21 @@ package com.nike.cerberus.service;
 
 import com.google.common.collect.Sets;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.domain.IamPrincipalPermission;
 import com.nike.cerberus.domain.Role;
 import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.record.AwsIamRolePermissionRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import com.nike.cerberus.util.CustomApiError;
 import com.nike.cerberus.util.UuidSupplier;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,14 +49,26 @@ public class IamPrincipalPermissionService {
 
   private final AwsIamRoleDao awsIamRoleDao;
 
+  private final SdbSummaryCache sdbSummaryCache;
+
+  private final CacheInvalidationService cacheInvalidationService;
+
+  private final KpiCounterService kpiCounterService;
+
   @Autowired
   public IamPrincipalPermissionService(
       final UuidSupplier uuidSupplier,
       final RoleService roleService,
-      final AwsIamRoleDao awsIamRoleDao) {
+      final AwsIamRoleDao awsIamRoleDao,
+      final SdbSummaryCache sdbSummaryCache,
+      final CacheInvalidationService cacheInvalidationService,
+      final KpiCounterService kpiCounterService) {
     this.uuidSupplier = uuidSupplier;
     this.roleService = roleService;
     this.awsIamRoleDao = awsIamRoleDao;
+    this.sdbSummaryCache = sdbSummaryCache;
+    this.cacheInvalidationService = cacheInvalidationService;
+    this.kpiCounterService = kpiCounterService;
   }
 
   /**
@@ -111,6 +128,7 @@ public class IamPrincipalPermissionService {
       awsIamRoleRecord.setCreatedTs(dateTime);
       awsIamRoleRecord.setLastUpdatedTs(dateTime);
       awsIamRoleDao.createIamRole(awsIamRoleRecord);
+      kpiCounterService.add(Kpi.UNIQUE_IAM_ROLES, 1);
     }
 
     AwsIamRolePermissionRecord permissionRecord = new AwsIamRolePermissionRecord();
@@ -123,6 +141,7 @@ public class IamPrincipalPermissionService {
     permissionRecord.setCreatedTs(dateTime);
     permissionRecord.setLastUpdatedTs(dateTime);
     awsIamRoleDao.createIamRolePermission(permissionRecord);
+    invalidateSdbSummaries(iamPrincipalPermission.getIamPrincipalArn());
   }
 
   /**
@@ -213,6 +232,7 @@ public class IamPrincipalPermissionService {
     }
 
     awsIamRoleDao.deleteIamRolePermission(safeDepositBoxId, iamRole.get().getId());
+    invalidateSdbSummaries(iamPrincipalPermission.getIamPrincipalArn());
   }
 
   public Set<IamPrincipalPermission> getIamPrincipalPermissions(final String safeDepositBoxId) {
@@ -241,8 +261,46 @@ public class IamPrincipalPermissionService {
     return iamPrincipalPermissionSet;
   }
 
+  /**
+   * Reads the IAM principal permissions of many SDBs at once, ex: for a page of SDBs, in one query
+   * instead of a few queries per SDB.
+   *
+   * @param safeDepositBoxIds The ids of the SDBs
+   * @return The IAM principal permissions by SDB id, SDBs without any are left out
+   */
+  public Map<String, Set<IamPrincipalPermission>> getIamPrincipalPermissionsBySdbIds(
+      final Collection<String> safeDepositBoxIds) {
+    final Map<String, Set<IamPrincipalPermission>> permissionsBySdbId = new HashMap<>();
+    awsIamRoleDao
+        .getIamRolePermissionsBySdbIds(safeDepositBoxIds)
+        .forEach(
+            r -> {
+              final IamPrincipalPermission permission = new IamPrincipalPermission();
+              permission.setId(r.getId());
+              permission.setIamPrincipalArn(r.getPrincipalName());
+              permission.setRoleId(r.getRoleId());
+              permission.setCreatedBy(r.getCreatedBy());
+              permission.setLastUpdatedBy(r.getLastUpdatedBy());
+              permission.setCreatedTs(r.getCreatedTs());
+              permission.setLastUpdatedTs(r.getLastUpdatedTs());
+              permissionsBySdbId
+                  .computeIfAbsent(r.getSdboxId(), sdbId -> Sets.newHashSet())
+                  .add(permission);
+            });
+    return permissionsBySdbId;
+  }
+
   @Transactional
   public void deleteIamPrincipalPermissions(final String safeDepositBoxId) {
     awsIamRoleDao.deleteIamRolePermissions(safeDepositBoxId);
   }
+
+  /** Evicts the cached SDB lists of the principals that the grantee grants access to. */
+  private void invalidateSdbSummaries(String grantee) {
+    if (sdbSummaryCache.isEnabled()) {
+      sdbSummaryCache.invalidateGrantee(grantee);
+      // Other instances may have also cached the SDB lists
+      cacheInvalidationService.recordInvalidation(SdbSummaryCache.NAMESPACE, grantee);
+    }
+  }
 }
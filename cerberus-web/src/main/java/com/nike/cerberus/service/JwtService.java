@@ -19,18 +19,23 @@ package com.nike.cerberus.service;
 import static io.jsonwebtoken.JwtParser.SEPARATOR_CHAR;
 import static org.springframework.transaction.annotation.Isolation.READ_UNCOMMITTED;
 
+import com.nike.cerberus.cache.JwtClaimsCache;
 import com.nike.cerberus.dao.JwtBlocklistDao;
 import com.nike.cerberus.error.AuthTokenTooLongException;
 import com.nike.cerberus.jwt.CerberusJwtClaims;
 import com.nike.cerberus.jwt.CerberusJwtKeySpec;
 import com.nike.cerberus.jwt.CerberusSigningKeyResolver;
+import com.nike.cerberus.jwt.JwtBlocklist;
 import com.nike.cerberus.record.JwtBlocklistRecord;
+import com.nike.cerberus.util.TokenHasher;
 import io.jsonwebtoken.*;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,8 +66,13 @@ public class JwtService {
   private final JwtBlocklistDao jwtBlocklistDao;
   private final String jwtIssuer;
   private final String jwtAudience;
+  private final JwtClaimsCache jwtClaimsCache;
+  private final TokenHasher tokenHasher;
 
-  private HashSet<String> blocklist;
+  private final int blocklistSyncLookBackInSeconds;
+
+  private final JwtBlocklist blocklist = new JwtBlocklist();
+  private OffsetDateTime blocklistSyncedTs = null;
 
   @Autowired
   public JwtService(
@@ -70,12 +80,19 @@ public class JwtService {
       @Value("${cerberus.environmentName}") String environmentName,
       JwtBlocklistDao jwtBlocklistDao,
       @Value("${cerberus.auth.jwt.issuer}") String jwtIssuer,
-      @Value("${cerberus.auth.jwt.audience}") String jwtAudience) {
+      @Value("${cerberus.auth.jwt.audience}") String jwtAudience,
+      JwtClaimsCache jwtClaimsCache,
+      TokenHasher tokenHasher,
+      @Value("${cerberus.auth.jwt.blocklist.syncLookBackInSeconds:60}")
+          int blocklistSyncLookBackInSeconds) {
     this.signingKeyResolver = signingKeyResolver;
     this.environmentName = environmentName;
     this.jwtBlocklistDao = jwtBlocklistDao;
     this.jwtIssuer = jwtIssuer;
     this.jwtAudience = jwtAudience;
+    this.jwtClaimsCache = jwtClaimsCache;
+    this.tokenHasher = tokenHasher;
+    this.blocklistSyncLookBackInSeconds = blocklistSyncLookBackInSeconds;
     refreshBlocklist();
   }
 
@@ -125,6 +142,28 @@ public class JwtService {
    * @return Cerberus JWT claims
    */
   public Optional<CerberusJwtClaims> parseAndValidateToken(String token) {
+    if (!jwtClaimsCache.isEnabled()) {
+      return parseAndValidateTokenWithoutCache(token);
+    }
+
+    String digest = tokenHasher.digestToken(token);
+    Optional<CerberusJwtClaims> cachedClaims =
+        jwtClaimsCache.getIfPresent(digest, OffsetDateTime.now());
+    if (cachedClaims.isPresent()) {
+      // Tokens can be blocklisted at any time, so this is checked on every request
+      if (blocklist.contains(cachedClaims.get().getId())) {
+        log.warn("This JWT token is blocklisted. ID: {}", cachedClaims.get().getId());
+        return Optional.empty();
+      }
+      return cachedClaims;
+    }
+
+    Optional<CerberusJwtClaims> claims = parseAndValidateTokenWithoutCache(token);
+    claims.ifPresent(cerberusJwtClaims -> jwtClaimsCache.put(digest, cerberusJwtClaims));
+    return claims;
+  }
+
+  private Optional<CerberusJwtClaims> parseAndValidateTokenWithoutCache(String token) {
     Jws<Claims> claimsJws;
     try {
       claimsJws =
@@ -167,12 +206,43 @@ public class JwtService {
 
   /** Refresh signing keys in {@link CerberusSigningKeyResolver} */
   public void refreshKeys() {
+    Map<String, CerberusJwtKeySpec> previousKeys = signingKeyResolver.getVerificationKeys();
     signingKeyResolver.refresh();
+    if (!previousKeys.equals(signingKeyResolver.getVerificationKeys())) {
+      // Claims that were verified with a key that has been removed or changed are no longer valid
+      log.info("JWT verification keys changed, clearing the JWT claims cache");
+      jwtClaimsCache.invalidateAll();
+    }
   }
 
-  /** Refresh JWT blocklist */
-  public void refreshBlocklist() {
-    blocklist = jwtBlocklistDao.getBlocklist();
+  /**
+   * Refresh JWT blocklist. The first refresh reads every entry, after that only the entries that
+   * were added since the last refresh are read. The entries are timestamped by the instance that
+   * revoked the JWT, so each refresh looks back far enough to cover clock skew and slow commits.
+   */
+  public synchronized void refreshBlocklist() {
+    OffsetDateTime now = OffsetDateTime.now();
+    OffsetDateTime since =
+        blocklistSyncedTs == null
+            ? null
+            : blocklistSyncedTs.minusSeconds(blocklistSyncLookBackInSeconds);
+
+    Set<String> addedIds = new HashSet<>();
+    for (JwtBlocklistRecord record : jwtBlocklistDao.getBlocklistEntriesSince(since)) {
+      if (blocklist.add(record.getId(), record.getExpiresTs())) {
+        addedIds.add(record.getId());
+      }
+    }
+    blocklistSyncedTs = now;
+    jwtClaimsCache.invalidateTokenIds(addedIds);
+
+    // Expired JWTs are rejected anyway, so their ids do not need to wait for the clean up job
+    int expired = blocklist.removeExpired(now);
+    log.debug(
+        "Synced the JWT blocklist, added: {}, expired: {}, size: {}",
+        addedIds.size(),
+        expired,
+        blocklist.size());
   }
 
   /**
@@ -182,9 +252,13 @@ public class JwtService {
    * @param tokenExpires Expiration timestamp of the JWT
    */
   public void revokeToken(String id, OffsetDateTime tokenExpires) {
-    blocklist.add(id);
+    blocklist.add(id, tokenExpires);
+    jwtClaimsCache.invalidateTokenIds(Set.of(id));
     JwtBlocklistRecord jwtBlocklistRecord =
-        new JwtBlocklistRecord().setId(id).setExpiresTs(tokenExpires);
+        new JwtBlocklistRecord()
+            .setId(id)
+            .setExpiresTs(tokenExpires)
+            .setCreatedTs(OffsetDateTime.now());
     jwtBlocklistDao.addToBlocklist(jwtBlocklistRecord);
   }
 
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.nike.cerberus.dao.AwsIamRoleDao;
+import com.nike.cerberus.dao.SafeDepositBoxDao;
+import com.nike.cerberus.dao.SecureDataDao;
+import com.nike.cerberus.domain.SecureDataType;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the KPI counts of the Cerberus environment in memory, so that they can be published
+ * without aggregating the SDB, permission and secure data tables.
+ *
+ * <p>The write paths add to the counts once their transaction commits, and the counts are set from
+ * a full count of the tables by reconcile. The counts of an instance only include the writes made
+ * on it since its last reconciliation, and a write that commits while the tables are being counted
+ * may be counted twice or not at all, so every instance is reconciled periodically. The number of
+ * unique user groups changes only when a group gains its first or loses its last permission, which
+ * a grant or revoke cannot tell cheaply, so those counts are only updated by reconcile.
+ */
+@Component
+public class KpiCounterService {
+
+  /** The KPIs that are counted, with the names of the metrics that they are published under. */
+  public enum Kpi {
+    UNIQUE_IAM_ROLES("numberOfUniqueIamRoles"),
+    UNIQUE_OWNER_GROUPS("numberOfUniqueOwnerGroups"),
+    UNIQUE_NON_OWNER_GROUPS("numberOfUniqueNonOwnerGroups"),
+    UNIQUE_USER_GROUPS("totalUniqueUserGroups"),
+    SDBS("numberOfSdbs"),
+    DATA_NODES("numberOfDataNodes"),
+    KEY_VALUE_PAIRS("numberOfKeyValuePairs"),
+    FILES("numberOfFiles");
+
+    private final String metricName;
+
+    Kpi(String metricName) {
+      this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+      return metricName;
+    }
+  }
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final AwsIamRoleDao awsIamRoleDao;
+  private final UserGroupPermissionService userGroupPermissionService;
+  private final SafeDepositBoxDao safeDepositBoxDao;
+  private final SecureDataDao secureDataDao;
+  private final Map<Kpi, AtomicLong> counts = new EnumMap<>(Kpi.class);
+  private volatile boolean reconciled = false;
+
+  @Autowired
+  public KpiCounterService(
+      AwsIamRoleDao awsIamRoleDao,
+      UserGroupPermissionService userGroupPermissionService,
+      SafeDepositBoxDao safeDepositBoxDao,
+      SecureDataDao secureDataDao) {
+    this.awsIamRoleDao = awsIamRoleDao;
+    this.userGroupPermissionService = userGroupPermissionService;
+    this.safeDepositBoxDao = safeDepositBoxDao;
+    this.secureDataDao = secureDataDao;
+    for (Kpi kpi : Kpi.values()) {
+      counts.put(kpi, new AtomicLong());
+    }
+  }
+
+  public long getCount(Kpi kpi) {
+    return counts.get(kpi).get();
+  }
+
+  /** @return True once the counts have been set from a full count of the tables. */
+  public boolean isReconciled() {
+    return reconciled;
+  }
+
+  /** Adds to a count once the current transaction commits, or straight away outside of one. */
+  public void add(Kpi kpi, long delta) {
+    if (delta == 0) {
+      return;
+    }
+    AtomicLong count = counts.get(kpi);
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      count.addAndGet(delta);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            count.addAndGet(delta);
+          }
+        });
+  }
+
+  /** Counts a new secure data and its top level key value pairs. */
+  public void addSecureData(SecureDataType type, int topLevelKVCount) {
+    add(Kpi.DATA_NODES, 1);
+    add(Kpi.KEY_VALUE_PAIRS, topLevelKVCount);
+    if (type == SecureDataType.FILE) {
+      add(Kpi.FILES, 1);
+    }
+  }
+
+  /** Counts the change in the top level key value pairs of an updated secure data. */
+  public void updateSecureData(Integer oldTopLevelKVCount, int newTopLevelKVCount) {
+    add(Kpi.KEY_VALUE_PAIRS, newTopLevelKVCount - toInt(oldTopLevelKVCount));
+  }
+
+  /** Removes a deleted secure data and its top level key value pairs from the counts. */
+  public void removeSecureData(SecureDataType type, Integer topLevelKVCount) {
+    add(Kpi.DATA_NODES, -1);
+    add(Kpi.KEY_VALUE_PAIRS, -toInt(topLevelKVCount));
+    if (type == SecureDataType.FILE) {
+      add(Kpi.FILES, -1);
+    }
+  }
+
+  /**
+   * Removes the secure data under a partial path from the counts, this must be called before the
+   * secure data is deleted, in the same transaction.
+   */
+  public void removeSecureDataByPartialPath(String sdbId, String partialPath) {
+    int objects =
+        secureDataDao.countByPartialPathAndType(sdbId, partialPath, SecureDataType.OBJECT);
+    int files = secureDataDao.countByPartialPathAndType(sdbId, partialPath, SecureDataType.FILE);
+    add(Kpi.DATA_NODES, -(objects + files));
+    add(Kpi.FILES, -files);
+    add(
+        Kpi.KEY_VALUE_PAIRS,
+        -secureDataDao.getSumTopLevelKeyValuePairsByPartialPath(sdbId, partialPath));
+  }
+
+  /**
+   * Sets every count from a full count of the tables. The counts are read directly from the
+   * database, never from the mapper caches.
+   */
+  public void reconcile() {
+    counts.get(Kpi.UNIQUE_IAM_ROLES).set(awsIamRoleDao.getTotalNumberOfUniqueIamRoles());
+    counts
+        .get(Kpi.UNIQUE_OWNER_GROUPS)
+        .set(userGroupPermissionService.getTotalNumUniqueOwnerGroups());
+    counts
+        .get(Kpi.UNIQUE_NON_OWNER_GROUPS)
+        .set(userGroupPermissionService.getTotalNumUniqueNonOwnerGroups());
+    counts
+        .get(Kpi.UNIQUE_USER_GROUPS)
+        .set(userGroupPermissionService.getTotalNumUniqueUserGroups());
+    counts.get(Kpi.SDBS).set(safeDepositBoxDao.getSafeDepositBoxCount());
+    counts.get(Kpi.DATA_NODES).set(secureDataDao.getTotalNumberOfDataNodes());
+    counts.get(Kpi.KEY_VALUE_PAIRS).set(secureDataDao.getSumTopLevelKeyValuePairs());
+    counts.get(Kpi.FILES).set(secureDataDao.countByType(SecureDataType.FILE));
+    reconciled = true;
+    log.info("Reconciled the KPI counts: {}", counts);
+  }
+
+  private static int toInt(Integer topLevelKVCount) {
+    // Secure data written before the key value pairs were counted may not have a count
+    return topLevelKVCount == null ? 0 : topLevelKVCount;
+  }
+}
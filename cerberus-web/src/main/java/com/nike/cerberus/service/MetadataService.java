@@ -22,7 +22,13 @@ import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.error.InvalidCategoryNameApiError;
 import com.nike.cerberus.error.InvalidRoleNameApiError;
 import com.nike.cerberus.util.UuidSupplier;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -183,16 +189,84 @@ public class MetadataService {
             .map(it -> 1)
             .orElseGet(safeDepositBoxService::getTotalNumberOfSafeDepositBoxes));
     result.setHasNext(result.getTotalSDBCount() > (offset + limit));
+    List<SDBMetadata> sdbMetadataList = getSDBMetadataList(limit, offset, sdbNameFilter);
     if (result.isHasNext()) {
       result.setNextOffset(offset + limit);
+      if (!sdbMetadataList.isEmpty()) {
+        result.setNextCursor(toSDBMetadataCursor(sdbMetadataList.get(sdbMetadataList.size() - 1)));
+      }
     }
-    List<SDBMetadata> sdbMetadataList = getSDBMetadataList(limit, offset, sdbNameFilter);
     result.setSafeDepositBoxMetadata(sdbMetadataList);
     result.setSdbCountInResult(sdbMetadataList.size());
 
     return result;
   }
 
+  /**
+   * Retrieves metadata about SDBs like {@link #getSDBMetadata(int, int, String)}, paging with the
+   * next cursor of the previous page instead of an offset so that each page is read straight from
+   * where the previous page ended.
+   *
+   * @param limit The int limit for paginating.
+   * @param cursor The next cursor of the previous page, or null for the first page
+   * @return SDBMetadataResult of meta data.
+   */
+  public SDBMetadataResult getSDBMetadata(int limit, String cursor) {
+    SDBMetadata after = cursor == null ? new SDBMetadata() : fromSDBMetadataCursor(cursor);
+    int totalSDBCount = safeDepositBoxService.getTotalNumberOfSafeDepositBoxes();
+    // One more than the limit is read to tell if there is a next page
+    List<SDBMetadata> sdbMetadataList =
+        toSDBMetadataList(
+            safeDepositBoxService.getSafeDepositBoxes(
+                after.getCreatedTs(), after.getId(), limit + 1));
+    boolean hasNext = sdbMetadataList.size() > limit;
+    if (hasNext) {
+      sdbMetadataList = sdbMetadataList.subList(0, limit);
+    }
+
+    SDBMetadataResult result = new SDBMetadataResult();
+    result.setLimit(limit);
+    result.setTotalSDBCount(totalSDBCount);
+    result.setHasNext(hasNext);
+    if (hasNext && !sdbMetadataList.isEmpty()) {
+      result.setNextCursor(toSDBMetadataCursor(sdbMetadataList.get(sdbMetadataList.size() - 1)));
+    }
+    result.setSafeDepositBoxMetadata(sdbMetadataList);
+    result.setSdbCountInResult(sdbMetadataList.size());
+
+    return result;
+  }
+
+  /** The cursor is the position of the last SDB of a page in the created ts, id order. */
+  static String toSDBMetadataCursor(SDBMetadata sdbMetadata) {
+    String position =
+        sdbMetadata.getCreatedTs().toInstant().toEpochMilli() + ":" + sdbMetadata.getId();
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static SDBMetadata fromSDBMetadataCursor(String cursor) {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = position.split(":", 2);
+      if (parts.length != 2 || parts[1].isEmpty()) {
+        throw new IllegalArgumentException("Expected a created ts and an id");
+      }
+      SDBMetadata sdbMetadata = new SDBMetadata();
+      sdbMetadata.setCreatedTs(
+          OffsetDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[0])), ZoneOffset.UTC));
+      sdbMetadata.setId(parts[1]);
+      return sdbMetadata;
+    } catch (IllegalArgumentException | DateTimeException e) {
+      throw ApiException.newBuilder()
+          .withApiErrors(DefaultApiError.INVALID_QUERY_PARAMS)
+          .withExceptionMessage("Invalid SDB metadata cursor: " + cursor)
+          .withExceptionCause(e)
+          .build();
+    }
+  }
+
   /**
    * Gets a list of SBD Metadata's
    *
@@ -201,13 +275,6 @@ public class MetadataService {
    * @return A list of SDB Metadata
    */
   protected List<SDBMetadata> getSDBMetadataList(int limit, int offset, String sdbNameFilter) {
-    List<SDBMetadata> sdbs = new LinkedList<>();
-
-    // Collect the categories.
-    Map<String, String> catIdToStringMap = categoryService.getCategoryIdToCategoryNameMap();
-    // Collect the roles
-    Map<String, String> roleIdToStringMap = roleService.getRoleIdToStringMap();
-
     List<SafeDepositBoxV2> safeDepositBoxes =
         Optional.ofNullable(sdbNameFilter)
             .map(
@@ -224,30 +291,65 @@ public class MetadataService {
                                                 .build()))))
             .orElseGet(() -> safeDepositBoxService.getSafeDepositBoxes(limit, offset));
 
+    return toSDBMetadataList(safeDepositBoxes);
+  }
+
+  private List<SDBMetadata> toSDBMetadataList(List<SafeDepositBoxV2> safeDepositBoxes) {
+    List<SDBMetadata> sdbs = new ArrayList<>(safeDepositBoxes.size());
+
+    // Collect the categories.
+    Map<String, String> catIdToStringMap = categoryService.getCategoryIdToCategoryNameMap();
+    // Collect the roles
+    Map<String, String> roleIdToStringMap = roleService.getRoleIdToStringMap();
+
     // for each SDB collect the user and iam permissions and add to result
     safeDepositBoxes.forEach(
-        sdb -> {
-          SDBMetadata data = new SDBMetadata();
-          data.setName(sdb.getName());
-          data.setId(sdb.getId());
-          data.setPath(sdb.getPath());
-          data.setDescription(sdb.getDescription());
-          data.setCategory(catIdToStringMap.get(sdb.getCategoryId()));
-          data.setCreatedBy(sdb.getCreatedBy());
-          data.setCreatedTs(sdb.getCreatedTs());
-          data.setLastUpdatedBy(sdb.getLastUpdatedBy());
-          data.setLastUpdatedTs(sdb.getLastUpdatedTs());
-          data.setOwner(sdb.getOwner());
-          data.setUserGroupPermissions(
-              getUserGroupPermissionsMap(roleIdToStringMap, sdb.getUserGroupPermissions()));
-          data.setIamRolePermissions(
-              getIamPrincipalPermissionMap(roleIdToStringMap, sdb.getIamPrincipalPermissions()));
-          sdbs.add(data);
-        });
+        sdb -> sdbs.add(toSDBMetadata(sdb, catIdToStringMap, roleIdToStringMap)));
 
     return sdbs;
   }
 
+  private SDBMetadata toSDBMetadata(
+      SafeDepositBoxV2 sdb,
+      Map<String, String> catIdToStringMap,
+      Map<String, String> roleIdToStringMap) {
+    SDBMetadata data = new SDBMetadata();
+    data.setName(sdb.getName());
+    data.setId(sdb.getId());
+    data.setPath(sdb.getPath());
+    data.setDescription(sdb.getDescription());
+    data.setCategory(catIdToStringMap.get(sdb.getCategoryId()));
+    data.setCreatedBy(sdb.getCreatedBy());
+    data.setCreatedTs(sdb.getCreatedTs());
+    data.setLastUpdatedBy(sdb.getLastUpdatedBy());
+    data.setLastUpdatedTs(sdb.getLastUpdatedTs());
+    data.setOwner(sdb.getOwner());
+    data.setUserGroupPermissions(
+        getUserGroupPermissionsMap(roleIdToStringMap, sdb.getUserGroupPermissions()));
+    data.setIamRolePermissions(
+        getIamPrincipalPermissionMap(roleIdToStringMap, sdb.getIamPrincipalPermissions()));
+    return data;
+  }
+
+  /**
+   * Streams the metadata of every SDB to the consumer, newest first. The categories and roles are
+   * read up front, the SDBs are streamed from a single query so that memory use does not grow with
+   * the number of SDBs.
+   *
+   * @param consumer Called once per SDB
+   * @return The number of SDBs that were exported
+   */
+  public int exportSDBMetadata(Consumer<SDBMetadata> consumer) {
+    Map<String, String> catIdToStringMap = categoryService.getCategoryIdToCategoryNameMap();
+    Map<String, String> roleIdToStringMap = roleService.getRoleIdToStringMap();
+
+    int count =
+        safeDepositBoxService.exportSafeDepositBoxes(
+            sdb -> consumer.accept(toSDBMetadata(sdb, catIdToStringMap, roleIdToStringMap)));
+    logger.info("Exported the metadata of {} SDBs", count);
+    return count;
+  }
+
   /**
    * Retrieves a simplified user group permission map that is only strings so it can be transported
    * across Cerberus environments
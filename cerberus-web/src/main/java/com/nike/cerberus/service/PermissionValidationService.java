@@ -54,6 +54,7 @@ public class PermissionValidationService {
   private final SafeDepositBoxService safeDepositBoxService;
   private final SdbAccessRequest sdbAccessRequest;
   private final AuditLoggingFilterDetails auditLoggingFilterDetails;
+  private final SdbAclIndexService sdbAclIndexService;
 
   @Autowired
   public PermissionValidationService(
@@ -63,7 +64,8 @@ public class PermissionValidationService {
       AwsIamRoleArnParser awsIamRoleArnParser,
       SafeDepositBoxService safeDepositBoxService,
       SdbAccessRequest sdbAccessRequest,
-      AuditLoggingFilterDetails auditLoggingFilterDetails) {
+      AuditLoggingFilterDetails auditLoggingFilterDetails,
+      SdbAclIndexService sdbAclIndexService) {
 
     this.userGroupPermissionService = userGroupPermissionService;
     this.permissionsDao = permissionsDao;
@@ -72,6 +74,7 @@ public class PermissionValidationService {
     this.safeDepositBoxService = safeDepositBoxService;
     this.sdbAccessRequest = sdbAccessRequest;
     this.auditLoggingFilterDetails = auditLoggingFilterDetails;
+    this.sdbAclIndexService = sdbAclIndexService;
   }
 
   /**
@@ -146,11 +149,16 @@ public class PermissionValidationService {
         break;
       case USER:
         hasPermission =
-            userGroupsCaseSensitive
-                ? permissionsDao.doesUserPrincipalHaveRoleForSdb(
-                    sdbId, action.getAllowedRoles(), principal.getUserGroups())
-                : permissionsDao.doesUserHavePermsForRoleAndSdbCaseInsensitive(
-                    sdbId, action.getAllowedRoles(), principal.getUserGroups());
+            sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+                    sdbId,
+                    principal.getUserGroups(),
+                    action.getAllowedRoles(),
+                    userGroupsCaseSensitive)
+                || (userGroupsCaseSensitive
+                    ? permissionsDao.doesUserPrincipalHaveRoleForSdb(
+                        sdbId, action.getAllowedRoles(), principal.getUserGroups())
+                    : permissionsDao.doesUserHavePermsForRoleAndSdbCaseInsensitive(
+                        sdbId, action.getAllowedRoles(), principal.getUserGroups()));
         break;
       default:
         log.error(
@@ -176,11 +184,15 @@ public class PermissionValidationService {
     String iamRootArn = awsIamRoleArnParser.convertPrincipalArnToRootArn(iamPrincipalArn);
     if (awsIamRoleArnParser.isAssumedRoleArn(iamPrincipalArn)) {
       String iamRoleArn = awsIamRoleArnParser.convertPrincipalArnToRoleArn(iamPrincipalArn);
-      return permissionsDao.doesAssumedRoleHaveRoleForSdb(
-          sdbId, iamPrincipalArn, iamRoleArn, iamRootArn, roles);
+      return sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+              sdbId, List.of(iamPrincipalArn, iamRoleArn, iamRootArn), roles)
+          || permissionsDao.doesAssumedRoleHaveRoleForSdb(
+              sdbId, iamPrincipalArn, iamRoleArn, iamRootArn, roles);
     } else {
-      return permissionsDao.doesIamPrincipalHaveRoleForSdb(
-          sdbId, iamPrincipalArn, iamRootArn, roles);
+      return sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+              sdbId, List.of(iamPrincipalArn, iamRootArn), roles)
+          || permissionsDao.doesIamPrincipalHaveRoleForSdb(
+              sdbId, iamPrincipalArn, iamRootArn, roles);
     }
   }
 
@@ -253,9 +265,11 @@ public class PermissionValidationService {
         String.format("%s/%s/", sdbAccessRequest.getCategory(), sdbAccessRequest.getSdbSlug());
     var secureDataAction = SecureDataAction.fromString(action);
 
+    // The ACL index only holds positive answers, so a miss always falls back to the database
     String sdbId =
-        safeDepositBoxService
-            .getSafeDepositBoxIdByPath(sdbBasePath)
+        sdbAclIndexService
+            .getSdbIdByPath(sdbBasePath)
+            .or(() -> safeDepositBoxService.getSafeDepositBoxIdByPath(sdbBasePath))
             .orElseThrow(
                 () -> {
                   auditLoggingFilterDetails.setAction(
@@ -19,6 +19,7 @@ package com.nike.cerberus.service;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.SafeDepositBoxDao;
 import com.nike.cerberus.dao.SecureDataVersionDao;
 import com.nike.cerberus.dao.UserGroupDao;
@@ -27,19 +28,28 @@ import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.event.filter.AuditLoggingFilterDetails;
 import com.nike.cerberus.record.RoleRecord;
 import com.nike.cerberus.record.SafeDepositBoxRecord;
+import com.nike.cerberus.record.SdbMetadataRecord;
 import com.nike.cerberus.record.UserGroupRecord;
 import com.nike.cerberus.security.CerberusPrincipal;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import com.nike.cerberus.util.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -61,6 +71,10 @@ public class SafeDepositBoxService {
   private final AwsIamRoleArnParser awsIamRoleArnParser;
   private final SecureDataService secureDataService;
   private final SecureDataVersionDao secureDataVersionDao;
+  private final SdbSummaryCache sdbSummaryCache;
+  private final CacheInvalidationService cacheInvalidationService;
+  private final KpiCounterService kpiCounterService;
+  private final SecureDataWatchService secureDataWatchService;
   private final Boolean userGroupsCaseSensitive;
   private final AuditLoggingFilterDetails auditLoggingFilterDetails;
   public String adGroupNamePrefix;
@@ -79,6 +93,10 @@ public class SafeDepositBoxService {
       AwsIamRoleArnParser awsIamRoleArnParser,
       SecureDataService secureDataService,
       SecureDataVersionDao secureDataVersionDao,
+      SdbSummaryCache sdbSummaryCache,
+      CacheInvalidationService cacheInvalidationService,
+      KpiCounterService kpiCounterService,
+      SecureDataWatchService secureDataWatchService,
       Boolean userGroupsCaseSensitive,
       SdbAccessRequest sdbAccessRequest,
       AuditLoggingFilterDetails auditLoggingFilterDetails,
@@ -96,6 +114,10 @@ public class SafeDepositBoxService {
     this.awsIamRoleArnParser = awsIamRoleArnParser;
     this.secureDataService = secureDataService;
     this.secureDataVersionDao = secureDataVersionDao;
+    this.sdbSummaryCache = sdbSummaryCache;
+    this.cacheInvalidationService = cacheInvalidationService;
+    this.kpiCounterService = kpiCounterService;
+    this.secureDataWatchService = secureDataWatchService;
     this.userGroupsCaseSensitive = userGroupsCaseSensitive;
     this.auditLoggingFilterDetails = auditLoggingFilterDetails;
     this.adGroupNamePrefix = adGroupNamePrefix;
@@ -110,33 +132,63 @@ public class SafeDepositBoxService {
   public List<SafeDepositBoxSummary> getAssociatedSafeDepositBoxes(
       final CerberusPrincipal principal) {
 
-    List<SafeDepositBoxRecord> sdbRecords;
-
     switch (principal.getPrincipalType()) {
       case IAM:
         String principalName = principal.getName();
         String rootArn = awsIamRoleArnParser.convertPrincipalArnToRootArn(principalName);
         if (awsIamRoleArnParser.isAssumedRoleArn(principalName)) {
           String iamRoleArn = awsIamRoleArnParser.convertPrincipalArnToRoleArn(principalName);
-          sdbRecords =
-              safeDepositBoxDao.getAssumedRoleAssociatedSafeDepositBoxes(
-                  principalName, iamRoleArn, rootArn);
-        } else {
-          sdbRecords =
-              safeDepositBoxDao.getIamPrincipalAssociatedSafeDepositBoxes(principalName, rootArn);
+          return getSafeDepositBoxSummaries(
+              principal,
+              List.of(principalName, iamRoleArn, rootArn),
+              () ->
+                  safeDepositBoxDao.getAssumedRoleAssociatedSafeDepositBoxes(
+                      principalName, iamRoleArn, rootArn));
         }
-        break;
+        return getSafeDepositBoxSummaries(
+            principal,
+            List.of(principalName, rootArn),
+            () ->
+                safeDepositBoxDao.getIamPrincipalAssociatedSafeDepositBoxes(
+                    principalName, rootArn));
       case USER:
-        sdbRecords =
-            this.userGroupsCaseSensitive
-                ? safeDepositBoxDao.getUserAssociatedSafeDepositBoxes(principal.getUserGroups())
-                : safeDepositBoxDao.getUserAssociatedSafeDepositBoxesIgnoreCase(
-                    principal.getUserGroups());
-        break;
+        Set<String> userGroups = principal.getUserGroups();
+        if (this.userGroupsCaseSensitive) {
+          return getSafeDepositBoxSummaries(
+              principal,
+              userGroups,
+              () -> safeDepositBoxDao.getUserAssociatedSafeDepositBoxes(userGroups));
+        }
+        return getSafeDepositBoxSummaries(
+            principal,
+            userGroups.stream().map(String::toLowerCase).collect(Collectors.toSet()),
+            () -> safeDepositBoxDao.getUserAssociatedSafeDepositBoxesIgnoreCase(userGroups));
       default:
         throw new ApiException(DefaultApiError.UNKNOWN_PRINCIPAL_TYPE);
     }
+  }
 
+  /**
+   * @param principal The authenticated principal
+   * @param grantees The names that grant the principal access, the cache key of its SDB summaries
+   * @param sdbRecordsSupplier Reads the SDBs of the principal if they are not cached
+   */
+  private List<SafeDepositBoxSummary> getSafeDepositBoxSummaries(
+      final CerberusPrincipal principal,
+      final Collection<String> grantees,
+      final Supplier<List<SafeDepositBoxRecord>> sdbRecordsSupplier) {
+    if (!sdbSummaryCache.isEnabled()) {
+      return toSafeDepositBoxSummaries(sdbRecordsSupplier.get());
+    }
+    return sdbSummaryCache.get(
+        principal.getPrincipalType(),
+        principal.getName(),
+        grantees,
+        () -> toSafeDepositBoxSummaries(sdbRecordsSupplier.get()));
+  }
+
+  private List<SafeDepositBoxSummary> toSafeDepositBoxSummaries(
+      final List<SafeDepositBoxRecord> sdbRecords) {
     if (sdbRecords == null) {
       return new LinkedList<>();
     }
@@ -184,12 +236,21 @@ public class SafeDepositBoxService {
     }
 
     String id = safeDepositBoxRecord.getId();
+    return getSDBFromRecordV2(
+        safeDepositBoxRecord,
+        userGroupPermissionService.getUserGroupPermissions(id),
+        iamPrincipalPermissionService.getIamPrincipalPermissions(id),
+        getOwnerRoleId());
+  }
 
-    final Set<UserGroupPermission> userGroupPermissions =
-        userGroupPermissionService.getUserGroupPermissions(id);
-
+  private SafeDepositBoxV2 getSDBFromRecordV2(
+      SafeDepositBoxRecord safeDepositBoxRecord,
+      Set<UserGroupPermission> userGroupPermissions,
+      Set<IamPrincipalPermission> iamRolePermissions,
+      String ownerRoleId) {
+    String id = safeDepositBoxRecord.getId();
     String owner = null;
-    final Optional<String> possibleOwner = extractOwner(userGroupPermissions);
+    final Optional<String> possibleOwner = extractOwner(userGroupPermissions, ownerRoleId);
 
     if (possibleOwner.isEmpty()) {
       log.error("Detected Safe Deposit Box without owner! ID={}", id);
@@ -197,9 +258,6 @@ public class SafeDepositBoxService {
       owner = possibleOwner.get();
     }
 
-    final Set<IamPrincipalPermission> iamRolePermissions =
-        iamPrincipalPermissionService.getIamPrincipalPermissions(id);
-
     SafeDepositBoxV2 safeDepositBox = new SafeDepositBoxV2();
     safeDepositBox.setId(safeDepositBoxRecord.getId());
     safeDepositBox.setName(safeDepositBoxRecord.getName());
@@ -371,6 +429,7 @@ public class SafeDepositBoxService {
     }
 
     safeDepositBoxDao.createSafeDepositBox(boxRecordToStore);
+    kpiCounterService.add(Kpi.SDBS, 1);
 
     userGroupPermissionService.grantUserGroupPermissions(
         boxRecordToStore.getId(), userGroupPermissionSet, user, now);
@@ -471,26 +530,24 @@ public class SafeDepositBoxService {
     String sdbPathWithoutCategory = StringUtils.substringAfter(box.getPath(), "/");
     secureDataService.deleteAllSecretsThatStartWithGivenPartialPath(id, sdbPathWithoutCategory);
     secureDataVersionDao.deleteAllVersionsThatStartWithPartialPath(sdbPathWithoutCategory);
+    secureDataWatchService.deleteChanges(id);
 
     // 3. Remove metadata
     safeDepositBoxDao.deleteSafeDepositBox(id);
-  }
-
-  private Optional<String> extractOwner(Set<UserGroupPermission> userGroupPermissions) {
-    final Optional<Role> ownerRole = roleService.getRoleByName(RoleRecord.ROLE_OWNER);
+    kpiCounterService.add(Kpi.SDBS, -1);
 
-    if (ownerRole.isEmpty()) {
-      String msg = "Owner role doesn't exist!";
-      throw ApiException.newBuilder()
-          .withApiErrors(
-              CustomApiError.createCustomApiError(DefaultApiError.MISCONFIGURED_APP, msg))
-          .withExceptionMessage(msg)
-          .build();
+    // 4. Evict the cached SDB lists that include it, here and on every other instance
+    if (sdbSummaryCache.isEnabled()) {
+      sdbSummaryCache.invalidateSdb(id);
+      cacheInvalidationService.recordInvalidation(SdbSummaryCache.NAMESPACE, id);
     }
+  }
 
+  private Optional<String> extractOwner(
+      Set<UserGroupPermission> userGroupPermissions, String ownerRoleId) {
     final Optional<UserGroupPermission> ownerPermission =
         userGroupPermissions.stream()
-            .filter(perm -> StringUtils.equals(perm.getRoleId(), ownerRole.get().getId()))
+            .filter(perm -> StringUtils.equals(perm.getRoleId(), ownerRoleId))
             .findFirst();
 
     if (ownerPermission.isEmpty()) {
@@ -501,6 +558,21 @@ public class SafeDepositBoxService {
     return Optional.of(ownerPermission.get().getName());
   }
 
+  private String getOwnerRoleId() {
+    final Optional<Role> ownerRole = roleService.getRoleByName(RoleRecord.ROLE_OWNER);
+
+    if (ownerRole.isEmpty()) {
+      String msg = "Owner role doesn't exist!";
+      throw ApiException.newBuilder()
+          .withApiErrors(
+              CustomApiError.createCustomApiError(DefaultApiError.MISCONFIGURED_APP, msg))
+          .withExceptionMessage(msg)
+          .build();
+    }
+
+    return ownerRole.get().getId();
+  }
+
   /**
    * Adds the owner identified in the request to the set of user group permissions.
    *
@@ -795,15 +867,122 @@ public class SafeDepositBoxService {
    * @param offset The offset to paginate with
    */
   public List<SafeDepositBoxV2> getSafeDepositBoxes(int limit, int offset) {
-    List<SafeDepositBoxRecord> records = safeDepositBoxDao.getSafeDepositBoxes(limit, offset);
-    List<SafeDepositBoxV2> result = new LinkedList<>();
+    return getSDBsFromRecordsV2(safeDepositBoxDao.getSafeDepositBoxes(limit, offset));
+  }
+
+  /**
+   * Pages through all SDBs newest first, reading each page straight from where the previous page
+   * ended instead of skipping over an offset.
+   *
+   * @param afterCreatedTs The created ts of the last SDB of the previous page, or null for the
+   *     first page
+   * @param afterId The id of the last SDB of the previous page, or null for the first page
+   * @param limit The maximum number of SDBs to fetch
+   */
+  public List<SafeDepositBoxV2> getSafeDepositBoxes(
+      OffsetDateTime afterCreatedTs, String afterId, int limit) {
+    return getSDBsFromRecordsV2(
+        safeDepositBoxDao.getSafeDepositBoxes(afterCreatedTs, afterId, limit));
+  }
+
+  /** Reads the permissions of all of the SDBs at once, instead of a few queries per SDB. */
+  private List<SafeDepositBoxV2> getSDBsFromRecordsV2(List<SafeDepositBoxRecord> records) {
+    if (records.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<String> ids =
+        records.stream().map(SafeDepositBoxRecord::getId).collect(Collectors.toList());
+    Map<String, Set<UserGroupPermission>> userGroupPermissions =
+        userGroupPermissionService.getUserGroupPermissionsBySdbIds(ids);
+    Map<String, Set<IamPrincipalPermission>> iamPrincipalPermissions =
+        iamPrincipalPermissionService.getIamPrincipalPermissionsBySdbIds(ids);
+    String ownerRoleId = getOwnerRoleId();
+    List<SafeDepositBoxV2> result = new ArrayList<>(records.size());
     records.forEach(
-        safeDepositBoxRecord -> {
-          result.add(getSDBFromRecordV2(safeDepositBoxRecord));
-        });
+        safeDepositBoxRecord ->
+            result.add(
+                getSDBFromRecordV2(
+                    safeDepositBoxRecord,
+                    userGroupPermissions.getOrDefault(
+                        safeDepositBoxRecord.getId(), Sets.newHashSet()),
+                    iamPrincipalPermissions.getOrDefault(
+                        safeDepositBoxRecord.getId(), Sets.newHashSet()),
+                    ownerRoleId)));
     return result;
   }
 
+  /**
+   * Streams every SDB with its permissions to the consumer, newest first, from a single query
+   * instead of reading page by page. The owner role is read before the stream is opened, because
+   * no other query can run on the connection while it is being read. The transaction, and its
+   * connection, are held until the consumer has returned for the last SDB, so a slow consumer, ex:
+   * one that writes to a slow client, should bound how long it takes.
+   *
+   * @param consumer Called once per SDB, while the stream is open
+   * @return The number of SDBs that were streamed
+   */
+  @Transactional(readOnly = true)
+  public int exportSafeDepositBoxes(Consumer<SafeDepositBoxV2> consumer) {
+    String ownerRoleId = getOwnerRoleId();
+    int count = 0;
+    try (Cursor<SdbMetadataRecord> cursor = safeDepositBoxDao.exportSafeDepositBoxMetadata()) {
+      SafeDepositBoxRecord safeDepositBoxRecord = null;
+      Set<UserGroupPermission> userGroupPermissions = new HashSet<>();
+      Set<IamPrincipalPermission> iamPrincipalPermissions = new HashSet<>();
+      for (SdbMetadataRecord row : cursor) {
+        if (safeDepositBoxRecord == null
+            || !StringUtils.equals(safeDepositBoxRecord.getId(), row.getId())) {
+          if (safeDepositBoxRecord != null) {
+            consumer.accept(
+                getSDBFromRecordV2(
+                    safeDepositBoxRecord,
+                    userGroupPermissions,
+                    iamPrincipalPermissions,
+                    ownerRoleId));
+            count++;
+          }
+          safeDepositBoxRecord = toSafeDepositBoxRecord(row);
+          userGroupPermissions = new HashSet<>();
+          iamPrincipalPermissions = new HashSet<>();
+        }
+        if (SdbMetadataRecord.PERMISSION_TYPE_USER_GROUP.equals(row.getPermissionType())) {
+          userGroupPermissions.add(
+              new UserGroupPermission()
+                  .withName(row.getPrincipalName())
+                  .withRoleId(row.getRoleId()));
+        } else if (SdbMetadataRecord.PERMISSION_TYPE_IAM_PRINCIPAL.equals(
+            row.getPermissionType())) {
+          iamPrincipalPermissions.add(
+              new IamPrincipalPermission()
+                  .withIamPrincipalArn(row.getPrincipalName())
+                  .withRoleId(row.getRoleId()));
+        }
+      }
+      if (safeDepositBoxRecord != null) {
+        consumer.accept(
+            getSDBFromRecordV2(
+                safeDepositBoxRecord, userGroupPermissions, iamPrincipalPermissions, ownerRoleId));
+        count++;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close the SDB metadata export cursor", e);
+    }
+    return count;
+  }
+
+  private SafeDepositBoxRecord toSafeDepositBoxRecord(SdbMetadataRecord row) {
+    return new SafeDepositBoxRecord()
+        .setId(row.getId())
+        .setCategoryId(row.getCategoryId())
+        .setName(row.getName())
+        .setDescription(row.getDescription())
+        .setPath(row.getPath())
+        .setCreatedBy(row.getCreatedBy())
+        .setLastUpdatedBy(row.getLastUpdatedBy())
+        .setCreatedTs(row.getCreatedTs())
+        .setLastUpdatedTs(row.getLastUpdatedTs());
+  }
+
   /**
    * @param name Safe Deposit Box name
    * @return The id for the box
@@ -862,6 +1041,7 @@ public class SafeDepositBoxService {
           existingBox, safeDepositBox.getIamPrincipalPermissions(), adminUser, now);
     } else {
       safeDepositBoxDao.createSafeDepositBox(boxToStore);
+      kpiCounterService.add(Kpi.SDBS, 1);
       addOwnerPermission(safeDepositBox.getUserGroupPermissions(), safeDepositBox.getOwner());
       userGroupPermissionService.grantUserGroupPermissions(
           safeDepositBox.getId(), safeDepositBox.getUserGroupPermissions(), adminUser, now);
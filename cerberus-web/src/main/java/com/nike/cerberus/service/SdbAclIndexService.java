@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.dao.PermissionsDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SdbAclEntryRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A per instance, in memory index of every SDB path and access control list, so that the permission
+ * checks on the secure data endpoints can be answered without any round trips to the database.
+ *
+ * <p>The index is kept fresh by the cache invalidation log, every write to the permission tables is
+ * recorded there against the permissionsMapper namespace and applied here by {@link
+ * CacheInvalidationService}. Because of that the index is only used when cluster wide cache
+ * invalidation is enabled. It is also fully reloaded on an interval as a safety net.
+ *
+ * <p>A grant that is revoked on another instance stays in the index until the log is next applied,
+ * so the index is only answered from while the log has been applied within the max lag. If the
+ * refresh job falls behind or fails, ex: while the database is unavailable, every check goes to the
+ * database instead of granting from a stale index.
+ *
+ * <p>Only positive answers are trusted, a path or grant that is missing from the index is always
+ * checked against the database. That keeps newly created SDBs and grants immediately usable, and
+ * keeps the index from ever denying access that the database queries would allow, ex: for ARNs that
+ * only match case insensitively.
+ */
+@Component
+public class SdbAclIndexService {
+
+  static final String PERMISSIONS_NAMESPACE = "permissionsMapper";
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final PermissionsDao permissionsDao;
+  private final DateTimeSupplier dateTimeSupplier;
+  private final boolean enabled;
+  private final int maxAgeInMinutes;
+  private final int maxLagInSeconds;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  private volatile Map<String, String> sdbIdsByPath = new ConcurrentHashMap<>();
+  private volatile Map<String, SdbAcl> aclsBySdbId = new ConcurrentHashMap<>();
+  private volatile OffsetDateTime loadedTs = null;
+  private volatile OffsetDateTime currentAsOfTs = null;
+
+  @Autowired
+  public SdbAclIndexService(
+      PermissionsDao permissionsDao,
+      DateTimeSupplier dateTimeSupplier,
+      MetricsService metricsService,
+      @Value("${cerberus.permissions.aclIndex.enabled:false}") boolean aclIndexEnabled,
+      @Value("${cerberus.permissions.aclIndex.maxAgeInMinutes:1}") int maxAgeInMinutes,
+      @Value("${cerberus.permissions.aclIndex.maxLagInSeconds:10}") int maxLagInSeconds,
+      @Value("${cerberus.mybatis.cache.invalidation.enabled:false}")
+          boolean cacheInvalidationEnabled) {
+    this.permissionsDao = permissionsDao;
+    this.dateTimeSupplier = dateTimeSupplier;
+    this.maxAgeInMinutes = maxAgeInMinutes;
+    this.maxLagInSeconds = maxLagInSeconds;
+    if (aclIndexEnabled && !cacheInvalidationEnabled) {
+      log.warn("The SDB ACL index will not be used, it requires cache invalidation to be enabled");
+    }
+    enabled = aclIndexEnabled && cacheInvalidationEnabled;
+    hitCounter = metricsService.getOrCreateCounter("cms.permissions.acl.index.hit", null);
+    missCounter = metricsService.getOrCreateCounter("cms.permissions.acl.index.miss", null);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param path The SDB base path, ex: app/my-sdb/
+   * @return The id of the SDB, or empty if the SDB is not in the index
+   */
+  public Optional<String> getSdbIdByPath(String path) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    String sdbId = isCurrent() ? sdbIdsByPath.get(path) : null;
+    recordLookup(sdbId != null);
+    return Optional.ofNullable(sdbId);
+  }
+
+  /**
+   * @param sdbId The SDB to check
+   * @param iamPrincipalArns The ARNs that the principal can act as, ex: the assumed role, role and
+   *     account root ARNs
+   * @param roles The roles that allow the requested action
+   * @return True if the index has a grant of one of the roles to one of the ARNs, false if the
+   *     database needs to be checked
+   */
+  public boolean doesIamPrincipalHaveRoleForSdb(
+      String sdbId, Collection<String> iamPrincipalArns, Set<String> roles) {
+    if (!enabled) {
+      return false;
+    }
+    SdbAcl acl = isCurrent() ? aclsBySdbId.get(sdbId) : null;
+    boolean hasRole =
+        acl != null && hasAnyRole(acl.rolesByIamPrincipalArn, iamPrincipalArns, roles);
+    recordLookup(hasRole);
+    return hasRole;
+  }
+
+  /**
+   * @param sdbId The SDB to check
+   * @param userGroups The groups that the user belongs to
+   * @param roles The roles that allow the requested action
+   * @param caseSensitive Whether user group names are compared case sensitively
+   * @return True if the index has a grant of one of the roles to one of the groups, false if the
+   *     database needs to be checked
+   */
+  public boolean doesUserPrincipalHaveRoleForSdb(
+      String sdbId, Collection<String> userGroups, Set<String> roles, boolean caseSensitive) {
+    if (!enabled) {
+      return false;
+    }
+    SdbAcl acl = isCurrent() ? aclsBySdbId.get(sdbId) : null;
+    boolean hasRole = false;
+    if (acl != null) {
+      hasRole =
+          caseSensitive
+              ? hasAnyRole(acl.rolesByUserGroup, userGroups, roles)
+              : hasAnyRole(
+                  acl.rolesByLowerCaseUserGroup,
+                  userGroups.stream().map(String::toLowerCase).collect(Collectors.toSet()),
+                  roles);
+    }
+    recordLookup(hasRole);
+    return hasRole;
+  }
+
+  /**
+   * Applies an entry of the cache invalidation log to the index, writes to other namespaces are
+   * ignored.
+   *
+   * @param namespace The cache namespace that was written
+   * @param cacheKey The id of the SDB that was written, or null if all SDBs may have changed
+   */
+  public void applyInvalidation(String namespace, String cacheKey) {
+    if (!enabled || !PERMISSIONS_NAMESPACE.equals(namespace)) {
+      return;
+    }
+    if (cacheKey == null) {
+      reloadAll();
+    } else {
+      refreshSdb(cacheKey);
+    }
+  }
+
+  /**
+   * Records that every write committed before the given time has been applied to the index.
+   *
+   * @param appliedTs The time that the applied poll of the cache invalidation log started
+   */
+  public void markCurrentAsOf(OffsetDateTime appliedTs) {
+    currentAsOfTs = appliedTs;
+  }
+
+  /** Reloads the whole index if it has never been loaded or is older than the max age. */
+  public void reloadIfStale() {
+    if (!enabled) {
+      return;
+    }
+    OffsetDateTime lastLoadedTs = loadedTs;
+    if (lastLoadedTs == null
+        || lastLoadedTs.isBefore(dateTimeSupplier.get().minusMinutes(maxAgeInMinutes))) {
+      reloadAll();
+    }
+  }
+
+  /** Reads the ACLs of every SDB and atomically replaces the index. */
+  public synchronized void reloadAll() {
+    Map<String, SdbAcl.Builder> builders = new HashMap<>();
+    permissionsDao
+        .getIamPrincipalAclEntries(null)
+        .forEach(entry -> getBuilder(builders, entry).addIamPrincipalRole(entry));
+    permissionsDao
+        .getUserGroupAclEntries(null)
+        .forEach(entry -> getBuilder(builders, entry).addUserGroupRole(entry));
+
+    Map<String, String> newSdbIdsByPath = new ConcurrentHashMap<>();
+    Map<String, SdbAcl> newAclsBySdbId = new ConcurrentHashMap<>();
+    builders.forEach(
+        (sdbId, builder) -> {
+          SdbAcl acl = builder.build();
+          newSdbIdsByPath.put(acl.path, sdbId);
+          newAclsBySdbId.put(sdbId, acl);
+        });
+    sdbIdsByPath = newSdbIdsByPath;
+    aclsBySdbId = newAclsBySdbId;
+    loadedTs = dateTimeSupplier.get();
+    log.info("Loaded the ACLs of {} SDBs into the ACL index", newAclsBySdbId.size());
+  }
+
+  /**
+   * Re-reads the ACL of a single SDB, removing it from the index if it has been deleted. This is
+   * synchronized with {@link #reloadAll()} so that a reload that read the ACL before it was written
+   * cannot overwrite the refreshed ACL.
+   */
+  protected synchronized void refreshSdb(String sdbId) {
+    Map<String, SdbAcl.Builder> builders = new HashMap<>();
+    permissionsDao
+        .getIamPrincipalAclEntries(sdbId)
+        .forEach(entry -> getBuilder(builders, entry).addIamPrincipalRole(entry));
+    permissionsDao
+        .getUserGroupAclEntries(sdbId)
+        .forEach(entry -> getBuilder(builders, entry).addUserGroupRole(entry));
+
+    SdbAcl previous;
+    SdbAcl.Builder builder = builders.get(sdbId);
+    if (builder == null) {
+      previous = aclsBySdbId.remove(sdbId);
+    } else {
+      SdbAcl acl = builder.build();
+      previous = aclsBySdbId.put(sdbId, acl);
+      sdbIdsByPath.put(acl.path, sdbId);
+    }
+    if (previous != null && (builder == null || !previous.path.equals(builder.path))) {
+      sdbIdsByPath.remove(previous.path, sdbId);
+    }
+    log.debug("Refreshed the ACL index for SDB: {}, deleted: {}", sdbId, builder == null);
+  }
+
+  /**
+   * @return True if the invalidation log has been applied to the index within the max lag
+   */
+  private boolean isCurrent() {
+    OffsetDateTime appliedTs = currentAsOfTs;
+    return appliedTs != null
+        && !appliedTs.isBefore(dateTimeSupplier.get().minusSeconds(maxLagInSeconds));
+  }
+
+  private SdbAcl.Builder getBuilder(Map<String, SdbAcl.Builder> builders, SdbAclEntryRecord entry) {
+    return builders.computeIfAbsent(
+        entry.getSdbId(), sdbId -> new SdbAcl.Builder(entry.getSdbPath()));
+  }
+
+  private boolean hasAnyRole(
+      Map<String, Set<String>> rolesByPrincipal,
+      Collection<String> principalNames,
+      Set<String> roles) {
+    for (String principalName : principalNames) {
+      Set<String> grantedRoles = rolesByPrincipal.get(principalName);
+      if (grantedRoles != null && grantedRoles.stream().anyMatch(roles::contains)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void recordLookup(boolean hit) {
+    if (hit) {
+      hitCounter.inc();
+    } else {
+      missCounter.inc();
+    }
+  }
+
+  /** The immutable path and access control list of a single SDB. */
+  static class SdbAcl {
+    private final String path;
+    private final Map<String, Set<String>> rolesByIamPrincipalArn;
+    private final Map<String, Set<String>> rolesByUserGroup;
+    private final Map<String, Set<String>> rolesByLowerCaseUserGroup;
+
+    private SdbAcl(Builder builder) {
+      path = builder.path;
+      rolesByIamPrincipalArn = Map.copyOf(builder.rolesByIamPrincipalArn);
+      rolesByUserGroup = Map.copyOf(builder.rolesByUserGroup);
+      rolesByLowerCaseUserGroup = Map.copyOf(builder.rolesByLowerCaseUserGroup);
+    }
+
+    static class Builder {
+      private final String path;
+      private final Map<String, Set<String>> rolesByIamPrincipalArn = new HashMap<>();
+      private final Map<String, Set<String>> rolesByUserGroup = new HashMap<>();
+      private final Map<String, Set<String>> rolesByLowerCaseUserGroup = new HashMap<>();
+
+      Builder(String path) {
+        this.path = path;
+      }
+
+      void addIamPrincipalRole(SdbAclEntryRecord entry) {
+        addRole(rolesByIamPrincipalArn, entry.getPrincipalName(), entry.getRoleName());
+      }
+
+      void addUserGroupRole(SdbAclEntryRecord entry) {
+        addRole(rolesByUserGroup, entry.getPrincipalName(), entry.getRoleName());
+        if (entry.getPrincipalName() != null) {
+          addRole(
+              rolesByLowerCaseUserGroup,
+              entry.getPrincipalName().toLowerCase(),
+              entry.getRoleName());
+        }
+      }
+
+      private void addRole(Map<String, Set<String>> rolesByPrincipal, String name, String role) {
+        // SDBs without any permissions of a type are read with null principal and role names
+        if (name != null && role != null) {
+          rolesByPrincipal.computeIfAbsent(name, key -> new HashSet<>()).add(role);
+        }
+      }
+
+      SdbAcl build() {
+        return new SdbAcl(this);
+      }
+    }
+  }
+}
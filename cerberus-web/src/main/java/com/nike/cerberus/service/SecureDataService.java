@@ -22,38 +22,68 @@ import com.codahale.metrics.Counter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.DecryptedPayloadCache;
 import com.nike.cerberus.dao.SecureDataDao;
 import com.nike.cerberus.dao.SecureDataVersionDao;
 import com.nike.cerberus.domain.*;
 import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.metric.MetricsService;
 import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.SecureDataChangeRecord;
 import com.nike.cerberus.record.SecureDataRecord;
 import com.nike.cerberus.record.SecureDataVersionRecord;
+import com.nike.cerberus.util.CustomApiError;
 import com.nike.cerberus.util.DateTimeSupplier;
+import com.nike.cerberus.util.ETagUtils;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Component
 public class SecureDataService {
 
+  static final int LIST_KEYS_PAGE_SIZE = 1000;
+  static final int BULK_READ_MAX_SECRETS = 1000;
+
   private final SecureDataDao secureDataDao;
   private final EncryptionService encryptionService;
   private final ObjectMapper objectMapper;
   private final DateTimeSupplier dateTimeSupplier;
   private final SecureDataVersionDao secureDataVersionDao;
+  private final DecryptedPayloadCache decryptedPayloadCache;
+  private final SecureDataWatchService secureDataWatchService;
+  private final KpiCounterService kpiCounterService;
   private final Counter reencryptSuccessCounter;
   private final Counter reencryptFailCounter;
+  private final ExecutorService decryptionExecutor;
+  private final ExecutorService encryptionExecutor;
+  private final TransactionTemplate transactionTemplate;
+  private final int bulkWriteChunkSize;
 
   protected final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -64,15 +94,47 @@ public class SecureDataService {
       ObjectMapper objectMapper,
       DateTimeSupplier dateTimeSupplier,
       SecureDataVersionDao secureDataVersionDao,
-      MetricsService metricsService) {
+      DecryptedPayloadCache decryptedPayloadCache,
+      MetricsService metricsService,
+      SecureDataWatchService secureDataWatchService,
+      KpiCounterService kpiCounterService,
+      PlatformTransactionManager transactionManager,
+      @Value("${cerberus.secureData.bulkRead.decryptionThreads:8}") int decryptionThreads,
+      @Value("${cerberus.secureData.bulkWrite.encryptionThreads:8}") int encryptionThreads,
+      @Value("${cerberus.secureData.bulkWrite.chunkSize:100}") int bulkWriteChunkSize) {
     this.secureDataDao = secureDataDao;
     this.encryptionService = encryptionService;
     this.objectMapper = objectMapper;
     this.dateTimeSupplier = dateTimeSupplier;
     this.secureDataVersionDao = secureDataVersionDao;
+    this.decryptedPayloadCache = decryptedPayloadCache;
+    this.secureDataWatchService = secureDataWatchService;
+    this.kpiCounterService = kpiCounterService;
     reencryptSuccessCounter =
         metricsService.getOrCreateCounter("cms.encryption.reencrypt.success", null);
     reencryptFailCounter = metricsService.getOrCreateCounter("cms.encryption.reencrypt.fail", null);
+    decryptionExecutor =
+        Executors.newFixedThreadPool(
+            decryptionThreads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("secure-data-decryption-%d")
+                .setDaemon(true)
+                .build());
+    encryptionExecutor =
+        Executors.newFixedThreadPool(
+            encryptionThreads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("secure-data-encryption-%d")
+                .setDaemon(true)
+                .build());
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    this.bulkWriteChunkSize = bulkWriteChunkSize;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    decryptionExecutor.shutdownNow();
+    encryptionExecutor.shutdownNow();
   }
 
   @Transactional
@@ -125,6 +187,7 @@ public class SecureDataService {
           principal,
           now,
           secureData.getLastRotatedTs());
+      kpiCounterService.updateSecureData(secureData.getTopLevelKVCount(), topLevelKVPairCount);
 
     } else {
       secureDataDao.writeSecureData(
@@ -138,22 +201,134 @@ public class SecureDataService {
           now,
           principal,
           now);
+      kpiCounterService.addSecureData(SecureDataType.OBJECT, topLevelKVPairCount);
+    }
+
+    secureDataWatchService.recordChanges(sdbId, SecureDataType.OBJECT, List.of(path), false);
+  }
+
+  /**
+   * Writes many secrets at once, ex: to restore an SDB or to import secrets from another
+   * environment.
+   *
+   * <p>The secrets are written in chunks. The payloads of a chunk are encrypted in parallel before
+   * any rows are locked, then the chunk is written in its own transaction: the existing secrets are
+   * read and locked with one query, and the versions and the current secrets are written with one
+   * statement each. A failure only rolls back the chunk that it happened in, the chunks before it
+   * stay written, so a failed import can be retried as a whole.
+   *
+   * @param plainTextPayloads The plain text payloads by path
+   */
+  public void writeSecrets(String sdbId, Map<String, String> plainTextPayloads, String principal) {
+    log.debug("Writing secure data: SDB ID: {}, Paths: {}", sdbId, plainTextPayloads.size());
+
+    for (List<Map.Entry<String, String>> chunk :
+        Iterables.partition(plainTextPayloads.entrySet(), bulkWriteChunkSize)) {
+      List<SecureDataRecord> encryptedChunk = encryptInParallel(sdbId, chunk);
+      transactionTemplate.executeWithoutResult(
+          status -> writeSecretsChunk(sdbId, encryptedChunk, principal));
+    }
+  }
+
+  private List<SecureDataRecord> encryptInParallel(
+      String sdbId, List<Map.Entry<String, String>> plainTextPayloads) {
+    List<Future<SecureDataRecord>> futures = new ArrayList<>(plainTextPayloads.size());
+    for (Map.Entry<String, String> plainTextPayload : plainTextPayloads) {
+      futures.add(
+          encryptionExecutor.submit(
+              () -> {
+                String path = plainTextPayload.getKey();
+                String plainText = plainTextPayload.getValue();
+                // Encrypted as a String like in writeSecret
+                String ciphertext = encryptionService.encrypt(plainText, path);
+                return new SecureDataRecord()
+                    .setSdboxId(sdbId)
+                    .setPath(path)
+                    .setEncryptedBlob(ciphertext.getBytes(StandardCharsets.UTF_8))
+                    .setTopLevelKVCount(getTopLevelKVPairCount(plainText))
+                    .setType(SecureDataType.OBJECT)
+                    .setSizeInBytes(plainText.getBytes(StandardCharsets.UTF_8).length);
+              }));
+    }
+    return getAll(futures, "encrypting");
+  }
+
+  private void writeSecretsChunk(
+      String sdbId, List<SecureDataRecord> encryptedChunk, String principal) {
+    OffsetDateTime now = dateTimeSupplier.get();
+    Map<String, SecureDataRecord> existingByPath = new HashMap<>();
+    secureDataDao
+        .readSecureDataByPathsLocking(
+            sdbId, Lists.transform(encryptedChunk, SecureDataRecord::getPath))
+        .forEach(existing -> existingByPath.put(existing.getPath(), existing));
+
+    List<SecureDataVersionRecord> versions = new ArrayList<>();
+    List<SecureDataRecord> updates = new ArrayList<>();
+    List<SecureDataRecord> inserts = new ArrayList<>();
+    for (SecureDataRecord record : encryptedChunk) {
+      record.setLastUpdatedBy(principal).setLastUpdatedTs(now);
+      SecureDataRecord existing = existingByPath.get(record.getPath());
+      if (existing == null) {
+        inserts.add(record.setCreatedBy(principal).setCreatedTs(now).setLastRotatedTs(now));
+        kpiCounterService.addSecureData(SecureDataType.OBJECT, record.getTopLevelKVCount());
+        continue;
+      }
+      if (existing.getType() != SecureDataType.OBJECT) {
+        throw ApiException.newBuilder()
+            .withApiErrors(DefaultApiError.INVALID_SECURE_DATA_TYPE)
+            .build();
+      }
+      versions.add(
+          new SecureDataVersionRecord()
+              .setSdboxId(sdbId)
+              .setPath(existing.getPath())
+              .setEncryptedBlob(existing.getEncryptedBlob())
+              .setType(SecureDataType.OBJECT)
+              .setSizeInBytes(existing.getSizeInBytes())
+              .setAction(SecureDataVersionRecord.SecretsAction.UPDATE.name())
+              .setVersionCreatedBy(existing.getLastUpdatedBy())
+              .setVersionCreatedTs(existing.getLastUpdatedTs())
+              .setActionPrincipal(principal)
+              .setActionTs(now));
+      kpiCounterService.updateSecureData(
+          existing.getTopLevelKVCount(), record.getTopLevelKVCount());
+      updates.add(
+          record
+              .setId(existing.getId())
+              .setCreatedBy(existing.getCreatedBy())
+              .setCreatedTs(existing.getCreatedTs())
+              .setLastRotatedTs(existing.getLastRotatedTs()));
     }
+
+    secureDataVersionDao.writeSecureDataVersions(versions);
+    secureDataDao.updateSecureDataRecords(sdbId, updates);
+    secureDataDao.writeSecureDataRecords(sdbId, inserts);
+    secureDataWatchService.recordChanges(
+        sdbId,
+        SecureDataType.OBJECT,
+        Lists.transform(encryptedChunk, SecureDataRecord::getPath),
+        false);
   }
 
+  /**
+   * Encrypts and stores a secure file without holding it in memory. The contents are encrypted as
+   * they are read and the ciphertext is streamed to the database, and on update the current file is
+   * copied into the versions table by the database.
+   *
+   * @param contents The plaintext file contents, read as the file is stored
+   * @param sizeInBytes The size of the plaintext file contents
+   */
   @Transactional
   public void writeSecureFile(
-      String sdbId, String path, byte[] bytes, int sizeInBytes, String principal) {
+      String sdbId, String path, InputStream contents, int sizeInBytes, String principal) {
     log.debug("Writing secure file: SDB ID: {}, Path: {}", sdbId, path);
 
-    byte[] ciphertextBytes = encryptionService.encrypt(bytes, path);
-    int topLevelKVPairCount = 0;
     OffsetDateTime now = dateTimeSupplier.get();
 
-    // Fetch the current version if there is one, so that on update it can be moved to the versions
+    // Lock the current version if there is one, so that on update it can be moved to the versions
     // table
     Optional<SecureDataRecord> secureDataRecordOpt =
-        secureDataDao.readSecureDataByPath(sdbId, path);
+        secureDataDao.readMetadataByPathLocking(sdbId, path);
     if (secureDataRecordOpt.isPresent()) {
       SecureDataRecord secureData = secureDataRecordOpt.get();
       if (secureData.getType() != SecureDataType.FILE) {
@@ -162,27 +337,15 @@ public class SecureDataService {
             .build();
       }
 
-      secureDataVersionDao.writeSecureDataVersion(
-          sdbId,
-          path,
-          secureData.getEncryptedBlob(),
-          SecureDataVersionRecord.SecretsAction.UPDATE,
-          SecureDataType.FILE,
-          secureData.getSizeInBytes(),
-          secureData.getLastUpdatedBy(),
-          secureData.getLastUpdatedTs(),
-          principal,
-          now);
+      secureDataVersionDao.writeSecureDataVersionFromSecureData(
+          sdbId, path, SecureDataVersionRecord.SecretsAction.UPDATE, principal, now);
 
       secureDataDao.updateSecureData(
           sdbId,
           path,
-          ciphertextBytes,
-          topLevelKVPairCount,
+          encryptionService.encrypt(contents, path),
           SecureDataType.FILE,
           sizeInBytes,
-          secureData.getCreatedBy(),
-          secureData.getCreatedTs(),
           principal,
           now,
           secureData.getLastRotatedTs());
@@ -191,15 +354,17 @@ public class SecureDataService {
       secureDataDao.writeSecureData(
           sdbId,
           path,
-          ciphertextBytes,
-          topLevelKVPairCount,
+          encryptionService.encrypt(contents, path),
           SecureDataType.FILE,
           sizeInBytes,
           principal,
           now,
           principal,
           now);
+      kpiCounterService.addSecureData(SecureDataType.FILE, 0);
     }
+
+    secureDataWatchService.recordChanges(sdbId, SecureDataType.FILE, List.of(path), false);
   }
 
   /**
@@ -229,28 +394,125 @@ public class SecureDataService {
       return Optional.empty();
     }
 
-    SecureDataRecord secureDataRecord = secureDataRecordOpt.get();
-    byte[] ciphertextBytes = secureDataRecordOpt.get().getEncryptedBlob();
-
-    // Make sure to convert ciphertext to a String first, then decrypt, because Amazon throws an
-    // error if the ciphertext was encrypted as a String, but is not decrypted as a String.
-    String ciphertext = new String(ciphertextBytes, StandardCharsets.UTF_8);
-    String plaintext = encryptionService.decrypt(ciphertext, path);
-    SecureData secureData =
-        new SecureData()
-            .setCreatedBy(secureDataRecord.getCreatedBy())
-            .setCreatedTs(secureDataRecord.getCreatedTs())
-            .setData(plaintext)
-            .setLastUpdatedBy(secureDataRecord.getLastUpdatedBy())
-            .setLastUpdatedTs(secureDataRecord.getLastUpdatedTs())
-            .setPath(secureDataRecord.getPath())
-            .setSdboxId(secureDataRecord.getSdboxId());
+    return Optional.of(toSecureData(secureDataRecordOpt.get(), path));
+  }
+
+  /**
+   * Reads every secret under the partial path with one query and decrypts them in parallel.
+   *
+   * @param partialPath path to a node in the data structure that potentially has children
+   * @return The secrets by path, in path order
+   */
+  public Map<String, SecureData> readSecrets(String sdbId, String partialPath) {
+    if (!partialPath.endsWith("/")) {
+      partialPath = partialPath + "/";
+    }
+    log.debug("Reading secure data: Partial path: {}", partialPath);
+
+    // One more than the max is read to tell if there are too many
+    List<SecureDataRecord> secureDataRecords =
+        secureDataDao.readSecureDataByPartialPathAndType(
+            sdbId, partialPath, SecureDataType.OBJECT, BULK_READ_MAX_SECRETS + 1);
+    if (secureDataRecords.size() > BULK_READ_MAX_SECRETS) {
+      throw tooManySecretsException();
+    }
+    return decryptInParallel(secureDataRecords);
+  }
 
-    return Optional.of(secureData);
+  /**
+   * Reads the secrets at the paths with one query and decrypts them in parallel, paths without a
+   * secret are left out.
+   *
+   * @return The secrets by path, in path order
+   */
+  public Map<String, SecureData> readSecrets(String sdbId, Collection<String> paths) {
+    if (paths.size() > BULK_READ_MAX_SECRETS) {
+      throw tooManySecretsException();
+    }
+    log.debug("Reading secure data: Paths: {}", paths);
+
+    return decryptInParallel(
+        secureDataDao.readSecureDataByPathsAndType(sdbId, paths, SecureDataType.OBJECT));
+  }
+
+  private ApiException tooManySecretsException() {
+    String msg = "Can not read more than " + BULK_READ_MAX_SECRETS + " secrets at once";
+    return ApiException.newBuilder()
+        .withApiErrors(
+            CustomApiError.createCustomApiError(DefaultApiError.GENERIC_BAD_REQUEST, msg))
+        .withExceptionMessage(msg)
+        .build();
+  }
+
+  private Map<String, SecureData> decryptInParallel(List<SecureDataRecord> secureDataRecords) {
+    List<Future<SecureData>> futures = new ArrayList<>(secureDataRecords.size());
+    for (SecureDataRecord secureDataRecord : secureDataRecords) {
+      futures.add(
+          decryptionExecutor.submit(
+              () -> toSecureData(secureDataRecord, secureDataRecord.getPath())));
+    }
+
+    Map<String, SecureData> secrets = new LinkedHashMap<>();
+    for (SecureData secureData : getAll(futures, "decrypting")) {
+      secrets.put(secureData.getPath(), secureData);
+    }
+    return secrets;
+  }
+
+  /** Waits for every task, if one fails the rest are cancelled and its exception is rethrown. */
+  private <T> List<T> getAll(List<Future<T>> futures, String action) {
+    List<T> results = new ArrayList<>(futures.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while " + action + " secure data", e);
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed " + action + " secure data", e.getCause());
+    }
+    return results;
   }
 
-  public Optional<SecureFileCurrent> readFile(String sdbId, String path) {
-    log.debug("Reading secure file: Path: {}", path);
+  private SecureData toSecureData(SecureDataRecord secureDataRecord, String path) {
+    String cacheKey = DecryptedPayloadCache.getKey(secureDataRecord, path);
+    String plaintext =
+        decryptedPayloadCache
+            .getIfPresent(cacheKey)
+            .map(plaintextBytes -> new String(plaintextBytes, StandardCharsets.UTF_8))
+            .orElse(null);
+    if (plaintext == null) {
+      byte[] ciphertextBytes = secureDataRecord.getEncryptedBlob();
+
+      // Make sure to convert ciphertext to a String first, then decrypt, because Amazon throws an
+      // error if the ciphertext was encrypted as a String, but is not decrypted as a String.
+      String ciphertext = new String(ciphertextBytes, StandardCharsets.UTF_8);
+      plaintext = encryptionService.decrypt(ciphertext, path);
+      if (decryptedPayloadCache.isEnabled()) {
+        decryptedPayloadCache.put(cacheKey, plaintext.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return new SecureData()
+        .setCreatedBy(secureDataRecord.getCreatedBy())
+        .setCreatedTs(secureDataRecord.getCreatedTs())
+        .setData(plaintext)
+        .setLastUpdatedBy(secureDataRecord.getLastUpdatedBy())
+        .setLastUpdatedTs(secureDataRecord.getLastUpdatedTs())
+        .setPath(secureDataRecord.getPath())
+        .setSdboxId(secureDataRecord.getSdboxId());
+  }
+
+  /**
+   * Reads a secure file, the plaintext is decrypted as the returned contents are read rather than
+   * up front. Files are only served from the decrypted payload cache when already cached, streaming
+   * them never adds to the cache.
+   */
+  public Optional<StreamingSecureFile> readFileStream(String sdbId, String path) {
+    log.debug("Streaming secure file: Path: {}", path);
     Optional<SecureDataRecord> secureDataRecordOpt =
         secureDataDao.readSecureDataByPathAndType(sdbId, path, SecureDataType.FILE);
     if (!secureDataRecordOpt.isPresent()) {
@@ -258,22 +520,37 @@ public class SecureDataService {
     }
 
     SecureDataRecord secureDataRecord = secureDataRecordOpt.get();
-    byte[] plaintextBytes =
-        encryptionService.decrypt(secureDataRecord.getEncryptedBlob(), secureDataRecord.getPath());
-
-    SecureFileCurrent secureFile =
-        new SecureFileCurrent()
-            .setCreatedBy(secureDataRecord.getCreatedBy())
-            .setCreatedTs(secureDataRecord.getCreatedTs())
-            .setData(plaintextBytes)
-            .setSizeInBytes(plaintextBytes.length)
-            .setName(StringUtils.substringAfterLast(secureDataRecord.getPath(), "/"))
-            .setLastUpdatedBy(secureDataRecord.getLastUpdatedBy())
-            .setLastUpdatedTs(secureDataRecord.getLastUpdatedTs())
-            .setPath(secureDataRecord.getPath())
-            .setSdboxId(secureDataRecord.getSdboxId());
+    String cacheKey = DecryptedPayloadCache.getKey(secureDataRecord, secureDataRecord.getPath());
+    Optional<byte[]> cachedPlaintext = decryptedPayloadCache.getIfPresent(cacheKey);
+    InputStream contents =
+        cachedPlaintext.isPresent()
+            ? new ByteArrayInputStream(cachedPlaintext.get())
+            : encryptionService.decryptToStream(
+                secureDataRecord.getEncryptedBlob(), secureDataRecord.getPath());
+
+    return Optional.of(
+        new StreamingSecureFile(
+            StringUtils.substringAfterLast(secureDataRecord.getPath(), "/"),
+            secureDataRecord.getSizeInBytes(),
+            secureDataRecord.getLastUpdatedTs(),
+            ETagUtils.toETag(
+                sdbId, secureDataRecord.getPath(), secureDataRecord.getLastUpdatedTs()),
+            contents));
+  }
 
-    return Optional.of(secureFile);
+  /**
+   * Reads just the metadata of the secure data, so that a conditional request can be answered
+   * without reading the encrypted blob or decrypting it.
+   *
+   * @return The ETag of the secure data at the path, if there is any
+   */
+  public Optional<String> readETag(String sdbId, String path, SecureDataType type) {
+    return secureDataDao
+        .readMetadataByPathAndType(sdbId, path, type)
+        .map(
+            secureDataRecord ->
+                ETagUtils.toETag(
+                    sdbId, secureDataRecord.getPath(), secureDataRecord.getLastUpdatedTs()));
   }
 
   public Optional<SecureFileSummary> readFileMetadataOnly(String sdbId, String path) {
@@ -299,18 +576,25 @@ public class SecureDataService {
     return Optional.of(secureFile);
   }
 
+  /**
+   * Restores the secrets of an SDB with writeSecrets.
+   *
+   * @param data The secrets by path, the paths include the category
+   */
   public void restoreSdbSecrets(
       String sdbId, Map<String, Map<String, Object>> data, String principal) {
+    Map<String, String> plainTextPayloads = new LinkedHashMap<>();
     data.forEach(
         (String path, Map<String, Object> secretsData) -> {
           String pathWithoutCategory = StringUtils.substringAfter(path, "/");
           try {
-            String plainTextSecrets = objectMapper.writeValueAsString(secretsData);
-            writeSecret(sdbId, pathWithoutCategory, plainTextSecrets, principal);
+            plainTextPayloads.put(
+                pathWithoutCategory, objectMapper.writeValueAsString(secretsData));
           } catch (JsonProcessingException jpe) {
             throw new RuntimeException("Failed to parse secrets data for SDB ID: " + sdbId, jpe);
           }
         });
+    writeSecrets(sdbId, plainTextPayloads, principal);
   }
 
   /**
@@ -326,22 +610,33 @@ public class SecureDataService {
    * @return Array of keys if the key is a data node it will not end with "/"
    */
   public Set<String> listKeys(String sdbId, String partialPath) {
+    Set<String> keys = new LinkedHashSet<>();
+    List<String> page;
+    String after = null;
+    do {
+      page = listKeys(sdbId, partialPath, after, LIST_KEYS_PAGE_SIZE);
+      keys.addAll(page);
+      after = page.isEmpty() ? null : page.get(page.size() - 1);
+    } while (page.size() == LIST_KEYS_PAGE_SIZE);
+    return keys;
+  }
+
+  /**
+   * Lists one page of the keys that {@link #listKeys(String, String)} lists, read from the path
+   * tree so that only the direct children of the partial path are read no matter how many paths are
+   * below them.
+   *
+   * @param partialPath path to a node in the data structure that potentially has children
+   * @param after Only keys that sort after this one are returned, or null to start from the first
+   *     key
+   * @param limit The max number of keys to return
+   * @return The keys in order, if the key is a data node it will not end with "/"
+   */
+  public List<String> listKeys(String sdbId, String partialPath, String after, int limit) {
     if (!partialPath.endsWith("/")) {
       partialPath = partialPath + "/";
     }
-
-    Set<String> keys = new HashSet<>();
-    String[] pArray =
-        secureDataDao.getPathsByPartialPathAndType(sdbId, partialPath, SecureDataType.OBJECT);
-    if (pArray == null || pArray.length < 1) {
-      return keys;
-    }
-
-    for (int i = 0; i < pArray.length; i++) {
-      String fullPath = pArray[i];
-      keys.add(StringUtils.removeStart(fullPath, partialPath).replaceAll("\\/.*$", "/"));
-    }
-    return keys;
+    return secureDataDao.listChildNames(sdbId, SecureDataType.OBJECT, partialPath, after, limit);
   }
 
   /**
@@ -362,11 +657,69 @@ public class SecureDataService {
       partialPath = partialPath + "/";
     }
 
-    int totalNumFiles = secureDataDao.countByPartialPathAndType(partialPath, SecureDataType.FILE);
-    List<SecureFileSummary> fileSummaries = Lists.newArrayList();
+    int totalNumFiles =
+        secureDataDao.countByPartialPathAndType(sdbId, partialPath, SecureDataType.FILE);
     List<SecureDataRecord> secureDataRecords =
-        secureDataDao.listSecureDataByPartialPathAndType(
-            sdbId, partialPath, SecureDataType.FILE, limit, offset);
+        secureDataDao.listMetadataByPartialPathAndType(
+            sdbId, partialPath, SecureDataType.FILE, null, limit, offset);
+
+    SecureFileSummaryResult result = toSecureFileSummaryResult(secureDataRecords);
+    result.setLimit(limit);
+    result.setOffset(offset);
+    result.setTotalFileCount(totalNumFiles);
+    result.setHasNext(result.getTotalFileCount() > (offset + limit));
+    if (result.isHasNext()) {
+      result.setNextOffset(offset + limit);
+      if (!secureDataRecords.isEmpty()) {
+        result.setNextCursor(
+            toSecureFileSummaryCursor(secureDataRecords.get(secureDataRecords.size() - 1)));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Lists file metadata like {@link #listSecureFilesSummaries(String, String, int, int)}, paging
+   * with the next cursor of the previous page instead of an offset so that each page is read
+   * straight from where the previous page ended.
+   *
+   * @param partialPath path to a node in the data structure that potentially has children
+   * @param cursor The next cursor of the previous page, or null for the first page
+   */
+  public SecureFileSummaryResult listSecureFilesSummaries(
+      String sdbId, String partialPath, int limit, String cursor) {
+    if (!partialPath.endsWith("/")) {
+      partialPath = partialPath + "/";
+    }
+
+    SecureDataRecord after = cursor == null ? null : fromSecureFileSummaryCursor(cursor);
+    int totalNumFiles =
+        secureDataDao.countByPartialPathAndType(sdbId, partialPath, SecureDataType.FILE);
+    // One more than the limit is read to tell if there is a next page
+    List<SecureDataRecord> secureDataRecords =
+        secureDataDao.listMetadataByPartialPathAndType(
+            sdbId, partialPath, SecureDataType.FILE, after, limit + 1, 0);
+    boolean hasNext = secureDataRecords.size() > limit;
+    if (hasNext) {
+      secureDataRecords = secureDataRecords.subList(0, limit);
+    }
+
+    SecureFileSummaryResult result = toSecureFileSummaryResult(secureDataRecords);
+    result.setLimit(limit);
+    result.setTotalFileCount(totalNumFiles);
+    result.setHasNext(hasNext);
+    if (hasNext && !secureDataRecords.isEmpty()) {
+      result.setNextCursor(
+          toSecureFileSummaryCursor(secureDataRecords.get(secureDataRecords.size() - 1)));
+    }
+
+    return result;
+  }
+
+  private SecureFileSummaryResult toSecureFileSummaryResult(
+      List<SecureDataRecord> secureDataRecords) {
+    List<SecureFileSummary> fileSummaries = Lists.newArrayList();
     secureDataRecords.forEach(
         secureDataRecord -> {
           fileSummaries.add(
@@ -382,19 +735,41 @@ public class SecureDataService {
         });
 
     SecureFileSummaryResult result = new SecureFileSummaryResult();
-    result.setLimit(limit);
-    result.setOffset(offset);
     result.setSecureFileSummaries(fileSummaries);
     result.setFileCountInResult(fileSummaries.size());
-    result.setTotalFileCount(totalNumFiles);
-    result.setHasNext(result.getTotalFileCount() > (offset + limit));
-    if (result.isHasNext()) {
-      result.setNextOffset(offset + limit);
-    }
-
     return result;
   }
 
+  /** The cursor is the position of the last file of a page in the created ts, id order. */
+  static String toSecureFileSummaryCursor(SecureDataRecord secureDataRecord) {
+    String position =
+        secureDataRecord.getCreatedTs().toInstant().toEpochMilli() + ":" + secureDataRecord.getId();
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static SecureDataRecord fromSecureFileSummaryCursor(String cursor) {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = position.split(":", -1);
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected a created ts and an id");
+      }
+      return new SecureDataRecord()
+          .setCreatedTs(
+              OffsetDateTime.ofInstant(
+                  Instant.ofEpochMilli(Long.parseLong(parts[0])), ZoneOffset.UTC))
+          .setId(Integer.parseInt(parts[1]));
+    } catch (IllegalArgumentException | DateTimeException e) {
+      throw ApiException.newBuilder()
+          .withApiErrors(DefaultApiError.INVALID_QUERY_PARAMS)
+          .withExceptionMessage("Invalid secure file summary cursor: " + cursor)
+          .withExceptionCause(e)
+          .build();
+    }
+  }
+
   public Set<String> getPathsBySdbId(String sdbId) {
     return secureDataDao.getPathsBySdbId(sdbId);
   }
@@ -415,7 +790,10 @@ public class SecureDataService {
   @Transactional
   public void deleteAllSecretsThatStartWithGivenPartialPath(String sdbId, String subPath) {
     log.warn("Deleting all secrets under path: {} for sdbId: {}", subPath, sdbId);
+    List<SecureDataChangeRecord> deleted = secureDataWatchService.lockForDelete(sdbId, subPath);
+    kpiCounterService.removeSecureDataByPartialPath(sdbId, subPath);
     secureDataDao.deleteAllSecretsThatStartWithGivenPartialPath(sdbId, subPath);
+    secureDataWatchService.recordDeletes(sdbId, deleted);
   }
 
   /**
@@ -423,6 +801,7 @@ public class SecureDataService {
    *
    * @param path The sub path to delete all secrets that have paths that start with
    */
+  @Transactional
   public void deleteSecret(String sdbId, String path, SecureDataType type, String principal) {
     OffsetDateTime now = dateTimeSupplier.get();
     SecureDataRecord secureDataRecord =
@@ -442,7 +821,10 @@ public class SecureDataService {
         principal,
         now);
 
-    secureDataDao.deleteSecret(sdbId, path);
+    secureDataDao.deleteSecret(sdbId, path, secureDataRecord.getType());
+    kpiCounterService.removeSecureData(
+        secureDataRecord.getType(), secureDataRecord.getTopLevelKVCount());
+    secureDataWatchService.recordChanges(sdbId, secureDataRecord.getType(), List.of(path), true);
   }
 
   public int getTotalNumberOfKeyValuePairs() {
@@ -485,53 +867,27 @@ public class SecureDataService {
   }
 
   /**
-   * Rotate data keys by re-encrypting data. The oldest data keys in both secure data and secure
-   * data version that are expired (based on rotation interval) will be considered for key rotation.
+   * Rotates a data key by re-encrypting the secure data or secure data version that it protects.
    *
-   * @param numberOfKeys Max number of data keys to be rotated
-   * @param pauseTimeInMillis Number of millisecond to pause between re-encryption operations
-   * @param rotationIntervalInDays Data keys generated older than X days will be considered for key
-   *     rotation
+   * @param dataKeyInfo The data key to rotate
+   * @throws RuntimeException If the data could not be re-encrypted, ex: KMS throttled the request
    */
-  public void rotateDataKeys(int numberOfKeys, int pauseTimeInMillis, int rotationIntervalInDays) {
-    int[] counter = new int[2];
-    OffsetDateTime now = dateTimeSupplier.get();
-    OffsetDateTime expiredTs = now.minusDays(rotationIntervalInDays);
-    List<DataKeyInfo> oldestDataKeyInfos =
-        secureDataDao.getOldestDataKeyInfo(expiredTs, numberOfKeys);
-
-    for (DataKeyInfo dataKeyInfo : oldestDataKeyInfos) {
-      Source source = dataKeyInfo.getSource();
-      if (source == Source.SECURE_DATA) {
-        String id = dataKeyInfo.getId();
-        try {
-          reencryptData(id);
-          counter[0]++;
-          reencryptSuccessCounter.inc();
-        } catch (Exception e) {
-          log.error("Failed to re-encrypt secure data id: {}", id);
-          reencryptFailCounter.inc();
-        }
-      } else if (source == Source.SECURE_DATA_VERSION) {
-        String versionId = dataKeyInfo.getId();
-        try {
-          reencryptDataVersion(versionId);
-          counter[1]++;
-          reencryptSuccessCounter.inc();
-        } catch (Exception e) {
-          log.error("Failed to re-encrypt secure data version id: {}", versionId);
-          reencryptFailCounter.inc();
-        }
-      }
-
-      try {
-        Thread.sleep(pauseTimeInMillis);
-      } catch (InterruptedException e) {
-        log.error("Failed to sleep between re-encryption", e);
+  public void reencryptDataKey(DataKeyInfo dataKeyInfo) {
+    String id = dataKeyInfo.getId();
+    try {
+      if (dataKeyInfo.getSource() == Source.SECURE_DATA) {
+        reencryptData(id);
+      } else if (dataKeyInfo.getSource() == Source.SECURE_DATA_VERSION) {
+        reencryptDataVersion(id);
+      } else {
+        throw new IllegalArgumentException("Unknown data key source: " + dataKeyInfo.getSource());
       }
+      reencryptSuccessCounter.inc();
+    } catch (RuntimeException e) {
+      log.error("Failed to re-encrypt {} id: {}", dataKeyInfo.getSource(), id);
+      reencryptFailCounter.inc();
+      throw e;
     }
-    log.info(
-        "Re-encrypted {} secure data and {} secure data version entries.", counter[0], counter[1]);
   }
 
   @Transactional
@@ -92,9 +92,13 @@ public class SecureDataVersionService {
             .setVersionCreatedTs(secureDataVersion.getVersionCreatedTs()));
   }
 
-  public Optional<SecureFileVersion> getSecureFileVersionById(
-      String sdbId, String versionId, String sdbCategory, String pathToSecureData) {
-    log.debug("Reading secure data version: ID: {}", versionId);
+  /**
+   * Reads a secure file version, the plaintext is decrypted as the returned contents are read
+   * rather than up front.
+   */
+  public Optional<StreamingSecureFile> getSecureFileVersionStreamById(
+      String sdbId, String versionId, String pathToSecureData) {
+    log.debug("Streaming secure data version: ID: {}", versionId);
     Optional<SecureDataVersionRecord> secureDataVersionRecord =
         StringUtils.equals(versionId, DEFAULT_ID_FOR_CURRENT_VERSIONS)
             ? getCurrentSecureDataVersion(sdbId, pathToSecureData)
@@ -107,22 +111,13 @@ public class SecureDataVersionService {
     }
 
     SecureDataVersionRecord secureDataVersion = secureDataVersionRecord.get();
-    byte[] encryptedBlob = secureDataVersion.getEncryptedBlob();
-    byte[] unencryptedBlob = encryptionService.decrypt(encryptedBlob, secureDataVersion.getPath());
-
     return Optional.of(
-        new SecureFileVersion()
-            .setAction(secureDataVersion.getAction())
-            .setActionPrincipal(secureDataVersion.getActionPrincipal())
-            .setActionTs(secureDataVersion.getActionTs())
-            .setData(unencryptedBlob)
-            .setName(StringUtils.substringAfterLast(secureDataVersion.getPath(), "/"))
-            .setSizeInBytes(secureDataVersion.getSizeInBytes())
-            .setId(secureDataVersion.getId())
-            .setPath(String.format("%s/%s", sdbCategory, secureDataVersion.getPath()))
-            .setSdboxId(secureDataVersion.getSdboxId())
-            .setVersionCreatedBy(secureDataVersion.getVersionCreatedBy())
-            .setVersionCreatedTs(secureDataVersion.getVersionCreatedTs()));
+        new StreamingSecureFile(
+            StringUtils.substringAfterLast(secureDataVersion.getPath(), "/"),
+            secureDataVersion.getSizeInBytes(),
+            secureDataVersion.getVersionCreatedTs(),
+            encryptionService.decryptToStream(
+                secureDataVersion.getEncryptedBlob(), secureDataVersion.getPath())));
   }
 
   public SecureDataVersionsResult getSecureDataVersionSummariesByPath(
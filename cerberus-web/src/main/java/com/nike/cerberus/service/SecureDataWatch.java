@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import com.nike.cerberus.domain.SecureDataChange;
+import com.nike.cerberus.domain.SecureDataChangesResult;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client that is waiting for the secure data under a path to change. It is completed with the
+ * changes once there are any, or without any when it expires, along with the version that the
+ * client should watch from next.
+ */
+public class SecureDataWatch {
+
+  private final String sdbId;
+  private final String partialPath;
+  private final AtomicLong version;
+  private final CompletableFuture<SecureDataChangesResult> result = new CompletableFuture<>();
+
+  SecureDataWatch(String sdbId, String partialPath, long version) {
+    this.sdbId = sdbId;
+    this.partialPath = partialPath;
+    this.version = new AtomicLong(version);
+  }
+
+  public String getSdbId() {
+    return sdbId;
+  }
+
+  public String getPartialPath() {
+    return partialPath;
+  }
+
+  /** @return The latest version of the SDB that this watch has seen */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public CompletableFuture<SecureDataChangesResult> getResult() {
+    return result;
+  }
+
+  public boolean isDone() {
+    return result.isDone();
+  }
+
+  /** Completes the watch without any changes, ex: when the client stops waiting. */
+  public void expire() {
+    complete(List.of(), getVersion());
+  }
+
+  /** Moves the watch past changes that were not under its path. */
+  void advanceTo(long version) {
+    this.version.accumulateAndGet(version, Math::max);
+  }
+
+  void complete(List<SecureDataChange> changes, long version) {
+    advanceTo(version);
+    result.complete(new SecureDataChangesResult().setVersion(getVersion()).setChanges(changes));
+  }
+}
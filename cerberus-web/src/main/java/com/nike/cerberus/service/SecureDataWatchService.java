@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nike.cerberus.dao.SecureDataChangeDao;
+import com.nike.cerberus.domain.SecureDataChange;
+import com.nike.cerberus.domain.SecureDataType;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SecureDataChangeRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Lets clients wait for the secure data of an SDB to change, instead of polling it.
+ *
+ * <p>Every write to secure data saves its path with the next version of the SDB, in the same
+ * transaction. The version of an SDB stays locked until the write commits, so the versions of an
+ * SDB are committed in order and a client only has to remember the last version that it has seen.
+ * A watch is completed with the paths under its partial path that changed after that version.
+ * Watches are woken as soon as a write on this instance commits, and the versions of the watched
+ * SDBs are polled by the SecureDataWatchRefreshJob to pick up the writes on other instances.
+ */
+@Component
+public class SecureDataWatchService {
+
+  protected final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final SecureDataChangeDao secureDataChangeDao;
+  private final DateTimeSupplier dateTimeSupplier;
+  private final long timeoutInMillis;
+  private final ExecutorService watchExecutor;
+  private final ConcurrentMap<String, Set<SecureDataWatch>> watchesBySdbId =
+      new ConcurrentHashMap<>();
+
+  @Autowired
+  public SecureDataWatchService(
+      SecureDataChangeDao secureDataChangeDao,
+      DateTimeSupplier dateTimeSupplier,
+      MetricsService metricsService,
+      @Value("${cerberus.secureData.watch.timeoutInSeconds:30}") int timeoutInSeconds) {
+    this.secureDataChangeDao = secureDataChangeDao;
+    this.dateTimeSupplier = dateTimeSupplier;
+    this.timeoutInMillis = TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+    watchExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("secure-data-watch-%d")
+                .setDaemon(true)
+                .build());
+    metricsService.getOrCreateCallbackGauge(
+        "cms.secure.data.watches",
+        () -> watchesBySdbId.values().stream().mapToInt(Set::size).sum(),
+        null);
+  }
+
+  /** Answers the clients that are still waiting, so that they reconnect to another instance. */
+  @PreDestroy
+  public void shutdown() {
+    watchExecutor.shutdownNow();
+    watchesBySdbId.values().forEach(watches -> watches.forEach(SecureDataWatch::expire));
+  }
+
+  /** @return How long a watch is held for before it is completed without any changes */
+  public long getTimeoutInMillis() {
+    return timeoutInMillis;
+  }
+
+  /** @return The current version of the SDB, for a client to start watching from */
+  public long getVersion(String sdbId) {
+    return secureDataChangeDao.getVersion(sdbId);
+  }
+
+  /**
+   * Saves the paths as changed with the next version of the SDB, in the calling transaction. The
+   * watches on this instance are woken once the transaction commits.
+   *
+   * @param deleted Whether the secure data at the paths was deleted
+   */
+  public void recordChanges(
+      String sdbId, SecureDataType type, Collection<String> paths, boolean deleted) {
+    save(
+        sdbId,
+        paths.stream()
+            .map(
+                path ->
+                    new SecureDataChangeRecord()
+                        .setSdboxId(sdbId)
+                        .setPath(path)
+                        .setType(type)
+                        .setDeleted(deleted))
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Locks the secure data under the partial path, this must be called before the secure data is
+   * deleted, in the same transaction. Like the writes, the secure data is locked before the version
+   * of the SDB is, so that deletes and writes can't deadlock.
+   *
+   * @return The secure data to pass to recordDeletes once it has been deleted
+   */
+  public List<SecureDataChangeRecord> lockForDelete(String sdbId, String partialPath) {
+    return secureDataChangeDao.lockSecureDataByPartialPath(sdbId, partialPath);
+  }
+
+  /**
+   * Saves the secure data locked by lockForDelete as deleted with the next version of the SDB, in
+   * the calling transaction.
+   */
+  public void recordDeletes(String sdbId, List<SecureDataChangeRecord> deleted) {
+    deleted.forEach(record -> record.setDeleted(true));
+    save(sdbId, deleted);
+  }
+
+  /**
+   * Deletes the saved changes of a deleted SDB, this must be called after its secure data is
+   * deleted, in the same transaction.
+   */
+  public void deleteChanges(String sdbId) {
+    secureDataChangeDao.deleteChanges(sdbId);
+  }
+
+  private void save(String sdbId, List<SecureDataChangeRecord> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    long version = secureDataChangeDao.incrementVersion(sdbId);
+    OffsetDateTime now = dateTimeSupplier.get();
+    changes.forEach(change -> change.setVersion(version).setChangedTs(now));
+    secureDataChangeDao.saveChanges(changes);
+    wakeWatchesAfterCommit(sdbId, version);
+  }
+
+  private void wakeWatchesAfterCommit(String sdbId, long version) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      wakeWatches(sdbId, version);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            wakeWatches(sdbId, version);
+          }
+        });
+  }
+
+  private void wakeWatches(String sdbId, long version) {
+    if (!watchesBySdbId.containsKey(sdbId)) {
+      return;
+    }
+    // The changes are read off of the request thread that made them
+    try {
+      watchExecutor.execute(() -> onVersion(sdbId, version));
+    } catch (RejectedExecutionException e) {
+      log.debug("Not waking the watches of sdbId: {}, shutting down", sdbId);
+    }
+  }
+
+  /**
+   * Watches the secure data under the partial path for changes after the version, the watch is
+   * completed straight away if there already are some.
+   *
+   * @param version The last version of the SDB that the client has seen
+   */
+  public SecureDataWatch watch(String sdbId, String partialPath, long version) {
+    SecureDataWatch watch = new SecureDataWatch(sdbId, partialPath, version);
+    // Registered before the changes are read, so that a write that commits in between wakes it
+    watchesBySdbId.compute(
+        sdbId,
+        (key, watches) -> {
+          Set<SecureDataWatch> updated = watches == null ? ConcurrentHashMap.newKeySet() : watches;
+          updated.add(watch);
+          return updated;
+        });
+    offer(watch, secureDataChangeDao.getChangesSince(sdbId, partialPath, version));
+    if (watch.isDone()) {
+      unwatch(watch);
+    }
+    return watch;
+  }
+
+  /** Stops waking the watch, once it is completed or the client has gone away. */
+  public void unwatch(SecureDataWatch watch) {
+    watchesBySdbId.computeIfPresent(
+        watch.getSdbId(),
+        (key, watches) -> {
+          watches.remove(watch);
+          return watches.isEmpty() ? null : watches;
+        });
+  }
+
+  /**
+   * Polls the versions of the SDBs that are being watched on this instance, and wakes the watches
+   * of the SDBs that were written to on any instance.
+   *
+   * @return The number of SDBs that had changed for their watches
+   */
+  public int refreshWatches() {
+    int changed = 0;
+    for (SecureDataChangeRecord record :
+        secureDataChangeDao.getVersions(new ArrayList<>(watchesBySdbId.keySet()))) {
+      if (onVersion(record.getSdboxId(), record.getVersion())) {
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Reads the changes of the SDB once for all of its watches that have not yet seen the version.
+   *
+   * @return Whether any watch had not seen the version
+   */
+  protected boolean onVersion(String sdbId, long version) {
+    Set<SecureDataWatch> watches = watchesBySdbId.getOrDefault(sdbId, Set.of());
+    long since = watches.stream().mapToLong(SecureDataWatch::getVersion).min().orElse(version);
+    if (since >= version) {
+      return false;
+    }
+    List<SecureDataChangeRecord> changes = secureDataChangeDao.getChangesSince(sdbId, null, since);
+    for (SecureDataWatch watch : watches) {
+      offer(watch, changes);
+      if (watch.isDone()) {
+        unwatch(watch);
+      }
+    }
+    return true;
+  }
+
+  /** Completes the watch with the changes under its path, or moves it past the other changes. */
+  private void offer(SecureDataWatch watch, List<SecureDataChangeRecord> changes) {
+    long since = watch.getVersion();
+    long latest = since;
+    List<SecureDataChange> matching = new ArrayList<>();
+    for (SecureDataChangeRecord change : changes) {
+      if (change.getVersion() <= since) {
+        continue;
+      }
+      latest = Math.max(latest, change.getVersion());
+      if (isUnder(change.getPath(), watch.getPartialPath())) {
+        matching.add(
+            new SecureDataChange()
+                .setPath(change.getPath())
+                .setType(change.getType())
+                .setVersion(change.getVersion())
+                .setDeleted(change.isDeleted()));
+      }
+    }
+    if (matching.isEmpty()) {
+      watch.advanceTo(latest);
+    } else {
+      watch.complete(matching, latest);
+    }
+  }
+
+  /**
+   * Paths are compared case insensitively like the database compares them, and only match at a path
+   * boundary, ex: a watch on app/foo matches app/foo and app/foo/bar but not app/foo2.
+   *
+   * @return True if the path is the partial path or is under it
+   */
+  static boolean isUnder(String path, String partialPath) {
+    if (StringUtils.isEmpty(partialPath) || partialPath.endsWith("/")) {
+      return StringUtils.startsWithIgnoreCase(path, partialPath);
+    }
+    return StringUtils.equalsIgnoreCase(path, partialPath)
+        || StringUtils.startsWithIgnoreCase(path, partialPath + "/");
+  }
+}
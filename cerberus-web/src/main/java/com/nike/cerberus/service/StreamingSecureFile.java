@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+
+/**
+ * A secure file or secure file version whose contents are decrypted as they are read, so that it
+ * can be sent to the client without the plaintext ever being held in memory as a whole.
+ */
+public class StreamingSecureFile {
+
+  private final String name;
+  private final int sizeInBytes;
+  private final OffsetDateTime lastModifiedTs;
+  private final String eTag;
+  private final InputStream contents;
+
+  public StreamingSecureFile(
+      String name, int sizeInBytes, OffsetDateTime lastModifiedTs, InputStream contents) {
+    this(name, sizeInBytes, lastModifiedTs, null, contents);
+  }
+
+  public StreamingSecureFile(
+      String name,
+      int sizeInBytes,
+      OffsetDateTime lastModifiedTs,
+      String eTag,
+      InputStream contents) {
+    this.name = name;
+    this.sizeInBytes = sizeInBytes;
+    this.lastModifiedTs = lastModifiedTs;
+    this.eTag = eTag;
+    this.contents = contents;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** @return The size of the plaintext */
+  public int getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /** @return When the contents were last written, used to validate ranged requests */
+  public OffsetDateTime getLastModifiedTs() {
+    return lastModifiedTs;
+  }
+
+  /** @return The ETag of the current file, or null for file versions which are never sent one */
+  public String getETag() {
+    return eTag;
+  }
+
+  /** @return The plaintext contents, the caller is responsible for closing the stream */
+  public InputStream getContents() {
+    return contents;
+  }
+}
@@ -18,6 +18,7 @@ package com.nike.cerberus.service;
 
 import com.google.common.collect.Sets;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.UserGroupDao;
 import com.nike.cerberus.domain.Role;
 import com.nike.cerberus.domain.UserGroupPermission;
@@ -27,7 +28,10 @@ import com.nike.cerberus.record.UserGroupRecord;
 import com.nike.cerberus.util.CustomApiError;
 import com.nike.cerberus.util.UuidSupplier;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -47,15 +51,23 @@ public class UserGroupPermissionService {
 
   private final UserGroupDao userGroupDao;
 
+  private final SdbSummaryCache sdbSummaryCache;
+
+  private final CacheInvalidationService cacheInvalidationService;
+
   @Autowired
   public UserGroupPermissionService(
       final UuidSupplier uuidSupplier,
       final RoleService roleService,
-      final UserGroupDao userGroupDao) {
+      final UserGroupDao userGroupDao,
+      final SdbSummaryCache sdbSummaryCache,
+      final CacheInvalidationService cacheInvalidationService) {
 
     this.uuidSupplier = uuidSupplier;
     this.roleService = roleService;
     this.userGroupDao = userGroupDao;
+    this.sdbSummaryCache = sdbSummaryCache;
+    this.cacheInvalidationService = cacheInvalidationService;
   }
 
   /**
@@ -127,6 +139,7 @@ public class UserGroupPermissionService {
     permissionsRecord.setCreatedTs(dateTime);
     permissionsRecord.setLastUpdatedTs(dateTime);
     userGroupDao.createUserGroupPermission(permissionsRecord);
+    invalidateSdbSummaries(userGroupPermission.getName());
   }
 
   /**
@@ -236,6 +249,7 @@ public class UserGroupPermissionService {
     }
 
     userGroupDao.deleteUserGroupPermission(safeDepositBoxId, userGroupRecord.get().getId());
+    invalidateSdbSummaries(userGroupPermission.getName());
   }
 
   public Set<UserGroupPermission> getUserGroupPermissions(final String safeDepositBoxId) {
@@ -264,6 +278,35 @@ public class UserGroupPermissionService {
     return permissionsSet;
   }
 
+  /**
+   * Reads the user group permissions of many SDBs at once, ex: for a page of SDBs, in one query
+   * instead of a few queries per SDB.
+   *
+   * @param safeDepositBoxIds The ids of the SDBs
+   * @return The user group permissions by SDB id, SDBs without any are left out
+   */
+  public Map<String, Set<UserGroupPermission>> getUserGroupPermissionsBySdbIds(
+      final Collection<String> safeDepositBoxIds) {
+    final Map<String, Set<UserGroupPermission>> permissionsBySdbId = new HashMap<>();
+    userGroupDao
+        .getUserGroupPermissionsBySdbIds(safeDepositBoxIds)
+        .forEach(
+            r -> {
+              UserGroupPermission permission = new UserGroupPermission();
+              permission.setId(r.getId());
+              permission.setRoleId(r.getRoleId());
+              permission.setName(r.getPrincipalName());
+              permission.setCreatedBy(r.getCreatedBy());
+              permission.setCreatedTs(r.getCreatedTs());
+              permission.setLastUpdatedBy(r.getLastUpdatedBy());
+              permission.setLastUpdatedTs(r.getLastUpdatedTs());
+              permissionsBySdbId
+                  .computeIfAbsent(r.getSdboxId(), sdbId -> Sets.newHashSet())
+                  .add(permission);
+            });
+    return permissionsBySdbId;
+  }
+
   public int getTotalNumUniqueOwnerGroups() {
     Role ownerRole =
         roleService
@@ -286,4 +329,13 @@ public class UserGroupPermissionService {
   public void deleteUserGroupPermissions(final String safeDepositBoxId) {
     userGroupDao.deleteUserGroupPermissions(safeDepositBoxId);
   }
+
+  /** Evicts the cached SDB lists of the principals that the grantee grants access to. */
+  private void invalidateSdbSummaries(String grantee) {
+    if (sdbSummaryCache.isEnabled()) {
+      sdbSummaryCache.invalidateGrantee(grantee);
+      // Other instances may have also cached the SDB lists
+      cacheInvalidationService.recordInvalidation(SdbSummaryCache.NAMESPACE, grantee);
+    }
+  }
 }
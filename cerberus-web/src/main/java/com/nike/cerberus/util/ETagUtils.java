@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.util;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+
+/**
+ * Utility methods for the ETags of secure data, so that clients that poll a secret or file can be
+ * told that it has not changed without it being read or decrypted.
+ */
+public class ETagUtils {
+
+  /**
+   * The ETag of secure data changes whenever it is written. It is derived only from metadata, so
+   * that it can be checked without reading the encrypted blob. Rotating the data key does not
+   * change the plaintext, so it does not change the ETag.
+   *
+   * @return A strong ETag, quoted as it is sent in the ETag header
+   */
+  public static String toETag(String sdbId, String path, OffsetDateTime lastUpdatedTs) {
+    String version =
+        String.join(
+            "\n",
+            String.valueOf(sdbId),
+            String.valueOf(path),
+            lastUpdatedTs == null ? "" : lastUpdatedTs.toInstant().toString());
+    return '"' + Hashing.sha256().hashString(version, StandardCharsets.UTF_8).toString() + '"';
+  }
+
+  /**
+   * Compares ETags the way If-None-Match does, weak tags match their strong equivalent.
+   *
+   * @param ifNoneMatch The If-None-Match header, a list of ETags or *
+   * @param eTag The current ETag of the secure data
+   * @return True if the client already has the current secure data
+   */
+  public static boolean ifNoneMatchMatches(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null || eTag == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.equals("*") || stripWeakPrefix(candidate).equals(stripWeakPrefix(eTag))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Compares ETags the way If-Range does, only strong tags can match. */
+  public static boolean ifRangeMatches(String ifRange, String eTag) {
+    return eTag != null && !ifRange.startsWith("W/") && ifRange.trim().equals(eTag);
+  }
+
+  /** @return True if the If-Range header holds an ETag rather than a date */
+  public static boolean isETag(String ifRange) {
+    String trimmed = ifRange.trim();
+    return trimmed.startsWith("\"") || trimmed.startsWith("W/");
+  }
+
+  private static String stripWeakPrefix(String eTag) {
+    return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+  }
+}
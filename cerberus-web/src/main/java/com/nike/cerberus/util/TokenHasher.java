@@ -16,10 +16,13 @@
 
 package com.nike.cerberus.util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.binary.Hex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -45,10 +48,13 @@ public class TokenHasher {
   public static final String HASH_ITERATIONS_CONFIG_PARAM =
       "${cerberus.auth.token.hash.iterations}";
 
+  private static final String DIGEST_ALGORITHM = "HmacSHA256";
+
   private final byte[] salt;
   private final String algorithm;
   private final int keyLength;
   private final int iterations;
+  private final SecretKeySpec digestKey;
 
   /**
    * Hash auth tokens
@@ -79,6 +85,7 @@ public class TokenHasher {
       throw new IllegalArgumentException(
           HASH_ITERATIONS_CONFIG_PARAM + " must be at 100 but was " + iterations);
     }
+    this.digestKey = new SecretKeySpec(salt, DIGEST_ALGORITHM);
   }
 
   /**
@@ -97,4 +104,22 @@ public class TokenHasher {
       throw new RuntimeException("There was a problem hashing the token", e);
     }
   }
+
+  /**
+   * Perform a fast keyed one way digest, for use as an in memory lookup key of tokens that have
+   * already been verified. This must never be stored, use {@link #hashToken(String)} for that.
+   *
+   * @param token The token to digest
+   * @return The digested token
+   */
+  public String digestToken(final String token) {
+    try {
+      // Mac instances are not thread safe, but are cheap to create compared to the PBKDF2 hash
+      final Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+      mac.init(digestKey);
+      return Hex.encodeHexString(mac.doFinal(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (Exception e) {
+      throw new RuntimeException("There was a problem digesting the token", e);
+    }
+  }
 }
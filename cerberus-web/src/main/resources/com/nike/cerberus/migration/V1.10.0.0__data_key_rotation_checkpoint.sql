@@ -0,0 +1,16 @@
+###
+#
+# Create Table for the data key rotation checkpoint, the position of the last page of data keys that the rotation job
+# finished, so that a run that is interrupted or handed off to another CMS node resumes where it left off
+#
+###
+
+CREATE TABLE DATA_KEY_ROTATION_CHECKPOINT(
+  ID VARCHAR(255) NOT NULL,
+  LAST_ROTATED_TS DATETIME(3) NOT NULL,
+  DATA_KEY_SOURCE VARCHAR(32) NOT NULL,
+  DATA_KEY_ID CHAR(36) NOT NULL,
+  LAST_UPDATED_TS DATETIME(3) NOT NULL,
+  PRIMARY KEY (ID)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
@@ -0,0 +1,24 @@
+###
+#
+# Maintain when the data key of each secret and secret version was generated, so that the data key rotation job can
+# find the oldest data keys with an index range scan instead of sorting GREATEST(...) over both tables
+#
+###
+
+ALTER TABLE SECURE_DATA
+  ADD COLUMN DATA_KEY_CREATED_TS DATETIME(3) NOT NULL DEFAULT '1970-01-01';
+
+UPDATE SECURE_DATA
+  SET DATA_KEY_CREATED_TS = GREATEST(LAST_UPDATED_TS, LAST_ROTATED_TS);
+
+ALTER TABLE SECURE_DATA
+  ADD INDEX `IX_SECURE_DATA_DATA_KEY_CREATED_TS` (DATA_KEY_CREATED_TS, ID);
+
+ALTER TABLE SECURE_DATA_VERSION
+  ADD COLUMN DATA_KEY_CREATED_TS DATETIME(3) NOT NULL DEFAULT '1970-01-01';
+
+UPDATE SECURE_DATA_VERSION
+  SET DATA_KEY_CREATED_TS = GREATEST(VERSION_CREATED_TS, LAST_ROTATED_TS);
+
+ALTER TABLE SECURE_DATA_VERSION
+  ADD INDEX `IX_SECURE_DATA_VERSION_DATA_KEY_CREATED_TS` (DATA_KEY_CREATED_TS, ID);
@@ -0,0 +1,47 @@
+###
+#
+# Create Table for the secure data path tree, one row per direct child of every directory that holds secure data, with
+# the number of secure data paths below it, so that listing a directory reads only its direct children instead of
+# every path under it. Names are case sensitive, like the keys that were listed from the paths before.
+#
+###
+
+CREATE TABLE SECURE_DATA_PATH_NODE(
+  SDBOX_ID CHAR(36) NOT NULL,
+  `TYPE` VARCHAR(255) NOT NULL,
+  PARENT_PATH VARCHAR(255) BINARY NOT NULL,
+  CHILD_NAME VARCHAR(255) BINARY NOT NULL,
+  DESCENDANT_COUNT INTEGER NOT NULL,
+  PRIMARY KEY (SDBOX_ID, `TYPE`, PARENT_PATH, CHILD_NAME)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
+
+INSERT INTO SECURE_DATA_PATH_NODE (SDBOX_ID, `TYPE`, PARENT_PATH, CHILD_NAME, DESCENDANT_COUNT)
+  SELECT SDBOX_ID, `TYPE`, PARENT_PATH, CHILD_NAME, COUNT(*)
+  FROM (
+    SELECT
+      SECURE_DATA_PATH.SDBOX_ID,
+      SECURE_DATA_PATH.`TYPE`,
+      CONVERT(
+        IF(DEPTH.N = 1, '', CONCAT(SUBSTRING_INDEX(SECURE_DATA_PATH.PATH, '/', DEPTH.N - 1), '/'))
+        USING utf8) COLLATE utf8_bin AS PARENT_PATH,
+      CONVERT(
+        CONCAT(
+          SUBSTRING_INDEX(SUBSTRING_INDEX(SECURE_DATA_PATH.PATH, '/', DEPTH.N), '/', -1),
+          IF(DEPTH.N < SECURE_DATA_PATH.SEGMENT_COUNT, '/', ''))
+        USING utf8) COLLATE utf8_bin AS CHILD_NAME
+    FROM (
+      SELECT SDBOX_ID, `TYPE`, PATH, LENGTH(PATH) - LENGTH(REPLACE(PATH, '/', '')) + 1 AS SEGMENT_COUNT
+      FROM SECURE_DATA
+    ) AS SECURE_DATA_PATH
+    JOIN (
+      SELECT ONES.N + TENS.N * 10 + HUNDREDS.N * 100 + 1 AS N
+      FROM
+        (SELECT 0 AS N UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+          UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) AS ONES,
+        (SELECT 0 AS N UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+          UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) AS TENS,
+        (SELECT 0 AS N UNION ALL SELECT 1 UNION ALL SELECT 2) AS HUNDREDS
+    ) AS DEPTH ON DEPTH.N <= SECURE_DATA_PATH.SEGMENT_COUNT
+  ) AS SECURE_DATA_PATH_NODES
+  GROUP BY SDBOX_ID, `TYPE`, PARENT_PATH, CHILD_NAME;
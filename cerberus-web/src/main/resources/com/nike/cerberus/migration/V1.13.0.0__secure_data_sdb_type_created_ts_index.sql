@@ -0,0 +1,9 @@
+###
+#
+# Index the secure data of each SDB by type and creation time, so that a page of secure file summaries and the count of
+# files under a path are read from the index, the path is part of the index so that the path prefix is filtered there too
+#
+###
+
+ALTER TABLE SECURE_DATA
+  ADD INDEX `IX_SECURE_DATA_SDBOX_ID_TYPE_CREATED_TS` (SDBOX_ID, `TYPE`, CREATED_TS, ID, PATH);
@@ -0,0 +1,27 @@
+###
+#
+# Create Tables for watching secure data for changes. Every write to the secure data of an SDB takes the next version of
+# the SDB, the row of the SDB is locked until the write commits so that the versions of an SDB are committed in order,
+# and the version and whether it was a delete is kept for each path, so that a watcher can read every path that changed
+# after the version that it last saw. There is one row per path, so the table grows with the paths rather than writes.
+#
+###
+
+CREATE TABLE SECURE_DATA_CHANGE_VERSION(
+  SDBOX_ID CHAR(36) NOT NULL,
+  VERSION BIGINT NOT NULL,
+  PRIMARY KEY (SDBOX_ID)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
+
+CREATE TABLE SECURE_DATA_CHANGE(
+  SDBOX_ID CHAR(36) NOT NULL,
+  PATH VARCHAR(255) NOT NULL,
+  `TYPE` VARCHAR(255) NOT NULL,
+  VERSION BIGINT NOT NULL,
+  DELETED TINYINT(1) NOT NULL,
+  CHANGED_TS DATETIME(3) NOT NULL,
+  PRIMARY KEY (SDBOX_ID, PATH),
+  INDEX `IX_SECURE_DATA_CHANGE_SDBOX_ID_VERSION` (SDBOX_ID, VERSION)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
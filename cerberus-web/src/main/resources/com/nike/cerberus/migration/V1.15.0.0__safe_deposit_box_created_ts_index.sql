@@ -0,0 +1,9 @@
+###
+#
+# Index the SDBs by creation time, so that a page of SDB metadata is read from the index in order, straight from where the
+# previous page ended, instead of sorting every SDB for each page
+#
+###
+
+ALTER TABLE SAFE_DEPOSIT_BOX
+  ADD INDEX `IX_SAFE_DEPOSIT_BOX_CREATED_TS` (CREATED_TS, ID);
@@ -0,0 +1,16 @@
+###
+#
+# Create Table for the lease based distributed locks, a lease is held by the owner until it expires unless it is
+# renewed, and its fencing token is incremented every time that it is acquired
+#
+###
+
+CREATE TABLE DISTRIBUTED_LEASE(
+  NAME VARCHAR(255) NOT NULL,
+  OWNER VARCHAR(255) NULL,
+  FENCING_TOKEN BIGINT NOT NULL,
+  EXPIRES_TS DATETIME(3) NOT NULL,
+  LAST_UPDATED_TS DATETIME(3) NOT NULL,
+  PRIMARY KEY (NAME)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
@@ -0,0 +1,18 @@
+###
+#
+# Create Table for the MyBatis cache invalidation log, every CMS node tails this table and evicts
+# the referenced entries from its local DatabaseCache
+#
+###
+
+CREATE TABLE CACHE_INVALIDATION_LOG(
+  ID BIGINT NOT NULL AUTO_INCREMENT,
+  NAMESPACE VARCHAR(255) NOT NULL,
+  CACHE_KEY VARCHAR(255) NULL,
+  CREATED_TS DATETIME(3) NOT NULL,
+  PRIMARY KEY (ID)
+)
+  ENGINE = InnoDB DEFAULT CHARSET = utf8;
+
+ALTER TABLE CACHE_INVALIDATION_LOG
+  ADD INDEX `IX_CACHE_INVALIDATION_LOG_CREATED_TS` (CREATED_TS);
@@ -0,0 +1,11 @@
+###
+#
+# Record when JWTs are blocklisted, so that CMS nodes can sync only the entries added since their last refresh
+#
+###
+
+ALTER TABLE JWT_BLOCKLIST
+  ADD COLUMN CREATED_TS DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+
+ALTER TABLE JWT_BLOCKLIST
+  ADD INDEX `IX_JWT_BLOCKLIST_CREATED_TS` (CREATED_TS);
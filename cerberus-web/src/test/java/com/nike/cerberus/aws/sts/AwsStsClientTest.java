@@ -20,6 +20,8 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.nike.cerberus.cache.StsCallerIdentityCache;
+import com.nike.cerberus.metric.MetricsService;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -32,7 +34,9 @@ public class AwsStsClientTest {
   @Before
   public void setup() {
     httpClient = mock(AwsStsHttpClient.class);
-    awsStsClient = new AwsStsClient(httpClient);
+    awsStsClient =
+        new AwsStsClient(
+            httpClient, new StsCallerIdentityCache(false, 0, 0, mock(MetricsService.class)));
     awsStsHttpHeader =
         new AwsStsHttpHeader(
             "test amz date",
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import com.nike.cerberus.record.SafeDepositBoxRecord;
+import com.nike.cerberus.record.SecureDataRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.util.Optional;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class CacheInvalidationInterceptorTest {
+
+  private final Configuration configuration = new Configuration();
+
+  private final CacheInvalidationInterceptor interceptor =
+      new CacheInvalidationInterceptor(new DateTimeSupplier());
+
+  @Test
+  public void test_that_the_sdb_id_is_read_from_sdb_mapper_writes() {
+    assertEquals(
+        Optional.of("sdb-id"),
+        interceptor.getSdbId(
+            configuration,
+            "safeDepositBoxMapper",
+            params("record", new SafeDepositBoxRecord().setId("sdb-id"))));
+    assertEquals(
+        Optional.of("sdb-id"),
+        interceptor.getSdbId(configuration, "safeDepositBoxMapper", params("id", "sdb-id")));
+  }
+
+  @Test
+  public void test_that_the_sdb_id_is_read_from_secure_data_mapper_writes() {
+    assertEquals(
+        Optional.of("sdb-id"),
+        interceptor.getSdbId(
+            configuration,
+            "secureDataMapper",
+            params("record", new SecureDataRecord().setId(1).setSdboxId("sdb-id"))));
+    assertEquals(
+        Optional.of("sdb-id"),
+        interceptor.getSdbId(configuration, "secureDataMapper", params("sdbId", "sdb-id")));
+    assertEquals(
+        Optional.empty(),
+        interceptor.getSdbId(configuration, "secureDataMapper", params("id", "secret-id")));
+  }
+
+  @Test
+  public void test_that_writes_without_an_sdb_id_have_no_key() {
+    assertEquals(
+        Optional.empty(),
+        interceptor.getSdbId(configuration, "userGroupMapper", params("id", "group-id")));
+    assertEquals(
+        Optional.empty(), interceptor.getSdbId(configuration, "safeDepositBoxMapper", null));
+  }
+
+  private MapperMethod.ParamMap<Object> params(String name, Object value) {
+    MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+    params.put(name, value);
+    params.put("param1", value);
+    return params;
+  }
+}
@@ -18,6 +18,8 @@ package com.nike.cerberus.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -26,8 +28,8 @@ import com.google.common.collect.ImmutableMap;
 import com.nike.cerberus.metric.MetricsService;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.time.Duration;
-import java.util.Objects;
 import junit.framework.TestCase;
+import org.apache.ibatis.cache.CacheKey;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -43,7 +45,7 @@ public class DatabaseCacheTest {
 
   @Test
   public void test_that_equals_returns_true_when_two_caches_are_equal() {
-    DatabaseCache databaseCache = new DatabaseCache("it", metricsService, 1, 1, 1);
+    DatabaseCache databaseCache = new DatabaseCache("it", metricsService, 1, 0, 1, 1);
     TestCase.assertEquals(databaseCache, databaseCache);
   }
 
@@ -56,8 +58,8 @@ public class DatabaseCacheTest {
     String value = "The secret to life is 43.";
     String aSecondValue = "LoL > Dota. QED";
     int expireTimeInSeconds = 2;
-    int repeatReadCounterExpireTimeInSeconds = 1;
-    int repeatReadThreshold = 1;
+    int frequencySketchSize = 16;
+    int admissionThreshold = 1;
     int chainedReadCount = 0;
 
     var id = "test-id";
@@ -68,13 +70,17 @@ public class DatabaseCacheTest {
     when(metricsService.getOrCreateCounter(
             "cms.cache.mybatis.hit", ImmutableMap.of("namespace", id)))
         .thenReturn(hitCounter);
+    Counter admittedCounter = new Counter();
+    when(metricsService.getOrCreateCounter(
+            "cms.cache.mybatis.admitted", ImmutableMap.of("namespace", id)))
+        .thenReturn(admittedCounter);
+    Counter rejectedCounter = new Counter();
+    when(metricsService.getOrCreateCounter(
+            "cms.cache.mybatis.rejected", ImmutableMap.of("namespace", id)))
+        .thenReturn(rejectedCounter);
     DatabaseCache databaseCache =
         new DatabaseCache(
-            id,
-            metricsService,
-            expireTimeInSeconds,
-            repeatReadCounterExpireTimeInSeconds,
-            repeatReadThreshold);
+            id, metricsService, expireTimeInSeconds, 0, frequencySketchSize, admissionThreshold);
 
     // Simulate the first db read, because the read count hasn't passed the threshold it shouldn't
     // cache.
@@ -89,18 +95,17 @@ public class DatabaseCacheTest {
         0,
         databaseCache.dataCache.getHitCounter().getCount());
     assertEquals(
-        "The repeat read counter for the key should increment",
+        "The estimated read frequency for the key should increment",
         chainedReadCount,
-        Objects.requireNonNull(databaseCache.autoExpiringRepeatReadCounterMap.getIfPresent(key))
-            .getCount());
+        databaseCache.frequencySketch.frequency(key));
     databaseCache.putObject(key, value);
     assertEquals(
         "The cache should be empty for the first put because the count is lower than the threshold",
         0,
         databaseCache.dataCache.estimatedSize());
+    assertEquals("The put should have been rejected", 1, rejectedCounter.getCount());
 
-    // Simulate the second db read in < 1 second (this should trigger a cache 2 reads without a 1
-    // second break > 1)
+    // Simulate the second db read, the estimated frequency now exceeds the threshold
     assertNull(
         "The second get call to the cache should return null, because the 1st didn't exceed the threshold",
         databaseCache.getObject(key));
@@ -110,27 +115,21 @@ public class DatabaseCacheTest {
         2,
         databaseCache.dataCache.getMissCounter().getCount());
     assertEquals(
-        "The hit counter should have  been incremented",
-        0,
-        databaseCache.dataCache.getHitCounter().getCount());
-    assertEquals(
-        "The repeat read counter for the key should increment",
+        "The estimated read frequency for the key should increment",
         chainedReadCount,
-        Objects.requireNonNull(databaseCache.autoExpiringRepeatReadCounterMap.getIfPresent(key))
-            .getCount());
+        databaseCache.frequencySketch.frequency(key));
     databaseCache.putObject(key, value);
     assertEquals(
         "The cache should now have an item since the threshold was exceeded",
         1,
         databaseCache.dataCache.estimatedSize());
+    assertEquals("The put should have been admitted", 1, admittedCounter.getCount());
 
-    // Simulate the third db read in < 1 second this should fetch the cached result and keep the
-    // increment the repeat read counter
+    // Simulate the third db read this should fetch the cached result
     assertEquals(
         "The third get call to the cache should return the cached value.",
         value,
         databaseCache.getObject(key));
-    chainedReadCount++;
     assertEquals(
         "The miss counter should have not been incremented",
         2,
@@ -139,28 +138,22 @@ public class DatabaseCacheTest {
         "The hit counter should have  been incremented",
         1,
         databaseCache.dataCache.getHitCounter().getCount());
-    assertEquals(
-        "The repeat read counter for the key should increment",
-        chainedReadCount,
-        Objects.requireNonNull(databaseCache.autoExpiringRepeatReadCounterMap.getIfPresent(key))
-            .getCount());
 
     // Simulate reads for expireTimeInSeconds + 1 second
     int i = 0;
     while (i < Duration.ofSeconds(expireTimeInSeconds + 1).toMillis()) {
       databaseCache.getObject(
           key); // This should become null as some point in this loop, from it expiring
-      assertEquals(
-          "Expected the read counter to equal the chained read count",
-          ++chainedReadCount,
-          Objects.requireNonNull(databaseCache.autoExpiringRepeatReadCounterMap.getIfPresent(key))
-              .getCount());
       Thread.sleep(250);
       i += 250;
     }
+    assertEquals(
+        "The estimated read frequency should saturate rather than overflow",
+        FrequencySketch.MAX_FREQUENCY,
+        databaseCache.frequencySketch.frequency(key));
 
-    // Simulate the new db read after the value was purged but while the chained counter is still >
-    // the threshold. Caching should occur for new value
+    // Simulate the new db read after the value was purged while the key is still frequently read.
+    // Caching should occur for new value
     assertNull(
         "The key/value should have purged itself from the cache when we looped for longer than the ttl, simulating reads",
         databaseCache.getObject(key));
@@ -169,14 +162,65 @@ public class DatabaseCacheTest {
         "The updated value should have been immediately available in the cache",
         aSecondValue,
         databaseCache.getObject(key));
+    assertEquals(2, admittedCounter.getCount());
+    assertEquals(1, rejectedCounter.getCount());
+  }
 
-    // now simulate no activity for expireTimeInSeconds + 1 second
-    Thread.sleep(Duration.ofSeconds(expireTimeInSeconds + 1).toMillis());
-    assertNull(
-        "The repeat read counter for the key should be purged from the map from idle activity",
-        databaseCache.autoExpiringRepeatReadCounterMap.getIfPresent(key));
-    assertNull(
-        "The key/value should have purged itself from the cache from idle activity",
-        databaseCache.getObject(key));
+  @Test
+  public void test_that_one_off_reads_are_not_admitted_into_the_cache() {
+    when(metricsService.getOrCreateCounter(anyString(), any()))
+        .thenAnswer(invocation -> new Counter());
+    DatabaseCache databaseCache = new DatabaseCache("test-id", metricsService, 60, 0, 1024, 1);
+
+    for (int i = 0; i < 500; i++) {
+      String key = "SELECT foo FROM bar WHERE id = '" + i + "'";
+      databaseCache.getObject(key);
+      databaseCache.putObject(key, "value");
+    }
+
+    assertEquals(
+        "Scanning keys that are only read once should not fill the cache",
+        0,
+        databaseCache.getSize());
+    assertEquals(500, databaseCache.rejectedCounter.getCount());
+    assertEquals(0, databaseCache.admittedCounter.getCount());
+  }
+
+  @Test
+  public void test_that_evict_entries_referencing_only_evicts_entries_for_the_given_value() {
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    DatabaseCache databaseCache = new DatabaseCache("test-id", metricsService, 60, 0, 60, 0);
+
+    CacheKey sdbAKey = createCacheKey("readSecureDataByPath", "sdb-a", "app/foo/bar");
+    CacheKey sdbAOtherKey = createCacheKey("readSecureDataByPathAndType", "sdb-a", "app/foo/bam");
+    CacheKey sdbBKey = createCacheKey("readSecureDataByPath", "sdb-b", "app/foo/bar");
+    CacheKey sdbAPrefixKey = createCacheKey("readSecureDataByPath", "sdb-a-2", "app/foo/bar");
+    for (CacheKey cacheKey : new CacheKey[] {sdbAKey, sdbAOtherKey, sdbBKey, sdbAPrefixKey}) {
+      databaseCache.getObject(cacheKey);
+      databaseCache.putObject(cacheKey, "value");
+    }
+    assertEquals(4, databaseCache.getSize());
+
+    assertEquals(2, databaseCache.evictEntriesReferencing("sdb-a"));
+
+    assertNull(databaseCache.getObject(sdbAKey));
+    assertNull(databaseCache.getObject(sdbAOtherKey));
+    assertEquals("value", databaseCache.getObject(sdbBKey));
+    assertEquals("value", databaseCache.getObject(sdbAPrefixKey));
+
+    databaseCache.evictAll();
+    assertEquals(0, databaseCache.getSize());
+  }
+
+  private CacheKey createCacheKey(String statementId, String sdbId, String path) {
+    CacheKey cacheKey = new CacheKey();
+    cacheKey.update("com.nike.cerberus.mapper.SecureDataMapper." + statementId);
+    cacheKey.update(0);
+    cacheKey.update(Integer.MAX_VALUE);
+    cacheKey.update("SELECT * FROM SECURE_DATA WHERE PATH = ? AND SDBOX_ID = ?");
+    cacheKey.update(path);
+    cacheKey.update(sdbId);
+    cacheKey.update("test");
+    return cacheKey;
   }
 }
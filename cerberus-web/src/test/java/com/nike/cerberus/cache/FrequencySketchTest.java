@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrequencySketchTest {
+
+  @Test
+  public void test_that_frequency_returns_the_number_of_increments() {
+    FrequencySketch frequencySketch = new FrequencySketch(1024);
+
+    assertEquals(0, frequencySketch.frequency("key"));
+    for (int i = 1; i <= 5; i++) {
+      frequencySketch.increment("key");
+      assertEquals(i, frequencySketch.frequency("key"));
+    }
+    assertEquals(0, frequencySketch.frequency("other-key"));
+  }
+
+  @Test
+  public void test_that_frequency_is_capped_at_the_max_frequency() {
+    FrequencySketch frequencySketch = new FrequencySketch(1024);
+
+    for (int i = 0; i < 100; i++) {
+      frequencySketch.increment("key");
+    }
+
+    assertEquals(FrequencySketch.MAX_FREQUENCY, frequencySketch.frequency("key"));
+  }
+
+  @Test
+  public void test_that_counts_are_halved_once_the_sample_size_is_reached() {
+    // Sized for 16 keys, so the counts are halved after 160 increments
+    FrequencySketch frequencySketch = new FrequencySketch(16);
+    for (int i = 0; i < 8; i++) {
+      frequencySketch.increment("key");
+    }
+    assertTrue(frequencySketch.frequency("key") >= 8);
+
+    for (int i = 0; i < 152; i++) {
+      frequencySketch.increment("other-key-" + i);
+    }
+
+    assertTrue(frequencySketch.frequency("key") <= FrequencySketch.MAX_FREQUENCY / 2);
+  }
+
+  @Test
+  public void test_that_reset_halves_every_counter() {
+    FrequencySketch frequencySketch = new FrequencySketch(1024);
+    for (int i = 0; i < 10; i++) {
+      frequencySketch.increment("key");
+    }
+
+    frequencySketch.reset();
+
+    assertEquals(5, frequencySketch.frequency("key"));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SecureDataRecord;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class MetricReportingCacheTest {
+
+  private static final int BLOB_SIZE_IN_BYTES = 1024 * 1024;
+
+  @Mock private MetricsService metricsService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(metricsService.getOrCreateCounter(anyString(), any()))
+        .thenAnswer(invocation -> new Counter());
+  }
+
+  @Test
+  public void test_that_the_weigher_accounts_for_the_encrypted_blob_of_secure_data() {
+    EstimatedSizeWeigher<Object, Object> weigher = new EstimatedSizeWeigher<>();
+    SecureDataRecord record = new SecureDataRecord().setEncryptedBlob(new byte[BLOB_SIZE_IN_BYTES]);
+
+    int recordWeight = weigher.weigh("key", record);
+    assertTrue(recordWeight > BLOB_SIZE_IN_BYTES);
+    assertTrue(weigher.weigh("key", List.of(record, record)) > 2 * recordWeight - 1024);
+    assertTrue(weigher.weigh("key", new SecureDataRecord()) < 1024);
+  }
+
+  @Test
+  public void test_that_the_hit_ratio_is_the_share_of_lookups_that_were_hits() {
+    MetricReportingCache<String, String> cache =
+        new MetricReportingCache<>("test", 60, metricsService, null);
+    assertEquals(0, cache.getHitRatio(), 0);
+
+    cache.put("a", "value");
+    cache.getIfPresent("a");
+    cache.getIfPresent("a");
+    cache.getIfPresent("a");
+    cache.getIfPresent("b");
+
+    assertEquals(0.75, cache.getHitRatio(), 0.0001);
+  }
+
+  @Test
+  public void test_that_the_cache_is_bounded_by_the_estimated_size_of_its_values() {
+    MetricReportingCache<String, SecureDataRecord> cache =
+        new MetricReportingCache<>("test", 60, 4L * BLOB_SIZE_IN_BYTES, metricsService, null);
+
+    for (int i = 0; i < 10; i++) {
+      cache.put(
+          String.valueOf(i), new SecureDataRecord().setEncryptedBlob(new byte[BLOB_SIZE_IN_BYTES]));
+    }
+    cache.cleanUp();
+
+    assertTrue(cache.estimatedSize() < 4);
+    assertTrue(cache.getWeightInBytes() <= 4L * BLOB_SIZE_IN_BYTES);
+    assertTrue(cache.getWeightInBytes() > BLOB_SIZE_IN_BYTES);
+    // The removal listener is notified asynchronously
+    long deadline = System.currentTimeMillis() + 5000;
+    while (cache.getEvictedBytes() < 6L * BLOB_SIZE_IN_BYTES
+        && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertTrue(cache.getEvictedBytes() >= 6L * BLOB_SIZE_IN_BYTES);
+  }
+
+  @Test
+  public void test_that_the_cache_is_not_bounded_when_no_maximum_weight_is_set() {
+    MetricReportingCache<String, SecureDataRecord> cache =
+        new MetricReportingCache<>("test", 60, metricsService, null);
+
+    for (int i = 0; i < 10; i++) {
+      cache.put(
+          String.valueOf(i), new SecureDataRecord().setEncryptedBlob(new byte[BLOB_SIZE_IN_BYTES]));
+    }
+    cache.cleanUp();
+
+    assertEquals(10, cache.estimatedSize());
+    assertEquals(0, cache.getWeightInBytes());
+    assertEquals(0, cache.getEvictedBytes());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.cache;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.PrincipalType;
+import com.nike.cerberus.domain.SafeDepositBoxSummary;
+import com.nike.cerberus.metric.MetricsService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class SdbSummaryCacheTest {
+
+  @Mock private MetricsService metricsService;
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final AtomicInteger loads = new AtomicInteger();
+  private SdbSummaryCache cache;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(metricsService.getOrCreateCounter(anyString(), any()))
+        .thenAnswer(
+            invocation ->
+                counters.computeIfAbsent(
+                    (String) invocation.getArguments()[0], name -> new Counter()));
+    cache = new SdbSummaryCache(true, 60, 1024 * 1024, metricsService);
+  }
+
+  @Test
+  public void test_that_repeat_lists_are_served_from_the_cache() {
+    assertEquals(1, getUserSdbs("user", List.of("Group-B", "Group-A")).size());
+    assertEquals(1, getUserSdbs("user", List.of("Group-A", "Group-B")).size());
+
+    assertEquals(1, loads.get());
+    assertEquals(1, counters.get("cms.cache.sdb.summary.hit").getCount());
+    assertEquals(1, counters.get("cms.cache.sdb.summary.miss").getCount());
+  }
+
+  @Test
+  public void test_that_a_different_group_set_is_cached_separately() {
+    getUserSdbs("user", List.of("group-a"));
+    getUserSdbs("user", List.of("group-a", "group-b"));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void test_that_a_grant_evicts_only_the_principals_it_applies_to() {
+    getUserSdbs("user", List.of("group-a"));
+    getUserSdbs("other-user", List.of("group-b"));
+
+    cache.invalidateGrantee("GROUP-A");
+    getUserSdbs("user", List.of("group-a"));
+    getUserSdbs("other-user", List.of("group-b"));
+
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void test_that_deleting_an_sdb_evicts_only_the_lists_that_include_it() {
+    cache.get(PrincipalType.USER, "user", List.of("group-a"), () -> load("sdb-a"));
+    cache.get(PrincipalType.USER, "other-user", List.of("group-b"), () -> load("sdb-b"));
+
+    cache.invalidateSdb("sdb-a");
+    cache.get(PrincipalType.USER, "user", List.of("group-a"), () -> load("sdb-a"));
+    cache.get(PrincipalType.USER, "other-user", List.of("group-b"), () -> load("sdb-b"));
+
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void test_that_a_disabled_cache_always_loads() {
+    cache = new SdbSummaryCache(false, 60, 1024 * 1024, metricsService);
+
+    getUserSdbs("user", List.of("group-a"));
+    getUserSdbs("user", List.of("group-a"));
+
+    assertEquals(2, loads.get());
+  }
+
+  private List<SafeDepositBoxSummary> getUserSdbs(String name, List<String> groups) {
+    return cache.get(PrincipalType.USER, name, groups, () -> load("sdb-id"));
+  }
+
+  private List<SafeDepositBoxSummary> load(String sdbId) {
+    loads.incrementAndGet();
+    return List.of(new SafeDepositBoxSummary().setId(sdbId));
+  }
+}
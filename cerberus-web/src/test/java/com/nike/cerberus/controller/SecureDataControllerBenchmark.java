@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.controller;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nike.cerberus.config.ApplicationConfiguration;
+import com.nike.cerberus.domain.SecureData;
+import com.nike.cerberus.domain.SecureDataResponse;
+import com.nike.cerberus.event.filter.AuditLoggingFilterDetails;
+import com.nike.cerberus.service.SecureDataService;
+import com.nike.cerberus.service.SecureDataVersionService;
+import com.nike.cerberus.service.SecureDataWatchService;
+import com.nike.cerberus.util.SdbAccessRequest;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Measures the per request cost of rendering a secret read by {@link
+ * SecureDataController#readSecureData(String)}, copying the stored JSON into the indented response
+ * as it is parsed, against parsing it into a tree with a new ObjectMapper first, as secrets used to
+ * be rendered. This is not run as part of the test suite, run the main method from an IDE or with
+ * the test runtime classpath.
+ */
+public class SecureDataControllerBenchmark {
+
+  private static final int[] PAYLOAD_SIZES_IN_BYTES = {256, 4 * 1024, 64 * 1024, 1024 * 1024};
+  private static final long TARGET_BYTES_PER_RUN = 512L * 1024 * 1024;
+
+  public static void main(String[] args) throws Exception {
+    ObjectMapper objectMapper = ApplicationConfiguration.getObjectMapper();
+    SecureDataService secureDataService = mock(SecureDataService.class);
+    SdbAccessRequest sdbAccessRequest = mock(SdbAccessRequest.class);
+    SecureData secureData = mock(SecureData.class);
+    when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    when(sdbAccessRequest.getPath()).thenReturn("path");
+    when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
+    when(secureDataService.parseSecretMetadata(secureData)).thenReturn(Map.of());
+    SecureDataController secureDataController =
+        new SecureDataController(
+            secureDataService,
+            mock(SecureDataVersionService.class),
+            sdbAccessRequest,
+            objectMapper,
+            mock(AuditLoggingFilterDetails.class),
+            mock(SecureDataWatchService.class));
+
+    for (int payloadSize : PAYLOAD_SIZES_IN_BYTES) {
+      String payload = createPayload(payloadSize);
+      when(secureData.getData()).thenReturn(payload);
+      int iterations = (int) Math.max(100, TARGET_BYTES_PER_RUN / payload.length());
+
+      Runnable storedJson =
+          () -> write(objectMapper, secureDataController.readSecureData(null).getBody());
+      Runnable readTree =
+          () -> {
+            try {
+              SecureDataResponse response = new SecureDataResponse();
+              response.setRequestId(UUID.randomUUID().toString());
+              response.setData(new ObjectMapper().readTree(payload));
+              write(objectMapper, response);
+            } catch (Exception e) {
+              throw new IllegalStateException(e);
+            }
+          };
+
+      System.out.printf(
+          "payload: %d bytes, readTree: %d ns per read, stored json: %d ns per read%n",
+          payload.length(), measure(readTree, iterations), measure(storedJson, iterations));
+    }
+  }
+
+  private static long measure(Runnable render, int iterations) {
+    for (int i = 0; i < iterations / 10; i++) {
+      render.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      render.run();
+    }
+    return (System.nanoTime() - start) / iterations;
+  }
+
+  private static void write(ObjectMapper objectMapper, Object response) {
+    try {
+      if (objectMapper.writeValueAsBytes(response).length == 0) {
+        throw new IllegalStateException("The response was not rendered");
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** A flat secret of key value pairs, the shape most secrets have. */
+  private static String createPayload(int sizeInBytes) {
+    StringBuilder payload = new StringBuilder("{");
+    for (int i = 0; payload.length() < sizeInBytes; i++) {
+      payload
+          .append(i == 0 ? "" : ",")
+          .append("\"key-")
+          .append(i)
+          .append("\":\"")
+          .append(UUID.randomUUID())
+          .append('"');
+    }
+    return payload.append('}').toString();
+  }
+}
@@ -2,20 +2,29 @@ package com.nike.cerberus.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nike.cerberus.config.ApplicationConfiguration;
 import com.nike.cerberus.domain.SecureData;
+import com.nike.cerberus.domain.SecureDataChange;
+import com.nike.cerberus.domain.SecureDataChangesResult;
 import com.nike.cerberus.domain.SecureDataResponse;
 import com.nike.cerberus.domain.SecureDataType;
 import com.nike.cerberus.domain.SecureDataVersion;
+import com.nike.cerberus.event.filter.AuditLoggingFilterDetails;
 import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.service.SecureDataService;
 import com.nike.cerberus.service.SecureDataVersionService;
+import com.nike.cerberus.service.SecureDataWatch;
+import com.nike.cerberus.service.SecureDataWatchService;
+import com.nike.cerberus.util.ETagUtils;
 import com.nike.cerberus.util.SdbAccessRequest;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -23,17 +32,29 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 
 public class SecureDataControllerTest {
 
   @Mock private SecureDataService secureDataService;
   @Mock private SecureDataVersionService secureDataVersionService;
   @Mock private SdbAccessRequest sdbAccessRequest;
-  @InjectMocks private SecureDataController secureDataController;
+  @Mock private AuditLoggingFilterDetails auditLoggingFilterDetails;
+  @Mock private SecureDataWatchService secureDataWatchService;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private SecureDataController secureDataController;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
+    secureDataController =
+        new SecureDataController(
+            secureDataService,
+            secureDataVersionService,
+            sdbAccessRequest,
+            objectMapper,
+            auditLoggingFilterDetails,
+            secureDataWatchService);
   }
 
   @Test
@@ -41,13 +62,13 @@ public class SecureDataControllerTest {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
     Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.empty());
-    ResponseEntity<?> responseEntity = secureDataController.readSecureData();
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
     Assert.assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
   }
 
   @Test
   @SuppressFBWarnings
-  public void testReadSecureData() {
+  public void testReadSecureData() throws Exception {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
     SecureData secureData = Mockito.mock(SecureData.class);
@@ -57,12 +78,233 @@ public class SecureDataControllerTest {
     Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
     Map<String, String> metadata = new HashMap<>();
     Mockito.when(secureDataService.parseSecretMetadata(secureData)).thenReturn(metadata);
-    ResponseEntity<?> responseEntity = secureDataController.readSecureData();
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
     Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
     SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
     Assert.assertSame(metadata, secureDataResponse.getMetadata());
     Assert.assertNotNull(secureDataResponse.getRequestId());
-    Assert.assertEquals(objectNode.toString(), secureDataResponse.getData().toString());
+    Assert.assertEquals(
+        objectNode.toString(), objectMapper.writeValueAsString(secureDataResponse.getData()));
+  }
+
+  @Test
+  public void testReadSecureDataWritesStoredJsonAsIs() throws Exception {
+    String storedJson = "{\"key\": 1.10, \"nested\": {\"list\": [1, \"two\", null]}}";
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    SecureData secureData = Mockito.mock(SecureData.class);
+    Mockito.when(secureData.getData()).thenReturn(storedJson);
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
+    SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
+    Assert.assertTrue(secureDataResponse.getData() instanceof SecureDataController.StoredJson);
+    Assert.assertEquals(storedJson, objectMapper.writeValueAsString(secureDataResponse.getData()));
+  }
+
+  @Test
+  public void testReadSecureDataIndentsStoredJsonWithTheResponse() throws Exception {
+    ObjectMapper indentingObjectMapper = ApplicationConfiguration.getObjectMapper();
+    secureDataController =
+        new SecureDataController(
+            secureDataService,
+            secureDataVersionService,
+            sdbAccessRequest,
+            indentingObjectMapper,
+            auditLoggingFilterDetails,
+            secureDataWatchService);
+    String storedJson = "{\"key\":\"value\",\"nested\":{\"list\":[1,\"two\",null]}}";
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    SecureData secureData = Mockito.mock(SecureData.class);
+    Mockito.when(secureData.getData()).thenReturn(storedJson);
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
+    SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
+    SecureDataResponse readTreeResponse = new SecureDataResponse();
+    readTreeResponse.setRequestId(secureDataResponse.getRequestId());
+    readTreeResponse.setMetadata(secureDataResponse.getMetadata());
+    readTreeResponse.setData(indentingObjectMapper.readTree(storedJson));
+    Assert.assertEquals(
+        indentingObjectMapper.writeValueAsString(readTreeResponse),
+        indentingObjectMapper.writeValueAsString(secureDataResponse));
+  }
+
+  @Test
+  public void testReadSecureDataSendsETag() {
+    OffsetDateTime lastUpdatedTs = OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    SecureData secureData =
+        new SecureData().setPath("path").setData("{}").setLastUpdatedTs(lastUpdatedTs);
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
+    Assert.assertEquals(
+        ETagUtils.toETag("sdbId", "path", lastUpdatedTs), responseEntity.getHeaders().getETag());
+  }
+
+  @Test
+  public void testReadSecureDataWhenIfNoneMatchMatchesDoesNotReadTheSecret() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.OBJECT))
+        .thenReturn(Optional.of("\"etag\""));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData("\"etag\"");
+    Assert.assertEquals(HttpStatus.NOT_MODIFIED, responseEntity.getStatusCode());
+    Assert.assertEquals("\"etag\"", responseEntity.getHeaders().getETag());
+    Mockito.verify(secureDataService, Mockito.never()).readSecret("sdbId", "path");
+  }
+
+  @Test
+  public void testReadSecureDataWhenIfNoneMatchDoesNotMatch() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.OBJECT))
+        .thenReturn(Optional.of("\"etag\""));
+    Mockito.when(secureDataService.readSecret("sdbId", "path"))
+        .thenReturn(Optional.of(new SecureData().setPath("path").setData("{}")));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData("\"old\"");
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+  }
+
+  @Test
+  public void testHeadSecureData() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.OBJECT))
+        .thenReturn(Optional.of("\"etag\""));
+    ResponseEntity<Void> responseEntity = secureDataController.headSecureData(null);
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertEquals("\"etag\"", responseEntity.getHeaders().getETag());
+    Assert.assertEquals(
+        HttpStatus.NOT_MODIFIED, secureDataController.headSecureData("*").getStatusCode());
+    Mockito.verify(secureDataService, Mockito.never()).readSecret("sdbId", "path");
+  }
+
+  @Test
+  public void testHeadSecureDataWhenSecureDataIsNotPresent() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.OBJECT))
+        .thenReturn(Optional.empty());
+    ResponseEntity<Void> responseEntity = secureDataController.headSecureData(null);
+    Assert.assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
+  }
+
+  @Test
+  public void testIsSingleJsonValue() {
+    Assert.assertTrue(secureDataController.isSingleJsonValue("{\"key\":\"value\"}"));
+    Assert.assertTrue(secureDataController.isSingleJsonValue(" [1, 2] "));
+    Assert.assertTrue(secureDataController.isSingleJsonValue("\"just a string\""));
+    Assert.assertFalse(secureDataController.isSingleJsonValue(null));
+    Assert.assertFalse(secureDataController.isSingleJsonValue(""));
+    Assert.assertFalse(secureDataController.isSingleJsonValue("{\"key\":"));
+    Assert.assertFalse(secureDataController.isSingleJsonValue("{\"key\":\"value\"} trailing"));
+    Assert.assertFalse(secureDataController.isSingleJsonValue("{} {}"));
+    Assert.assertFalse(secureDataController.isSingleJsonValue("{\"key\":1,\"key\":2}"));
+  }
+
+  @Test
+  public void testReadSecureDataFallsBackToReadTreeForDuplicateKeys() throws Exception {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    SecureData secureData = Mockito.mock(SecureData.class);
+    Mockito.when(secureData.getData()).thenReturn("{\"key\":1,\"key\":2}");
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.of(secureData));
+    ResponseEntity<?> responseEntity = secureDataController.readSecureData(null);
+    SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
+    Assert.assertEquals(
+        "{\"key\":2}", objectMapper.writeValueAsString(secureDataResponse.getData()));
+  }
+
+  @Test
+  public void testReadSecureDataInBulk() throws Exception {
+    List<String> auditedPaths = new ArrayList<>();
+    Mockito.when(auditLoggingFilterDetails.getAuditedPaths()).thenReturn(auditedPaths);
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getCategory()).thenReturn("app");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("sdb/");
+    Map<String, SecureData> secrets = new LinkedHashMap<>();
+    secrets.put("sdb/a", new SecureData().setPath("sdb/a").setData("{\"key\":\"a\"}"));
+    secrets.put("sdb/b/c", new SecureData().setPath("sdb/b/c").setData("{\"key\":\"c\"}"));
+    Mockito.when(secureDataService.readSecrets("sdbId", "sdb/")).thenReturn(secrets);
+    ResponseEntity<?> responseEntity = secureDataController.readSecureDataInBulk("true", null);
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
+    Assert.assertNotNull(secureDataResponse.getRequestId());
+    Assert.assertEquals(
+        "{\"a\":{\"key\":\"a\"},\"b/c\":{\"key\":\"c\"}}",
+        objectMapper.writeValueAsString(secureDataResponse.getData()));
+    Assert.assertEquals(List.of("/v1/secret/app/sdb/a", "/v1/secret/app/sdb/b/c"), auditedPaths);
+  }
+
+  @Test
+  public void testReadSecureDataInBulkByPaths() {
+    Mockito.when(auditLoggingFilterDetails.getAuditedPaths()).thenReturn(new ArrayList<>());
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("sdb/dir");
+    Mockito.when(secureDataService.readSecrets("sdbId", List.of("sdb/dir/a", "sdb/dir/b")))
+        .thenReturn(Map.of());
+    ResponseEntity<?> responseEntity =
+        secureDataController.readSecureDataInBulk("true", List.of("a", "b"));
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Mockito.verify(secureDataService).readSecrets("sdbId", List.of("sdb/dir/a", "sdb/dir/b"));
+  }
+
+  @Test
+  public void testReadSecureDataInBulkWhenFalse() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.empty());
+    ResponseEntity<?> responseEntity = secureDataController.readSecureDataInBulk("false", null);
+    Assert.assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
+  }
+
+  @Test
+  public void testWatchSecureDataWithoutVersionReturnsTheCurrentVersion() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(secureDataWatchService.getVersion("sdbId")).thenReturn(7L);
+    DeferredResult<ResponseEntity<?>> result = secureDataController.watchSecureData("true", null);
+    ResponseEntity<?> responseEntity = (ResponseEntity<?>) result.getResult();
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    SecureDataChangesResult changes = (SecureDataChangesResult) responseEntity.getBody();
+    Assert.assertEquals(7L, changes.getVersion());
+    Assert.assertTrue(changes.getChanges().isEmpty());
+    Mockito.verify(secureDataWatchService, Mockito.never())
+        .watch(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+  }
+
+  @Test
+  public void testWatchSecureDataIsAnsweredWhenTheWatchCompletes() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("sdb/");
+    Mockito.when(secureDataWatchService.getTimeoutInMillis()).thenReturn(30000L);
+    SecureDataWatch secureDataWatch = Mockito.mock(SecureDataWatch.class);
+    CompletableFuture<SecureDataChangesResult> future = new CompletableFuture<>();
+    Mockito.when(secureDataWatch.getResult()).thenReturn(future);
+    Mockito.when(secureDataWatchService.watch("sdbId", "sdb/", 7L)).thenReturn(secureDataWatch);
+
+    DeferredResult<ResponseEntity<?>> result = secureDataController.watchSecureData("true", 7L);
+    Assert.assertFalse(result.hasResult());
+    Assert.assertEquals(30000L, (long) result.getTimeoutValue());
+
+    SecureDataChangesResult changes =
+        new SecureDataChangesResult()
+            .setVersion(8)
+            .setChanges(List.of(new SecureDataChange().setPath("sdb/a").setVersion(8)));
+    future.complete(changes);
+    ResponseEntity<?> responseEntity = (ResponseEntity<?>) result.getResult();
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertSame(changes, responseEntity.getBody());
+  }
+
+  @Test
+  public void testWatchSecureDataWhenFalse() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readSecret("sdbId", "path")).thenReturn(Optional.empty());
+    DeferredResult<ResponseEntity<?>> result = secureDataController.watchSecureData("false", 7L);
+    Assert.assertEquals(
+        HttpStatus.NOT_FOUND, ((ResponseEntity<?>) result.getResult()).getStatusCode());
   }
 
   @Test
@@ -105,7 +347,7 @@ public class SecureDataControllerTest {
 
   @Test
   @SuppressFBWarnings
-  public void testReadSecureDataVersion() {
+  public void testReadSecureDataVersion() throws Exception {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
     Mockito.when(sdbAccessRequest.getCategory()).thenReturn("category");
@@ -125,7 +367,8 @@ public class SecureDataControllerTest {
     SecureDataResponse secureDataResponse = (SecureDataResponse) responseEntity.getBody();
     Assert.assertSame(metadata, secureDataResponse.getMetadata());
     Assert.assertNotNull(secureDataResponse.getRequestId());
-    Assert.assertEquals(objectNode.toString(), secureDataResponse.getData().toString());
+    Assert.assertEquals(
+        objectNode.toString(), objectMapper.writeValueAsString(secureDataResponse.getData()));
   }
 
   @Test
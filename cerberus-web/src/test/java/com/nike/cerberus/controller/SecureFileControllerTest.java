@@ -1,19 +1,27 @@
 package com.nike.cerberus.controller;
 
+import com.amazonaws.encryptionsdk.exception.BadCiphertextException;
 import com.nike.backstopper.apierror.ApiError;
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.domain.SecureDataType;
-import com.nike.cerberus.domain.SecureFileCurrent;
 import com.nike.cerberus.domain.SecureFileSummary;
-import com.nike.cerberus.domain.SecureFileVersion;
 import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.service.SecureDataService;
 import com.nike.cerberus.service.SecureDataVersionService;
+import com.nike.cerberus.service.StreamingSecureFile;
+import com.nike.cerberus.util.ETagUtils;
 import com.nike.cerberus.util.SdbAccessRequest;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import org.junit.Assert;
 import org.junit.Before;
@@ -26,9 +34,14 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 public class SecureFileControllerTest {
 
+  private static final OffsetDateTime LAST_MODIFIED =
+      OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+  private static final String ETAG = ETagUtils.toETag("sdbId", "path", LAST_MODIFIED);
+
   @Mock private SecureDataService secureDataService;
   @Mock private SecureDataVersionService secureDataVersionService;
   @Mock private SdbAccessRequest sdbAccessRequest;
@@ -48,7 +61,7 @@ public class SecureFileControllerTest {
         .thenReturn(Optional.empty());
     ApiError apiError = null;
     try {
-      secureFileController.headSecureFile();
+      secureFileController.headSecureFile(null);
     } catch (ApiException apiException) {
       apiError = apiException.getApiErrors().get(0);
     }
@@ -64,7 +77,7 @@ public class SecureFileControllerTest {
     Mockito.when(secureFileSummary.getName()).thenReturn("sample.txt");
     Mockito.when(secureDataService.readFileMetadataOnly("sdbId", "path"))
         .thenReturn(Optional.of(secureFileSummary));
-    ResponseEntity<Void> voidResponseEntity = secureFileController.headSecureFile();
+    ResponseEntity<Void> voidResponseEntity = secureFileController.headSecureFile(null);
     Assert.assertEquals(HttpStatus.OK, voidResponseEntity.getStatusCode());
     HttpHeaders httpHeaders = voidResponseEntity.getHeaders();
     Assert.assertEquals("text/plain", httpHeaders.get("Content-Type").get(0));
@@ -77,10 +90,10 @@ public class SecureFileControllerTest {
   public void testGetSecureFileWhenFileIsNotPresent() {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
-    Mockito.when(secureDataService.readFile("sdbId", "path")).thenReturn(Optional.empty());
+    Mockito.when(secureDataService.readFileStream("sdbId", "path")).thenReturn(Optional.empty());
     ApiError apiError = null;
     try {
-      secureFileController.getSecureFile();
+      secureFileController.getSecureFile(null, null, null);
     } catch (ApiException apiException) {
       apiError = apiException.getApiErrors().get(0);
     }
@@ -88,35 +101,182 @@ public class SecureFileControllerTest {
   }
 
   @Test
-  @SuppressFBWarnings
-  public void testGetSecureFile() {
+  public void testGetSecureFile() throws IOException {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
-    SecureFileCurrent secureFileCurrent = Mockito.mock(SecureFileCurrent.class);
-    Mockito.when(secureFileCurrent.getName()).thenReturn("sample.txt");
-    Mockito.when(secureFileCurrent.getData()).thenReturn("data".getBytes(StandardCharsets.UTF_8));
-    Mockito.when(secureDataService.readFile("sdbId", "path"))
-        .thenReturn(Optional.of(secureFileCurrent));
-    ResponseEntity<?> responseEntity = secureFileController.getSecureFile();
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "data")));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile(null, null, null);
     Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
     HttpHeaders httpHeaders = responseEntity.getHeaders();
     Assert.assertEquals("text/plain", httpHeaders.get("Content-Type").get(0));
+    Assert.assertEquals("4", httpHeaders.get("Content-Length").get(0));
+    Assert.assertEquals("bytes", httpHeaders.get("Accept-Ranges").get(0));
+    Assert.assertEquals(LAST_MODIFIED.toInstant().toEpochMilli(), httpHeaders.getLastModified());
+    Assert.assertEquals(ETAG, httpHeaders.getETag());
     Assert.assertEquals(
         "attachment; filename=\"sample.txt\"", httpHeaders.get("Content-Disposition").get(0));
+    Assert.assertEquals("data", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileIsTruncatedWhenDecryptionFailsPartWayThrough() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    // A large file whose signature fails to verify once its last frame has been read
+    InputStream contents =
+        new SequenceInputStream(
+            new ByteArrayInputStream("0123".getBytes(StandardCharsets.UTF_8)),
+            new InputStream() {
+              @Override
+              public int read() {
+                throw new BadCiphertextException("Bad trailing signature");
+              }
+            });
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(
+            Optional.of(
+                new StreamingSecureFile("sample.txt", 10, LAST_MODIFIED, ETAG, contents)));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile(null, null, null);
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertEquals("10", responseEntity.getHeaders().get("Content-Length").get(0));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      ((StreamingResponseBody) responseEntity.getBody()).writeTo(out);
+      Assert.fail("Expected the body to fail part way through");
+    } catch (BadCiphertextException e) {
+      Assert.assertEquals("Bad trailing signature", e.getMessage());
+    }
+    Assert.assertEquals("0123", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGetSecureFileRange() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "0123456789")));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile("bytes=2-5", null, null);
+    Assert.assertEquals(HttpStatus.PARTIAL_CONTENT, responseEntity.getStatusCode());
+    HttpHeaders httpHeaders = responseEntity.getHeaders();
+    Assert.assertEquals("bytes 2-5/10", httpHeaders.get("Content-Range").get(0));
+    Assert.assertEquals("4", httpHeaders.get("Content-Length").get(0));
+    Assert.assertEquals("2345", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileSuffixRangeWithMatchingIfRange() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "0123456789")));
+    String ifRange = DateTimeFormatter.RFC_1123_DATE_TIME.format(LAST_MODIFIED);
+    ResponseEntity<?> responseEntity =
+        secureFileController.getSecureFile("bytes=-3", ifRange, null);
+    Assert.assertEquals(HttpStatus.PARTIAL_CONTENT, responseEntity.getStatusCode());
+    Assert.assertEquals("bytes 7-9/10", responseEntity.getHeaders().get("Content-Range").get(0));
+    Assert.assertEquals("789", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileIgnoresRangeWhenIfRangeDoesNotMatch() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "0123456789")));
+    String ifRange = DateTimeFormatter.RFC_1123_DATE_TIME.format(LAST_MODIFIED.minusDays(1));
+    ResponseEntity<?> responseEntity =
+        secureFileController.getSecureFile("bytes=2-5", ifRange, null);
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertEquals("0123456789", readBody(responseEntity));
+  }
+
+  @Test
+  public void testHeadSecureFileWhenIfNoneMatchMatches() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    SecureFileSummary secureFileSummary =
+        new SecureFileSummary()
+            .setPath("path")
+            .setName("sample.txt")
+            .setLastUpdatedTs(LAST_MODIFIED);
+    Mockito.when(secureDataService.readFileMetadataOnly("sdbId", "path"))
+        .thenReturn(Optional.of(secureFileSummary));
+    ResponseEntity<Void> responseEntity = secureFileController.headSecureFile(ETAG);
+    Assert.assertEquals(HttpStatus.NOT_MODIFIED, responseEntity.getStatusCode());
+    Assert.assertEquals(ETAG, responseEntity.getHeaders().getETag());
+  }
+
+  @Test
+  public void testGetSecureFileWhenIfNoneMatchMatchesDoesNotReadTheFile() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.FILE))
+        .thenReturn(Optional.of(ETAG));
+    ResponseEntity<?> responseEntity =
+        secureFileController.getSecureFile(null, null, "\"other\", W/" + ETAG);
+    Assert.assertEquals(HttpStatus.NOT_MODIFIED, responseEntity.getStatusCode());
+    Assert.assertEquals(ETAG, responseEntity.getHeaders().getETag());
+    Mockito.verify(secureDataService, Mockito.never()).readFileStream("sdbId", "path");
+  }
+
+  @Test
+  public void testGetSecureFileWhenIfNoneMatchDoesNotMatch() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readETag("sdbId", "path", SecureDataType.FILE))
+        .thenReturn(Optional.of(ETAG));
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "data")));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile(null, null, "\"old\"");
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertEquals("data", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileRangeWithMatchingETagIfRange() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "0123456789")));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile("bytes=2-5", ETAG, null);
+    Assert.assertEquals(HttpStatus.PARTIAL_CONTENT, responseEntity.getStatusCode());
+    Assert.assertEquals("2345", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileIgnoresRangeWhenETagIfRangeIsWeak() throws IOException {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "0123456789")));
+    ResponseEntity<?> responseEntity =
+        secureFileController.getSecureFile("bytes=2-5", "W/" + ETAG, null);
+    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    Assert.assertEquals("0123456789", readBody(responseEntity));
+  }
+
+  @Test
+  public void testGetSecureFileUnsatisfiableRange() {
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.readFileStream("sdbId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "data")));
+    ResponseEntity<?> responseEntity = secureFileController.getSecureFile("bytes=10-", null, null);
+    Assert.assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, responseEntity.getStatusCode());
+    Assert.assertEquals("bytes */4", responseEntity.getHeaders().get("Content-Range").get(0));
   }
 
   @Test
   public void testGetSecureFileVersionWhenFileIsNotFound() {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
-    Mockito.when(sdbAccessRequest.getCategory()).thenReturn("category");
     Mockito.when(
-            secureDataVersionService.getSecureFileVersionById(
-                "sdbId", "versionId", "category", "path"))
+            secureDataVersionService.getSecureFileVersionStreamById("sdbId", "versionId", "path"))
         .thenReturn(Optional.empty());
     ApiError apiError = null;
     try {
-      secureFileController.getSecureFileVersion("versionId");
+      secureFileController.getSecureFileVersion("versionId", null, null);
     } catch (ApiException apiException) {
       apiError = apiException.getApiErrors().get(0);
     }
@@ -124,25 +284,21 @@ public class SecureFileControllerTest {
   }
 
   @Test
-  @SuppressFBWarnings
-  public void testGetSecureFileVersion() {
+  public void testGetSecureFileVersion() throws IOException {
     Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
     Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
-    Mockito.when(sdbAccessRequest.getCategory()).thenReturn("category");
-    SecureFileVersion secureFileVersion = Mockito.mock(SecureFileVersion.class);
-    Mockito.when(secureFileVersion.getName()).thenReturn("sample.txt");
-    Mockito.when(secureFileVersion.getData()).thenReturn("data".getBytes(StandardCharsets.UTF_8));
     Mockito.when(
-            secureDataVersionService.getSecureFileVersionById(
-                "sdbId", "versionId", "category", "path"))
-        .thenReturn(Optional.of(secureFileVersion));
+            secureDataVersionService.getSecureFileVersionStreamById("sdbId", "versionId", "path"))
+        .thenReturn(Optional.of(streamingSecureFile("sample.txt", "data")));
 
-    ResponseEntity<?> responseEntity = secureFileController.getSecureFileVersion("versionId");
-    Assert.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+    ResponseEntity<?> responseEntity =
+        secureFileController.getSecureFileVersion("versionId", "bytes=1-", null);
+    Assert.assertEquals(HttpStatus.PARTIAL_CONTENT, responseEntity.getStatusCode());
     HttpHeaders httpHeaders = responseEntity.getHeaders();
     Assert.assertEquals("text/plain", httpHeaders.get("Content-Type").get(0));
     Assert.assertEquals(
         "attachment; filename=\"sample.txt\"", httpHeaders.get("Content-Disposition").get(0));
+    Assert.assertEquals("ata", readBody(responseEntity));
   }
 
   @Test
@@ -164,10 +320,11 @@ public class SecureFileControllerTest {
     Mockito.when(sdbAccessRequest.getPrincipal()).thenReturn(cerberusPrincipal);
     Mockito.when(cerberusPrincipal.getName()).thenReturn("name");
     MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
-    byte[] data = "data".getBytes(StandardCharsets.UTF_8);
-    Mockito.when(multipartFile.getBytes()).thenReturn(data);
+    InputStream data = new ByteArrayInputStream("data".getBytes(StandardCharsets.UTF_8));
+    Mockito.when(multipartFile.getInputStream()).thenReturn(data);
+    Mockito.when(multipartFile.getSize()).thenReturn(4L);
     secureFileController.writeSecureFile(multipartFile);
-    Mockito.verify(secureDataService).writeSecureFile("sdbId", "path", data, data.length, "name");
+    Mockito.verify(secureDataService).writeSecureFile("sdbId", "path", data, 4, "name");
   }
 
   @Test
@@ -176,7 +333,7 @@ public class SecureFileControllerTest {
 
     MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
     String message = "no data";
-    Mockito.when(multipartFile.getBytes()).thenThrow(new IOException(message));
+    Mockito.when(multipartFile.getInputStream()).thenThrow(new IOException(message));
     ApiException apiException = null;
 
     try {
@@ -187,4 +344,31 @@ public class SecureFileControllerTest {
     }
     Assert.assertEquals("Failed to get contents from multipart file", apiException.getMessage());
   }
+
+  @Test
+  public void testWriteSecureFileRejectsFilesThatAreTooLarge() {
+    MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+    Mockito.when(multipartFile.getSize()).thenReturn(Integer.MAX_VALUE + 1L);
+    ApiException apiException = null;
+
+    try {
+      secureFileController.writeSecureFile(multipartFile);
+    } catch (ApiException e) {
+      apiException = e;
+    }
+    Assert.assertEquals("The file must be smaller than 2 GB", apiException.getMessage());
+    Mockito.verifyZeroInteractions(secureDataService);
+  }
+
+  private StreamingSecureFile streamingSecureFile(String name, String contents) {
+    byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+    return new StreamingSecureFile(
+        name, bytes.length, LAST_MODIFIED, ETAG, new ByteArrayInputStream(bytes));
+  }
+
+  private String readBody(ResponseEntity<?> responseEntity) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingResponseBody) responseEntity.getBody()).writeTo(out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
 }
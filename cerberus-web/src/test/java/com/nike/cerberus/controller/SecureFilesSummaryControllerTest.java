@@ -30,7 +30,19 @@ public class SecureFilesSummaryControllerTest {
     Mockito.when(secureDataService.listSecureFilesSummaries("sdbId", "path", 10, 10))
         .thenReturn(secureFileSummaryResult);
     SecureFileSummaryResult actualSecureFileSummaryResult =
-        secureFilesSummaryController.listSecureFiles(10, 10);
+        secureFilesSummaryController.listSecureFiles(10, 10, null);
+    Assert.assertSame(secureFileSummaryResult, actualSecureFileSummaryResult);
+  }
+
+  @Test
+  public void testListSecureFilesAfterACursor() {
+    SecureFileSummaryResult secureFileSummaryResult = Mockito.mock(SecureFileSummaryResult.class);
+    Mockito.when(sdbAccessRequest.getSdbId()).thenReturn("sdbId");
+    Mockito.when(sdbAccessRequest.getPath()).thenReturn("path");
+    Mockito.when(secureDataService.listSecureFilesSummaries("sdbId", "path", 10, "cursor"))
+        .thenReturn(secureFileSummaryResult);
+    SecureFileSummaryResult actualSecureFileSummaryResult =
+        secureFilesSummaryController.listSecureFiles(10, 0, "cursor");
     Assert.assertSame(secureFileSummaryResult, actualSecureFileSummaryResult);
   }
 }
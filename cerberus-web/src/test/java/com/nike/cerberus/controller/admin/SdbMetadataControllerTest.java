@@ -1,17 +1,21 @@
 package com.nike.cerberus.controller.admin;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nike.cerberus.config.ApplicationConfiguration;
 import com.nike.cerberus.domain.SDBMetadata;
 import com.nike.cerberus.domain.SDBMetadataResult;
 import com.nike.cerberus.service.MetadataService;
 import com.nike.cerberus.service.SafeDepositBoxService;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.Authentication;
 
 public class SdbMetadataControllerTest {
@@ -20,11 +24,15 @@ public class SdbMetadataControllerTest {
 
   @Mock private SafeDepositBoxService safeDepositBoxService;
 
-  @InjectMocks private SdbMetadataController sdbMetadataController;
+  private ObjectMapper objectMapper = ApplicationConfiguration.getObjectMapper();
+
+  private SdbMetadataController sdbMetadataController;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
+    sdbMetadataController =
+        new SdbMetadataController(metadataService, safeDepositBoxService, objectMapper, 600);
   }
 
   @Test
@@ -32,10 +40,70 @@ public class SdbMetadataControllerTest {
     SDBMetadataResult sdbMetadataResultMock = Mockito.mock(SDBMetadataResult.class);
     Mockito.when(metadataService.getSDBMetadata(1, 2, "sdbNameFilter"))
         .thenReturn(sdbMetadataResultMock);
-    SDBMetadataResult sdbMetadataResult = sdbMetadataController.getMetadata(1, 2, "sdbNameFilter");
+    SDBMetadataResult sdbMetadataResult =
+        sdbMetadataController.getMetadata(1, 2, "sdbNameFilter", null);
+    Assert.assertSame(sdbMetadataResultMock, sdbMetadataResult);
+  }
+
+  @Test
+  public void testGetMetadataWithCursor() {
+    SDBMetadataResult sdbMetadataResultMock = Mockito.mock(SDBMetadataResult.class);
+    Mockito.when(metadataService.getSDBMetadata(1, "cursor")).thenReturn(sdbMetadataResultMock);
+    SDBMetadataResult sdbMetadataResult = sdbMetadataController.getMetadata(1, 0, null, "cursor");
     Assert.assertSame(sdbMetadataResultMock, sdbMetadataResult);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExportMetadataWritesOneSdbPerLine() throws Exception {
+    SDBMetadata first = new SDBMetadata();
+    first.setName("first");
+    SDBMetadata second = new SDBMetadata();
+    second.setName("second");
+    Mockito.doAnswer(
+            invocation -> {
+              Consumer<SDBMetadata> consumer = (Consumer<SDBMetadata>) invocation.getArguments()[0];
+              consumer.accept(first);
+              consumer.accept(second);
+              return 2;
+            })
+        .when(metadataService)
+        .exportSDBMetadata(Mockito.any());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    sdbMetadataController.exportMetadata(response);
+
+    Assert.assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType());
+    String[] lines = response.getContentAsString().split("\n");
+    Assert.assertEquals(2, lines.length);
+    Assert.assertEquals("first", objectMapper.readTree(lines[0]).get("name").asText());
+    Assert.assertEquals("second", objectMapper.readTree(lines[1]).get("name").asText());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExportMetadataIsAbortedAfterTheTimeout() throws Exception {
+    sdbMetadataController =
+        new SdbMetadataController(metadataService, safeDepositBoxService, objectMapper, 0);
+    Mockito.doAnswer(
+            invocation -> {
+              Consumer<SDBMetadata> consumer = (Consumer<SDBMetadata>) invocation.getArguments()[0];
+              consumer.accept(new SDBMetadata());
+              return 1;
+            })
+        .when(metadataService)
+        .exportSDBMetadata(Mockito.any());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    try {
+      sdbMetadataController.exportMetadata(response);
+      Assert.fail("Expected the export to time out");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("The SDB metadata export timed out", e.getMessage());
+    }
+    Assert.assertEquals(0, response.getContentAsByteArray().length);
+  }
+
   @Test
   public void testRestoreSdbIncludingDataInRequest() {
     SDBMetadata sdbMetadata = Mockito.mock(SDBMetadata.class);
@@ -0,0 +1,55 @@
+package com.nike.cerberus.dao;
+
+import com.nike.cerberus.mapper.LeaseMapper;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class LeaseDaoTest {
+
+  @Mock private LeaseMapper leaseMapper;
+
+  @InjectMocks private LeaseDao leaseDao;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @Test
+  public void testTryAcquireLeaseThatExpired() {
+    Mockito.when(leaseMapper.acquireExpiredLease("lease", "owner", 60)).thenReturn(1);
+    Mockito.when(leaseMapper.getFencingToken("lease", "owner")).thenReturn(7L);
+    Assert.assertEquals(Optional.of(7L), leaseDao.tryAcquireLease("lease", "owner", 60));
+    Mockito.verify(leaseMapper, Mockito.never()).createLease("lease", "owner", 60);
+  }
+
+  @Test
+  public void testTryAcquireLeaseThatWasNeverAcquired() {
+    Mockito.when(leaseMapper.acquireExpiredLease("lease", "owner", 60)).thenReturn(0);
+    Mockito.when(leaseMapper.createLease("lease", "owner", 60)).thenReturn(1);
+    Mockito.when(leaseMapper.getFencingToken("lease", "owner")).thenReturn(1L);
+    Assert.assertEquals(Optional.of(1L), leaseDao.tryAcquireLease("lease", "owner", 60));
+  }
+
+  @Test
+  public void testTryAcquireLeaseThatIsHeld() {
+    Mockito.when(leaseMapper.acquireExpiredLease("lease", "owner", 60)).thenReturn(0);
+    Mockito.when(leaseMapper.createLease("lease", "owner", 60)).thenReturn(0);
+    Assert.assertEquals(Optional.empty(), leaseDao.tryAcquireLease("lease", "owner", 60));
+    Mockito.verify(leaseMapper, Mockito.never()).getFencingToken("lease", "owner");
+  }
+
+  @Test
+  public void testRenewAndReleaseLease() {
+    Mockito.when(leaseMapper.renewLease("lease", "owner", 60)).thenReturn(1);
+    Mockito.when(leaseMapper.releaseLease("lease", "owner")).thenReturn(0);
+    Assert.assertTrue(leaseDao.renewLease("lease", "owner", 60));
+    Assert.assertFalse(leaseDao.releaseLease("lease", "owner"));
+  }
+}
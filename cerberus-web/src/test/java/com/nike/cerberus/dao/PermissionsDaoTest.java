@@ -55,4 +55,16 @@ public class PermissionsDaoTest {
         .doesUserHavePermsForRoleAndSdbCaseInsensitive(
             "sdbId", Collections.EMPTY_SET, Collections.EMPTY_SET);
   }
+
+  @Test
+  public void testGetIamPrincipalAclEntries() {
+    permissionsDao.getIamPrincipalAclEntries("sdbId");
+    Mockito.verify(permissionsMapper).getIamPrincipalAclEntries("sdbId");
+  }
+
+  @Test
+  public void testGetUserGroupAclEntries() {
+    permissionsDao.getUserGroupAclEntries(null);
+    Mockito.verify(permissionsMapper).getUserGroupAclEntries(null);
+  }
 }
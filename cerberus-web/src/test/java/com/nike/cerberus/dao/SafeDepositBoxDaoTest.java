@@ -25,11 +25,13 @@ import com.google.common.collect.Sets;
 import com.nike.cerberus.mapper.SafeDepositBoxMapper;
 import com.nike.cerberus.record.SafeDepositBoxRecord;
 import com.nike.cerberus.record.SafeDepositBoxRoleRecord;
+import com.nike.cerberus.record.SdbMetadataRecord;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import org.apache.ibatis.cursor.Cursor;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -145,7 +147,8 @@ public class SafeDepositBoxDaoTest {
 
   @Test
   public void getSafeDepositBoxes_returns_list_of_role_records() {
-    when(safeDepositBoxMapper.getSafeDepositBoxes(1000, 0)).thenReturn(safeDepositBoxRecordList);
+    when(safeDepositBoxMapper.getSafeDepositBoxes(null, null, 1000, 0))
+        .thenReturn(safeDepositBoxRecordList);
 
     List<SafeDepositBoxRecord> actual = subject.getSafeDepositBoxes(1000, 0);
 
@@ -153,6 +156,29 @@ public class SafeDepositBoxDaoTest {
     assertThat(actual).hasSameElementsAs(safeDepositBoxRecordList);
   }
 
+  @Test
+  public void getSafeDepositBoxes_after_an_sdb_returns_the_page_after_it() {
+    OffsetDateTime afterTs = OffsetDateTime.now();
+    when(safeDepositBoxMapper.getSafeDepositBoxes(afterTs, safeDepositBoxId, 1000, 0))
+        .thenReturn(safeDepositBoxRecordList);
+
+    List<SafeDepositBoxRecord> actual =
+        subject.getSafeDepositBoxes(afterTs, safeDepositBoxId, 1000);
+
+    assertThat(actual).hasSameElementsAs(safeDepositBoxRecordList);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void exportSafeDepositBoxMetadata_returns_the_cursor() {
+    Cursor<SdbMetadataRecord> cursor = mock(Cursor.class);
+    when(safeDepositBoxMapper.exportSafeDepositBoxMetadata()).thenReturn(cursor);
+
+    Cursor<SdbMetadataRecord> actual = subject.exportSafeDepositBoxMetadata();
+
+    assertThat(actual).isSameAs(cursor);
+  }
+
   @Test
   public void getSafeDepositBox_by_id_returns_record_when_found() {
     when(safeDepositBoxMapper.getSafeDepositBox(safeDepositBoxId)).thenReturn(safeDepositBoxRecord);
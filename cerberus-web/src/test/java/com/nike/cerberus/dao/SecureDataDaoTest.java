@@ -4,7 +4,10 @@ import com.nike.cerberus.domain.SecureDataType;
 import com.nike.cerberus.domain.Source;
 import com.nike.cerberus.mapper.SecureDataMapper;
 import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.SecureDataPathNodeRecord;
 import com.nike.cerberus.record.SecureDataRecord;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -39,6 +42,30 @@ public class SecureDataDaoTest {
     Assert.assertEquals(5, response);
   }
 
+  @Test
+  public void testWriteSecureDataRecords() {
+    SecureDataRecord first =
+        new SecureDataRecord().setPath("app/sdb/a").setType(SecureDataType.OBJECT);
+    SecureDataRecord second =
+        new SecureDataRecord().setPath("app/sdb/dir/b").setType(SecureDataType.OBJECT);
+    secureDataDao.writeSecureDataRecords("sdbId", List.of(first, second));
+    Assert.assertEquals(Integer.valueOf("app/sdb/a".hashCode()), first.getId());
+    Assert.assertEquals(Integer.valueOf("app/sdb/dir/b".hashCode()), second.getId());
+    Mockito.verify(secureDataMapper).writeSecureDataRecords("sdbId", List.of(first, second));
+    List<SecureDataPathNodeRecord> pathNodes = new ArrayList<>();
+    pathNodes.addAll(SecureDataDao.getPathNodes("app/sdb/a"));
+    pathNodes.addAll(SecureDataDao.getPathNodes("app/sdb/dir/b"));
+    Mockito.verify(secureDataMapper).addPathNodes("sdbId", SecureDataType.OBJECT, pathNodes);
+  }
+
+  @Test
+  public void testBulkWritesAreSkippedWhenThereIsNothingToWrite() {
+    secureDataDao.writeSecureDataRecords("sdbId", List.of());
+    secureDataDao.updateSecureDataRecords("sdbId", List.of());
+    Assert.assertEquals(List.of(), secureDataDao.readSecureDataByPathsLocking("sdbId", List.of()));
+    Mockito.verifyZeroInteractions(secureDataMapper);
+  }
+
   @Test
   public void testReadSecureDataByPath() {
     SecureDataRecord secureDataRecord = getSecureDataRecord();
@@ -140,26 +167,43 @@ public class SecureDataDaoTest {
   }
 
   @Test
-  public void testListSecureDataByPartialPathAndType() {
+  public void testListMetadataByPartialPathAndType() {
     SecureDataRecord secureDataRecord = getSecureDataRecord();
     List<SecureDataRecord> secureDataRecords = new ArrayList<>();
     secureDataRecords.add(secureDataRecord);
     Mockito.when(
-            secureDataMapper.listSecureDataByPartialPathAndType(
-                "sdbId", "partialPath", SecureDataType.FILE, 0, 0))
+            secureDataMapper.listMetadataByPartialPathAndType(
+                "sdbId", "partialPath", SecureDataType.FILE, null, null, 0, 0))
+        .thenReturn(secureDataRecords);
+    List<SecureDataRecord> actualSecureDataRecords =
+        secureDataDao.listMetadataByPartialPathAndType(
+            "sdbId", "partialPath", SecureDataType.FILE, null, 0, 0);
+    Assert.assertEquals(secureDataRecords, actualSecureDataRecords);
+  }
+
+  @Test
+  public void testListMetadataByPartialPathAndTypeAfterARecord() {
+    SecureDataRecord after = getSecureDataRecord().setId(5);
+    List<SecureDataRecord> secureDataRecords = new ArrayList<>();
+    secureDataRecords.add(getSecureDataRecord());
+    Mockito.when(
+            secureDataMapper.listMetadataByPartialPathAndType(
+                "sdbId", "partialPath", SecureDataType.FILE, OffsetDateTime.MAX, 5, 10, 0))
         .thenReturn(secureDataRecords);
     List<SecureDataRecord> actualSecureDataRecords =
-        secureDataDao.listSecureDataByPartialPathAndType(
-            "sdbId", "partialPath", SecureDataType.FILE, 0, 0);
+        secureDataDao.listMetadataByPartialPathAndType(
+            "sdbId", "partialPath", SecureDataType.FILE, after, 10, 0);
     Assert.assertEquals(secureDataRecords, actualSecureDataRecords);
   }
 
   @Test
   public void testCountByPartialPathAndType() {
-    Mockito.when(secureDataMapper.countByPartialPathAndType("partialPath", SecureDataType.FILE))
+    Mockito.when(
+            secureDataMapper.countByPartialPathAndType(
+                "sdbId", "partialPath", SecureDataType.FILE))
         .thenReturn(6);
     int partialPathCount =
-        secureDataDao.countByPartialPathAndType("partialPath", SecureDataType.FILE);
+        secureDataDao.countByPartialPathAndType("sdbId", "partialPath", SecureDataType.FILE);
     Assert.assertEquals(6, partialPathCount);
   }
 
@@ -182,12 +226,49 @@ public class SecureDataDaoTest {
     secureDataDao.deleteAllSecretsThatStartWithGivenPartialPath("sdbId", "partialPath");
     Mockito.verify(secureDataMapper)
         .deleteAllSecretsThatStartWithGivenPartialPath("sdbId", "partialPath");
+    Mockito.verify(secureDataMapper).deletePathNodesBySdbId("sdbId");
+    Mockito.verify(secureDataMapper).writePathNodesBySdbId("sdbId");
   }
 
   @Test
   public void testDeleteSecret() {
-    secureDataDao.deleteSecret("sdbId", "path");
-    Mockito.verify(secureDataMapper).deleteSecret("sdbId", "path");
+    Mockito.when(secureDataMapper.deleteSecret("sdbId", "app/path")).thenReturn(1);
+    secureDataDao.deleteSecret("sdbId", "app/path", SecureDataType.OBJECT);
+    Mockito.verify(secureDataMapper).deleteSecret("sdbId", "app/path");
+    List<SecureDataPathNodeRecord> nodes = SecureDataDao.getPathNodes("app/path");
+    Mockito.verify(secureDataMapper).removePathNodes("sdbId", SecureDataType.OBJECT, nodes);
+    Mockito.verify(secureDataMapper).deleteEmptyPathNodes("sdbId", SecureDataType.OBJECT, nodes);
+  }
+
+  @Test
+  public void testDeleteSecretThatDoesNotExistLeavesThePathTreeAlone() {
+    secureDataDao.deleteSecret("sdbId", "app/path", SecureDataType.OBJECT);
+    Mockito.verify(secureDataMapper, Mockito.never())
+        .removePathNodes(Mockito.anyString(), Mockito.any(), Mockito.anyList());
+  }
+
+  @Test
+  public void testListChildNames() {
+    Mockito.when(
+            secureDataMapper.listPathNodeChildNames(
+                "sdbId", SecureDataType.OBJECT, "app/", "bar", 10))
+        .thenReturn(List.of("foo/"));
+    Assert.assertEquals(
+        List.of("foo/"),
+        secureDataDao.listChildNames("sdbId", SecureDataType.OBJECT, "app/", "bar", 10));
+  }
+
+  @Test
+  public void testGetPathNodes() {
+    Assert.assertEquals(
+        List.of(
+            new SecureDataPathNodeRecord().setParentPath("").setChildName("app/"),
+            new SecureDataPathNodeRecord().setParentPath("app/").setChildName("foo/"),
+            new SecureDataPathNodeRecord().setParentPath("app/foo/").setChildName("bar")),
+        SecureDataDao.getPathNodes("app/foo/bar"));
+    Assert.assertEquals(
+        List.of(new SecureDataPathNodeRecord().setParentPath("").setChildName("app")),
+        SecureDataDao.getPathNodes("app"));
   }
 
   @Test
@@ -208,13 +289,33 @@ public class SecureDataDaoTest {
     DataKeyInfo dataKeyInfo = getDataKeyInfo();
     List<DataKeyInfo> dataKeyInfoList = new ArrayList<>();
     dataKeyInfoList.add(dataKeyInfo);
-    Mockito.when(secureDataMapper.getOldestDataKeyInfo(OffsetDateTime.MAX, 1))
+    Mockito.when(secureDataMapper.getOldestDataKeyInfo(OffsetDateTime.MAX, null, null, null, 1))
         .thenReturn(dataKeyInfoList);
     List<DataKeyInfo> oldestDataKeyInfoList =
         secureDataDao.getOldestDataKeyInfo(OffsetDateTime.MAX, 1);
     Assert.assertEquals(dataKeyInfoList, oldestDataKeyInfoList);
   }
 
+  @Test
+  public void testGetOldestDataKeyInfoAfterDataKey() {
+    DataKeyInfo after = getDataKeyInfo();
+    List<DataKeyInfo> dataKeyInfoList = new ArrayList<>();
+    dataKeyInfoList.add(getDataKeyInfo());
+    Mockito.when(
+            secureDataMapper.getOldestDataKeyInfo(
+                OffsetDateTime.MAX, after.getLastRotatedTs(), after.getSource(), after.getId(), 1))
+        .thenReturn(dataKeyInfoList);
+    List<DataKeyInfo> oldestDataKeyInfoList =
+        secureDataDao.getOldestDataKeyInfo(OffsetDateTime.MAX, after, 1);
+    Assert.assertEquals(dataKeyInfoList, oldestDataKeyInfoList);
+  }
+
+  @Test
+  public void testCountDataKeysOlderThan() {
+    Mockito.when(secureDataMapper.countDataKeysOlderThan(OffsetDateTime.MAX)).thenReturn(10);
+    Assert.assertEquals(10, secureDataDao.countDataKeysOlderThan(OffsetDateTime.MAX));
+  }
+
   @Test
   public void testWriteSecureData() {
     SecureDataRecord secureDataRecord = getSecureDataRecord();
@@ -231,6 +332,8 @@ public class SecureDataDaoTest {
         OffsetDateTime.MAX);
     secureDataRecord.setId("path".hashCode());
     Mockito.verify(secureDataMapper).writeSecureData(secureDataRecord);
+    Mockito.verify(secureDataMapper)
+        .addPathNodes("sdbBoxId", SecureDataType.FILE, SecureDataDao.getPathNodes("path"));
   }
 
   @Test
@@ -252,6 +355,64 @@ public class SecureDataDaoTest {
     Mockito.verify(secureDataMapper).updateSecureData(secureDataRecord);
   }
 
+  @Test
+  public void testWriteSecureDataFromStream() {
+    InputStream encryptedPayload =
+        new ByteArrayInputStream("blob".getBytes(StandardCharsets.UTF_8));
+    secureDataDao.writeSecureData(
+        "sdbBoxId",
+        "path",
+        encryptedPayload,
+        SecureDataType.FILE,
+        1,
+        "user",
+        OffsetDateTime.MAX,
+        "user",
+        OffsetDateTime.MAX);
+    SecureDataRecord secureDataRecord =
+        getSecureDataRecord()
+            .setId("path".hashCode())
+            .setEncryptedBlob(null)
+            .setTopLevelKVCount(0);
+    Mockito.verify(secureDataMapper).writeSecureDataFromStream(secureDataRecord, encryptedPayload);
+    Mockito.verify(secureDataMapper)
+        .addPathNodes("sdbBoxId", SecureDataType.FILE, SecureDataDao.getPathNodes("path"));
+  }
+
+  @Test
+  public void testUpdateSecureDataFromStream() {
+    InputStream encryptedPayload =
+        new ByteArrayInputStream("blob".getBytes(StandardCharsets.UTF_8));
+    secureDataDao.updateSecureData(
+        "sdbBoxId",
+        "path",
+        encryptedPayload,
+        SecureDataType.FILE,
+        1,
+        "user",
+        OffsetDateTime.MAX,
+        OffsetDateTime.MAX);
+    SecureDataRecord secureDataRecord =
+        getSecureDataRecord()
+            .setId("path".hashCode())
+            .setEncryptedBlob(null)
+            .setTopLevelKVCount(0)
+            .setCreatedBy(null)
+            .setCreatedTs(null);
+    Mockito.verify(secureDataMapper).updateSecureDataFromStream(secureDataRecord, encryptedPayload);
+  }
+
+  @Test
+  public void testReadMetadataByPathLocking() {
+    SecureDataRecord secureDataRecord = getSecureDataRecord();
+    Mockito.when(secureDataMapper.readMetadataByPathLocking("sdbId", "path"))
+        .thenReturn(secureDataRecord);
+    Optional<SecureDataRecord> optionalSecureDataRecord =
+        secureDataDao.readMetadataByPathLocking("sdbId", "path");
+    Assert.assertSame(secureDataRecord, optionalSecureDataRecord.get());
+    Assert.assertFalse(secureDataDao.readMetadataByPathLocking("sdbId", "other").isPresent());
+  }
+
   private DataKeyInfo getDataKeyInfo() {
     DataKeyInfo dataKeyInfo =
         new DataKeyInfo()
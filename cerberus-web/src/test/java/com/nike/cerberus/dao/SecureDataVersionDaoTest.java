@@ -92,6 +92,19 @@ public class SecureDataVersionDaoTest {
     assertThat(actual).hasSameElementsAs(secureDataVersionRecords);
   }
 
+  @Test
+  public void writeSecureDataVersions_gives_every_version_a_new_id() {
+    SecureDataVersionRecord first = new SecureDataVersionRecord().setPath("a");
+    SecureDataVersionRecord second = new SecureDataVersionRecord().setPath("b");
+    when(uuidSupplier.get()).thenReturn("first id", "second id");
+
+    subject.writeSecureDataVersions(Lists.newArrayList(first, second));
+
+    assertThat(first.getId()).isEqualTo("first id");
+    assertThat(second.getId()).isEqualTo("second id");
+    verify(secureDataVersionMapper).writeSecureDataVersions(Lists.newArrayList(first, second));
+  }
+
   @Test
   public void getVersionPathsByPartialPath_returns_list_of_paths() {
     when(secureDataVersionMapper.getVersionPathsByPartialPath(path)).thenReturn(paths);
@@ -150,4 +163,15 @@ public class SecureDataVersionDaoTest {
 
     verify(secureDataVersionMapper).writeSecureDataVersion(anyObject());
   }
+
+  @Test
+  public void writeSecureDataVersionFromSecureData_copies_the_secure_data_at_the_path() {
+    when(uuidSupplier.get()).thenReturn(versionId);
+
+    subject.writeSecureDataVersionFromSecureData(sdbId, path, action, actionPrincipal, actionTs);
+
+    verify(secureDataVersionMapper)
+        .writeSecureDataVersionFromSecureData(
+            versionId, sdbId, path, action.name(), actionPrincipal, actionTs);
+  }
 }
@@ -18,10 +18,13 @@ package com.nike.cerberus.dao;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Lists;
 import com.nike.cerberus.mapper.UserGroupMapper;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import com.nike.cerberus.record.UserGroupPermissionRecord;
 import com.nike.cerberus.record.UserGroupRecord;
 import java.time.OffsetDateTime;
@@ -156,6 +159,28 @@ public class UserGroupDaoTest {
     assertThat(actual).hasSameElementsAs(userGroupPermissionRecordList);
   }
 
+  @Test
+  public void getUserGroupPermissionsBySdbIds_returns_list_of_records() {
+    List<SdbPermissionRecord> records =
+        Lists.newArrayList(
+            new SdbPermissionRecord().setSdboxId(safeDepositBoxId).setPrincipalName("group"));
+    when(userGroupMapper.getUserGroupPermissionsBySdbIds(List.of(safeDepositBoxId)))
+        .thenReturn(records);
+
+    List<SdbPermissionRecord> actual =
+        subject.getUserGroupPermissionsBySdbIds(List.of(safeDepositBoxId));
+
+    assertThat(actual).hasSameElementsAs(records);
+  }
+
+  @Test
+  public void getUserGroupPermissionsBySdbIds_does_not_query_without_sdb_ids() {
+    List<SdbPermissionRecord> actual = subject.getUserGroupPermissionsBySdbIds(List.of());
+
+    assertThat(actual).isEmpty();
+    verify(userGroupMapper, never()).getUserGroupPermissionsBySdbIds(List.of());
+  }
+
   @Test
   public void createUserGroupPermission_returns_record_count() {
     final int recordCount = 1;
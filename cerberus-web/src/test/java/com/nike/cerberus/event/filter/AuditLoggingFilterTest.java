@@ -7,6 +7,7 @@ import com.nike.cerberus.event.AuditableEventContext;
 import com.nike.cerberus.util.SdbAccessRequest;
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.List;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -106,6 +107,36 @@ public class AuditLoggingFilterTest {
         expectedAuditableEventContext.toString(), actualAuditableEventContext.toString());
   }
 
+  @Test
+  public void testDoFilterInternalPublishesAnEventPerAuditedPath()
+      throws ServletException, IOException {
+    HttpServletRequest httpServletRequest = Mockito.mock(HttpServletRequest.class);
+    HttpServletResponse httpServletResponse = Mockito.mock(HttpServletResponse.class);
+    FilterChain filterChain = Mockito.mock(FilterChain.class);
+    Authentication authentication = Mockito.mock(Authentication.class);
+    SecurityContextHolder.getContext().setAuthentication(authentication);
+    Mockito.when(httpServletRequest.getMethod()).thenReturn("GET");
+    Mockito.when(httpServletRequest.getServletPath()).thenReturn("/servletPath");
+    Mockito.when(httpServletResponse.getStatus()).thenReturn(200);
+    Mockito.when(sdbAccessRequest.getSdbSlug()).thenReturn("sdbNameSlug");
+    Mockito.when(auditLoggingFilterDetails.getAuditedPaths())
+        .thenReturn(List.of("/v1/secret/app/sdb/a", "/v1/secret/app/sdb/b"));
+    Mockito.when(buildProperties.getVersion()).thenReturn("version");
+    auditLoggingFilter.doFilterInternal(httpServletRequest, httpServletResponse, filterChain);
+    Mockito.verify(applicationEventPublisher, Mockito.times(3))
+        .publishEvent(auditableEventArgumentCaptor.capture());
+    List<AuditableEvent> auditableEvents = auditableEventArgumentCaptor.getAllValues();
+    Assert.assertEquals(
+        "/servletPath", auditableEvents.get(0).getAuditableEventContext().getPath());
+    Assert.assertEquals(
+        "/v1/secret/app/sdb/a", auditableEvents.get(1).getAuditableEventContext().getPath());
+    Assert.assertEquals(
+        "Unknown read /v1/secret/app/sdb/a",
+        auditableEvents.get(1).getAuditableEventContext().getAction());
+    Assert.assertEquals(
+        "/v1/secret/app/sdb/b", auditableEvents.get(2).getAuditableEventContext().getPath());
+  }
+
   private AuditableEventContext getExpectedAuditableEventContext(
       OffsetDateTime offsetDateTime, String action, String sdbNameSlug) {
     AuditableEventContext auditableEventContext =
@@ -1,7 +1,15 @@
 package com.nike.cerberus.jobs;
 
+import com.nike.cerberus.service.DataKeyRotationService;
+import com.nike.cerberus.service.DistributedLeaseService;
+import com.nike.cerberus.service.DistributedLeaseService.Lease;
 import com.nike.cerberus.service.DistributedLockService;
-import com.nike.cerberus.service.SecureDataService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -10,31 +18,67 @@ import org.mockito.MockitoAnnotations;
 
 public class DataKeyRotationJobTest {
 
-  @Mock private SecureDataService secureDataService;
+  @Mock private DataKeyRotationService dataKeyRotationService;
 
   @Mock private DistributedLockService jobCoordinatorService;
 
+  @Mock private DistributedLeaseService distributedLeaseService;
+
+  @Mock private Lease lease;
+
   private DataKeyRotationJob dataKeyRotationJob;
   private String lockName = DataKeyRotationJob.class.getName();
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
-    dataKeyRotationJob = new DataKeyRotationJob(secureDataService, 10, 1000, 1);
+    dataKeyRotationJob = new DataKeyRotationJob(dataKeyRotationService, 10, 1000, 1, 50);
     dataKeyRotationJob.setJobCoordinatorService(jobCoordinatorService);
+    dataKeyRotationJob.setDistributedLeaseService(distributedLeaseService);
+  }
+
+  @Test
+  public void testRotationStopsOnceTheLeaseIsLost() {
+    dataKeyRotationJob.setLeaseLocksEnabled(true);
+    Mockito.when(distributedLeaseService.tryAcquire(lockName)).thenReturn(Optional.of(lease));
+    Mockito.when(lease.isHeld()).thenReturn(true, false);
+    List<Boolean> lockHeldDuringRotation = new ArrayList<>();
+    Mockito.doAnswer(
+            invocation -> {
+              BooleanSupplier lockHeld = (BooleanSupplier) invocation.getArguments()[4];
+              lockHeldDuringRotation.add(lockHeld.getAsBoolean());
+              lockHeldDuringRotation.add(lockHeld.getAsBoolean());
+              return 0;
+            })
+        .when(dataKeyRotationService)
+        .rotateDataKeys(
+            Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+
+    dataKeyRotationJob.execute();
+
+    Assert.assertEquals(List.of(true, false), lockHeldDuringRotation);
+    Mockito.verify(distributedLeaseService).release(lease);
   }
 
   @Test
   public void testExecuteLockableCode() {
     dataKeyRotationJob.executeLockableCode();
-    Mockito.verify(secureDataService).rotateDataKeys(10, 1000, 1);
+    Mockito.verify(dataKeyRotationService)
+        .rotateDataKeys(
+            Mockito.eq(10),
+            Mockito.eq(1000),
+            Mockito.eq(1),
+            Mockito.eq(Duration.ofMinutes(50)),
+            Mockito.any());
   }
 
   @Test
   public void testExecuteWhenJobCoordinatorServiceDoesNotAcquireLock() {
     dataKeyRotationJob.execute();
     Mockito.verify(jobCoordinatorService).acquireLock(lockName);
-    Mockito.verify(secureDataService, Mockito.never()).rotateDataKeys(10, 1000, 1);
+    Mockito.verify(dataKeyRotationService, Mockito.never())
+        .rotateDataKeys(
+            Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(), Mockito.any());
     Mockito.verify(jobCoordinatorService, Mockito.never()).releaseLock(lockName);
   }
 
@@ -44,7 +88,13 @@ public class DataKeyRotationJobTest {
     Mockito.when(jobCoordinatorService.releaseLock(lockName)).thenReturn(false, true);
     dataKeyRotationJob.execute();
     Mockito.verify(jobCoordinatorService).acquireLock(lockName);
-    Mockito.verify(secureDataService).rotateDataKeys(10, 1000, 1);
+    Mockito.verify(dataKeyRotationService)
+        .rotateDataKeys(
+            Mockito.eq(10),
+            Mockito.eq(1000),
+            Mockito.eq(1),
+            Mockito.eq(Duration.ofMinutes(50)),
+            Mockito.any());
     Mockito.verify(jobCoordinatorService, Mockito.times(2)).releaseLock(lockName);
   }
 }
@@ -1,7 +1,10 @@
 package com.nike.cerberus.jobs;
 
 import com.nike.cerberus.service.AuthTokenService;
+import com.nike.cerberus.service.DistributedLeaseService;
+import com.nike.cerberus.service.DistributedLeaseService.Lease;
 import com.nike.cerberus.service.DistributedLockService;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -14,6 +17,10 @@ public class ExpiredTokenCleanUpJobTest {
 
   @Mock private DistributedLockService jobCoordinatorService;
 
+  @Mock private DistributedLeaseService distributedLeaseService;
+
+  @Mock private Lease lease;
+
   private ExpiredTokenCleanUpJob expiredTokenCleanUpJob;
 
   private String lockName = ExpiredTokenCleanUpJob.class.getName();
@@ -23,6 +30,7 @@ public class ExpiredTokenCleanUpJobTest {
     MockitoAnnotations.initMocks(this);
     expiredTokenCleanUpJob = new ExpiredTokenCleanUpJob(authTokenService, 10, 10, 1000);
     expiredTokenCleanUpJob.setJobCoordinatorService(jobCoordinatorService);
+    expiredTokenCleanUpJob.setDistributedLeaseService(distributedLeaseService);
   }
 
   @Test
@@ -33,6 +41,25 @@ public class ExpiredTokenCleanUpJobTest {
     Mockito.verify(jobCoordinatorService, Mockito.never()).releaseLock(lockName);
   }
 
+  @Test
+  public void testExecuteWithLease() {
+    expiredTokenCleanUpJob.setLeaseLocksEnabled(true);
+    Mockito.when(distributedLeaseService.tryAcquire(lockName)).thenReturn(Optional.of(lease));
+    expiredTokenCleanUpJob.execute();
+    Mockito.verify(authTokenService).deleteExpiredTokens(10, 10, 1000);
+    Mockito.verify(distributedLeaseService).release(lease);
+    Mockito.verifyZeroInteractions(jobCoordinatorService);
+  }
+
+  @Test
+  public void testExecuteWithLeaseHeldByAnotherInstance() {
+    expiredTokenCleanUpJob.setLeaseLocksEnabled(true);
+    Mockito.when(distributedLeaseService.tryAcquire(lockName)).thenReturn(Optional.empty());
+    expiredTokenCleanUpJob.execute();
+    Mockito.verify(authTokenService, Mockito.never()).deleteExpiredTokens(10, 10, 1000);
+    Mockito.verify(distributedLeaseService, Mockito.never()).release(Mockito.any());
+  }
+
   @Test
   public void testExecuteLockableCode() {
     expiredTokenCleanUpJob.executeLockableCode();
@@ -1,10 +1,8 @@
 package com.nike.cerberus.jobs;
 
-import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.metric.MetricsService;
-import com.nike.cerberus.service.SafeDepositBoxService;
-import com.nike.cerberus.service.SecureDataService;
-import com.nike.cerberus.service.UserGroupPermissionService;
+import com.nike.cerberus.service.KpiCounterService;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import java.util.Map;
 import java.util.function.Supplier;
 import org.junit.Assert;
@@ -12,111 +10,82 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 
 public class KpiMetricsProcessingJobTest {
 
   @Mock private MetricsService metricsService;
 
-  @Mock private SafeDepositBoxService safeDepositBoxService;
-
-  @Mock private AwsIamRoleDao awsIamRoleDao;
-
-  @Mock private SecureDataService secureDataService;
-
-  @Mock private UserGroupPermissionService userGroupPermissionService;
-
-  @InjectMocks private KpiMetricsProcessingJob kpiMetricsProcessingJob;
+  @Mock private KpiCounterService kpiCounterService;
 
   @Captor private ArgumentCaptor<Supplier<Number>> supplierArgumentCaptor;
 
   @Captor private ArgumentCaptor<Map<String, String>> mapArgumentCaptor;
 
+  private KpiMetricsProcessingJob kpiMetricsProcessingJob;
+
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
+    kpiMetricsProcessingJob = new KpiMetricsProcessingJob(metricsService, kpiCounterService);
   }
 
   @Test
-  public void testExecute() {
-    int numberOfUniqueIamRoles = 1;
-    int numUniqueOwnerGroups = 2;
-    int numUniqueNonOwnerGroups = 3;
-    int totalUniqueUserGroups = 4;
-    int numSDBs = 5;
-    int numDataNodes = 6;
-    int numKeyValuePairs = 7;
-    int numFiles = 8;
-    Mockito.when(awsIamRoleDao.getTotalNumberOfUniqueIamRoles()).thenReturn(numberOfUniqueIamRoles);
-    Mockito.when(userGroupPermissionService.getTotalNumUniqueOwnerGroups())
-        .thenReturn(numUniqueOwnerGroups);
-    Mockito.when(userGroupPermissionService.getTotalNumUniqueNonOwnerGroups())
-        .thenReturn(numUniqueNonOwnerGroups);
-    Mockito.when(userGroupPermissionService.getTotalNumUniqueUserGroups())
-        .thenReturn(totalUniqueUserGroups);
-    Mockito.when(safeDepositBoxService.getTotalNumberOfSafeDepositBoxes()).thenReturn(numSDBs);
-    Mockito.when(secureDataService.getTotalNumberOfDataNodes()).thenReturn(numDataNodes);
-    Mockito.when(secureDataService.getTotalNumberOfKeyValuePairs()).thenReturn(numKeyValuePairs);
-    Mockito.when(secureDataService.getTotalNumberOfFiles()).thenReturn(numFiles);
-    kpiMetricsProcessingJob.execute();
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfUniqueIamRoles"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numberOfUniqueIamRoles, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfUniqueOwnerGroups"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numUniqueOwnerGroups, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfUniqueNonOwnerGroups"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numUniqueNonOwnerGroups, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("totalUniqueUserGroups"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(totalUniqueUserGroups, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
+  public void test_that_the_gauges_are_registered_once_and_read_the_current_counts() {
+    Mockito.when(kpiCounterService.getCount(Kpi.SDBS)).thenReturn(5L, 6L);
+    Mockito.verifyZeroInteractions(metricsService);
+
+    kpiMetricsProcessingJob.reconcile();
+
     Mockito.verify(metricsService)
         .getOrCreateCallbackGauge(
             Mockito.eq("numberOfSdbs"),
             supplierArgumentCaptor.capture(),
             mapArgumentCaptor.capture());
-    Assert.assertEquals(numSDBs, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfDataNodes"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numDataNodes, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfKeyValuePairs"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numKeyValuePairs, supplierArgumentCaptor.getValue().get());
-    Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
-    Mockito.verify(metricsService)
-        .getOrCreateCallbackGauge(
-            Mockito.eq("numberOfFiles"),
-            supplierArgumentCaptor.capture(),
-            mapArgumentCaptor.capture());
-    Assert.assertEquals(numFiles, supplierArgumentCaptor.getValue().get());
+    Assert.assertEquals(5L, supplierArgumentCaptor.getValue().get());
+    Assert.assertEquals(6L, supplierArgumentCaptor.getValue().get());
     Assert.assertTrue(mapArgumentCaptor.getValue().isEmpty());
+    for (Kpi kpi : Kpi.values()) {
+      Mockito.verify(metricsService)
+          .getOrCreateCallbackGauge(
+              Mockito.eq(kpi.getMetricName()), Mockito.any(), Mockito.eq(Map.of()));
+    }
+
+    kpiMetricsProcessingJob.reconcile();
+    kpiMetricsProcessingJob.execute();
+    Mockito.verify(metricsService, Mockito.times(Kpi.values().length))
+        .getOrCreateCallbackGauge(Mockito.anyString(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void test_that_the_counts_are_reconciled_once_the_application_is_ready() {
+    kpiMetricsProcessingJob.onApplicationEvent(Mockito.mock(ApplicationReadyEvent.class));
+
+    Mockito.verify(kpiCounterService).reconcile();
+    Mockito.verify(metricsService, Mockito.times(Kpi.values().length))
+        .getOrCreateCallbackGauge(Mockito.anyString(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void test_that_execute_reconciles_the_counts_on_the_first_run_only() {
+    Mockito.when(kpiCounterService.isReconciled()).thenReturn(false, true);
+
+    kpiMetricsProcessingJob.execute();
+    kpiMetricsProcessingJob.execute();
+
+    Mockito.verify(kpiCounterService, Mockito.times(1)).reconcile();
+  }
+
+  @Test
+  public void test_that_reconcile_does_not_throw_on_failure() {
+    Mockito.doThrow(new RuntimeException("boom")).when(kpiCounterService).reconcile();
+
+    kpiMetricsProcessingJob.reconcile();
+
+    Mockito.verify(kpiCounterService).reconcile();
+    Mockito.verifyZeroInteractions(metricsService);
   }
 }
@@ -0,0 +1,55 @@
+package com.nike.cerberus.jwt;
+
+import static org.junit.Assert.*;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JwtBlocklistTest {
+
+  private static final OffsetDateTime NOW =
+      OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+
+  private JwtBlocklist jwtBlocklist;
+
+  @Before
+  public void setUp() {
+    jwtBlocklist = new JwtBlocklist();
+  }
+
+  @Test
+  public void test_that_added_ids_are_blocklisted() {
+    assertTrue(jwtBlocklist.add("id", NOW.plusHours(1)));
+    assertFalse(jwtBlocklist.add("id", NOW.plusHours(1)));
+
+    assertTrue(jwtBlocklist.contains("id"));
+    assertFalse(jwtBlocklist.contains("other id"));
+    assertEquals(1, jwtBlocklist.size());
+  }
+
+  @Test
+  public void test_that_removeExpired_only_drops_expired_ids() {
+    jwtBlocklist.add("expired", NOW.minusSeconds(1));
+    jwtBlocklist.add("active", NOW.plusHours(1));
+
+    assertEquals(1, jwtBlocklist.removeExpired(NOW));
+
+    assertFalse(jwtBlocklist.contains("expired"));
+    assertTrue(jwtBlocklist.contains("active"));
+    assertEquals(0, jwtBlocklist.removeExpired(NOW));
+  }
+
+  @Test
+  public void test_that_ids_are_still_blocklisted_after_the_filter_grows() {
+    for (int i = 0; i < 5000; i++) {
+      jwtBlocklist.add("id-" + i, NOW.plusHours(1));
+    }
+
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(jwtBlocklist.contains("id-" + i));
+    }
+    assertFalse(jwtBlocklist.contains("id-5000"));
+  }
+}
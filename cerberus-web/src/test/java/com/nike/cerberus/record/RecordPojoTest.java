@@ -35,7 +35,7 @@ public class RecordPojoTest {
 
     List<PojoClass> pojoClasses = PojoClassFactory.getPojoClasses("com.nike.cerberus.record");
 
-    Assert.assertEquals(16, pojoClasses.size());
+    Assert.assertEquals(22, pojoClasses.size());
 
     Validator validator =
         ValidatorBuilder.create()
@@ -19,19 +19,24 @@ package com.nike.cerberus.service;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import com.codahale.metrics.Counter;
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.PrincipalType;
+import com.nike.cerberus.cache.AuthTokenCache;
 import com.nike.cerberus.dao.AuthTokenDao;
 import com.nike.cerberus.domain.AuthTokenAcceptType;
 import com.nike.cerberus.domain.AuthTokenIssueType;
 import com.nike.cerberus.domain.CerberusAuthToken;
 import com.nike.cerberus.error.AuthTokenTooLongException;
 import com.nike.cerberus.jwt.CerberusJwtClaims;
+import com.nike.cerberus.metric.MetricsService;
 import com.nike.cerberus.record.AuthTokenRecord;
 import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.util.AuthTokenGenerator;
@@ -57,6 +62,8 @@ public class AuthTokenServiceTest {
   @Mock private JwtService jwtService;
   @Mock private JwtFeatureFlags tokenFlag;
   @Mock private CerberusPrincipal cerberusPrincipal;
+  @Mock private CacheInvalidationService cacheInvalidationService;
+  @Mock private MetricsService metricsService;
 
   AuthTokenService authTokenService;
 
@@ -72,6 +79,8 @@ public class AuthTokenServiceTest {
             authTokenDao,
             dateTimeSupplier,
             jwtService,
+            new AuthTokenCache(false, 0, 0, metricsService),
+            cacheInvalidationService,
             tokenFlag);
 
     when(tokenFlag.getAcceptType()).thenReturn(AuthTokenAcceptType.ALL);
@@ -329,4 +338,83 @@ public class AuthTokenServiceTest {
     authTokenService.deleteExpiredTokens(maxDelete, batchSize, batchPauseTimeInMillis);
     verify(authTokenDao).deleteExpiredTokens(maxDelete, batchSize, batchPauseTimeInMillis);
   }
+
+  @Test
+  public void test_that_getCerberusAuthToken_only_hashes_a_verified_token_once_when_caching() {
+    AuthTokenService cachingAuthTokenService = createAuthTokenServiceWithTokenCaching();
+    final String token = "abc-123-def-456";
+    final String fakeHash = "kjadlkfjasdlkf;jlkj1243asdfasdf";
+    when(tokenHasher.digestToken(token)).thenReturn("digest");
+    when(tokenHasher.hashToken(token)).thenReturn(fakeHash);
+    when(authTokenDao.getAuthTokenFromHash(fakeHash))
+        .thenReturn(Optional.of(createAuthTokenRecord(OffsetDateTime.now().plusMinutes(5))));
+
+    assertTrue(cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+    assertTrue(cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+
+    verify(tokenHasher, times(1)).hashToken(token);
+    verify(authTokenDao, times(1)).getAuthTokenFromHash(fakeHash);
+  }
+
+  @Test
+  public void test_that_getCerberusAuthToken_never_returns_an_expired_cached_token() {
+    AuthTokenService cachingAuthTokenService = createAuthTokenServiceWithTokenCaching();
+    final String token = "abc-123-def-456";
+    when(tokenHasher.digestToken(token)).thenReturn("digest");
+    when(tokenHasher.hashToken(token)).thenReturn("hash");
+    when(authTokenDao.getAuthTokenFromHash("hash"))
+        .thenReturn(Optional.of(createAuthTokenRecord(OffsetDateTime.now().minusMinutes(5))));
+
+    assertTrue(!cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+    assertTrue(!cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+
+    verify(authTokenDao, times(2)).getAuthTokenFromHash("hash");
+  }
+
+  @Test
+  public void test_that_revokeToken_evicts_the_cached_token_on_every_instance() {
+    AuthTokenService cachingAuthTokenService = createAuthTokenServiceWithTokenCaching();
+    final String token = "abc-123-def-456";
+    when(tokenHasher.digestToken(token)).thenReturn("digest");
+    when(tokenHasher.hashToken(token)).thenReturn("hash");
+    when(authTokenDao.getAuthTokenFromHash("hash"))
+        .thenReturn(Optional.of(createAuthTokenRecord(OffsetDateTime.now().plusMinutes(5))));
+    when(cerberusPrincipal.getToken()).thenReturn(token);
+    when(cerberusPrincipal.getTokenId()).thenReturn("token-id");
+
+    assertTrue(cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+    cachingAuthTokenService.revokeToken(cerberusPrincipal, OffsetDateTime.now());
+    when(authTokenDao.getAuthTokenFromHash("hash")).thenReturn(Optional.empty());
+
+    assertTrue(!cachingAuthTokenService.getCerberusAuthToken(token).isPresent());
+    verify(authTokenDao).deleteAuthTokenFromHash("hash");
+    verify(cacheInvalidationService).recordInvalidation(AuthTokenCache.NAMESPACE, "token-id");
+  }
+
+  private AuthTokenService createAuthTokenServiceWithTokenCaching() {
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    return new AuthTokenService(
+        uuidSupplier,
+        tokenHasher,
+        authTokenGenerator,
+        authTokenDao,
+        dateTimeSupplier,
+        jwtService,
+        new AuthTokenCache(true, 60, 1024 * 1024, metricsService),
+        cacheInvalidationService,
+        tokenFlag);
+  }
+
+  private AuthTokenRecord createAuthTokenRecord(OffsetDateTime expiresTs) {
+    return new AuthTokenRecord()
+        .setId("token-id")
+        .setTokenHash("hash")
+        .setCreatedTs(expiresTs.minusHours(1))
+        .setExpiresTs(expiresTs)
+        .setPrincipal("principal")
+        .setPrincipalType(PrincipalType.USER.getName())
+        .setIsAdmin(false)
+        .setGroups("group1,group2")
+        .setRefreshCount(0);
+  }
 }
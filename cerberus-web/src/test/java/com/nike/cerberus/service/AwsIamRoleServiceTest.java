@@ -24,7 +24,9 @@ public class AwsIamRoleServiceTest {
     awsIamRoleDao = mock(AwsIamRoleDao.class);
     uuidSupplier = new UuidSupplier();
     dateTimeSupplier = new DateTimeSupplier();
-    awsIamRoleService = new AwsIamRoleService(awsIamRoleDao, uuidSupplier, dateTimeSupplier);
+    awsIamRoleService =
+        new AwsIamRoleService(
+            awsIamRoleDao, uuidSupplier, dateTimeSupplier, mock(KpiCounterService.class));
   }
 
   // To test create Iam Role
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.cache.AuthTokenCache;
+import com.nike.cerberus.cache.DatabaseCache;
+import com.nike.cerberus.cache.SdbSummaryCache;
+import com.nike.cerberus.dao.CacheInvalidationDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.CacheInvalidationRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+public class CacheInvalidationServiceTest {
+
+  private static final OffsetDateTime NOW =
+      OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+
+  @Mock private CacheInvalidationDao cacheInvalidationDao;
+
+  @Mock private SqlSessionFactory sqlSessionFactory;
+
+  @Mock private DateTimeSupplier dateTimeSupplier;
+
+  @Mock private SdbAclIndexService sdbAclIndexService;
+
+  @Mock private AuthTokenCache authTokenCache;
+
+  @Mock private SdbSummaryCache sdbSummaryCache;
+
+  @Mock private MetricsService metricsService;
+
+  @Mock private DatabaseCache secureDataCache;
+
+  @Mock private DatabaseCache permissionsCache;
+
+  private CacheInvalidationService cacheInvalidationService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(secureDataCache.getId()).thenReturn("secureDataMapper");
+    when(permissionsCache.getId()).thenReturn("permissionsMapper");
+    Configuration configuration = new Configuration();
+    configuration.addCache(secureDataCache);
+    configuration.addCache(permissionsCache);
+    when(sqlSessionFactory.getConfiguration()).thenReturn(configuration);
+    when(dateTimeSupplier.get()).thenReturn(NOW);
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    cacheInvalidationService =
+        new CacheInvalidationService(
+            cacheInvalidationDao,
+            sqlSessionFactory,
+            dateTimeSupplier,
+            sdbAclIndexService,
+            authTokenCache,
+            sdbSummaryCache,
+            metricsService,
+            true,
+            30,
+            3,
+            60);
+  }
+
+  @Test
+  public void test_that_apply_pending_invalidations_evicts_keyed_and_whole_namespaces() {
+    when(cacheInvalidationDao.getInvalidationsSince(NOW.minusSeconds(30), 3))
+        .thenReturn(
+            List.of(
+                new CacheInvalidationRecord()
+                    .setId(1L)
+                    .setNamespace("secureDataMapper")
+                    .setCacheKey("sdb-id"),
+                new CacheInvalidationRecord().setId(2L).setNamespace("permissionsMapper")));
+
+    assertEquals(2, cacheInvalidationService.applyPendingInvalidations());
+
+    verify(secureDataCache).evictEntriesReferencing("sdb-id");
+    verify(secureDataCache, never()).evictAll();
+    verify(permissionsCache).evictAll();
+    verify(sdbAclIndexService).applyInvalidation("secureDataMapper", "sdb-id");
+    verify(sdbAclIndexService).applyInvalidation("permissionsMapper", null);
+    verify(sdbAclIndexService).markCurrentAsOf(NOW);
+  }
+
+  @Test
+  public void test_that_apply_pending_invalidations_evicts_again_while_rows_are_in_the_window() {
+    CacheInvalidationRecord record =
+        new CacheInvalidationRecord().setId(1L).setNamespace("permissionsMapper").setCacheKey("id");
+    when(cacheInvalidationDao.getInvalidationsSince(any(), anyInt())).thenReturn(List.of(record));
+
+    assertEquals(1, cacheInvalidationService.applyPendingInvalidations());
+    assertEquals(0, cacheInvalidationService.applyPendingInvalidations());
+
+    verify(permissionsCache, times(2)).evictEntriesReferencing("id");
+    verify(sdbAclIndexService, times(1)).applyInvalidation("permissionsMapper", "id");
+  }
+
+  @Test
+  public void test_that_apply_pending_invalidations_ignores_unknown_namespaces() {
+    when(cacheInvalidationDao.getInvalidationsSince(any(), anyInt()))
+        .thenReturn(List.of(new CacheInvalidationRecord().setId(1L).setNamespace("unknownMapper")));
+
+    assertEquals(1, cacheInvalidationService.applyPendingInvalidations());
+  }
+
+  @Test
+  public void test_that_apply_pending_invalidations_clears_the_caches_when_the_poll_overflows() {
+    when(cacheInvalidationDao.getInvalidationsSince(any(), anyInt()))
+        .thenReturn(
+            List.of(
+                new CacheInvalidationRecord()
+                    .setId(1L)
+                    .setNamespace("secureDataMapper")
+                    .setCacheKey("a"),
+                new CacheInvalidationRecord()
+                    .setId(2L)
+                    .setNamespace("secureDataMapper")
+                    .setCacheKey("b"),
+                new CacheInvalidationRecord().setId(3L).setNamespace("secureDataMapper")));
+
+    assertEquals(3, cacheInvalidationService.applyPendingInvalidations());
+
+    verify(secureDataCache).evictAll();
+    verify(secureDataCache, never()).evictEntriesReferencing(anyString());
+    verify(permissionsCache, never()).evictAll();
+    verify(sdbAclIndexService).applyInvalidation("secureDataMapper", null);
+    verify(authTokenCache).invalidateAll();
+    verify(sdbSummaryCache).invalidateAll();
+    verify(sdbAclIndexService).markCurrentAsOf(NOW);
+  }
+
+  @Test
+  public void test_that_revoked_auth_tokens_are_evicted_from_the_auth_token_cache() {
+    when(cacheInvalidationDao.getInvalidationsSince(any(), anyInt()))
+        .thenReturn(
+            List.of(
+                new CacheInvalidationRecord()
+                    .setId(1L)
+                    .setNamespace(AuthTokenCache.NAMESPACE)
+                    .setCacheKey("token-id")));
+
+    assertEquals(1, cacheInvalidationService.applyPendingInvalidations());
+
+    verify(authTokenCache).invalidateTokenId("token-id");
+    verify(secureDataCache, never()).evictAll();
+  }
+
+  @Test
+  public void test_that_sdb_summary_invalidations_evict_by_grantee_and_sdb_id() {
+    when(cacheInvalidationDao.getInvalidationsSince(any(), anyInt()))
+        .thenReturn(
+            List.of(
+                new CacheInvalidationRecord()
+                    .setId(1L)
+                    .setNamespace(SdbSummaryCache.NAMESPACE)
+                    .setCacheKey("group")));
+
+    assertEquals(1, cacheInvalidationService.applyPendingInvalidations());
+
+    verify(sdbSummaryCache).invalidateGrantee("group");
+    verify(sdbSummaryCache).invalidateSdb("group");
+    verify(sdbSummaryCache, never()).invalidateAll();
+    verify(sdbAclIndexService, never()).applyInvalidation(anyString(), anyString());
+  }
+
+  @Test
+  public void test_that_record_invalidation_appends_to_the_log() {
+    cacheInvalidationService.recordInvalidation(AuthTokenCache.NAMESPACE, "token-id");
+
+    ArgumentCaptor<CacheInvalidationRecord> captor =
+        ArgumentCaptor.forClass(CacheInvalidationRecord.class);
+    verify(cacheInvalidationDao).appendInvalidation(captor.capture());
+    assertEquals(AuthTokenCache.NAMESPACE, captor.getValue().getNamespace());
+    assertEquals("token-id", captor.getValue().getCacheKey());
+    assertEquals(NOW, captor.getValue().getCreatedTs());
+  }
+
+  @Test
+  public void test_that_delete_expired_invalidations_uses_the_retention_period() {
+    when(cacheInvalidationDao.deleteInvalidationsOlderThan(NOW.minusMinutes(60))).thenReturn(5);
+
+    assertEquals(5, cacheInvalidationService.deleteExpiredInvalidations());
+  }
+}
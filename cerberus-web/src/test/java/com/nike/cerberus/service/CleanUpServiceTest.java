@@ -19,6 +19,7 @@ package com.nike.cerberus.service;
 import static com.nike.cerberus.service.KmsService.SOONEST_A_KMS_KEY_CAN_BE_DELETED;
 import static java.time.ZoneOffset.UTC;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -26,6 +27,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.record.AwsIamRoleKmsKeyRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
 import com.nike.cerberus.util.DateTimeSupplier;
 import java.time.OffsetDateTime;
 import org.assertj.core.util.Lists;
@@ -46,6 +48,8 @@ public class CleanUpServiceTest {
 
   @Mock private DateTimeSupplier dateTimeSupplier;
 
+  @Mock private KpiCounterService kpiCounterService;
+
   private OffsetDateTime now = OffsetDateTime.now(UTC);
 
   @Before
@@ -53,7 +57,8 @@ public class CleanUpServiceTest {
 
     initMocks(this);
 
-    cleanUpService = new CleanUpService(kmsService, awsIamRoleDao, dateTimeSupplier);
+    cleanUpService =
+        new CleanUpService(kmsService, awsIamRoleDao, dateTimeSupplier, kpiCounterService);
   }
 
   @Test
@@ -118,6 +123,7 @@ public class CleanUpServiceTest {
 
     verify(awsIamRoleDao).getOrphanedIamRoles();
     verify(awsIamRoleDao).deleteIamRoleById(iamRoleRecordId);
+    verify(kpiCounterService).add(Kpi.UNIQUE_IAM_ROLES, -1);
   }
 
   @Test
@@ -132,5 +138,7 @@ public class CleanUpServiceTest {
     when(awsIamRoleDao.deleteIamRoleById(iamRoleRecordId)).thenThrow(new NullPointerException());
 
     cleanUpService.cleanUpOrphanedIamRoles();
+
+    verify(kpiCounterService, never()).add(Kpi.UNIQUE_IAM_ROLES, -1);
   }
 }
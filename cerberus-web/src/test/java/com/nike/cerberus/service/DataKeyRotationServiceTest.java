@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.amazonaws.AmazonServiceException;
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.dao.DataKeyRotationCheckpointDao;
+import com.nike.cerberus.dao.SecureDataDao;
+import com.nike.cerberus.domain.Source;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.DataKeyRotationCheckpointRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+public class DataKeyRotationServiceTest {
+
+  private static final OffsetDateTime NOW =
+      OffsetDateTime.of(2020, 6, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+  private static final Duration MAX_RUN_TIME = Duration.ofMinutes(1);
+
+  @Mock private SecureDataService secureDataService;
+
+  @Mock private SecureDataDao secureDataDao;
+
+  @Mock private DataKeyRotationCheckpointDao checkpointDao;
+
+  @Mock private DateTimeSupplier dateTimeSupplier;
+
+  @Mock private MetricsService metricsService;
+
+  private DataKeyRotationService dataKeyRotationService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(dateTimeSupplier.get()).thenReturn(NOW);
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    when(checkpointDao.getCheckpoint(DataKeyRotationService.CHECKPOINT_ID))
+        .thenReturn(Optional.empty());
+    when(secureDataDao.countDataKeysOlderThan(any(OffsetDateTime.class))).thenReturn(3);
+    dataKeyRotationService =
+        new DataKeyRotationService(
+            secureDataService,
+            secureDataDao,
+            checkpointDao,
+            dateTimeSupplier,
+            metricsService,
+            2,
+            2,
+            1000,
+            1000);
+  }
+
+  @Test
+  public void test_that_every_page_of_expired_data_keys_is_rotated_and_checkpointed() {
+    DataKeyInfo first = dataKeyInfo("a", 1);
+    DataKeyInfo second = dataKeyInfo("b", 2);
+    DataKeyInfo third = dataKeyInfo("c", 3);
+    when(secureDataDao.getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt()))
+        .thenReturn(List.of(first, second), List.of(third), List.of());
+
+    int rotated = dataKeyRotationService.rotateDataKeys(10, 1, 90, MAX_RUN_TIME, () -> true);
+
+    assertEquals(3, rotated);
+    verify(secureDataService).reencryptDataKey(first);
+    verify(secureDataService).reencryptDataKey(second);
+    verify(secureDataService).reencryptDataKey(third);
+    verify(secureDataDao).getOldestDataKeyInfo(NOW.minusDays(90), null, 2);
+    verify(secureDataDao).getOldestDataKeyInfo(NOW.minusDays(90), second, 2);
+    verify(secureDataDao).getOldestDataKeyInfo(NOW.minusDays(90), third, 2);
+    ArgumentCaptor<DataKeyRotationCheckpointRecord> checkpoints =
+        ArgumentCaptor.forClass(DataKeyRotationCheckpointRecord.class);
+    verify(checkpointDao, times(2)).saveCheckpoint(checkpoints.capture());
+    assertEquals("b", checkpoints.getAllValues().get(0).getDataKeyId());
+    assertEquals("c", checkpoints.getAllValues().get(1).getDataKeyId());
+    assertEquals(Source.SECURE_DATA, checkpoints.getAllValues().get(1).getDataKeySource());
+    assertEquals(third.getLastRotatedTs(), checkpoints.getAllValues().get(1).getLastRotatedTs());
+    verify(checkpointDao, never()).deleteCheckpoint(anyString());
+  }
+
+  @Test
+  public void test_that_a_run_resumes_after_the_checkpoint_and_wraps_around_once() {
+    DataKeyInfo passedOver = dataKeyInfo("a", 1);
+    when(checkpointDao.getCheckpoint(DataKeyRotationService.CHECKPOINT_ID))
+        .thenReturn(
+            Optional.of(
+                new DataKeyRotationCheckpointRecord()
+                    .setId(DataKeyRotationService.CHECKPOINT_ID)
+                    .setDataKeySource(Source.SECURE_DATA_VERSION)
+                    .setDataKeyId("b")
+                    .setLastRotatedTs(NOW.minusDays(200))));
+    when(secureDataDao.getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt()))
+        .thenReturn(List.of(), List.of(passedOver), List.of());
+
+    int rotated = dataKeyRotationService.rotateDataKeys(10, 1, 90, MAX_RUN_TIME, () -> true);
+
+    assertEquals(1, rotated);
+    ArgumentCaptor<DataKeyInfo> after = ArgumentCaptor.forClass(DataKeyInfo.class);
+    verify(secureDataDao, times(3))
+        .getOldestDataKeyInfo(eq(NOW.minusDays(90)), after.capture(), eq(2));
+    assertEquals("b", after.getAllValues().get(0).getId());
+    assertEquals(Source.SECURE_DATA_VERSION, after.getAllValues().get(0).getSource());
+    assertEquals(null, after.getAllValues().get(1));
+    assertEquals(passedOver, after.getAllValues().get(2));
+    verify(checkpointDao).deleteCheckpoint(DataKeyRotationService.CHECKPOINT_ID);
+  }
+
+  @Test
+  public void test_that_the_checkpoint_moves_past_data_keys_that_fail_to_rotate() {
+    DataKeyInfo failing = dataKeyInfo("a", 1);
+    DataKeyInfo rotating = dataKeyInfo("b", 2);
+    doThrow(new IllegalArgumentException("No secure data found for id: a"))
+        .when(secureDataService)
+        .reencryptDataKey(failing);
+    when(secureDataDao.getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt()))
+        .thenReturn(List.of(failing, rotating), List.of());
+
+    int rotated = dataKeyRotationService.rotateDataKeys(10, 1, 90, MAX_RUN_TIME, () -> true);
+
+    assertEquals(1, rotated);
+    ArgumentCaptor<DataKeyRotationCheckpointRecord> checkpoint =
+        ArgumentCaptor.forClass(DataKeyRotationCheckpointRecord.class);
+    verify(checkpointDao).saveCheckpoint(checkpoint.capture());
+    assertEquals("b", checkpoint.getValue().getDataKeyId());
+  }
+
+  @Test
+  public void test_that_no_more_than_the_max_number_of_keys_are_attempted() {
+    when(secureDataDao.getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt()))
+        .thenReturn(List.of(dataKeyInfo("a", 1)));
+
+    int rotated = dataKeyRotationService.rotateDataKeys(1, 1, 90, MAX_RUN_TIME, () -> true);
+
+    assertEquals(1, rotated);
+    verify(secureDataDao, times(1)).getOldestDataKeyInfo(NOW.minusDays(90), null, 1);
+  }
+
+  @Test
+  public void test_that_rotation_stops_without_moving_the_checkpoint_once_the_lock_is_lost() {
+    DataKeyInfo first = dataKeyInfo("a", 1);
+    DataKeyInfo second = dataKeyInfo("b", 2);
+    AtomicBoolean lockHeld = new AtomicBoolean(true);
+    doAnswer(
+            invocation -> {
+              lockHeld.set(false);
+              return null;
+            })
+        .when(secureDataService)
+        .reencryptDataKey(first);
+    when(secureDataDao.getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt()))
+        .thenReturn(List.of(first, second), List.of(dataKeyInfo("c", 3)), List.of());
+
+    dataKeyRotationService.rotateDataKeys(10, 1, 90, MAX_RUN_TIME, lockHeld::get);
+
+    verify(secureDataDao, times(1))
+        .getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt());
+    verify(checkpointDao, never()).saveCheckpoint(any());
+  }
+
+  @Test
+  public void test_that_nothing_is_rotated_without_the_lock() {
+    int rotated = dataKeyRotationService.rotateDataKeys(10, 1, 90, MAX_RUN_TIME, () -> false);
+
+    assertEquals(0, rotated);
+    verify(secureDataDao, never())
+        .getOldestDataKeyInfo(any(OffsetDateTime.class), any(), anyInt());
+  }
+
+  @Test
+  public void test_that_throttling_is_detected_through_wrapping_exceptions() {
+    AmazonServiceException throttled = new AmazonServiceException("Rate exceeded");
+    throttled.setErrorCode("ThrottlingException");
+    AmazonServiceException denied = new AmazonServiceException("Access denied");
+    denied.setErrorCode("AccessDeniedException");
+
+    assertTrue(
+        DataKeyRotationService.isThrottlingException(
+            new IllegalStateException("Failed to decrypt", throttled)));
+    assertFalse(DataKeyRotationService.isThrottlingException(denied));
+    assertFalse(DataKeyRotationService.isThrottlingException(new IllegalArgumentException()));
+  }
+
+  @Test
+  public void test_that_the_pacer_speeds_up_when_fast_and_backs_off_when_slow_or_throttled() {
+    DataKeyRotationService.AdaptivePacer pacer =
+        new DataKeyRotationService.AdaptivePacer(1, 4, Duration.ofMillis(100));
+
+    pacer.onSuccess(Duration.ofMillis(10));
+    assertEquals(2, pacer.getRate(), 0.001);
+    pacer.onSuccess(Duration.ofMillis(200));
+    assertEquals(1.8, pacer.getRate(), 0.001);
+    pacer.onThrottled();
+    assertEquals(0.9, pacer.getRate(), 0.001);
+
+    for (int i = 0; i < 100; i++) {
+      pacer.onSuccess(Duration.ofMillis(10));
+    }
+    assertEquals(4, pacer.getRate(), 0.001);
+    for (int i = 0; i < 100; i++) {
+      pacer.onThrottled();
+    }
+    assertEquals(DataKeyRotationService.AdaptivePacer.MIN_RATE, pacer.getRate(), 0.001);
+  }
+
+  @Test
+  public void test_that_the_pacer_does_not_wait_past_the_timeout() {
+    DataKeyRotationService.AdaptivePacer pacer =
+        new DataKeyRotationService.AdaptivePacer(
+            DataKeyRotationService.AdaptivePacer.MIN_RATE, 4, Duration.ofMillis(100));
+
+    assertTrue(pacer.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+    long startNanos = System.nanoTime();
+    // The next rotation is only allowed in 10 seconds
+    assertFalse(pacer.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(1));
+  }
+
+  private DataKeyInfo dataKeyInfo(String id, int ageInDays) {
+    return new DataKeyInfo()
+        .setId(id)
+        .setSource(Source.SECURE_DATA)
+        .setLastRotatedTs(NOW.minusDays(365 - ageInDays));
+  }
+}
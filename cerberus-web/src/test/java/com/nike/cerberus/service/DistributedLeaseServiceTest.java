@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.dao.LeaseDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.service.DistributedLeaseService.Lease;
+import com.nike.cerberus.util.UuidSupplier;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class DistributedLeaseServiceTest {
+
+  private static final String LEASE_NAME = "the-job-name";
+
+  @Mock private LeaseDao leaseDao;
+
+  @Mock private UuidSupplier uuidSupplier;
+
+  @Mock private MetricsService metricsService;
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  private DistributedLeaseService distributedLeaseService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(uuidSupplier.get()).thenReturn("owner");
+    when(metricsService.getOrCreateCounter(anyString(), anyMap()))
+        .thenAnswer(
+            invocation ->
+                counters.computeIfAbsent(
+                    (String) invocation.getArguments()[0], name -> new Counter()));
+    // The heartbeat is driven by the tests instead of the schedule
+    distributedLeaseService =
+        new DistributedLeaseService(leaseDao, uuidSupplier, metricsService, 3600, 1800);
+  }
+
+  @After
+  public void after() {
+    distributedLeaseService.shutdown();
+  }
+
+  @Test
+  public void test_that_a_lease_can_be_acquired_renewed_and_released() {
+    when(leaseDao.tryAcquireLease(LEASE_NAME, "owner", 3600)).thenReturn(Optional.of(3L));
+    when(leaseDao.renewLease(LEASE_NAME, "owner", 3600)).thenReturn(true);
+    when(leaseDao.releaseLease(LEASE_NAME, "owner")).thenReturn(true);
+
+    Lease lease = distributedLeaseService.tryAcquire(LEASE_NAME).get();
+    assertEquals(3L, lease.getFencingToken());
+    assertTrue(lease.isHeld());
+
+    distributedLeaseService.renewLeases();
+    assertTrue(lease.isHeld());
+
+    assertTrue(distributedLeaseService.release(lease));
+    assertFalse(lease.isHeld());
+    distributedLeaseService.renewLeases();
+    verify(leaseDao).renewLease(LEASE_NAME, "owner", 3600);
+    assertEquals(1, counters.get("cms.lease-acquired").getCount());
+    assertEquals(1, counters.get("cms.lease-renewed").getCount());
+    assertEquals(1, counters.get("cms.lease-released").getCount());
+  }
+
+  @Test
+  public void test_that_a_lease_held_by_another_owner_is_not_acquired() {
+    when(leaseDao.tryAcquireLease(LEASE_NAME, "owner", 3600)).thenReturn(Optional.empty());
+
+    assertFalse(distributedLeaseService.tryAcquire(LEASE_NAME).isPresent());
+    assertEquals(1, counters.get("cms.lease-contention").getCount());
+  }
+
+  @Test
+  public void test_that_a_lease_that_could_not_be_renewed_is_lost() {
+    when(leaseDao.tryAcquireLease(LEASE_NAME, "owner", 3600)).thenReturn(Optional.of(1L));
+    when(leaseDao.renewLease(LEASE_NAME, "owner", 3600)).thenReturn(false);
+    Lease lease = distributedLeaseService.tryAcquire(LEASE_NAME).get();
+
+    distributedLeaseService.renewLeases();
+
+    assertFalse(lease.isHeld());
+    assertEquals(1, counters.get("cms.lease-lost").getCount());
+    distributedLeaseService.shutdown();
+    verify(leaseDao, never()).releaseLease(LEASE_NAME, "owner");
+  }
+
+  @Test
+  public void test_that_a_lease_is_kept_until_it_expires_when_the_renewal_fails() {
+    when(leaseDao.tryAcquireLease(LEASE_NAME, "owner", 3600)).thenReturn(Optional.of(1L));
+    when(leaseDao.renewLease(LEASE_NAME, "owner", 3600))
+        .thenThrow(new RuntimeException("database unavailable"))
+        .thenReturn(true);
+    Lease lease = distributedLeaseService.tryAcquire(LEASE_NAME).get();
+
+    distributedLeaseService.renewLeases();
+    assertTrue(lease.isHeld());
+    assertEquals(1, counters.get("cms.lease-renew-failure").getCount());
+
+    distributedLeaseService.renewLeases();
+    assertTrue(lease.isHeld());
+    assertEquals(1, counters.get("cms.lease-renewed").getCount());
+  }
+
+  @Test
+  public void test_that_shutdown_releases_the_leases() {
+    when(leaseDao.tryAcquireLease(eq(LEASE_NAME), anyString(), eq(3600)))
+        .thenReturn(Optional.of(1L));
+    Lease lease = distributedLeaseService.tryAcquire(LEASE_NAME).get();
+
+    distributedLeaseService.shutdown();
+
+    assertFalse(lease.isHeld());
+    verify(leaseDao).releaseLease(LEASE_NAME, "owner");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_that_the_renew_interval_must_be_at_most_half_of_the_duration() {
+    new DistributedLeaseService(leaseDao, uuidSupplier, metricsService, 60, 31);
+  }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.encryptionsdk.AwsCrypto;
 import com.amazonaws.encryptionsdk.CryptoAlgorithm;
+import com.amazonaws.encryptionsdk.CryptoInputStream;
 import com.amazonaws.encryptionsdk.CryptoMaterialsManager;
 import com.amazonaws.encryptionsdk.CryptoResult;
 import com.amazonaws.encryptionsdk.MasterKeyProvider;
@@ -33,6 +34,8 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.google.common.collect.Lists;
 import com.nike.backstopper.exception.ApiException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
@@ -66,7 +69,8 @@ public class EncryptionServiceTest {
           "cmk",
           decryptCryptoMaterialsManager,
           encryptCryptoMaterialsManager,
-          Region.getRegion(Regions.US_WEST_2));
+          Region.getRegion(Regions.US_WEST_2),
+          0);
 
     } catch (IllegalArgumentException illegalArgumentException) {
       exceptionMessage = illegalArgumentException.getMessage();
@@ -107,6 +111,19 @@ public class EncryptionServiceTest {
     Assert.assertEquals(expectedEncryptedValue, new String(encryptedBytes, StandardCharsets.UTF_8));
   }
 
+  @Test
+  public void testEncryptWithStream() {
+    EncryptionService encryptionService = getEncryptionService();
+    InputStream plaintext = new ByteArrayInputStream("plainText".getBytes(StandardCharsets.UTF_8));
+    CryptoInputStream<?> cryptoInputStream = Mockito.mock(CryptoInputStream.class);
+    Mockito.doReturn(cryptoInputStream)
+        .when(awsCrypto)
+        .createEncryptingStream(
+            Mockito.eq(encryptCryptoMaterialsManager), Mockito.eq(plaintext), Mockito.anyMap());
+    InputStream encryptedStream = encryptionService.encrypt(plaintext, "sdbPath");
+    Assert.assertSame(cryptoInputStream, encryptedStream);
+  }
+
   @Test
   public void testDecryptWhenEncryptionContentDidNotHaveExpectedPath() {
     EncryptionService encryptionService = Mockito.spy(getEncryptionService());
@@ -228,6 +245,82 @@ public class EncryptionServiceTest {
     Assert.assertEquals("decryptedData", new String(decryptedData, StandardCharsets.UTF_8));
   }
 
+  @Test
+  public void testDecryptToStreamWhenEncryptionContent() throws Exception {
+    EncryptionService encryptionService = Mockito.spy(getEncryptionService());
+    ParsedCiphertext parsedCiphertext = getParsedCipherText();
+    Mockito.doReturn(parsedCiphertext)
+        .when(encryptionService)
+        .getParsedCipherText("encryptedPayload".getBytes(StandardCharsets.UTF_8));
+    Map<String, String> contextMap = new HashMap<>();
+    contextMap.put(SDB_PATH_PROPERTY_NAME, "sdbPath");
+    Mockito.when(parsedCiphertext.getEncryptionContextMap()).thenReturn(contextMap);
+    CryptoInputStream<?> cryptoInputStream = Mockito.mock(CryptoInputStream.class);
+    Mockito.doReturn(cryptoInputStream)
+        .when(awsCrypto)
+        .createDecryptingStream(
+            Mockito.any(CryptoMaterialsManager.class), Mockito.any(InputStream.class));
+    InputStream decryptedStream =
+        encryptionService.decryptToStream(
+            "encryptedPayload".getBytes(StandardCharsets.UTF_8), "sdbPath");
+    Assert.assertSame(cryptoInputStream, decryptedStream);
+    // The header is processed up front, so that KMS errors are thrown before anything is sent
+    Mockito.verify(cryptoInputStream).getCryptoResult();
+  }
+
+  @Test
+  public void testDecryptToStreamVerifiesSmallPayloadsBeforeReturning() throws Exception {
+    EncryptionService encryptionService =
+        Mockito.spy(
+            new EncryptionService(
+                awsCrypto,
+                "cmk,Arns,cmk",
+                decryptCryptoMaterialsManager,
+                encryptCryptoMaterialsManager,
+                Region.getRegion(Regions.US_WEST_2),
+                1024));
+    ParsedCiphertext parsedCiphertext = getParsedCipherText();
+    Mockito.doReturn(parsedCiphertext)
+        .when(encryptionService)
+        .getParsedCipherText("encryptedPayload".getBytes(StandardCharsets.UTF_8));
+    Map<String, String> contextMap = new HashMap<>();
+    contextMap.put(SDB_PATH_PROPERTY_NAME, "sdbPath");
+    Mockito.when(parsedCiphertext.getEncryptionContextMap()).thenReturn(contextMap);
+    CryptoResult cryptoResult = getCryptoResultBytes("decryptedData");
+    Mockito.when(awsCrypto.decryptData(decryptCryptoMaterialsManager, parsedCiphertext))
+        .thenReturn(cryptoResult);
+    InputStream decryptedStream =
+        encryptionService.decryptToStream(
+            "encryptedPayload".getBytes(StandardCharsets.UTF_8), "sdbPath");
+    Assert.assertEquals(
+        "decryptedData", new String(decryptedStream.readAllBytes(), StandardCharsets.UTF_8));
+    // The signature is verified by decryptData, rather than at the end of a decrypting stream
+    Mockito.verify(awsCrypto, Mockito.never())
+        .createDecryptingStream(
+            Mockito.any(CryptoMaterialsManager.class), Mockito.any(InputStream.class));
+  }
+
+  @Test
+  public void testDecryptToStreamWhenEncryptionContentDidNotHaveExpectedPath() {
+    EncryptionService encryptionService = Mockito.spy(getEncryptionService());
+    ParsedCiphertext parsedCiphertext = getParsedCipherText();
+    Mockito.doReturn(parsedCiphertext)
+        .when(encryptionService)
+        .getParsedCipherText("encryptedPayload".getBytes(StandardCharsets.UTF_8));
+    Mockito.when(parsedCiphertext.getEncryptionContextMap()).thenReturn(new HashMap<>());
+    String exceptionMessage = "";
+    try {
+      encryptionService.decryptToStream(
+          "encryptedPayload".getBytes(StandardCharsets.UTF_8), "sdbPath");
+    } catch (ApiException apie) {
+      exceptionMessage = apie.getMessage();
+    }
+    assertEquals(
+        "EncryptionContext did not have expected path: sdbPath (possible tampering)",
+        exceptionMessage);
+    Mockito.verifyZeroInteractions(awsCrypto);
+  }
+
   @Test
   public void testReEncryptWhenEncryptionContentDidNotHaveExpectedPath() {
     EncryptionService encryptionService = Mockito.spy(getEncryptionService());
@@ -343,7 +436,8 @@ public class EncryptionServiceTest {
             "cmk,Arns,cmk",
             decryptCryptoMaterialsManager,
             encryptCryptoMaterialsManager,
-            Region.getRegion(Regions.US_WEST_2));
+            Region.getRegion(Regions.US_WEST_2),
+            0);
     return encryptionService;
   }
 
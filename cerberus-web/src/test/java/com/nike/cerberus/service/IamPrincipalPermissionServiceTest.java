@@ -1,17 +1,20 @@
 package com.nike.cerberus.service;
 
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.AwsIamRoleDao;
 import com.nike.cerberus.domain.IamPrincipalPermission;
 import com.nike.cerberus.domain.Role;
 import com.nike.cerberus.record.AwsIamRolePermissionRecord;
 import com.nike.cerberus.record.AwsIamRoleRecord;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import com.nike.cerberus.util.UuidSupplier;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.junit.Assert;
@@ -30,6 +33,12 @@ public class IamPrincipalPermissionServiceTest {
 
   @Mock private AwsIamRoleDao awsIamRoleDao;
 
+  @Mock private SdbSummaryCache sdbSummaryCache;
+
+  @Mock private CacheInvalidationService cacheInvalidationService;
+
+  @Mock private KpiCounterService kpiCounterService;
+
   @InjectMocks private IamPrincipalPermissionService iamPrincipalPermissionService;
 
   @Before
@@ -128,6 +137,46 @@ public class IamPrincipalPermissionServiceTest {
         });
   }
 
+  @Test
+  public void testGetIamPrincipalPermissionsBySdbIds() {
+    List<SdbPermissionRecord> records = new ArrayList<>();
+    records.add(
+        new SdbPermissionRecord()
+            .setId("id1")
+            .setSdboxId("boxId1")
+            .setPrincipalName("arn1")
+            .setRoleId("roleId"));
+    records.add(
+        new SdbPermissionRecord()
+            .setId("id2")
+            .setSdboxId("boxId1")
+            .setPrincipalName("arn2")
+            .setRoleId("roleId"));
+    records.add(
+        new SdbPermissionRecord()
+            .setId("id3")
+            .setSdboxId("boxId2")
+            .setPrincipalName("arn1")
+            .setRoleId("roleId")
+            .setCreatedBy("createdBy")
+            .setCreatedTs(OffsetDateTime.MAX));
+    List<String> boxIds = List.of("boxId1", "boxId2", "boxId3");
+    Mockito.when(awsIamRoleDao.getIamRolePermissionsBySdbIds(boxIds)).thenReturn(records);
+
+    Map<String, Set<IamPrincipalPermission>> permissionsBySdbId =
+        iamPrincipalPermissionService.getIamPrincipalPermissionsBySdbIds(boxIds);
+
+    Assert.assertEquals(2, permissionsBySdbId.size());
+    Assert.assertEquals(2, permissionsBySdbId.get("boxId1").size());
+    IamPrincipalPermission permission = permissionsBySdbId.get("boxId2").iterator().next();
+    Assert.assertEquals("id3", permission.getId());
+    Assert.assertEquals("arn1", permission.getIamPrincipalArn());
+    Assert.assertEquals("roleId", permission.getRoleId());
+    Assert.assertEquals("createdBy", permission.getCreatedBy());
+    Assert.assertEquals(OffsetDateTime.MAX, permission.getCreatedTs());
+    Mockito.verify(awsIamRoleDao, Mockito.never()).getIamRoleById(Mockito.anyString());
+  }
+
   @Test(expected = ApiException.class)
   public void testIamPrincipalPermissionUpdateWhenIamRoleIsNotPresent() {
     IamPrincipalPermission iamPrincipalPermission = new IamPrincipalPermission();
@@ -197,6 +246,7 @@ public class IamPrincipalPermissionServiceTest {
     iamPrincipalPermissionService.grantIamPrincipalPermission(
         "boxId", iamPrincipalPermission, "user", OffsetDateTime.MAX);
     Mockito.verify(awsIamRoleDao).createIamRole(Mockito.any(AwsIamRoleRecord.class));
+    Mockito.verify(kpiCounterService).add(KpiCounterService.Kpi.UNIQUE_IAM_ROLES, 1);
     Mockito.verify(awsIamRoleDao)
         .createIamRolePermission(Mockito.any(AwsIamRolePermissionRecord.class));
   }
@@ -215,6 +265,7 @@ public class IamPrincipalPermissionServiceTest {
         "boxId", iamPrincipalPermission, "user", OffsetDateTime.MAX);
     Mockito.verify(awsIamRoleDao, Mockito.never())
         .createIamRole(Mockito.any(AwsIamRoleRecord.class));
+    Mockito.verifyZeroInteractions(kpiCounterService);
     Mockito.verify(awsIamRoleDao)
         .createIamRolePermission(Mockito.any(AwsIamRolePermissionRecord.class));
   }
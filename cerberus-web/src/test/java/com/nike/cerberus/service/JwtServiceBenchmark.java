@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.cache.JwtClaimsCache;
+import com.nike.cerberus.dao.JwtBlocklistDao;
+import com.nike.cerberus.jwt.CerberusJwtClaims;
+import com.nike.cerberus.jwt.CerberusJwtKeySpec;
+import com.nike.cerberus.jwt.CerberusSigningKeyResolver;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.util.TokenHasher;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.List;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures the per request cost of {@link JwtService#parseAndValidateToken(String)} with and
+ * without the JWT claims cache. This is not run as part of the test suite, run the main method
+ * from an IDE or with the test runtime classpath.
+ */
+public class JwtServiceBenchmark {
+
+  private static final int WARM_UP_ITERATIONS = 20_000;
+  private static final int MEASURED_ITERATIONS = 200_000;
+
+  public static void main(String[] args) throws Exception {
+    CerberusJwtKeySpec keySpec = new CerberusJwtKeySpec(new byte[64], "HmacSHA512", "key id");
+    CerberusSigningKeyResolver signingKeyResolver = mock(CerberusSigningKeyResolver.class);
+    when(signingKeyResolver.resolveSigningKey()).thenReturn(keySpec);
+    when(signingKeyResolver.resolveSigningKey(any(JwsHeader.class), any(Claims.class)))
+        .thenReturn(keySpec);
+    JwtBlocklistDao jwtBlocklistDao = mock(JwtBlocklistDao.class);
+    when(jwtBlocklistDao.getBlocklistEntriesSince(any())).thenReturn(List.of());
+    MetricsService metricsService = mock(MetricsService.class);
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    String salt =
+        Base64.getEncoder()
+            .encodeToString("0123456789".repeat(7).getBytes(StandardCharsets.UTF_8));
+    TokenHasher tokenHasher = new TokenHasher(salt, "PBKDF2WithHmacSHA256", 256, 100);
+
+    CerberusJwtClaims claims = new CerberusJwtClaims();
+    claims.setId("id");
+    claims.setPrincipal("principal");
+    claims.setGroups("group-a,group-b");
+    claims.setIsAdmin(false);
+    claims.setPrincipalType("user");
+    claims.setRefreshCount(0);
+    claims.setCreatedTs(OffsetDateTime.now());
+    claims.setExpiresTs(OffsetDateTime.now().plusHours(1));
+
+    for (boolean cacheEnabled : new boolean[] {false, true}) {
+      JwtService jwtService =
+          new JwtService(
+              signingKeyResolver,
+              "benchmark",
+              jwtBlocklistDao,
+              "iss",
+              "aud",
+              new JwtClaimsCache(cacheEnabled, 300, 8 * 1024 * 1024, metricsService),
+              tokenHasher,
+              60);
+      ReflectionTestUtils.setField(jwtService, "maxTokenLength", 1600);
+      String token = jwtService.generateJwtToken(claims);
+
+      run(jwtService, token, WARM_UP_ITERATIONS);
+      long start = System.nanoTime();
+      run(jwtService, token, MEASURED_ITERATIONS);
+      long elapsed = System.nanoTime() - start;
+
+      System.out.printf(
+          "claims cache enabled: %s, %d ns per parseAndValidateToken%n",
+          cacheEnabled, elapsed / MEASURED_ITERATIONS);
+    }
+  }
+
+  private static void run(JwtService jwtService, String token, int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      if (jwtService.parseAndValidateToken(token).isEmpty()) {
+        throw new IllegalStateException("The benchmark token failed validation");
+      }
+    }
+  }
+}
@@ -5,19 +5,26 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
-import com.google.common.collect.Sets;
+import com.codahale.metrics.Counter;
+import com.google.common.collect.ImmutableMap;
+import com.nike.cerberus.cache.JwtClaimsCache;
 import com.nike.cerberus.dao.JwtBlocklistDao;
 import com.nike.cerberus.error.AuthTokenTooLongException;
 import com.nike.cerberus.jwt.CerberusJwtClaims;
 import com.nike.cerberus.jwt.CerberusJwtKeySpec;
 import com.nike.cerberus.jwt.CerberusSigningKeyResolver;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.JwtBlocklistRecord;
+import com.nike.cerberus.util.TokenHasher;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwsHeader;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -27,6 +34,10 @@ public class JwtServiceTest {
 
   @Mock private JwtBlocklistDao jwtBlocklistDao;
 
+  @Mock private TokenHasher tokenHasher;
+
+  @Mock private MetricsService metricsService;
+
   private JwtService jwtService;
 
   private CerberusJwtKeySpec cerberusJwtKeySpec;
@@ -36,7 +47,16 @@ public class JwtServiceTest {
   @Before
   public void setUp() throws Exception {
     initMocks(this);
-    jwtService = new JwtService(signingKeyResolver, "local", jwtBlocklistDao, "iss", "aud");
+    jwtService =
+        new JwtService(
+            signingKeyResolver,
+            "local",
+            jwtBlocklistDao,
+            "iss",
+            "aud",
+            new JwtClaimsCache(false, 0, 0, metricsService),
+            tokenHasher,
+            60);
     ReflectionTestUtils.setField(jwtService, "maxTokenLength", 1600);
     cerberusJwtKeySpec = new CerberusJwtKeySpec(new byte[64], "HmacSHA512", "key id");
     cerberusJwtClaims = new CerberusJwtClaims();
@@ -106,7 +126,8 @@ public class JwtServiceTest {
   public void test_parseAndValidateToken_returns_empty_for_blocklisted_token()
       throws AuthTokenTooLongException {
     String token = jwtService.generateJwtToken(cerberusJwtClaims);
-    when(jwtBlocklistDao.getBlocklist()).thenReturn(Sets.newHashSet("id"));
+    when(jwtBlocklistDao.getBlocklistEntriesSince(any()))
+        .thenReturn(List.of(blocklistRecord("id")));
     jwtService.refreshBlocklist();
     Optional<CerberusJwtClaims> cerberusJwtClaims = jwtService.parseAndValidateToken(token);
     assertFalse(cerberusJwtClaims.isPresent());
@@ -118,4 +139,106 @@ public class JwtServiceTest {
     jwtService.revokeToken(tokenId, OffsetDateTime.now());
     verify(jwtBlocklistDao, times(1)).addToBlocklist(any());
   }
+
+  @Test
+  public void test_that_parseAndValidateToken_only_verifies_a_cached_token_once()
+      throws AuthTokenTooLongException {
+    JwtService cachingJwtService = createJwtServiceWithClaimsCaching();
+    String token = cachingJwtService.generateJwtToken(cerberusJwtClaims);
+
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+
+    verify(signingKeyResolver, times(1)).resolveSigningKey(any(JwsHeader.class), any(Claims.class));
+  }
+
+  @Test
+  public void test_that_a_cached_token_is_rejected_once_it_is_revoked()
+      throws AuthTokenTooLongException {
+    JwtService cachingJwtService = createJwtServiceWithClaimsCaching();
+    String token = cachingJwtService.generateJwtToken(cerberusJwtClaims);
+
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+    cachingJwtService.revokeToken("id", OffsetDateTime.now());
+
+    assertFalse(cachingJwtService.parseAndValidateToken(token).isPresent());
+  }
+
+  @Test
+  public void test_that_a_cached_token_is_rejected_once_another_instance_blocklists_it()
+      throws AuthTokenTooLongException {
+    JwtService cachingJwtService = createJwtServiceWithClaimsCaching();
+    String token = cachingJwtService.generateJwtToken(cerberusJwtClaims);
+
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+    when(jwtBlocklistDao.getBlocklistEntriesSince(any()))
+        .thenReturn(List.of(blocklistRecord("id")));
+    cachingJwtService.refreshBlocklist();
+
+    assertFalse(cachingJwtService.parseAndValidateToken(token).isPresent());
+  }
+
+  @Test
+  public void test_that_the_claims_cache_is_cleared_when_the_keys_change()
+      throws AuthTokenTooLongException {
+    JwtService cachingJwtService = createJwtServiceWithClaimsCaching();
+    String token = cachingJwtService.generateJwtToken(cerberusJwtClaims);
+    when(signingKeyResolver.getVerificationKeys())
+        .thenReturn(ImmutableMap.of("key id", cerberusJwtKeySpec))
+        .thenReturn(ImmutableMap.of());
+
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+    cachingJwtService.refreshKeys();
+    assertTrue(cachingJwtService.parseAndValidateToken(token).isPresent());
+
+    verify(signingKeyResolver, times(2)).resolveSigningKey(any(JwsHeader.class), any(Claims.class));
+  }
+
+  @Test
+  public void test_that_refreshBlocklist_only_reads_entries_added_since_the_last_refresh() {
+    verify(jwtBlocklistDao).getBlocklistEntriesSince(null);
+
+    jwtService.refreshBlocklist();
+
+    ArgumentCaptor<OffsetDateTime> since = ArgumentCaptor.forClass(OffsetDateTime.class);
+    verify(jwtBlocklistDao, times(2)).getBlocklistEntriesSince(since.capture());
+    assertNotNull(since.getValue());
+    assertTrue(since.getValue().isBefore(OffsetDateTime.now().minusSeconds(59)));
+  }
+
+  @Test
+  public void test_that_expired_blocklist_entries_are_dropped_on_refresh()
+      throws AuthTokenTooLongException {
+    String token = jwtService.generateJwtToken(cerberusJwtClaims);
+    jwtService.revokeToken("id", OffsetDateTime.now().minusSeconds(1));
+
+    jwtService.refreshBlocklist();
+
+    assertTrue(jwtService.parseAndValidateToken(token).isPresent());
+  }
+
+  private JwtBlocklistRecord blocklistRecord(String id) {
+    return new JwtBlocklistRecord()
+        .setId(id)
+        .setExpiresTs(OffsetDateTime.now().plusHours(1))
+        .setCreatedTs(OffsetDateTime.now());
+  }
+
+  private JwtService createJwtServiceWithClaimsCaching() {
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    when(tokenHasher.digestToken(anyString()))
+        .thenAnswer(invocation -> "digest-" + invocation.getArguments()[0].hashCode());
+    JwtService cachingJwtService =
+        new JwtService(
+            signingKeyResolver,
+            "local",
+            jwtBlocklistDao,
+            "iss",
+            "aud",
+            new JwtClaimsCache(true, 60, 1024 * 1024, metricsService),
+            tokenHasher,
+            60);
+    ReflectionTestUtils.setField(cachingJwtService, "maxTokenLength", 1600);
+    return cachingJwtService;
+  }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.nike.cerberus.dao.AwsIamRoleDao;
+import com.nike.cerberus.dao.SafeDepositBoxDao;
+import com.nike.cerberus.dao.SecureDataDao;
+import com.nike.cerberus.domain.SecureDataType;
+import com.nike.cerberus.service.KpiCounterService.Kpi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class KpiCounterServiceTest {
+
+  @Mock private AwsIamRoleDao awsIamRoleDao;
+  @Mock private UserGroupPermissionService userGroupPermissionService;
+  @Mock private SafeDepositBoxDao safeDepositBoxDao;
+  @Mock private SecureDataDao secureDataDao;
+
+  private KpiCounterService kpiCounterService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    kpiCounterService =
+        new KpiCounterService(
+            awsIamRoleDao, userGroupPermissionService, safeDepositBoxDao, secureDataDao);
+  }
+
+  @After
+  public void after() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void test_that_reconcile_sets_the_counts_from_the_tables() {
+    when(awsIamRoleDao.getTotalNumberOfUniqueIamRoles()).thenReturn(1);
+    when(userGroupPermissionService.getTotalNumUniqueOwnerGroups()).thenReturn(2);
+    when(userGroupPermissionService.getTotalNumUniqueNonOwnerGroups()).thenReturn(3);
+    when(userGroupPermissionService.getTotalNumUniqueUserGroups()).thenReturn(4);
+    when(safeDepositBoxDao.getSafeDepositBoxCount()).thenReturn(5);
+    when(secureDataDao.getTotalNumberOfDataNodes()).thenReturn(6);
+    when(secureDataDao.getSumTopLevelKeyValuePairs()).thenReturn(7);
+    when(secureDataDao.countByType(SecureDataType.FILE)).thenReturn(8);
+    kpiCounterService.add(Kpi.SDBS, 100);
+    assertFalse(kpiCounterService.isReconciled());
+
+    kpiCounterService.reconcile();
+
+    assertTrue(kpiCounterService.isReconciled());
+    assertEquals(1, kpiCounterService.getCount(Kpi.UNIQUE_IAM_ROLES));
+    assertEquals(2, kpiCounterService.getCount(Kpi.UNIQUE_OWNER_GROUPS));
+    assertEquals(3, kpiCounterService.getCount(Kpi.UNIQUE_NON_OWNER_GROUPS));
+    assertEquals(4, kpiCounterService.getCount(Kpi.UNIQUE_USER_GROUPS));
+    assertEquals(5, kpiCounterService.getCount(Kpi.SDBS));
+    assertEquals(6, kpiCounterService.getCount(Kpi.DATA_NODES));
+    assertEquals(7, kpiCounterService.getCount(Kpi.KEY_VALUE_PAIRS));
+    assertEquals(8, kpiCounterService.getCount(Kpi.FILES));
+  }
+
+  @Test
+  public void test_that_counts_are_only_added_to_once_the_transaction_commits() {
+    TransactionSynchronizationManager.initSynchronization();
+    kpiCounterService.add(Kpi.SDBS, 1);
+    kpiCounterService.addSecureData(SecureDataType.FILE, 0);
+    assertEquals(0, kpiCounterService.getCount(Kpi.SDBS));
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+
+    assertEquals(1, kpiCounterService.getCount(Kpi.SDBS));
+    assertEquals(1, kpiCounterService.getCount(Kpi.DATA_NODES));
+    assertEquals(1, kpiCounterService.getCount(Kpi.FILES));
+    assertEquals(0, kpiCounterService.getCount(Kpi.KEY_VALUE_PAIRS));
+  }
+
+  @Test
+  public void test_that_secure_data_writes_and_deletes_update_the_counts() {
+    kpiCounterService.addSecureData(SecureDataType.OBJECT, 3);
+    kpiCounterService.updateSecureData(3, 5);
+    kpiCounterService.updateSecureData(null, 2);
+    kpiCounterService.addSecureData(SecureDataType.OBJECT, 4);
+    kpiCounterService.removeSecureData(SecureDataType.OBJECT, 4);
+
+    assertEquals(1, kpiCounterService.getCount(Kpi.DATA_NODES));
+    assertEquals(7, kpiCounterService.getCount(Kpi.KEY_VALUE_PAIRS));
+    assertEquals(0, kpiCounterService.getCount(Kpi.FILES));
+  }
+
+  @Test
+  public void test_that_deleting_a_partial_path_removes_the_secure_data_under_it() {
+    when(secureDataDao.countByPartialPathAndType("sdb", "app/", SecureDataType.OBJECT))
+        .thenReturn(3);
+    when(secureDataDao.countByPartialPathAndType("sdb", "app/", SecureDataType.FILE))
+        .thenReturn(2);
+    when(secureDataDao.getSumTopLevelKeyValuePairsByPartialPath("sdb", "app/")).thenReturn(9);
+
+    kpiCounterService.removeSecureDataByPartialPath("sdb", "app/");
+
+    assertEquals(-5, kpiCounterService.getCount(Kpi.DATA_NODES));
+    assertEquals(-2, kpiCounterService.getCount(Kpi.FILES));
+    assertEquals(-9, kpiCounterService.getCount(Kpi.KEY_VALUE_PAIRS));
+  }
+}
@@ -17,6 +17,12 @@
 package com.nike.cerberus.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -25,6 +31,7 @@ import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.config.ApplicationConfiguration;
 import com.nike.cerberus.domain.IamPrincipalPermission;
 import com.nike.cerberus.domain.Role;
@@ -37,6 +44,8 @@ import com.nike.cerberus.util.UuidSupplier;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,6 +53,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -79,6 +89,8 @@ public class MetadataServiceTest {
     when(safeDepositBoxService.getTotalNumberOfSafeDepositBoxes()).thenReturn(totalSDBs);
 
     SDBMetadata sdbMD = new SDBMetadata();
+    sdbMD.setId("sdb-id");
+    sdbMD.setCreatedTs(OffsetDateTime.of(2020, 6, 1, 1, 1, 1, 0, ZoneOffset.UTC));
     doReturn(Arrays.asList(sdbMD)).when(metadataServiceSpy).getSDBMetadataList(limit, offset, null);
 
     SDBMetadataResult actual = metadataServiceSpy.getSDBMetadata(limit, offset, null);
@@ -91,6 +103,77 @@ public class MetadataServiceTest {
     assertEquals("expected the sdb count to equal 1", 1, actual.getSdbCountInResult());
     assertEquals(
         "expected total sdbs to equal the sdb total count", totalSDBs, actual.getTotalSDBCount());
+    SDBMetadata after = MetadataService.fromSDBMetadataCursor(actual.getNextCursor());
+    assertEquals("sdb-id", after.getId());
+    assertEquals(sdbMD.getCreatedTs(), after.getCreatedTs());
+  }
+
+  @Test
+  public void test_that_get_sdb_metadata_pages_with_cursors() {
+    OffsetDateTime createdTs = OffsetDateTime.of(2020, 6, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+    SafeDepositBoxV2 first = sdb("a", createdTs);
+    SafeDepositBoxV2 second = sdb("b", createdTs.minusDays(1));
+    SafeDepositBoxV2 third = sdb("c", createdTs.minusDays(2));
+    when(safeDepositBoxService.getTotalNumberOfSafeDepositBoxes()).thenReturn(3);
+    when(safeDepositBoxService.getSafeDepositBoxes(null, null, 3))
+        .thenReturn(Arrays.asList(first, second, third));
+    when(safeDepositBoxService.getSafeDepositBoxes(second.getCreatedTs(), "b", 3))
+        .thenReturn(Arrays.asList(third));
+
+    SDBMetadataResult firstPage = metadataService.getSDBMetadata(2, null);
+
+    assertEquals(2, firstPage.getSdbCountInResult());
+    assertEquals("a", firstPage.getSafeDepositBoxMetadata().get(0).getId());
+    assertEquals("b", firstPage.getSafeDepositBoxMetadata().get(1).getId());
+    assertEquals(3, firstPage.getTotalSDBCount());
+    assertTrue(firstPage.isHasNext());
+
+    SDBMetadataResult lastPage = metadataService.getSDBMetadata(2, firstPage.getNextCursor());
+
+    assertEquals(1, lastPage.getSdbCountInResult());
+    assertEquals("c", lastPage.getSafeDepositBoxMetadata().get(0).getId());
+    assertFalse(lastPage.isHasNext());
+    assertNull(lastPage.getNextCursor());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void test_that_export_sdb_metadata_streams_every_sdb_with_names_resolved() {
+    OffsetDateTime createdTs = OffsetDateTime.of(2020, 6, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+    SafeDepositBoxV2 first = sdb("a", createdTs);
+    first.setCategoryId("category-id");
+    first.setUserGroupPermissions(
+        new HashSet<>(
+            List.of(new UserGroupPermission().withName("group").withRoleId("read-role-id"))));
+    SafeDepositBoxV2 second = sdb("b", createdTs.minusDays(1));
+    when(categoryService.getCategoryIdToCategoryNameMap())
+        .thenReturn(Map.of("category-id", "Applications"));
+    when(roleService.getRoleIdToStringMap()).thenReturn(Map.of("read-role-id", "read"));
+    doAnswer(
+            invocation -> {
+              Consumer<SafeDepositBoxV2> consumer =
+                  (Consumer<SafeDepositBoxV2>) invocation.getArguments()[0];
+              consumer.accept(first);
+              consumer.accept(second);
+              return 2;
+            })
+        .when(safeDepositBoxService)
+        .exportSafeDepositBoxes(any());
+    List<SDBMetadata> exported = new ArrayList<>();
+
+    int count = metadataService.exportSDBMetadata(exported::add);
+
+    assertEquals(2, count);
+    assertEquals("a", exported.get(0).getId());
+    assertEquals("Applications", exported.get(0).getCategory());
+    assertEquals(Map.of("group", "read"), exported.get(0).getUserGroupPermissions());
+    assertEquals("b", exported.get(1).getId());
+    verify(safeDepositBoxService, times(0)).getSafeDepositBoxes(anyInt(), anyInt());
+  }
+
+  @Test(expected = ApiException.class)
+  public void test_that_get_sdb_metadata_rejects_a_malformed_cursor() {
+    metadataService.getSDBMetadata(2, "not a cursor");
   }
 
   @Test
@@ -194,6 +277,15 @@ public class MetadataServiceTest {
         data.getUserGroupPermissions());
   }
 
+  private SafeDepositBoxV2 sdb(String id, OffsetDateTime createdTs) {
+    SafeDepositBoxV2 box = new SafeDepositBoxV2();
+    box.setId(id);
+    box.setCreatedTs(createdTs);
+    box.setUserGroupPermissions(new HashSet<>());
+    box.setIamPrincipalPermissions(new HashSet<>());
+    return box;
+  }
+
   @Test
   public void test_that_restore_metadata_calls_the_sdb_service_with_expected_sdb_box()
       throws IOException {
@@ -11,6 +11,7 @@ import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.util.AwsIamRoleArnParser;
 import com.nike.cerberus.util.SdbAccessRequest;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
@@ -32,10 +33,13 @@ public class PermissionValidationServiceTest {
   @Mock private SafeDepositBoxService safeDepositBoxService;
   @Mock private SdbAccessRequest sdbAccessRequest;
   @Mock private AuditLoggingFilterDetails auditLoggingFilterDetails;
+  @Mock private SdbAclIndexService sdbAclIndexService;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
+    Mockito.when(sdbAclIndexService.getSdbIdByPath(Mockito.anyString()))
+        .thenReturn(Optional.empty());
   }
 
   @Test
@@ -418,6 +422,55 @@ public class PermissionValidationServiceTest {
     Assert.assertTrue("Request path is invalid.".equals(exceptionMessage));
   }
 
+  @Test
+  public void testDoesPrincipalHavePermissionForSdbWithPrincipalTypeIAMWhenTheAclIndexHasAGrant() {
+    PermissionValidationService permissionValidationService =
+        createPermissionValidationServiceWithGroupCaseSensitive(true);
+    CerberusPrincipal cerberusPrincipal =
+        mockCerberusPrincipalWithPrincipalTypeAndName(PrincipalType.IAM, IAM_PRINCIPAL_ARN);
+    Mockito.when(awsIamRoleArnParser.convertPrincipalArnToRootArn(IAM_PRINCIPAL_ARN))
+        .thenReturn("iamRootArn");
+    Mockito.when(awsIamRoleArnParser.isAssumedRoleArn(IAM_PRINCIPAL_ARN)).thenReturn(false);
+    Mockito.when(
+            sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+                Mockito.eq("sdbId"),
+                Mockito.eq(List.of(IAM_PRINCIPAL_ARN, "iamRootArn")),
+                Mockito.anySet()))
+        .thenReturn(true);
+
+    boolean hasPermission =
+        permissionValidationService.doesPrincipalHavePermissionForSdb(
+            cerberusPrincipal, "sdbId", SecureDataAction.READ);
+
+    Assert.assertTrue(hasPermission);
+    Mockito.verify(permissionsDao, Mockito.never())
+        .doesIamPrincipalHaveRoleForSdb(
+            Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anySet());
+  }
+
+  @Test
+  public void testDoesPrincipalHavePermissionForSdbWithPrincipalTypeUserWhenTheAclIndexHasAGrant() {
+    PermissionValidationService permissionValidationService =
+        createPermissionValidationServiceWithGroupCaseSensitive(false);
+    Set<String> userGroups = new HashSet<>();
+    userGroups.add("userGroup1");
+    CerberusPrincipal cerberusPrincipal =
+        mockCerberusPrincipalWithPrincipalTypeAndUserGroups(PrincipalType.USER, userGroups);
+    Mockito.when(
+            sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+                Mockito.eq("sdbId"), Mockito.eq(userGroups), Mockito.anySet(), Mockito.eq(false)))
+        .thenReturn(true);
+
+    boolean hasPermission =
+        permissionValidationService.doesPrincipalHavePermissionForSdb(
+            cerberusPrincipal, "sdbId", SecureDataAction.READ);
+
+    Assert.assertTrue(hasPermission);
+    Mockito.verify(permissionsDao, Mockito.never())
+        .doesUserHavePermsForRoleAndSdbCaseInsensitive(
+            Mockito.anyString(), Mockito.anySet(), Mockito.anySet());
+  }
+
   private void
       testDoesPrincipalHaveSdbPermissionsForActionWhenRequestAttributesWhenServletPathIsSecuredAndVerifyPathIsValid() {
     PermissionValidationService permissionValidationService =
@@ -555,7 +608,8 @@ public class PermissionValidationServiceTest {
             awsIamRoleArnParser,
             safeDepositBoxService,
             sdbAccessRequest,
-            auditLoggingFilterDetails);
+            auditLoggingFilterDetails,
+            sdbAclIndexService);
     return permissionValidationService;
   }
 }
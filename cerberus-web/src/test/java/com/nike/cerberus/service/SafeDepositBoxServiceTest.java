@@ -30,6 +30,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import com.nike.backstopper.exception.ApiException;
 import com.nike.cerberus.PrincipalType;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.SafeDepositBoxDao;
 import com.nike.cerberus.dao.SecureDataVersionDao;
 import com.nike.cerberus.dao.UserGroupDao;
@@ -42,6 +43,7 @@ import com.nike.cerberus.domain.SafeDepositBoxV2;
 import com.nike.cerberus.domain.UserGroupPermission;
 import com.nike.cerberus.record.RoleRecord;
 import com.nike.cerberus.record.SafeDepositBoxRecord;
+import com.nike.cerberus.record.SdbMetadataRecord;
 import com.nike.cerberus.record.UserGroupRecord;
 import com.nike.cerberus.security.CerberusPrincipal;
 import com.nike.cerberus.util.AwsIamRoleArnParser;
@@ -51,10 +53,15 @@ import com.nike.cerberus.util.UuidSupplier;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.ibatis.cursor.Cursor;
 import org.assertj.core.util.Lists;
 import org.assertj.core.util.Sets;
 import org.junit.Assert;
@@ -91,6 +98,14 @@ public class SafeDepositBoxServiceTest {
 
   @Mock private SecureDataVersionDao secureDataVersionDao;
 
+  @Mock private SdbSummaryCache sdbSummaryCache;
+
+  @Mock private CacheInvalidationService cacheInvalidationService;
+
+  @Mock private KpiCounterService kpiCounterService;
+
+  @Mock private SecureDataWatchService secureDataWatchService;
+
   @InjectMocks private SafeDepositBoxService safeDepositBoxService;
 
   private SafeDepositBoxService safeDepositBoxServiceSpy;
@@ -379,6 +394,8 @@ public class SafeDepositBoxServiceTest {
     verify(secureDataVersionDao).deleteAllVersionsThatStartWithPartialPath(sdbPathNoCategory);
     verify(secureDataService)
         .deleteAllSecretsThatStartWithGivenPartialPath(sdbId, sdbPathNoCategory);
+    verify(secureDataWatchService).deleteChanges(sdbId);
+    verify(kpiCounterService).add(KpiCounterService.Kpi.SDBS, -1);
   }
 
   @Test
@@ -501,6 +518,38 @@ public class SafeDepositBoxServiceTest {
     assertEquals(roleArnRecords.size(), roleArnSdbSummaries.size());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void test_that_getAssociatedSafeDepositBoxes_caches_by_principal_and_grantees() {
+    String assumedRoleArn = "arn:aws:sts::123456789012:assumed-role/Accounting-Role/Mary";
+    String iamRoleArn = "arn:aws:iam::123456789012:role/Accounting-Role";
+    String rootArn = "arn:aws:iam::123456789012:root";
+    CerberusPrincipal principal = mock(CerberusPrincipal.class);
+    doReturn(PrincipalType.IAM).when(principal).getPrincipalType();
+    doReturn(assumedRoleArn).when(principal).getName();
+    when(awsIamRoleArnParser.isAssumedRoleArn(assumedRoleArn)).thenReturn(true);
+    when(awsIamRoleArnParser.convertPrincipalArnToRoleArn(assumedRoleArn)).thenReturn(iamRoleArn);
+    when(awsIamRoleArnParser.convertPrincipalArnToRootArn(assumedRoleArn)).thenReturn(rootArn);
+    when(safeDepositBoxDao.getAssumedRoleAssociatedSafeDepositBoxes(
+            assumedRoleArn, iamRoleArn, rootArn))
+        .thenReturn(List.of(new SafeDepositBoxRecord().setId("a")));
+    when(sdbSummaryCache.isEnabled()).thenReturn(true);
+    when(sdbSummaryCache.get(
+            Matchers.eq(PrincipalType.IAM),
+            Matchers.eq(assumedRoleArn),
+            Matchers.eq(List.of(assumedRoleArn, iamRoleArn, rootArn)),
+            any(Supplier.class)))
+        .thenAnswer(
+            invocation ->
+                ((Supplier<List<SafeDepositBoxSummary>>) invocation.getArguments()[3]).get());
+
+    List<SafeDepositBoxSummary> sdbSummaries =
+        safeDepositBoxService.getAssociatedSafeDepositBoxes(principal);
+
+    assertEquals(1, sdbSummaries.size());
+    assertEquals("a", sdbSummaries.get(0).getId());
+  }
+
   @Test
   public void test_that_validates_owner_AD_group_name() {
     String id = "111";
@@ -835,4 +884,92 @@ public class SafeDepositBoxServiceTest {
 
     assertEquals(sdbObject.getUserGroupPermissions().size(), 1);
   }
+
+  @Test
+  public void test_that_get_safe_deposit_boxes_reads_the_permissions_of_the_page_at_once() {
+    Role ownerRole = new Role().setId("owner-role-id");
+    when(roleService.getRoleByName(RoleRecord.ROLE_OWNER)).thenReturn(Optional.of(ownerRole));
+    SafeDepositBoxRecord first = new SafeDepositBoxRecord().setId("a").setName("first");
+    SafeDepositBoxRecord second = new SafeDepositBoxRecord().setId("b").setName("second");
+    when(safeDepositBoxDao.getSafeDepositBoxes(null, null, 2))
+        .thenReturn(List.of(first, second));
+    UserGroupPermission owner =
+        new UserGroupPermission().withName("owner-group").withRoleId("owner-role-id");
+    IamPrincipalPermission iamPermission =
+        new IamPrincipalPermission().withIamPrincipalArn("arn").withRoleId("read-role-id");
+    when(userGroupPermissionService.getUserGroupPermissionsBySdbIds(List.of("a", "b")))
+        .thenReturn(Map.of("a", new HashSet<>(List.of(owner))));
+    when(iamPrincipalPermissionService.getIamPrincipalPermissionsBySdbIds(List.of("a", "b")))
+        .thenReturn(Map.of("b", new HashSet<>(List.of(iamPermission))));
+
+    List<SafeDepositBoxV2> safeDepositBoxes =
+        safeDepositBoxService.getSafeDepositBoxes(null, null, 2);
+
+    assertEquals(2, safeDepositBoxes.size());
+    assertEquals("first", safeDepositBoxes.get(0).getName());
+    assertEquals("owner-group", safeDepositBoxes.get(0).getOwner());
+    assertEquals(0, safeDepositBoxes.get(0).getUserGroupPermissions().size());
+    assertEquals(0, safeDepositBoxes.get(0).getIamPrincipalPermissions().size());
+    assertEquals("second", safeDepositBoxes.get(1).getName());
+    assertEquals(null, safeDepositBoxes.get(1).getOwner());
+    assertEquals(Set.of(iamPermission), safeDepositBoxes.get(1).getIamPrincipalPermissions());
+    verify(userGroupPermissionService, times(0)).getUserGroupPermissions(Matchers.anyString());
+    verify(iamPrincipalPermissionService, times(0))
+        .getIamPrincipalPermissions(Matchers.anyString());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void test_that_export_safe_deposit_boxes_groups_the_rows_of_each_sdb() throws Exception {
+    Role ownerRole = new Role().setId("owner-role-id");
+    when(roleService.getRoleByName(RoleRecord.ROLE_OWNER)).thenReturn(Optional.of(ownerRole));
+    List<SdbMetadataRecord> rows =
+        List.of(
+            new SdbMetadataRecord()
+                .setId("a")
+                .setName("first")
+                .setPermissionType(SdbMetadataRecord.PERMISSION_TYPE_USER_GROUP)
+                .setPrincipalName("owner-group")
+                .setRoleId("owner-role-id"),
+            new SdbMetadataRecord()
+                .setId("a")
+                .setName("first")
+                .setPermissionType(SdbMetadataRecord.PERMISSION_TYPE_USER_GROUP)
+                .setPrincipalName("read-group")
+                .setRoleId("read-role-id"),
+            new SdbMetadataRecord()
+                .setId("a")
+                .setName("first")
+                .setPermissionType(SdbMetadataRecord.PERMISSION_TYPE_IAM_PRINCIPAL)
+                .setPrincipalName("arn")
+                .setRoleId("read-role-id"),
+            new SdbMetadataRecord().setId("b").setName("second"));
+    Cursor<SdbMetadataRecord> cursor = mock(Cursor.class);
+    when(cursor.iterator()).thenReturn(rows.iterator());
+    when(safeDepositBoxDao.exportSafeDepositBoxMetadata()).thenReturn(cursor);
+    List<SafeDepositBoxV2> exported = new ArrayList<>();
+
+    int count = safeDepositBoxService.exportSafeDepositBoxes(exported::add);
+
+    assertEquals(2, count);
+    assertEquals(2, exported.size());
+    assertEquals("first", exported.get(0).getName());
+    assertEquals("owner-group", exported.get(0).getOwner());
+    assertEquals(
+        Set.of("read-group"),
+        exported.get(0).getUserGroupPermissions().stream()
+            .map(UserGroupPermission::getName)
+            .collect(Collectors.toSet()));
+    assertEquals(
+        Set.of("arn"),
+        exported.get(0).getIamPrincipalPermissions().stream()
+            .map(IamPrincipalPermission::getIamPrincipalArn)
+            .collect(Collectors.toSet()));
+    assertEquals("second", exported.get(1).getName());
+    assertEquals(null, exported.get(1).getOwner());
+    assertEquals(0, exported.get(1).getUserGroupPermissions().size());
+    assertEquals(0, exported.get(1).getIamPrincipalPermissions().size());
+    verify(cursor).close();
+    verify(userGroupPermissionService, times(0)).getUserGroupPermissions(Matchers.anyString());
+  }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static com.nike.cerberus.record.RoleRecord.ROLE_OWNER;
+import static com.nike.cerberus.record.RoleRecord.ROLE_READ;
+import static com.nike.cerberus.record.RoleRecord.ROLE_WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.codahale.metrics.Counter;
+import com.nike.cerberus.dao.PermissionsDao;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SdbAclEntryRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class SdbAclIndexServiceTest {
+
+  private static final OffsetDateTime NOW =
+      OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+
+  private static final String ROLE_ARN = "arn:aws:iam::111111111111:role/app";
+  private static final String ROOT_ARN = "arn:aws:iam::111111111111:root";
+
+  @Mock private PermissionsDao permissionsDao;
+
+  @Mock private DateTimeSupplier dateTimeSupplier;
+
+  @Mock private MetricsService metricsService;
+
+  private SdbAclIndexService sdbAclIndexService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(dateTimeSupplier.get()).thenReturn(NOW);
+    when(metricsService.getOrCreateCounter(anyString(), any())).thenReturn(new Counter());
+    when(permissionsDao.getIamPrincipalAclEntries(null))
+        .thenReturn(
+            List.of(
+                entry("sdb-a", "app/a/", ROLE_ARN, ROLE_READ),
+                entry("sdb-b", "app/b/", null, null)));
+    when(permissionsDao.getUserGroupAclEntries(null))
+        .thenReturn(
+            List.of(
+                entry("sdb-a", "app/a/", "Team-A", ROLE_OWNER),
+                entry("sdb-b", "app/b/", null, null)));
+    sdbAclIndexService = createSdbAclIndexService(true);
+    sdbAclIndexService.reloadIfStale();
+    sdbAclIndexService.markCurrentAsOf(NOW);
+  }
+
+  @Test
+  public void test_that_paths_and_grants_are_answered_from_the_index() {
+    assertEquals(Optional.of("sdb-a"), sdbAclIndexService.getSdbIdByPath("app/a/"));
+    assertEquals(Optional.of("sdb-b"), sdbAclIndexService.getSdbIdByPath("app/b/"));
+    assertEquals(Optional.empty(), sdbAclIndexService.getSdbIdByPath("app/c/"));
+
+    assertTrue(
+        sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+            "sdb-a", List.of(ROLE_ARN, ROOT_ARN), Set.of(ROLE_READ, ROLE_OWNER)));
+    assertFalse(
+        sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+            "sdb-a", List.of(ROLE_ARN, ROOT_ARN), Set.of(ROLE_WRITE)));
+    assertFalse(
+        sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+            "sdb-b", List.of(ROLE_ARN, ROOT_ARN), Set.of(ROLE_READ)));
+  }
+
+  @Test
+  public void test_that_user_groups_honor_case_sensitivity() {
+    assertTrue(
+        sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+            "sdb-a", Set.of("Team-A"), Set.of(ROLE_OWNER), true));
+    assertFalse(
+        sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+            "sdb-a", Set.of("team-a"), Set.of(ROLE_OWNER), true));
+    assertTrue(
+        sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+            "sdb-a", Set.of("team-a"), Set.of(ROLE_OWNER), false));
+  }
+
+  @Test
+  public void test_that_permissions_invalidations_refresh_a_single_sdb() {
+    when(permissionsDao.getIamPrincipalAclEntries("sdb-a")).thenReturn(List.of());
+    when(permissionsDao.getUserGroupAclEntries("sdb-a")).thenReturn(List.of());
+
+    sdbAclIndexService.applyInvalidation("secureDataMapper", "sdb-a");
+    assertEquals(Optional.of("sdb-a"), sdbAclIndexService.getSdbIdByPath("app/a/"));
+
+    sdbAclIndexService.applyInvalidation("permissionsMapper", "sdb-a");
+    assertEquals(Optional.empty(), sdbAclIndexService.getSdbIdByPath("app/a/"));
+    assertFalse(
+        sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+            "sdb-a", Set.of("Team-A"), Set.of(ROLE_OWNER), true));
+    assertEquals(Optional.of("sdb-b"), sdbAclIndexService.getSdbIdByPath("app/b/"));
+  }
+
+  @Test
+  public void test_that_unkeyed_invalidations_and_stale_indexes_are_fully_reloaded() {
+    sdbAclIndexService.reloadIfStale();
+    verify(permissionsDao, times(1)).getIamPrincipalAclEntries(null);
+
+    sdbAclIndexService.applyInvalidation("permissionsMapper", null);
+    verify(permissionsDao, times(2)).getIamPrincipalAclEntries(null);
+
+    when(dateTimeSupplier.get()).thenReturn(NOW.plusMinutes(2));
+    sdbAclIndexService.reloadIfStale();
+    verify(permissionsDao, times(3)).getIamPrincipalAclEntries(null);
+  }
+
+  @Test
+  public void test_that_the_index_is_not_used_once_the_invalidation_log_falls_behind() {
+    when(dateTimeSupplier.get()).thenReturn(NOW.plusSeconds(11));
+
+    assertEquals(Optional.empty(), sdbAclIndexService.getSdbIdByPath("app/a/"));
+    assertFalse(
+        sdbAclIndexService.doesIamPrincipalHaveRoleForSdb(
+            "sdb-a", List.of(ROLE_ARN, ROOT_ARN), Set.of(ROLE_READ)));
+    assertFalse(
+        sdbAclIndexService.doesUserPrincipalHaveRoleForSdb(
+            "sdb-a", Set.of("Team-A"), Set.of(ROLE_OWNER), true));
+
+    sdbAclIndexService.markCurrentAsOf(NOW.plusSeconds(11));
+    assertEquals(Optional.of("sdb-a"), sdbAclIndexService.getSdbIdByPath("app/a/"));
+  }
+
+  @Test
+  public void test_that_the_index_is_not_used_without_cache_invalidation() {
+    SdbAclIndexService disabledIndex = createSdbAclIndexService(false);
+    disabledIndex.reloadIfStale();
+
+    assertFalse(disabledIndex.isEnabled());
+    assertEquals(Optional.empty(), disabledIndex.getSdbIdByPath("app/a/"));
+    verify(permissionsDao, times(1)).getIamPrincipalAclEntries(null);
+    verify(permissionsDao, never()).getIamPrincipalAclEntries("sdb-a");
+  }
+
+  private SdbAclIndexService createSdbAclIndexService(boolean cacheInvalidationEnabled) {
+    return new SdbAclIndexService(
+        permissionsDao, dateTimeSupplier, metricsService, true, 1, 10, cacheInvalidationEnabled);
+  }
+
+  private SdbAclEntryRecord entry(
+      String sdbId, String sdbPath, String principalName, String roleName) {
+    return new SdbAclEntryRecord()
+        .setSdbId(sdbId)
+        .setSdbPath(sdbPath)
+        .setPrincipalName(principalName)
+        .setRoleName(roleName);
+  }
+}
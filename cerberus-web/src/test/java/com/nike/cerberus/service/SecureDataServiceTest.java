@@ -27,14 +27,20 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.DecryptedPayloadCache;
 import com.nike.cerberus.dao.SecureDataDao;
 import com.nike.cerberus.dao.SecureDataVersionDao;
 import com.nike.cerberus.domain.*;
+import com.nike.cerberus.error.DefaultApiError;
 import com.nike.cerberus.metric.MetricsService;
 import com.nike.cerberus.record.DataKeyInfo;
+import com.nike.cerberus.record.SecureDataChangeRecord;
 import com.nike.cerberus.record.SecureDataRecord;
 import com.nike.cerberus.record.SecureDataVersionRecord;
 import com.nike.cerberus.util.DateTimeSupplier;
+import com.nike.cerberus.util.ETagUtils;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
@@ -46,8 +52,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
 
 public class SecureDataServiceTest {
 
@@ -59,11 +67,7 @@ public class SecureDataServiceTest {
   private String sdbId = UUID.randomUUID().toString();
   private String path = "super/important/secrets";
   private String partialPathWithoutTrailingSlash = "apps/checkout-service/api-keys";
-  private String[] keysRes =
-      new String[] {
-        "apps/checkout-service/api-keys/signal-fx-api-key",
-        "apps/checkout-service/api-keys/splunk-api-key"
-      };
+  private List<String> keysRes = List.of("signal-fx-api-key", "splunk-api-key");
   @Mock private SecureDataRecord secureDataRecord;
 
   @Mock private SecureDataDao secureDataDao;
@@ -71,6 +75,9 @@ public class SecureDataServiceTest {
   @Mock private DateTimeSupplier dateTimeSupplier;
   @Mock private SecureDataVersionDao secureDataVersionDao;
   @Mock private MetricsService metricsService;
+  @Mock private SecureDataWatchService secureDataWatchService;
+  @Mock private KpiCounterService kpiCounterService;
+  @Mock private PlatformTransactionManager transactionManager;
   private ObjectMapper objectMapper;
 
   private SecureDataService secureDataService;
@@ -92,11 +99,19 @@ public class SecureDataServiceTest {
             objectMapper,
             dateTimeSupplier,
             secureDataVersionDao,
-            metricsService);
+            new DecryptedPayloadCache(false, 0, 0, metricsService),
+            metricsService,
+            secureDataWatchService,
+            kpiCounterService,
+            transactionManager,
+            2,
+            2,
+            2);
   }
 
   @After
   public void after() {
+    secureDataService.shutdown();
     reset(secureDataDao, encryptionService, dateTimeSupplier);
   }
 
@@ -126,6 +141,9 @@ public class SecureDataServiceTest {
             SYSTEM_USER,
             now,
             null);
+    verify(kpiCounterService).updateSecureData(null, 2);
+    verify(secureDataWatchService)
+        .recordChanges(sdbId, SecureDataType.OBJECT, List.of(path), false);
   }
 
   @Test
@@ -154,63 +172,152 @@ public class SecureDataServiceTest {
     assertTrue(result.get().getData().equals(secret));
   }
 
+  @Test
+  public void test_that_readSecrets_decrypts_every_secret_under_the_partial_path_in_order() {
+    List<SecureDataRecord> records =
+        List.of(
+            new SecureDataRecord()
+                .setPath(partialPathWithoutTrailingSlash + "/a")
+                .setEncryptedBlob("cipher a".getBytes(StandardCharsets.UTF_8)),
+            new SecureDataRecord()
+                .setPath(partialPathWithoutTrailingSlash + "/b")
+                .setEncryptedBlob("cipher b".getBytes(StandardCharsets.UTF_8)));
+    when(secureDataDao.readSecureDataByPartialPathAndType(
+            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT, 1001))
+        .thenReturn(records);
+    when(encryptionService.decrypt("cipher a", partialPathWithoutTrailingSlash + "/a"))
+        .thenReturn("secret a");
+    when(encryptionService.decrypt("cipher b", partialPathWithoutTrailingSlash + "/b"))
+        .thenReturn("secret b");
+
+    Map<String, SecureData> result =
+        secureDataService.readSecrets(sdbId, partialPathWithoutTrailingSlash);
+
+    assertEquals(
+        List.of(partialPathWithoutTrailingSlash + "/a", partialPathWithoutTrailingSlash + "/b"),
+        new ArrayList<>(result.keySet()));
+    assertEquals("secret a", result.get(partialPathWithoutTrailingSlash + "/a").getData());
+    assertEquals("secret b", result.get(partialPathWithoutTrailingSlash + "/b").getData());
+  }
+
+  @Test
+  public void test_that_readSecrets_reads_the_given_paths_with_one_query() {
+    List<String> paths = List.of(path, path + "-missing");
+    when(secureDataDao.readSecureDataByPathsAndType(sdbId, paths, SecureDataType.OBJECT))
+        .thenReturn(
+            List.of(
+                new SecureDataRecord()
+                    .setPath(path)
+                    .setEncryptedBlob(ciphertext.getBytes(StandardCharsets.UTF_8))));
+    when(encryptionService.decrypt(ciphertext, path)).thenReturn(secret);
+
+    Map<String, SecureData> result = secureDataService.readSecrets(sdbId, paths);
+
+    assertEquals(1, result.size());
+    assertEquals(secret, result.get(path).getData());
+    verify(secureDataDao, times(1))
+        .readSecureDataByPathsAndType(sdbId, paths, SecureDataType.OBJECT);
+  }
+
+  @Test
+  public void test_that_readSecrets_rejects_reading_more_than_the_max_number_of_secrets() {
+    List<SecureDataRecord> records = new ArrayList<>();
+    for (int i = 0; i <= 1000; i++) {
+      records.add(new SecureDataRecord().setPath(partialPathWithoutTrailingSlash + "/" + i));
+    }
+    when(secureDataDao.readSecureDataByPartialPathAndType(
+            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT, 1001))
+        .thenReturn(records);
+
+    try {
+      secureDataService.readSecrets(sdbId, partialPathWithoutTrailingSlash);
+      fail("Expected reading too many secrets to be rejected");
+    } catch (ApiException e) {
+      assertEquals("Can not read more than 1000 secrets at once", e.getMessage());
+    }
+    verify(encryptionService, never()).decrypt(anyString(), anyString());
+  }
+
+  @Test
+  public void
+      test_that_readSecret_only_decrypts_an_unchanged_secret_once_when_caching_is_enabled() {
+    SecureDataService cachingSecureDataService = createSecureDataServiceWithPlaintextCaching();
+    SecureDataRecord record =
+        new SecureDataRecord()
+            .setId(1)
+            .setLastUpdatedTs(OffsetDateTime.now())
+            .setEncryptedBlob(ciphertext.getBytes(StandardCharsets.UTF_8));
+    when(secureDataDao.readSecureDataByPathAndType(sdbId, path, SecureDataType.OBJECT))
+        .thenReturn(Optional.of(record));
+    when(encryptionService.decrypt(ciphertext, path)).thenReturn(secret);
+
+    assertEquals(secret, cachingSecureDataService.readSecret(sdbId, path).get().getData());
+    assertEquals(secret, cachingSecureDataService.readSecret(sdbId, path).get().getData());
+    verify(encryptionService, times(1)).decrypt(ciphertext, path);
+
+    // A write changes the last updated ts, so the cached plaintext is no longer used
+    record.setLastUpdatedTs(record.getLastUpdatedTs().plusSeconds(1));
+    assertEquals(secret, cachingSecureDataService.readSecret(sdbId, path).get().getData());
+    verify(encryptionService, times(2)).decrypt(ciphertext, path);
+  }
+
+  private SecureDataService createSecureDataServiceWithPlaintextCaching() {
+    when(metricsService.getOrCreateCounter(anyString(), any()))
+        .thenAnswer(invocation -> new Counter());
+    return new SecureDataService(
+        secureDataDao,
+        encryptionService,
+        objectMapper,
+        dateTimeSupplier,
+        secureDataVersionDao,
+        new DecryptedPayloadCache(true, 60, 1024 * 1024, metricsService),
+        metricsService,
+        secureDataWatchService,
+        kpiCounterService,
+        transactionManager,
+        2,
+        2,
+        2);
+  }
+
   @Test
   public void test_that_listKeys_appends_a_slash_to_the_partial_path_if_not_present() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
+    when(secureDataDao.listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000))
         .thenReturn(keysRes);
     secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
     verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
+        .listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000);
   }
 
   @Test
   public void test_that_listKeys_does_not_append_a_slash_to_the_partial_path_if_already_present() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
+    when(secureDataDao.listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000))
         .thenReturn(keysRes);
     secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash + "/");
     verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
-  }
-
-  @Test
-  public void test_that_listKeys_returns_empty_set_if_dao_returns_null() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
-        .thenReturn(null);
-    Set<String> res = secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
-
-    assertTrue(res != null && res.isEmpty());
+        .listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000);
   }
 
   @Test
   public void test_that_listKeys_returns_empty_set_if_dao_returns_empty() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
-        .thenReturn(new String[] {});
+    when(secureDataDao.listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000))
+        .thenReturn(Collections.emptyList());
     Set<String> res = secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
 
     assertTrue(res != null && res.isEmpty());
   }
 
   @Test
   public void test_that_listKeys_returns_expected_set_of_keys() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
+    when(secureDataDao.listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000))
         .thenReturn(keysRes);
     Set<String> res = secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
 
     assertEquals("There should be 2 keys", 2, res.size());
     assertTrue(
@@ -219,46 +326,71 @@ public class SecureDataServiceTest {
   }
 
   @Test
-  public void
-      test_that_listKeys_returns_expected_set_of_keys_with_sub_folder_paths_stripped_to_nearest_folder() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
-        .thenReturn(new String[] {"apps/checkout-service/api-keys/sub-folder/some-different-key"});
+  public void test_that_listKeys_reads_every_page_of_a_wide_directory() {
+    List<String> firstPage = new ArrayList<>();
+    for (int i = 0; i < SecureDataService.LIST_KEYS_PAGE_SIZE; i++) {
+      firstPage.add(String.format("key-%04d", i));
+    }
+    String lastKeyOfFirstPage = firstPage.get(firstPage.size() - 1);
+    when(secureDataDao.listChildNames(
+            sdbId, SecureDataType.OBJECT, partialPathWithoutTrailingSlash + "/", null, 1000))
+        .thenReturn(firstPage);
+    when(secureDataDao.listChildNames(
+            sdbId,
+            SecureDataType.OBJECT,
+            partialPathWithoutTrailingSlash + "/",
+            lastKeyOfFirstPage,
+            1000))
+        .thenReturn(List.of("sub-folder/"));
+
     Set<String> res = secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
 
-    assertEquals("There should be 1 key", 1, res.size());
+    assertEquals(SecureDataService.LIST_KEYS_PAGE_SIZE + 1, res.size());
     assertTrue(res.contains("sub-folder/"));
+    verify(secureDataDao, times(2))
+        .listChildNames(
+            eq(sdbId),
+            eq(SecureDataType.OBJECT),
+            eq(partialPathWithoutTrailingSlash + "/"),
+            any(),
+            eq(1000));
   }
 
   @Test
-  public void
-      test_that_listKeys_returns_expected_set_of_keys_with_sub_folder_paths_stripped_to_nearest_folder_and_contains_key_without_slash_if_present() {
-    when(secureDataDao.getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT))
-        .thenReturn(
-            new String[] {
-              "apps/checkout-service/api-keys/sub-folder/some-different-key",
-              "apps/checkout-service/api-keys/sub-folder"
-            });
-    Set<String> res = secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
-        .getPathsByPartialPathAndType(
-            sdbId, partialPathWithoutTrailingSlash + "/", SecureDataType.OBJECT);
+  public void test_that_a_page_of_keys_can_be_listed_after_a_key() {
+    when(secureDataDao.listChildNames(
+            sdbId,
+            SecureDataType.OBJECT,
+            partialPathWithoutTrailingSlash + "/",
+            "signal-fx-api-key",
+            1))
+        .thenReturn(List.of("splunk-api-key"));
 
-    assertEquals("There should be 2 key", 2, res.size());
-    assertTrue(res.contains("sub-folder/"));
-    assertTrue(res.contains("sub-folder"));
+    List<String> res =
+        secureDataService.listKeys(sdbId, partialPathWithoutTrailingSlash, "signal-fx-api-key", 1);
+
+    assertEquals(List.of("splunk-api-key"), res);
   }
 
   @Test
   public void test_that_deleteAllSecretsThatStartWithGivenPartialPath_proxies_to_dao() {
+    List<SecureDataChangeRecord> deleted =
+        List.of(new SecureDataChangeRecord().setPath(partialPathWithoutTrailingSlash + "/a"));
+    when(secureDataWatchService.lockForDelete(sdbId, partialPathWithoutTrailingSlash))
+        .thenReturn(deleted);
+
     secureDataService.deleteAllSecretsThatStartWithGivenPartialPath(
         sdbId, partialPathWithoutTrailingSlash);
-    verify(secureDataDao)
+
+    // The secure data is locked and deleted before the version of the SDB is taken, like writes
+    InOrder inOrder = inOrder(secureDataWatchService, secureDataDao);
+    inOrder.verify(secureDataWatchService).lockForDelete(sdbId, partialPathWithoutTrailingSlash);
+    inOrder
+        .verify(secureDataDao)
         .deleteAllSecretsThatStartWithGivenPartialPath(sdbId, partialPathWithoutTrailingSlash);
+    inOrder.verify(secureDataWatchService).recordDeletes(sdbId, deleted);
+    verify(kpiCounterService)
+        .removeSecureDataByPartialPath(sdbId, partialPathWithoutTrailingSlash);
   }
 
   @Test
@@ -268,10 +400,16 @@ public class SecureDataServiceTest {
     when(secureDataDao.readSecureDataByPathAndType(
             sdbId, partialPathWithoutTrailingSlash, SecureDataType.OBJECT))
         .thenReturn(Optional.of(secureDataRecord));
+    when(secureDataRecord.getType()).thenReturn(SecureDataType.OBJECT);
 
     secureDataService.deleteSecret(
         sdbId, partialPathWithoutTrailingSlash, SecureDataType.OBJECT, principal);
-    verify(secureDataDao).deleteSecret(sdbId, partialPathWithoutTrailingSlash);
+    verify(secureDataDao)
+        .deleteSecret(sdbId, partialPathWithoutTrailingSlash, SecureDataType.OBJECT);
+    verify(kpiCounterService).removeSecureData(SecureDataType.OBJECT, null);
+    verify(secureDataWatchService)
+        .recordChanges(
+            sdbId, SecureDataType.OBJECT, List.of(partialPathWithoutTrailingSlash), true);
   }
 
   @Test
@@ -295,21 +433,122 @@ public class SecureDataServiceTest {
     OffsetDateTime now = OffsetDateTime.now(ZoneId.of("UTC"));
     when(dateTimeSupplier.get()).thenReturn(now);
 
-    when(secureDataDao.readSecureDataByPath(sdbId, path)).thenReturn(Optional.empty());
+    when(secureDataDao.readSecureDataByPathsLocking(sdbId, List.of(secretPath)))
+        .thenReturn(List.of());
 
     secureDataService.restoreSdbSecrets(sdbId, data, principal);
     verify(secureDataDao)
-        .writeSecureData(
+        .writeSecureDataRecords(
             sdbId,
-            secretPath,
-            ciphertextBytes,
-            1,
-            SecureDataType.OBJECT,
-            plaintextBytes.length,
-            principal,
-            now,
-            principal,
-            now);
+            List.of(
+                new SecureDataRecord()
+                    .setSdboxId(sdbId)
+                    .setPath(secretPath)
+                    .setEncryptedBlob(ciphertextBytes)
+                    .setTopLevelKVCount(1)
+                    .setType(SecureDataType.OBJECT)
+                    .setSizeInBytes(plaintextBytes.length)
+                    .setCreatedBy(principal)
+                    .setCreatedTs(now)
+                    .setLastUpdatedBy(principal)
+                    .setLastUpdatedTs(now)
+                    .setLastRotatedTs(now)));
+    verify(kpiCounterService).addSecureData(SecureDataType.OBJECT, 1);
+    verify(secureDataDao).updateSecureDataRecords(sdbId, List.of());
+    verify(secureDataVersionDao).writeSecureDataVersions(List.of());
+  }
+
+  @Test
+  public void test_that_writeSecrets_versions_and_updates_existing_secrets() {
+    OffsetDateTime now = OffsetDateTime.now(ZoneId.of("UTC"));
+    OffsetDateTime before = now.minusDays(1);
+    when(dateTimeSupplier.get()).thenReturn(now);
+    when(encryptionService.encrypt(secret, path)).thenReturn(ciphertext);
+    byte[] oldCiphertextBytes = "old ciphertext".getBytes(StandardCharsets.UTF_8);
+    when(secureDataDao.readSecureDataByPathsLocking(sdbId, List.of(path)))
+        .thenReturn(
+            List.of(
+                new SecureDataRecord()
+                    .setId(1)
+                    .setSdboxId(sdbId)
+                    .setPath(path)
+                    .setEncryptedBlob(oldCiphertextBytes)
+                    .setTopLevelKVCount(1)
+                    .setType(SecureDataType.OBJECT)
+                    .setSizeInBytes(10)
+                    .setCreatedBy("creator")
+                    .setCreatedTs(before)
+                    .setLastUpdatedBy("updater")
+                    .setLastUpdatedTs(before)
+                    .setLastRotatedTs(before)));
+
+    secureDataService.writeSecrets(sdbId, Map.of(path, secret), principal);
+
+    ArgumentCaptor<List> versions = ArgumentCaptor.forClass(List.class);
+    verify(secureDataVersionDao).writeSecureDataVersions(versions.capture());
+    SecureDataVersionRecord version = (SecureDataVersionRecord) versions.getValue().get(0);
+    assertEquals(path, version.getPath());
+    assertArrayEquals(oldCiphertextBytes, version.getEncryptedBlob());
+    assertEquals(10, version.getSizeInBytes());
+    assertEquals("updater", version.getVersionCreatedBy());
+    assertEquals(before, version.getVersionCreatedTs());
+    assertEquals(principal, version.getActionPrincipal());
+    assertEquals(now, version.getActionTs());
+    verify(secureDataDao)
+        .updateSecureDataRecords(
+            sdbId,
+            List.of(
+                new SecureDataRecord()
+                    .setId(1)
+                    .setSdboxId(sdbId)
+                    .setPath(path)
+                    .setEncryptedBlob(ciphertextBytes)
+                    .setTopLevelKVCount(2)
+                    .setType(SecureDataType.OBJECT)
+                    .setSizeInBytes(plaintextBytes.length)
+                    .setCreatedBy("creator")
+                    .setCreatedTs(before)
+                    .setLastUpdatedBy(principal)
+                    .setLastUpdatedTs(now)
+                    .setLastRotatedTs(before)));
+    verify(secureDataDao).writeSecureDataRecords(sdbId, List.of());
+    verify(kpiCounterService).updateSecureData(1, 2);
+    verify(kpiCounterService, never()).addSecureData(any(), anyInt());
+  }
+
+  @Test
+  public void test_that_writeSecrets_writes_in_chunks_with_a_transaction_each() {
+    when(dateTimeSupplier.get()).thenReturn(OffsetDateTime.now(ZoneId.of("UTC")));
+    when(encryptionService.encrypt(anyString(), anyString())).thenReturn(ciphertext);
+    when(secureDataDao.readSecureDataByPathsLocking(anyString(), anyCollection()))
+        .thenReturn(List.of());
+    Map<String, String> payloads = new LinkedHashMap<>();
+    payloads.put("app/sdb/a", secret);
+    payloads.put("app/sdb/b", secret);
+    payloads.put("app/sdb/c", secret);
+
+    secureDataService.writeSecrets(sdbId, payloads, principal);
+
+    verify(secureDataDao).readSecureDataByPathsLocking(sdbId, List.of("app/sdb/a", "app/sdb/b"));
+    verify(secureDataDao).readSecureDataByPathsLocking(sdbId, List.of("app/sdb/c"));
+    verify(secureDataDao, times(2)).writeSecureDataRecords(eq(sdbId), anyList());
+    verify(secureDataWatchService)
+        .recordChanges(sdbId, SecureDataType.OBJECT, List.of("app/sdb/a", "app/sdb/b"), false);
+    verify(secureDataWatchService)
+        .recordChanges(sdbId, SecureDataType.OBJECT, List.of("app/sdb/c"), false);
+    verify(transactionManager, times(2)).commit(any());
+  }
+
+  @Test(expected = ApiException.class)
+  public void test_that_writeSecrets_does_not_allow_other_types_to_be_overwritten() {
+    String pathToFile = "app/sdb/file.pem";
+    when(dateTimeSupplier.get()).thenReturn(OffsetDateTime.now(ZoneId.of("UTC")));
+    when(encryptionService.encrypt(secret, pathToFile)).thenReturn(ciphertext);
+    when(secureDataDao.readSecureDataByPathsLocking(sdbId, List.of(pathToFile)))
+        .thenReturn(
+            List.of(new SecureDataRecord().setPath(pathToFile).setType(SecureDataType.FILE)));
+
+    secureDataService.writeSecrets(sdbId, Map.of(pathToFile, secret), principal);
   }
 
   @Test
@@ -379,10 +618,73 @@ public class SecureDataServiceTest {
   public void test_that_writeFile_does_now_allow_other_types_to_be_overwritten() {
     String pathToObject = "app/sdb/object";
     SecureDataRecord objectRecord = new SecureDataRecord().setType(SecureDataType.OBJECT);
-    when(secureDataDao.readSecureDataByPath(sdbId, pathToObject))
+    when(secureDataDao.readMetadataByPathLocking(sdbId, pathToObject))
         .thenReturn(Optional.of(objectRecord));
 
-    secureDataService.writeSecureFile(sdbId, pathToObject, new byte[] {}, 0, pathToObject);
+    secureDataService.writeSecureFile(
+        sdbId, pathToObject, new ByteArrayInputStream(new byte[] {}), 0, pathToObject);
+  }
+
+  @Test
+  public void test_that_writeSecureFile_streams_new_files_through_encryption() {
+    String pathToFile = "app/sdb/file.pem";
+    InputStream contents = new ByteArrayInputStream(plaintextBytes);
+    InputStream ciphertextStream = new ByteArrayInputStream(ciphertextBytes);
+    OffsetDateTime now = OffsetDateTime.now(ZoneId.of("UTC"));
+    when(dateTimeSupplier.get()).thenReturn(now);
+    when(secureDataDao.readMetadataByPathLocking(sdbId, pathToFile)).thenReturn(Optional.empty());
+    when(encryptionService.encrypt(contents, pathToFile)).thenReturn(ciphertextStream);
+
+    secureDataService.writeSecureFile(
+        sdbId, pathToFile, contents, plaintextBytes.length, "principal");
+
+    verify(secureDataDao)
+        .writeSecureData(
+            sdbId,
+            pathToFile,
+            ciphertextStream,
+            SecureDataType.FILE,
+            plaintextBytes.length,
+            "principal",
+            now,
+            "principal",
+            now);
+    verify(secureDataDao, never()).readSecureDataByPath(anyString(), anyString());
+    verify(kpiCounterService).addSecureData(SecureDataType.FILE, 0);
+    verify(secureDataWatchService)
+        .recordChanges(sdbId, SecureDataType.FILE, List.of(pathToFile), false);
+  }
+
+  @Test
+  public void test_that_writeSecureFile_versions_the_current_file_without_reading_it() {
+    String pathToFile = "app/sdb/file.pem";
+    OffsetDateTime lastRotatedTs = OffsetDateTime.now(ZoneId.of("UTC")).minusDays(1);
+    SecureDataRecord fileRecord =
+        new SecureDataRecord().setType(SecureDataType.FILE).setLastRotatedTs(lastRotatedTs);
+    InputStream contents = new ByteArrayInputStream(plaintextBytes);
+    InputStream ciphertextStream = new ByteArrayInputStream(ciphertextBytes);
+    OffsetDateTime now = OffsetDateTime.now(ZoneId.of("UTC"));
+    when(dateTimeSupplier.get()).thenReturn(now);
+    when(secureDataDao.readMetadataByPathLocking(sdbId, pathToFile))
+        .thenReturn(Optional.of(fileRecord));
+    when(encryptionService.encrypt(contents, pathToFile)).thenReturn(ciphertextStream);
+
+    secureDataService.writeSecureFile(
+        sdbId, pathToFile, contents, plaintextBytes.length, "principal");
+
+    verify(secureDataVersionDao)
+        .writeSecureDataVersionFromSecureData(
+            sdbId, pathToFile, SecureDataVersionRecord.SecretsAction.UPDATE, "principal", now);
+    verify(secureDataDao)
+        .updateSecureData(
+            sdbId,
+            pathToFile,
+            ciphertextStream,
+            SecureDataType.FILE,
+            plaintextBytes.length,
+            "principal",
+            now,
+            lastRotatedTs);
   }
 
   @Test
@@ -402,21 +704,51 @@ public class SecureDataServiceTest {
   }
 
   @Test
-  public void test_that_readFile_reads_secrets_by_the_correct_type() {
+  public void test_that_readFileStream_decrypts_the_file_as_it_is_read() {
     String pathToFile = "app/sdb/file.pem";
+    OffsetDateTime lastUpdatedTs = OffsetDateTime.now(ZoneId.of("UTC"));
     SecureDataRecord record =
         new SecureDataRecord()
             .setType(SecureDataType.FILE)
             .setPath(pathToFile)
             .setEncryptedBlob(ciphertextBytes)
-            .setSizeInBytes(ciphertextBytes.length);
-    when(encryptionService.decrypt(ciphertextBytes, pathToFile)).thenReturn(plaintextBytes);
+            .setSizeInBytes(plaintextBytes.length)
+            .setLastUpdatedTs(lastUpdatedTs);
+    InputStream plaintextStream = new ByteArrayInputStream(plaintextBytes);
+    when(encryptionService.decryptToStream(ciphertextBytes, pathToFile))
+        .thenReturn(plaintextStream);
     when(secureDataDao.readSecureDataByPathAndType(sdbId, pathToFile, SecureDataType.FILE))
         .thenReturn(Optional.of(record));
 
-    secureDataService.readFile(sdbId, pathToFile);
+    StreamingSecureFile secureFile = secureDataService.readFileStream(sdbId, pathToFile).get();
 
-    verify(secureDataDao).readSecureDataByPathAndType(sdbId, pathToFile, SecureDataType.FILE);
+    assertEquals("file.pem", secureFile.getName());
+    assertEquals(plaintextBytes.length, secureFile.getSizeInBytes());
+    assertEquals(lastUpdatedTs, secureFile.getLastModifiedTs());
+    assertEquals(ETagUtils.toETag(sdbId, pathToFile, lastUpdatedTs), secureFile.getETag());
+    assertSame(plaintextStream, secureFile.getContents());
+    verify(encryptionService, never()).decrypt(any(byte[].class), anyString());
+  }
+
+  @Test
+  public void test_that_readETag_is_derived_from_the_metadata_only() {
+    SecureDataRecord record = getSecureDataRecord().setType(SecureDataType.OBJECT);
+    when(secureDataDao.readMetadataByPathAndType(sdbId, "path", SecureDataType.OBJECT))
+        .thenReturn(Optional.of(record));
+
+    Optional<String> eTag = secureDataService.readETag(sdbId, "path", SecureDataType.OBJECT);
+
+    assertEquals(ETagUtils.toETag(sdbId, "path", record.getLastUpdatedTs()), eTag.get());
+    verify(secureDataDao, never()).readSecureDataByPathAndType(anyString(), anyString(), any());
+    verify(encryptionService, never()).decrypt(any(byte[].class), anyString());
+  }
+
+  @Test
+  public void test_that_readETag_is_empty_when_there_is_no_secure_data() {
+    when(secureDataDao.readMetadataByPathAndType(sdbId, "path", SecureDataType.FILE))
+        .thenReturn(Optional.empty());
+
+    assertFalse(secureDataService.readETag(sdbId, "path", SecureDataType.FILE).isPresent());
   }
 
   @Test
@@ -559,25 +891,27 @@ public class SecureDataServiceTest {
   }
 
   @Test
-  public void testRotateDataKeys() {
+  public void testReencryptDataKey() {
     DataKeyInfo secureDataKeyInfo = getDataKeyInfo(Source.SECURE_DATA);
     DataKeyInfo secureDataVersionKeyInfo = getDataKeyInfo(Source.SECURE_DATA_VERSION);
-    List<DataKeyInfo> dataKeyInfoList = new ArrayList<>();
-    dataKeyInfoList.add(secureDataKeyInfo);
-    dataKeyInfoList.add(secureDataVersionKeyInfo);
-    dataKeyInfoList.add(secureDataKeyInfo);
-    dataKeyInfoList.add(secureDataVersionKeyInfo);
     SecureDataRecord secureDataRecord = getSecureDataRecord();
     Mockito.when(secureDataDao.readSecureDataByIdLocking("id"))
         .thenReturn(Optional.of(secureDataRecord), Optional.empty());
     SecureDataVersionRecord secureDataVersionRecord = getSecureVersionRecord();
     Mockito.when(secureDataVersionDao.readSecureDataVersionByIdLocking("id"))
         .thenReturn(Optional.of(secureDataVersionRecord), Optional.empty());
-    Mockito.when(
-            secureDataDao.getOldestDataKeyInfo(Mockito.any(OffsetDateTime.class), Mockito.eq(10)))
-        .thenReturn(dataKeyInfoList);
     Mockito.when(dateTimeSupplier.get()).thenReturn(OffsetDateTime.now());
-    secureDataService.rotateDataKeys(10, 1000, 10);
+
+    secureDataService.reencryptDataKey(secureDataKeyInfo);
+    secureDataService.reencryptDataKey(secureDataVersionKeyInfo);
+    for (DataKeyInfo dataKeyInfo : List.of(secureDataKeyInfo, secureDataVersionKeyInfo)) {
+      try {
+        secureDataService.reencryptDataKey(dataKeyInfo);
+        Assert.fail("Expected re-encrypting deleted secure data to fail");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
     Mockito.verify(successCounter, Mockito.times(2)).inc();
     Mockito.verify(failureCounter, Mockito.times(2)).inc();
   }
@@ -649,14 +983,17 @@ public class SecureDataServiceTest {
 
   @Test
   public void testListSecureFilesSummaries() throws JsonProcessingException {
-    Mockito.when(secureDataDao.countByPartialPathAndType("partialPath/", SecureDataType.FILE))
+    Mockito.when(
+            secureDataDao.countByPartialPathAndType(
+                "sdbId", "partialPath/", SecureDataType.FILE))
         .thenReturn(50);
-    SecureDataRecord secureDataRecord = getSecureDataRecord();
+    SecureDataRecord secureDataRecord =
+        getSecureDataRecord().setCreatedTs(OffsetDateTime.parse("2020-01-01T01:01:01.001Z"));
     List<SecureDataRecord> secureDataRecords = new ArrayList<>();
     secureDataRecords.add(secureDataRecord);
     Mockito.when(
-            secureDataDao.listSecureDataByPartialPathAndType(
-                "sdbId", "partialPath/", SecureDataType.FILE, 10, 10))
+            secureDataDao.listMetadataByPartialPathAndType(
+                "sdbId", "partialPath/", SecureDataType.FILE, null, 10, 10))
         .thenReturn(secureDataRecords);
     SecureFileSummaryResult secureFileSummaryResult =
         secureDataService.listSecureFilesSummaries("sdbId", "partialPath", 10, 10);
@@ -675,6 +1012,68 @@ public class SecureDataServiceTest {
     Assert.assertEquals(
         "user", secureFileSummaryResult.getSecureFileSummaries().get(0).getCreatedBy());
     Assert.assertEquals(Integer.valueOf(20), secureFileSummaryResult.getNextOffset());
+    Assert.assertEquals(
+        SecureDataService.toSecureFileSummaryCursor(secureDataRecord),
+        secureFileSummaryResult.getNextCursor());
+  }
+
+  @Test
+  public void testListSecureFilesSummariesAfterACursor() {
+    SecureDataRecord last =
+        getSecureDataRecord()
+            .setId(3)
+            .setCreatedTs(OffsetDateTime.parse("2020-01-01T01:01:01.001Z"));
+    String cursor = SecureDataService.toSecureFileSummaryCursor(last);
+    Mockito.when(
+            secureDataDao.countByPartialPathAndType(
+                "sdbId", "partialPath/", SecureDataType.FILE))
+        .thenReturn(50);
+    SecureDataRecord first = getSecureDataRecord().setId(2).setCreatedTs(last.getCreatedTs());
+    SecureDataRecord second =
+        getSecureDataRecord().setId(1).setCreatedTs(last.getCreatedTs().minusDays(1));
+    SecureDataRecord beyondTheLimit =
+        getSecureDataRecord().setId(0).setCreatedTs(last.getCreatedTs().minusDays(2));
+    Mockito.when(
+            secureDataDao.listMetadataByPartialPathAndType(
+                Mockito.eq("sdbId"),
+                Mockito.eq("partialPath/"),
+                Mockito.eq(SecureDataType.FILE),
+                Mockito.any(SecureDataRecord.class),
+                Mockito.eq(3),
+                Mockito.eq(0)))
+        .thenReturn(List.of(first, second, beyondTheLimit));
+
+    SecureFileSummaryResult secureFileSummaryResult =
+        secureDataService.listSecureFilesSummaries("sdbId", "partialPath", 2, cursor);
+
+    ArgumentCaptor<SecureDataRecord> after = ArgumentCaptor.forClass(SecureDataRecord.class);
+    Mockito.verify(secureDataDao)
+        .listMetadataByPartialPathAndType(
+            Mockito.eq("sdbId"),
+            Mockito.eq("partialPath/"),
+            Mockito.eq(SecureDataType.FILE),
+            after.capture(),
+            Mockito.eq(3),
+            Mockito.eq(0));
+    Assert.assertEquals(Integer.valueOf(3), after.getValue().getId());
+    Assert.assertTrue(last.getCreatedTs().isEqual(after.getValue().getCreatedTs()));
+    Assert.assertEquals(2, secureFileSummaryResult.getFileCountInResult());
+    Assert.assertEquals(50, secureFileSummaryResult.getTotalFileCount());
+    Assert.assertTrue(secureFileSummaryResult.isHasNext());
+    Assert.assertNull(secureFileSummaryResult.getNextOffset());
+    Assert.assertEquals(
+        SecureDataService.toSecureFileSummaryCursor(second),
+        secureFileSummaryResult.getNextCursor());
+  }
+
+  @Test
+  public void testListSecureFilesSummariesWithAnInvalidCursor() {
+    try {
+      secureDataService.listSecureFilesSummaries("sdbId", "partialPath", 2, "not a cursor");
+      Assert.fail("Expected the cursor to be rejected");
+    } catch (ApiException e) {
+      Assert.assertEquals(DefaultApiError.INVALID_QUERY_PARAMS, e.getApiErrors().get(0));
+    }
   }
 
   @Test
@@ -26,6 +26,8 @@ import com.nike.cerberus.dao.SecureDataVersionDao;
 import com.nike.cerberus.domain.*;
 import com.nike.cerberus.record.SecureDataRecord;
 import com.nike.cerberus.record.SecureDataVersionRecord;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
@@ -236,81 +238,35 @@ public class SecureDataVersionServiceTest {
   }
 
   @Test
-  public void testGetSecureFileVersionByIdWhenFileIsNotPresent() {
-    Mockito.when(secureDataVersionDao.readSecureDataVersionById("versionId"))
-        .thenReturn(Optional.empty());
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById("sdbId", "versionId", "category", "path");
-    Assert.assertFalse(secureFileVersionById.isPresent());
-  }
-
-  @Test
-  public void testGetSecureFileVersionByIdWhenPathIsDifferent() {
-    SecureDataVersionRecord secureDataVersionRecord = Mockito.mock(SecureDataVersionRecord.class);
-    Mockito.when(secureDataVersionRecord.getPath()).thenReturn("differentPath");
-    Mockito.when(secureDataVersionDao.readSecureDataVersionById("versionId"))
-        .thenReturn(Optional.of(secureDataVersionRecord));
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById("sdbId", "versionId", "category", "path");
-    Assert.assertFalse(secureFileVersionById.isPresent());
-  }
-
-  @Test
-  public void testGetSecureFileVersionByIdWhenTypeIsNotFile() {
-    SecureDataVersionRecord secureDataVersionRecord = Mockito.mock(SecureDataVersionRecord.class);
-    Mockito.when(secureDataVersionRecord.getPath()).thenReturn("differentPath");
-    Mockito.when(secureDataVersionRecord.getType()).thenReturn(SecureDataType.OBJECT);
-    Mockito.when(secureDataVersionDao.readSecureDataVersionById("versionId"))
-        .thenReturn(Optional.of(secureDataVersionRecord));
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById("sdbId", "versionId", "category", "path");
-    Assert.assertFalse(secureFileVersionById.isPresent());
-  }
-
-  @Test
-  public void testGetSecureFileVersionByIdWhenVersionIsCurrentAndRecordNotFound() {
-    Mockito.when(secureDataService.getSecureDataRecordForPath("sdbId", "path"))
-        .thenReturn(Optional.empty());
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById(
-            "sdbId", DEFAULT_ID_FOR_CURRENT_VERSIONS, "category", "path");
-    Assert.assertFalse(secureFileVersionById.isPresent());
-  }
-
-  @Test
-  public void testGetSecureFileVersionById() {
+  public void testGetSecureFileVersionStreamById() {
     SecureDataRecord secureDataRecord = getSecureDataRecord();
     secureDataRecord.setType(SecureDataType.FILE);
-    Mockito.when(secureDataService.secureDataHasBeenUpdated(secureDataRecord)).thenReturn(true);
-    when(encryptionService.decrypt("blob".getBytes(StandardCharsets.UTF_8), "path"))
-        .thenReturn("plainText".getBytes(StandardCharsets.UTF_8));
+    InputStream plaintextStream =
+        new ByteArrayInputStream("plainText".getBytes(StandardCharsets.UTF_8));
     Mockito.when(secureDataService.getSecureDataRecordForPath("sdbId", "path"))
         .thenReturn(Optional.of(secureDataRecord));
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById(
-            "sdbId", DEFAULT_ID_FOR_CURRENT_VERSIONS, "category", "path");
-    Assert.assertTrue(secureFileVersionById.isPresent());
-    SecureFileVersion secureFileVersion = secureFileVersionById.get();
-    Assert.assertEquals(
-        SecureDataVersionRecord.SecretsAction.UPDATE.name(), secureFileVersion.getAction());
+    when(encryptionService.decryptToStream("blob".getBytes(StandardCharsets.UTF_8), "path"))
+        .thenReturn(plaintextStream);
+    Optional<StreamingSecureFile> secureFile =
+        secureDataVersionService.getSecureFileVersionStreamById(
+            "sdbId", DEFAULT_ID_FOR_CURRENT_VERSIONS, "path");
+    Assert.assertTrue(secureFile.isPresent());
+    Assert.assertEquals(10, secureFile.get().getSizeInBytes());
+    Assert.assertEquals(OffsetDateTime.MAX, secureFile.get().getLastModifiedTs());
+    Assert.assertSame(plaintextStream, secureFile.get().getContents());
   }
 
   @Test
-  public void testGetSecureFileVersionByIdWhenActionIsCreate() {
-    SecureDataRecord secureDataRecord = getSecureDataRecord();
-    secureDataRecord.setType(SecureDataType.FILE);
-    Mockito.when(secureDataService.secureDataHasBeenUpdated(secureDataRecord)).thenReturn(false);
-    Mockito.when(secureDataService.getSecureDataRecordForPath("sdbId", "path"))
-        .thenReturn(Optional.of(secureDataRecord));
-    when(encryptionService.decrypt("blob".getBytes(StandardCharsets.UTF_8), "path"))
-        .thenReturn("plainText".getBytes(StandardCharsets.UTF_8));
-    Optional<SecureFileVersion> secureFileVersionById =
-        secureDataVersionService.getSecureFileVersionById(
-            "sdbId", DEFAULT_ID_FOR_CURRENT_VERSIONS, "category", "path");
-    Assert.assertTrue(secureFileVersionById.isPresent());
-    SecureFileVersion secureFileVersion = secureFileVersionById.get();
-    Assert.assertEquals(
-        SecureDataVersionRecord.SecretsAction.CREATE.name(), secureFileVersion.getAction());
+  public void testGetSecureFileVersionStreamByIdWhenTypeIsNotFile() {
+    SecureDataVersionRecord secureDataVersionRecord = Mockito.mock(SecureDataVersionRecord.class);
+    Mockito.when(secureDataVersionRecord.getPath()).thenReturn("path");
+    Mockito.when(secureDataVersionRecord.getType()).thenReturn(SecureDataType.OBJECT);
+    Mockito.when(secureDataVersionDao.readSecureDataVersionById("versionId"))
+        .thenReturn(Optional.of(secureDataVersionRecord));
+    Assert.assertFalse(
+        secureDataVersionService
+            .getSecureFileVersionStreamById("sdbId", "versionId", "path")
+            .isPresent());
   }
 
   @Test
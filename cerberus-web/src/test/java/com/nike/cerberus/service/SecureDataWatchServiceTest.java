@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2020 Nike, inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nike.cerberus.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.nike.cerberus.dao.SecureDataChangeDao;
+import com.nike.cerberus.domain.SecureDataChangesResult;
+import com.nike.cerberus.domain.SecureDataType;
+import com.nike.cerberus.metric.MetricsService;
+import com.nike.cerberus.record.SecureDataChangeRecord;
+import com.nike.cerberus.util.DateTimeSupplier;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+public class SecureDataWatchServiceTest {
+
+  private static final OffsetDateTime NOW =
+      OffsetDateTime.of(2020, 6, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+  private static final String SDB_ID = "sdb-id";
+
+  @Mock private SecureDataChangeDao secureDataChangeDao;
+
+  @Mock private DateTimeSupplier dateTimeSupplier;
+
+  @Mock private MetricsService metricsService;
+
+  private SecureDataWatchService secureDataWatchService;
+
+  @Before
+  public void before() {
+    initMocks(this);
+    when(dateTimeSupplier.get()).thenReturn(NOW);
+    secureDataWatchService =
+        new SecureDataWatchService(secureDataChangeDao, dateTimeSupplier, metricsService, 30);
+  }
+
+  @After
+  public void after() {
+    secureDataWatchService.shutdown();
+  }
+
+  @Test
+  public void test_that_changes_are_saved_with_the_next_version_of_the_sdb() {
+    when(secureDataChangeDao.incrementVersion(SDB_ID)).thenReturn(5L);
+
+    secureDataWatchService.recordChanges(
+        SDB_ID, SecureDataType.OBJECT, List.of("app/a", "app/b"), false);
+
+    ArgumentCaptor<List> records = ArgumentCaptor.forClass(List.class);
+    verify(secureDataChangeDao).saveChanges(records.capture());
+    assertEquals(2, records.getValue().size());
+    SecureDataChangeRecord record = (SecureDataChangeRecord) records.getValue().get(1);
+    assertEquals(SDB_ID, record.getSdboxId());
+    assertEquals("app/b", record.getPath());
+    assertEquals(SecureDataType.OBJECT, record.getType());
+    assertEquals(5L, record.getVersion());
+    assertFalse(record.isDeleted());
+    assertEquals(NOW, record.getChangedTs());
+  }
+
+  @Test
+  public void test_that_no_version_is_taken_when_nothing_changed() {
+    secureDataWatchService.recordChanges(SDB_ID, SecureDataType.OBJECT, List.of(), false);
+
+    verify(secureDataChangeDao, never()).incrementVersion(SDB_ID);
+    verify(secureDataChangeDao, never()).saveChanges(anyList());
+  }
+
+  @Test
+  public void test_that_deletes_are_saved_with_the_next_version_of_the_sdb() {
+    SecureDataChangeRecord file =
+        new SecureDataChangeRecord()
+            .setSdboxId(SDB_ID)
+            .setPath("app/a.pem")
+            .setType(SecureDataType.FILE);
+    when(secureDataChangeDao.lockSecureDataByPartialPath(SDB_ID, "app/"))
+        .thenReturn(List.of(file));
+    when(secureDataChangeDao.incrementVersion(SDB_ID)).thenReturn(7L);
+
+    List<SecureDataChangeRecord> deleted = secureDataWatchService.lockForDelete(SDB_ID, "app/");
+    verify(secureDataChangeDao, never()).incrementVersion(SDB_ID);
+    secureDataWatchService.recordDeletes(SDB_ID, deleted);
+
+    verify(secureDataChangeDao).saveChanges(List.of(file));
+    assertEquals(SecureDataType.FILE, file.getType());
+    assertEquals(7L, file.getVersion());
+    assertTrue(file.isDeleted());
+    assertEquals(NOW, file.getChangedTs());
+  }
+
+  @Test
+  public void test_that_a_watch_is_completed_straight_away_when_there_already_are_changes() {
+    when(secureDataChangeDao.getChangesSince(SDB_ID, "app/", 3))
+        .thenReturn(List.of(change("app/a", 4), change("app/b", 5)));
+
+    SecureDataWatch watch = secureDataWatchService.watch(SDB_ID, "app/", 3);
+
+    assertTrue(watch.isDone());
+    SecureDataChangesResult result = watch.getResult().join();
+    assertEquals(5L, result.getVersion());
+    assertEquals(2, result.getChanges().size());
+    assertEquals("app/a", result.getChanges().get(0).getPath());
+    assertEquals(0, secureDataWatchService.refreshWatches());
+  }
+
+  @Test
+  public void test_that_a_watch_is_held_until_a_path_under_it_changes() {
+    when(secureDataChangeDao.getChangesSince(SDB_ID, "app/", 3)).thenReturn(List.of());
+    SecureDataWatch watch = secureDataWatchService.watch(SDB_ID, "app/", 3);
+    assertFalse(watch.isDone());
+
+    // Another path of the SDB changed on another instance
+    when(secureDataChangeDao.getVersions(anyCollection()))
+        .thenReturn(List.of(new SecureDataChangeRecord().setSdboxId(SDB_ID).setVersion(4)));
+    when(secureDataChangeDao.getChangesSince(SDB_ID, null, 3))
+        .thenReturn(List.of(change("other/a", 4)));
+    assertEquals(1, secureDataWatchService.refreshWatches());
+    assertFalse(watch.isDone());
+    assertEquals(4L, watch.getVersion());
+    assertEquals(0, secureDataWatchService.refreshWatches());
+
+    when(secureDataChangeDao.getVersions(anyCollection()))
+        .thenReturn(List.of(new SecureDataChangeRecord().setSdboxId(SDB_ID).setVersion(6)));
+    when(secureDataChangeDao.getChangesSince(SDB_ID, null, 4))
+        .thenReturn(List.of(change("APP/b", 5), change("other/b", 6)));
+    assertEquals(1, secureDataWatchService.refreshWatches());
+
+    assertTrue(watch.isDone());
+    SecureDataChangesResult result = watch.getResult().join();
+    assertEquals(6L, result.getVersion());
+    assertEquals(1, result.getChanges().size());
+    assertEquals("APP/b", result.getChanges().get(0).getPath());
+    assertEquals(5L, result.getChanges().get(0).getVersion());
+  }
+
+  @Test
+  public void test_that_a_watch_only_matches_paths_at_a_path_boundary() {
+    when(secureDataChangeDao.getChangesSince(SDB_ID, "app/foo", 3))
+        .thenReturn(
+            List.of(change("app/foo2", 4), change("app/foobar/x", 5), change("app/FOO/x", 6)));
+
+    SecureDataWatch watch = secureDataWatchService.watch(SDB_ID, "app/foo", 3);
+
+    assertTrue(watch.isDone());
+    SecureDataChangesResult result = watch.getResult().join();
+    assertEquals(6L, result.getVersion());
+    assertEquals(1, result.getChanges().size());
+    assertEquals("app/FOO/x", result.getChanges().get(0).getPath());
+    assertTrue(SecureDataWatchService.isUnder("app/foo", "app/foo"));
+    assertTrue(SecureDataWatchService.isUnder("app/foo2", "app/"));
+    assertTrue(SecureDataWatchService.isUnder("app/foo", ""));
+  }
+
+  @Test
+  public void test_that_an_expired_watch_is_completed_without_changes() {
+    when(secureDataChangeDao.getChangesSince(SDB_ID, "app/", 3)).thenReturn(List.of());
+    SecureDataWatch watch = secureDataWatchService.watch(SDB_ID, "app/", 3);
+
+    watch.expire();
+    secureDataWatchService.unwatch(watch);
+
+    SecureDataChangesResult result = watch.getResult().join();
+    assertEquals(3L, result.getVersion());
+    assertTrue(result.getChanges().isEmpty());
+    assertEquals(0, secureDataWatchService.refreshWatches());
+    verify(secureDataChangeDao, never()).getVersions(anyCollection());
+  }
+
+  private SecureDataChangeRecord change(String path, long version) {
+    return new SecureDataChangeRecord()
+        .setSdboxId(SDB_ID)
+        .setPath(path)
+        .setType(SecureDataType.OBJECT)
+        .setVersion(version)
+        .setChangedTs(NOW);
+  }
+}
@@ -6,10 +6,12 @@ import static org.mockito.Mockito.mock;
 
 import com.nike.backstopper.apierror.ApiError;
 import com.nike.backstopper.exception.ApiException;
+import com.nike.cerberus.cache.SdbSummaryCache;
 import com.nike.cerberus.dao.UserGroupDao;
 import com.nike.cerberus.domain.Role;
 import com.nike.cerberus.domain.UserGroupPermission;
 import com.nike.cerberus.error.DefaultApiError;
+import com.nike.cerberus.record.SdbPermissionRecord;
 import com.nike.cerberus.record.UserGroupPermissionRecord;
 import com.nike.cerberus.record.UserGroupRecord;
 import com.nike.cerberus.util.UuidSupplier;
@@ -30,13 +32,20 @@ public class UserGroupPermissionServiceTest {
 
   private RoleService roleService;
 
+  private SdbSummaryCache sdbSummaryCache;
+
+  private CacheInvalidationService cacheInvalidationService;
+
   @Before
   public void setUp() {
     userGroupDao = mock(UserGroupDao.class);
     uuidSupplier = new UuidSupplier();
     roleService = mock(RoleService.class);
+    sdbSummaryCache = mock(SdbSummaryCache.class);
+    cacheInvalidationService = mock(CacheInvalidationService.class);
     userGroupPermissionService =
-        new UserGroupPermissionService(uuidSupplier, roleService, userGroupDao);
+        new UserGroupPermissionService(
+            uuidSupplier, roleService, userGroupDao, sdbSummaryCache, cacheInvalidationService);
   }
 
   @Test
@@ -69,6 +78,20 @@ public class UserGroupPermissionServiceTest {
         .createUserGroupPermission(Mockito.any(UserGroupPermissionRecord.class));
   }
 
+  @Test
+  public void testGrantUserGroupPermissionEvictsTheCachedSdbSummariesOfTheGroup() {
+    UserGroupPermission userGroupPermission =
+        mockUserGroupPermissionWithNameAndRoleId("name", "roleId");
+    Role role = Mockito.mock(Role.class);
+    Mockito.when(roleService.getRoleById("roleId")).thenReturn(Optional.of(role));
+    Mockito.when(userGroupDao.getUserGroupByName("name")).thenReturn(getUserGroup());
+    Mockito.when(sdbSummaryCache.isEnabled()).thenReturn(true);
+    userGroupPermissionService.grantUserGroupPermission(
+        "safeBoxId", userGroupPermission, "user", OffsetDateTime.MAX);
+    Mockito.verify(sdbSummaryCache).invalidateGrantee("name");
+    Mockito.verify(cacheInvalidationService).recordInvalidation(SdbSummaryCache.NAMESPACE, "name");
+  }
+
   @Test
   public void testGrantUserGroupPermissionsWhenUserGroupRecordIsPresentForGivenName() {
     UserGroupPermission userGroupPermission =
@@ -410,4 +433,38 @@ public class UserGroupPermissionServiceTest {
             .setUserGroupId("id");
     return userGroupPermissionRecord;
   }
+
+  @Test
+  public void testGetUserGroupPermissionsBySdbIds() {
+    List<SdbPermissionRecord> records = new ArrayList<>();
+    records.add(
+        new SdbPermissionRecord()
+            .setId("id1")
+            .setSdboxId("boxId1")
+            .setPrincipalName("group1")
+            .setRoleId("roleId")
+            .setLastUpdatedBy("lastUpdatedBy")
+            .setLastUpdatedTs(OffsetDateTime.MAX));
+    records.add(
+        new SdbPermissionRecord()
+            .setId("id2")
+            .setSdboxId("boxId2")
+            .setPrincipalName("group2")
+            .setRoleId("roleId"));
+    List<String> boxIds = List.of("boxId1", "boxId2");
+    Mockito.when(userGroupDao.getUserGroupPermissionsBySdbIds(boxIds)).thenReturn(records);
+
+    Map<String, Set<UserGroupPermission>> permissionsBySdbId =
+        userGroupPermissionService.getUserGroupPermissionsBySdbIds(boxIds);
+
+    assertEquals(2, permissionsBySdbId.size());
+    UserGroupPermission permission = permissionsBySdbId.get("boxId1").iterator().next();
+    assertEquals("id1", permission.getId());
+    assertEquals("group1", permission.getName());
+    assertEquals("roleId", permission.getRoleId());
+    assertEquals("lastUpdatedBy", permission.getLastUpdatedBy());
+    assertEquals(OffsetDateTime.MAX, permission.getLastUpdatedTs());
+    assertEquals("group2", permissionsBySdbId.get("boxId2").iterator().next().getName());
+    Mockito.verify(userGroupDao, Mockito.never()).getUserGroup(Mockito.anyString());
+  }
 }
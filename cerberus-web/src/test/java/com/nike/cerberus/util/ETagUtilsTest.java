@@ -0,0 +1,66 @@
+package com.nike.cerberus.util;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ETagUtilsTest {
+
+  private static final OffsetDateTime LAST_UPDATED =
+      OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 0, ZoneOffset.UTC);
+
+  @Test
+  public void testToETagIsQuotedAndStable() {
+    String eTag = ETagUtils.toETag("sdbId", "path", LAST_UPDATED);
+    Assert.assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+    Assert.assertEquals(
+        eTag,
+        ETagUtils.toETag(
+            "sdbId", "path", LAST_UPDATED.withOffsetSameInstant(ZoneOffset.ofHours(-8))));
+  }
+
+  @Test
+  public void testToETagChangesWithTheSecureData() {
+    String eTag = ETagUtils.toETag("sdbId", "path", LAST_UPDATED);
+    Assert.assertNotEquals(eTag, ETagUtils.toETag("other", "path", LAST_UPDATED));
+    Assert.assertNotEquals(eTag, ETagUtils.toETag("sdbId", "other", LAST_UPDATED));
+    Assert.assertNotEquals(
+        eTag, ETagUtils.toETag("sdbId", "path", LAST_UPDATED.plusNanos(1_000_000)));
+  }
+
+  @Test
+  public void testToETagDoesNotOverflowForExtremeTimestamps() {
+    Assert.assertNotEquals(
+        ETagUtils.toETag("sdbId", "path", OffsetDateTime.MIN),
+        ETagUtils.toETag("sdbId", "path", OffsetDateTime.MAX));
+  }
+
+  @Test
+  public void testIfNoneMatchMatches() {
+    String eTag = "\"abc\"";
+    Assert.assertTrue(ETagUtils.ifNoneMatchMatches("\"abc\"", eTag));
+    Assert.assertTrue(ETagUtils.ifNoneMatchMatches("W/\"abc\"", eTag));
+    Assert.assertTrue(ETagUtils.ifNoneMatchMatches("\"xyz\", \"abc\"", eTag));
+    Assert.assertTrue(ETagUtils.ifNoneMatchMatches("*", eTag));
+    Assert.assertFalse(ETagUtils.ifNoneMatchMatches("\"xyz\"", eTag));
+    Assert.assertFalse(ETagUtils.ifNoneMatchMatches(null, eTag));
+    Assert.assertFalse(ETagUtils.ifNoneMatchMatches("*", null));
+  }
+
+  @Test
+  public void testIfRangeMatchesOnlyStrongETags() {
+    String eTag = "\"abc\"";
+    Assert.assertTrue(ETagUtils.ifRangeMatches("\"abc\"", eTag));
+    Assert.assertFalse(ETagUtils.ifRangeMatches("W/\"abc\"", eTag));
+    Assert.assertFalse(ETagUtils.ifRangeMatches("\"xyz\"", eTag));
+    Assert.assertFalse(ETagUtils.ifRangeMatches("\"abc\"", null));
+  }
+
+  @Test
+  public void testIsETag() {
+    Assert.assertTrue(ETagUtils.isETag("\"abc\""));
+    Assert.assertTrue(ETagUtils.isETag("W/\"abc\""));
+    Assert.assertFalse(ETagUtils.isETag("Wed, 01 Jan 2020 01:01:01 GMT"));
+  }
+}
@@ -65,4 +65,18 @@ public class TokenHasherTest {
     String token = tokenHasher.hashToken("token");
     Assert.assertNotNull(token);
   }
+
+  @Test
+  public void testDigestTokenIsStableAndDistinctFromTheHash() {
+    String sampleString =
+        "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+    byte[] encodedData = Base64.getEncoder().encode(sampleString.getBytes(StandardCharsets.UTF_8));
+    TokenHasher tokenHasher =
+        new TokenHasher(
+            new String(encodedData, StandardCharsets.UTF_8), "PBKDF2WithHmacSHA1", 256, 100);
+    String digest = tokenHasher.digestToken("token");
+    Assert.assertEquals(digest, tokenHasher.digestToken("token"));
+    Assert.assertNotEquals(digest, tokenHasher.digestToken("other-token"));
+    Assert.assertNotEquals(tokenHasher.hashToken("token"), digest);
+  }
 }